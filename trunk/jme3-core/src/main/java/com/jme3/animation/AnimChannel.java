@@ -316,6 +316,16 @@ public final class AnimChannel {
     }
 
     void update(float tpf, TempVars vars) {
+        update(tpf, vars, null);
+    }
+
+    /**
+     * Applies the animations at the current time and advances the time.
+     *
+     * @param pose if not null, the bone tracks are recorded in the pose
+     * buffer instead of being applied to the bones
+     */
+    void update(float tpf, TempVars vars, PoseBuffer pose) {
         if (animation == null)
             return;
 
@@ -323,7 +333,11 @@ public final class AnimChannel {
             // The blendFrom anim is set, the actual animation
             // playing will be set 
 //            blendFrom.setTime(timeBlendFrom, 1f, control, this, vars);
-            blendFrom.setTime(timeBlendFrom, 1f - blendAmount, control, this, vars);
+            if (pose != null) {
+                pose.addLayer(blendFrom, timeBlendFrom, 1f - blendAmount, control, this, vars);
+            } else {
+                blendFrom.setTime(timeBlendFrom, 1f - blendAmount, control, this, vars);
+            }
             
             timeBlendFrom += tpf * speedBlendFrom;
             timeBlendFrom = AnimationUtils.clampWrapTime(timeBlendFrom,
@@ -341,7 +355,11 @@ public final class AnimChannel {
             }
         }
         
-        animation.setTime(time, blendAmount, control, this, vars);
+        if (pose != null) {
+            pose.addLayer(animation, time, blendAmount, control, this, vars);
+        } else {
+            animation.setTime(time, blendAmount, control, this, vars);
+        }
         time += tpf * speed;      
         if (animation.getLength() > 0){
             if (!notified && (time >= animation.getLength() || time < 0)) {
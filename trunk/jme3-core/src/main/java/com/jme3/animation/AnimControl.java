@@ -43,6 +43,7 @@ import com.jme3.util.clone.JmeCloneable;
 import com.jme3.util.TempVars;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -89,6 +90,29 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
      * Animation event listeners
      */
     private transient ArrayList<AnimEventListener> listeners = new ArrayList<AnimEventListener>();
+    /**
+     * Evaluates the skeleton when {@link #poseBufferEnabled} is set,
+     * created on the first update.
+     */
+    private transient PoseBuffer poseBuffer;
+    private boolean poseBufferEnabled = false;
+    /**
+     * Set by {@link ParallelAnimationState}, which evaluates the recorded
+     * pose instead of this control.
+     */
+    private transient boolean deferredEvaluation = false;
+    private transient boolean evaluationPending = false;
+    /**
+     * Simplifies the animation with the distance to the camera, measured
+     * when the control is rendered.
+     */
+    private transient AnimationLod lod;
+    private transient BitSet[] lodMasks;
+    private transient float lodDistance;
+    private transient boolean renderedSinceUpdate = false;
+    private transient boolean poseEvaluated = false;
+    private transient int framesSinceEvaluation;
+    private transient float timeSinceEvaluation, evaluationInterval;
 
     /**
      * Creates a new animation control for the given skeleton.
@@ -118,6 +142,7 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
             clone.spatial = spatial;
             clone.channels = new ArrayList<AnimChannel>();
             clone.listeners = new ArrayList<AnimEventListener>();
+            clone.clearEvaluationState();
 
             if (skeleton != null) {
                 clone.skeleton = new Skeleton(skeleton);
@@ -139,6 +164,7 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
         AnimControl clone = (AnimControl) super.jmeClone();
         clone.channels = new ArrayList<AnimChannel>();
         clone.listeners = new ArrayList<AnimEventListener>();
+        clone.clearEvaluationState();
 
         return clone;
     }     
@@ -348,11 +374,115 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
         return a.getLength();
     }
 
+    /**
+     * Enables the evaluation of the skeleton with a {@link PoseBuffer}.
+     * <p>
+     * The bone tracks are then sampled and blended in flat arrays, and the
+     * skinning matrices are computed along with the pose, which is faster
+     * when many animated models are updated every frame. The resulting
+     * pose is the same.
+     *
+     * @param enabled true to use a pose buffer, false to update the bones
+     * directly. Disabled by default.
+     */
+    public void setPoseBufferEnabled(boolean enabled) {
+        this.poseBufferEnabled = enabled;
+        if (!enabled) {
+            poseBuffer = null;
+        }
+    }
+
+    /**
+     * @return true if the skeleton is evaluated with a {@link PoseBuffer}.
+     * @see #setPoseBufferEnabled(boolean)
+     */
+    public boolean isPoseBufferEnabled() {
+        return poseBufferEnabled;
+    }
+
+    private void clearEvaluationState() {
+        poseBuffer = null;
+        deferredEvaluation = false;
+        evaluationPending = false;
+        lodMasks = null;
+        renderedSinceUpdate = false;
+        poseEvaluated = false;
+    }
+
+    /**
+     * Simplifies the animation of the model when it is far from the camera
+     * or out of view. The LOD requires the pose buffer, which is enabled.
+     * <p>
+     * The distance is measured from the camera to the center of the world
+     * bound of the spatial when the control is rendered, so it takes
+     * effect from the frame after the model was first rendered.
+     *
+     * @param lod the animation LOD, can be shared with other controls,
+     * or null to always evaluate the full pose
+     * @see AnimationLod
+     */
+    public void setAnimationLod(AnimationLod lod) {
+        this.lod = lod;
+        lodMasks = null;
+        poseEvaluated = false;
+        if (lod != null) {
+            setPoseBufferEnabled(true);
+        }
+    }
+
+    /**
+     * @return the animation LOD, or null
+     * @see #setAnimationLod(com.jme3.animation.AnimationLod)
+     */
+    public AnimationLod getAnimationLod() {
+        return lod;
+    }
+
+    void setDeferredEvaluation(boolean deferred) {
+        deferredEvaluation = deferred;
+        evaluationPending = false;
+    }
+
+    /**
+     * @return the pose buffer recorded by the last update if it was not
+     * evaluated yet, or null.
+     */
+    PoseBuffer takePendingPose() {
+        if (!evaluationPending) {
+            return null;
+        }
+        evaluationPending = false;
+        return poseBuffer;
+    }
+
     /**
      * Internal use only.
      */
     @Override
     protected void controlUpdate(float tpf) {
+        if (poseBufferEnabled && skeleton != null) {
+            if (poseBuffer == null || poseBuffer.getSkeleton() != skeleton) {
+                poseBuffer = new PoseBuffer(skeleton);
+            }
+            poseBuffer.beginFrame();
+            TempVars vars = TempVars.get();
+            for (int i = 0; i < channels.size(); i++) {
+                channels.get(i).update(tpf, vars, poseBuffer);
+            }
+            vars.release();
+
+            if (lod != null && !prepareLodEvaluation(tpf)) {
+                return;
+            }
+            if (deferredEvaluation) {
+                evaluationPending = true;
+            } else {
+                poseBuffer.evaluate();
+                poseBuffer.updateAttachments();
+            }
+            return;
+        }
+
         if (skeleton != null) {
             skeleton.reset(); // reset skeleton to bind pose
         }
@@ -368,11 +498,73 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
         }
     }
 
+    /**
+     * Selects the LOD level from the distance measured in the last frame
+     * and sets up the pose buffer for it.
+     *
+     * @return false if the evaluation is skipped because the model was
+     * culled
+     */
+    private boolean prepareLodEvaluation(float tpf) {
+        int level = lod.getLevel(lodDistance);
+        boolean rendered = renderedSinceUpdate;
+        renderedSinceUpdate = false;
+
+        if (!rendered && poseEvaluated && lod.isCulledSkipped()) {
+            // the pose is out of date when the model shows up again,
+            // start the interpolation over from the next evaluation
+            poseBuffer.clearPrevious();
+            framesSinceEvaluation = Integer.MAX_VALUE - 1;
+            lod.countSkipped(level);
+            return false;
+        }
+
+        if (lodMasks == null || lodMasks.length != lod.getLevelCount()) {
+            lodMasks = new BitSet[lod.getLevelCount()];
+            for (int i = 0; i < lodMasks.length; i++) {
+                lodMasks[i] = lod.createBoneMask(i, skeleton);
+            }
+        }
+        poseBuffer.setBoneMask(lodMasks[level]);
+
+        framesSinceEvaluation++;
+        timeSinceEvaluation += tpf;
+        int interval = lod.getUpdateInterval(level);
+        if (!poseEvaluated || framesSinceEvaluation >= interval) {
+            // with a reduced rate, the previous pose is shown until the
+            // next evaluation is reached, so the model never moves back
+            poseBuffer.setInterpolation(interval > 1 ? 0 : -1, true);
+            evaluationInterval = timeSinceEvaluation;
+            timeSinceEvaluation = 0;
+            framesSinceEvaluation = 0;
+            poseEvaluated = true;
+            lod.countEvaluated(level);
+        } else {
+            float alpha = 1;
+            if (evaluationInterval > 0) {
+                alpha = Math.min(timeSinceEvaluation / evaluationInterval, 1);
+            }
+            poseBuffer.setInterpolation(alpha, false);
+            lod.countInterpolated(level);
+        }
+        return true;
+    }
+
     /**
      * Internal use only.
      */
     @Override
     protected void controlRender(RenderManager rm, ViewPort vp) {
+        if (lod != null) {
+            // keep the closest viewport
+            float distance = spatial.getWorldBound() != null
+                    ? vp.getCamera().getLocation().distance(spatial.getWorldBound().getCenter())
+                    : vp.getCamera().getLocation().distance(spatial.getWorldTranslation());
+            if (!renderedSinceUpdate || distance < lodDistance) {
+                lodDistance = distance;
+            }
+            renderedSinceUpdate = true;
+        }
     }
 
     @Override
@@ -381,6 +573,7 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(skeleton, "skeleton", null);
         oc.writeStringSavableMap(animationMap, "animations", null);
+        oc.write(poseBufferEnabled, "poseBufferEnabled", false);
     }
 
     @Override
@@ -392,6 +585,7 @@ public final class AnimControl extends AbstractControl implements Cloneable, Jme
         if (loadedAnimationMap != null) {
             animationMap = loadedAnimationMap;
         }
+        poseBufferEnabled = in.readBoolean("poseBufferEnabled", false);
 
         if (im.getFormatVersion() == 0) {
             // Changed for backward compatibility with j3o files generated 
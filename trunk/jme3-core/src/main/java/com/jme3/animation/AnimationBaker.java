@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.TempVars;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <code>AnimationBaker</code> samples the animations of a skeleton into a
+ * float texture of skinning matrices, so that animated models can be
+ * drawn without an {@link AnimControl} or a {@link SkeletonControl}, and
+ * instanced.
+ * <p>
+ * Each row of the texture is a frame, each bone takes three RGBA texels
+ * holding the first three rows of its skinning matrix. The clips follow
+ * each other, sampled at regular intervals from their start to their end.
+ * Only the {@link BoneTrack}s are sampled.
+ *
+ * @see BakedAnimation
+ */
+public final class AnimationBaker {
+
+    /**
+     * The number of bones supported by the skinning shaders.
+     */
+    private static final int MAX_BONES = 255;
+
+    private AnimationBaker() {
+    }
+
+    /**
+     * Bakes all the animations of the control, sorted by name.
+     *
+     * @param control the animation control of the model
+     * @param frameRate the number of frames sampled per second
+     * @return the baked animation
+     */
+    public static BakedAnimation bake(AnimControl control, float frameRate) {
+        List<String> names = new ArrayList<String>(control.getAnimationNames());
+        Collections.sort(names);
+        List<Animation> animations = new ArrayList<Animation>(names.size());
+        for (String name : names) {
+            animations.add(control.getAnim(name));
+        }
+        return bake(control.getSkeleton(), animations, frameRate);
+    }
+
+    /**
+     * Bakes the given animations, the clip indices follow their order.
+     *
+     * @param skeleton the skeleton animated, it is not modified
+     * @param animations the animations to bake
+     * @param frameRate the number of frames sampled per second. The frames
+     * of each clip are spread evenly over its length, so the actual rate
+     * can be slightly higher.
+     * @return the baked animation
+     */
+    public static BakedAnimation bake(Skeleton skeleton, List<Animation> animations, float frameRate) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("The frame rate must be positive");
+        }
+        if (animations.isEmpty()) {
+            throw new IllegalArgumentException("No animation to bake");
+        }
+        int boneCount = skeleton.getBoneCount();
+        if (boneCount > MAX_BONES) {
+            throw new IllegalArgumentException("Cannot bake more than " + MAX_BONES + " bones");
+        }
+
+        int clipCount = animations.size();
+        String[] names = new String[clipCount];
+        int[] starts = new int[clipCount];
+        int[] frames = new int[clipCount];
+        float[] rates = new float[clipCount];
+        float[] lengths = new float[clipCount];
+        int frameCount = 0;
+        for (int c = 0; c < clipCount; c++) {
+            Animation anim = animations.get(c);
+            names[c] = anim.getName();
+            lengths[c] = anim.getLength();
+            starts[c] = frameCount;
+            if (lengths[c] > 0) {
+                frames[c] = (int) Math.ceil(lengths[c] * frameRate) + 1;
+                rates[c] = (frames[c] - 1) / lengths[c];
+            } else {
+                frames[c] = 1;
+                rates[c] = frameRate;
+            }
+            frameCount += frames[c];
+        }
+
+        int width = boneCount * 3;
+        ByteBuffer data = BufferUtils.createByteBuffer(width * frameCount * 16);
+        FloatBuffer floats = data.asFloatBuffer();
+
+        // sample a copy, through the bones like the animation control
+        Skeleton copy = new Skeleton(skeleton);
+        AnimControl sampler = new AnimControl(copy);
+        AnimChannel channel = sampler.createChannel();
+        TempVars vars = TempVars.get();
+        try {
+            for (int c = 0; c < clipCount; c++) {
+                Track[] tracks = animations.get(c).getTracks();
+                for (int f = 0; f < frames[c]; f++) {
+                    float time = Math.min(f / rates[c], lengths[c]);
+                    copy.reset();
+                    for (Track track : tracks) {
+                        if (track instanceof BoneTrack) {
+                            track.setTime(time, 1f, sampler, channel, vars);
+                        }
+                    }
+                    copy.updateWorldVectors();
+                    Matrix4f[] matrices = copy.computeSkinningMatrices();
+                    for (int b = 0; b < boneCount; b++) {
+                        Matrix4f m = matrices[b];
+                        floats.put(m.m00).put(m.m01).put(m.m02).put(m.m03);
+                        floats.put(m.m10).put(m.m11).put(m.m12).put(m.m13);
+                        floats.put(m.m20).put(m.m21).put(m.m22).put(m.m23);
+                    }
+                }
+            }
+        } finally {
+            vars.release();
+        }
+
+        Image image = new Image(Image.Format.RGBA32F, width, frameCount, data, ColorSpace.Linear);
+        Texture2D texture = new Texture2D(image);
+        texture.setMagFilter(Texture.MagFilter.Nearest);
+        texture.setMinFilter(Texture.MinFilter.NearestNoMipMaps);
+        texture.setWrap(Texture.WrapMode.EdgeClamp);
+        return new BakedAnimation(texture, floats, boneCount, names, starts, frames, rates, lengths);
+    }
+}
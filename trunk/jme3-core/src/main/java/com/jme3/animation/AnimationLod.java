@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * <code>AnimationLod</code> describes how the animation of a model is
+ * simplified with its distance to the camera.
+ * <p>
+ * Each level starts at a distance and defines how often the pose of the
+ * skeleton is evaluated, and optionally which bones are animated. Between
+ * two evaluations, the pose is interpolated from the model transforms of
+ * the two previous evaluations, which is much cheaper than sampling and
+ * blending the tracks but shows the motion one update interval late.
+ * Models that were not rendered during the previous frame are not
+ * evaluated at all, the channels keep playing so the pose is right again
+ * when the model comes back into view.
+ * <p>
+ * Level 0 starts at distance 0, evaluates every frame and animates all the
+ * bones. The same instance can be shared by many {@link AnimControl}s, its
+ * counters then sum the updates of all of them.
+ * <pre>
+ * AnimationLod lod = new AnimationLod();
+ * lod.addLevel(30, 2);
+ * lod.addLevel(80, 4, "spine", "head", "upperarm.L", "upperarm.R");
+ * animControl.setAnimationLod(lod);
+ * </pre>
+ *
+ * @see AnimControl#setAnimationLod(com.jme3.animation.AnimationLod)
+ */
+public final class AnimationLod {
+
+    private final ArrayList<Level> levels = new ArrayList<Level>();
+    private boolean culledSkipped = true;
+
+    /**
+     * Creates the animation LOD with only level 0.
+     */
+    public AnimationLod() {
+        levels.add(new Level(0, 1, null));
+    }
+
+    /**
+     * Adds a level starting at the given distance. The levels must be added
+     * by increasing distance.
+     *
+     * @param distance the distance from the camera at which the level
+     * starts
+     * @param updateInterval the pose is evaluated once every this many
+     * frames, and interpolated in the other frames
+     * @param bones the names of the bones to animate, the other bones stay
+     * in their bind pose. The parents of the bones are not included
+     * implicitly. All the bones are animated when no name is given.
+     * @return the index of the new level
+     */
+    public int addLevel(float distance, int updateInterval, String... bones) {
+        Level last = levels.get(levels.size() - 1);
+        if (distance <= last.distance) {
+            throw new IllegalArgumentException("The levels must be added by increasing distance");
+        }
+        if (updateInterval < 1) {
+            throw new IllegalArgumentException("The update interval must be at least 1");
+        }
+        levels.add(new Level(distance, updateInterval, bones.length > 0 ? bones.clone() : null));
+        return levels.size() - 1;
+    }
+
+    /**
+     * @return the number of levels, including level 0
+     */
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    /**
+     * @param distance the distance from the camera
+     * @return the level used at that distance
+     */
+    public int getLevel(float distance) {
+        int level = levels.size() - 1;
+        while (level > 0 && distance < levels.get(level).distance) {
+            level--;
+        }
+        return level;
+    }
+
+    /**
+     * @param level the level index
+     * @return the distance at which the level starts
+     */
+    public float getDistance(int level) {
+        return levels.get(level).distance;
+    }
+
+    /**
+     * @param level the level index
+     * @return the number of frames between two evaluations of the pose
+     */
+    public int getUpdateInterval(int level) {
+        return levels.get(level).updateInterval;
+    }
+
+    /**
+     * @param level the level index
+     * @return the names of the bones animated at that level, or null if all
+     * the bones are animated
+     */
+    public String[] getBones(int level) {
+        String[] bones = levels.get(level).bones;
+        return bones != null ? bones.clone() : null;
+    }
+
+    /**
+     * Sets whether the models that were not rendered during the previous
+     * frame skip the evaluation of their pose.
+     *
+     * @param culledSkipped true to skip culled models. True by default.
+     */
+    public void setCulledSkipped(boolean culledSkipped) {
+        this.culledSkipped = culledSkipped;
+    }
+
+    /**
+     * @return true if culled models skip the evaluation of their pose.
+     * @see #setCulledSkipped(boolean)
+     */
+    public boolean isCulledSkipped() {
+        return culledSkipped;
+    }
+
+    /**
+     * @param level the level index
+     * @return the number of updates that evaluated the pose at that level
+     */
+    public long getEvaluatedCount(int level) {
+        return levels.get(level).evaluated;
+    }
+
+    /**
+     * @param level the level index
+     * @return the number of updates that interpolated the pose at that
+     * level instead of evaluating it
+     */
+    public long getInterpolatedCount(int level) {
+        return levels.get(level).interpolated;
+    }
+
+    /**
+     * @param level the level index
+     * @return the number of updates skipped at that level because the model
+     * was culled
+     */
+    public long getSkippedCount(int level) {
+        return levels.get(level).skipped;
+    }
+
+    /**
+     * Resets the counters of all the levels.
+     */
+    public void resetCounters() {
+        for (Level level : levels) {
+            level.evaluated = 0;
+            level.interpolated = 0;
+            level.skipped = 0;
+        }
+    }
+
+    void countEvaluated(int level) {
+        levels.get(level).evaluated++;
+    }
+
+    void countInterpolated(int level) {
+        levels.get(level).interpolated++;
+    }
+
+    void countSkipped(int level) {
+        levels.get(level).skipped++;
+    }
+
+    /**
+     * @return the mask of the bones animated at the given level for the
+     * skeleton, or null if all the bones are animated
+     */
+    BitSet createBoneMask(int level, Skeleton skeleton) {
+        String[] bones = levels.get(level).bones;
+        if (bones == null) {
+            return null;
+        }
+        BitSet mask = new BitSet(skeleton.getBoneCount());
+        for (String name : bones) {
+            int index = skeleton.getBoneIndex(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("The skeleton has no bone named " + name
+                        + " for the animation LOD level " + level);
+            }
+            mask.set(index);
+        }
+        return mask;
+    }
+
+    private static final class Level {
+
+        final float distance;
+        final int updateInterval;
+        final String[] bones;
+        long evaluated, interpolated, skipped;
+
+        Level(float distance, int updateInterval, String[] bones) {
+            this.distance = distance;
+            this.updateInterval = updateInterval;
+            this.bones = bones;
+        }
+    }
+}
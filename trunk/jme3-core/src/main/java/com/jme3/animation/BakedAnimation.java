@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.material.Material;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector4f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.GeometryGroupNode;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.instancing.InstancedGeometry;
+import com.jme3.shader.VarType;
+import com.jme3.texture.Texture2D;
+import java.nio.FloatBuffer;
+
+/**
+ * <code>BakedAnimation</code> holds the skinning matrices of animation
+ * clips sampled by the {@link AnimationBaker}, and sets up materials and
+ * meshes to play them on the GPU.
+ * <p>
+ * The skinning shaders read the matrices of the current frame from the
+ * texture, using the time of the application, the clip index and a time
+ * offset, and interpolate between two frames. No control is needed on the
+ * CPU. With instancing, every instance carries its own clip index and time
+ * offset, so a crowd of animated models sharing a mesh and a material is
+ * drawn in a single call:
+ * <pre>
+ * BakedAnimation baked = AnimationBaker.bake(animControl, 30);
+ * baked.applyTo(material);
+ * material.setBoolean("UseInstancing", true);
+ * BakedAnimation.prepareMesh(mesh);
+ * for (...) {
+ *     Geometry character = new Geometry("character", mesh);
+ *     character.setMaterial(material);
+ *     baked.setInstanceState(character, baked.getClipIndex("walk"), FastMath.nextRandomFloat());
+ *     instancedNode.attachChild(character);
+ * }
+ * instancedNode.instance();
+ * </pre>
+ * The clips loop unless {@link #setClipLooping(int, boolean) } disables it,
+ * which must be done before the baked animation is applied to materials.
+ * The bounds of the meshes are those of the bind pose.
+ */
+public final class BakedAnimation {
+
+    private final Texture2D texture;
+    private final FloatBuffer matrices;
+    private final int boneCount;
+    private final String[] names;
+    private final int[] starts;
+    private final int[] frames;
+    private final float[] rates;
+    private final float[] lengths;
+    private final boolean[] looping;
+
+    BakedAnimation(Texture2D texture, FloatBuffer matrices, int boneCount, String[] names,
+            int[] starts, int[] frames, float[] rates, float[] lengths) {
+        this.texture = texture;
+        this.matrices = matrices;
+        this.boneCount = boneCount;
+        this.names = names;
+        this.starts = starts;
+        this.frames = frames;
+        this.rates = rates;
+        this.lengths = lengths;
+        looping = new boolean[names.length];
+        for (int i = 0; i < looping.length; i++) {
+            looping[i] = true;
+        }
+    }
+
+    /**
+     * @return the RGBA32F texture of the skinning matrices, one row per
+     * frame and three texels per bone
+     */
+    public Texture2D getTexture() {
+        return texture;
+    }
+
+    /**
+     * @return the number of bones of the skeleton
+     */
+    public int getBoneCount() {
+        return boneCount;
+    }
+
+    /**
+     * @return the number of clips
+     */
+    public int getClipCount() {
+        return names.length;
+    }
+
+    /**
+     * @param name the name of an animation
+     * @return the index of its clip, or -1 if it was not baked
+     */
+    public int getClipIndex(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param clip the clip index
+     * @return the name of the animation of the clip
+     */
+    public String getClipName(int clip) {
+        return names[clip];
+    }
+
+    /**
+     * @param clip the clip index
+     * @return the length of the clip in seconds
+     */
+    public float getClipLength(int clip) {
+        return lengths[clip];
+    }
+
+    /**
+     * @param clip the clip index
+     * @return the number of frames of the clip
+     */
+    public int getClipFrameCount(int clip) {
+        return frames[clip];
+    }
+
+    /**
+     * @param clip the clip index
+     * @return the number of frames per second of the clip
+     */
+    public float getClipFrameRate(int clip) {
+        return rates[clip];
+    }
+
+    /**
+     * Sets whether the clip loops, or stops on its last frame.
+     *
+     * @param clip the clip index
+     * @param looping true to loop. True by default.
+     */
+    public void setClipLooping(int clip, boolean looping) {
+        this.looping[clip] = looping;
+    }
+
+    /**
+     * @param clip the clip index
+     * @return true if the clip loops
+     */
+    public boolean isClipLooping(int clip) {
+        return looping[clip];
+    }
+
+    /**
+     * Reads the skinning matrix of a bone at a frame of a clip.
+     *
+     * @param clip the clip index
+     * @param frame the frame in the clip
+     * @param bone the bone index
+     * @param store the matrix to store the result in, or null
+     * @return the skinning matrix
+     */
+    public Matrix4f getSkinningMatrix(int clip, int frame, int bone, Matrix4f store) {
+        if (frame < 0 || frame >= frames[clip]) {
+            throw new IllegalArgumentException("The clip " + names[clip] + " has no frame " + frame);
+        }
+        if (store == null) {
+            store = new Matrix4f();
+        }
+        int i = ((starts[clip] + frame) * boneCount + bone) * 12;
+        store.m00 = matrices.get(i);
+        store.m01 = matrices.get(i + 1);
+        store.m02 = matrices.get(i + 2);
+        store.m03 = matrices.get(i + 3);
+        store.m10 = matrices.get(i + 4);
+        store.m11 = matrices.get(i + 5);
+        store.m12 = matrices.get(i + 6);
+        store.m13 = matrices.get(i + 7);
+        store.m20 = matrices.get(i + 8);
+        store.m21 = matrices.get(i + 9);
+        store.m22 = matrices.get(i + 10);
+        store.m23 = matrices.get(i + 11);
+        store.m30 = 0;
+        store.m31 = 0;
+        store.m32 = 0;
+        store.m33 = 1;
+        return store;
+    }
+
+    /**
+     * Sets the texture and the clips on a material whose definition
+     * supports baked animations, like Unshaded or Lighting. The material
+     * then skins the meshes with the baked animation.
+     *
+     * @param material the material
+     */
+    public void applyTo(Material material) {
+        if (material.getMaterialDef().getMaterialParam("BakedAnimation") == null) {
+            throw new IllegalArgumentException("The material " + material.getMaterialDef().getName()
+                    + " does not support baked animations");
+        }
+        Vector4f[] clips = new Vector4f[names.length];
+        for (int i = 0; i < clips.length; i++) {
+            clips[i] = new Vector4f(starts[i], frames[i], rates[i], looping[i] ? 1 : 0);
+        }
+        material.setTexture("BakedAnimation", texture);
+        material.setParam("BakedClips", VarType.Vector4Array, clips);
+        material.setInt("NumberOfBakedClips", clips.length);
+        material.setVector2("BakedAnimationSize", new Vector2f(boneCount * 3, texture.getImage().getHeight()));
+        material.setInt("NumberOfBones", boneCount);
+    }
+
+    /**
+     * Sets the clip played by the geometries of a material that are not
+     * instanced.
+     *
+     * @param material the material the baked animation was applied to
+     * @param clip the clip index
+     * @param timeOffset the time added to the time of the application
+     */
+    public void setState(Material material, int clip, float timeOffset) {
+        checkClip(clip);
+        material.setVector2("BakedAnimationState", new Vector2f(clip, timeOffset));
+    }
+
+    /**
+     * Sets the clip played by an instance. The state is stored in the user
+     * data of the geometry and written to the instance data of its
+     * {@link com.jme3.scene.instancing.InstancedNode}.
+     *
+     * @param instance the geometry, instanced or not yet
+     * @param clip the clip index
+     * @param timeOffset the time added to the time of the application
+     */
+    public void setInstanceState(Geometry instance, int clip, float timeOffset) {
+        checkClip(clip);
+        instance.setUserData(InstancedGeometry.ANIMATION_STATE, new Vector2f(clip, timeOffset));
+        if (instance.isGrouped()) {
+            for (Node node = instance.getParent(); node != null; node = node.getParent()) {
+                if (node instanceof GeometryGroupNode) {
+                    // rewrites the instance data of the geometry
+                    ((GeometryGroupNode) node).onTransformChange(instance);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void checkClip(int clip) {
+        if (clip < 0 || clip >= names.length) {
+            throw new IllegalArgumentException("No clip " + clip + ", there are " + names.length);
+        }
+    }
+
+    /**
+     * Prepares an animated mesh to be skinned with a baked animation: the
+     * hardware skinning buffers are created and the mesh is reset to its
+     * bind pose if it was skinned in software.
+     *
+     * @param mesh the mesh, with bone indices and weights
+     */
+    public static void prepareMesh(Mesh mesh) {
+        if (mesh.getBuffer(Type.BoneIndex) == null || mesh.getBuffer(Type.BoneWeight) == null) {
+            throw new IllegalArgumentException("The mesh has no bone indices or weights");
+        }
+        restoreBindPose(mesh, Type.Position, Type.BindPosePosition);
+        restoreBindPose(mesh, Type.Normal, Type.BindPoseNormal);
+        restoreBindPose(mesh, Type.Tangent, Type.BindPoseTangent);
+        if (mesh.getBuffer(Type.HWBoneIndex) == null) {
+            VertexBuffer hwBoneIndex = new VertexBuffer(Type.HWBoneIndex);
+            hwBoneIndex.setUsage(Usage.CpuOnly);
+            mesh.setBuffer(hwBoneIndex);
+        }
+        if (mesh.getBuffer(Type.HWBoneWeight) == null) {
+            VertexBuffer hwBoneWeight = new VertexBuffer(Type.HWBoneWeight);
+            hwBoneWeight.setUsage(Usage.CpuOnly);
+            mesh.setBuffer(hwBoneWeight);
+        }
+        mesh.prepareForAnim(false);
+    }
+
+    private static void restoreBindPose(Mesh mesh, Type type, Type bindType) {
+        VertexBuffer vb = mesh.getBuffer(type);
+        VertexBuffer bind = mesh.getBuffer(bindType);
+        if (vb == null || bind == null) {
+            return;
+        }
+        FloatBuffer data = (FloatBuffer) vb.getData();
+        FloatBuffer bindData = (FloatBuffer) bind.getData();
+        data.clear();
+        bindData.clear();
+        data.put(bindData).clear();
+        bindData.clear();
+        vb.updateData(data);
+    }
+}
@@ -118,6 +118,12 @@ public final class Bone implements Savable, JmeCloneable {
      */
     private transient float currentWeightSum = -1;
 
+    /**
+     * Set when the model transforms are changed through this bone, so that
+     * the skeleton does not reuse the skinning matrices of a {@link PoseBuffer}.
+     */
+    private transient boolean modelTransformsChanged;
+
     /**
      * Creates a new bone with the given name.
      * 
@@ -503,12 +509,37 @@ public final class Bone implements Savable, JmeCloneable {
             modelPos.set(localPos);
             modelScale.set(localScale);
         }
+        modelTransformsChanged = true;
+
+        updateAttachNode();
+    }
+
+    /**
+     * @return true if the model transforms changed since the last
+     * call to {@link #clearModelTransformsChanged() }
+     */
+    boolean isModelTransformsChanged() {
+        return modelTransformsChanged;
+    }
+
+    void clearModelTransformsChanged() {
+        modelTransformsChanged = false;
+    }
 
+    /**
+     * Copies the model transforms of the bone to its attachments node,
+     * if it has one.
+     *
+     * @return true if the bone has an attachments node
+     */
+    boolean updateAttachNode() {
         if (attachNode != null) {
             attachNode.setLocalTranslation(modelPos);
             attachNode.setLocalRotation(modelRot);
             attachNode.setLocalScale(modelScale);
+            return true;
         }
+        return false;
     }
 
     /**
@@ -638,6 +669,7 @@ public final class Bone implements Savable, JmeCloneable {
         // TODO: add scale here ???
         modelPos.set(translation);
         modelRot.set(rotation);
+        modelTransformsChanged = true;
         
         //if there is an attached Node we need to set it's local transforms too.
         if(attachNode != null){
@@ -250,6 +250,95 @@ public final class BoneTrack implements Track {
 //        }
     }
     
+    /**
+     * @return true if the track has scale keyframes
+     */
+    boolean hasScales() {
+        return scales != null;
+    }
+
+    /**
+     * Samples the track at the given time, interpolating the keyframes
+     * exactly like {@link #setTime(float, float, com.jme3.animation.AnimControl, com.jme3.animation.AnimChannel, com.jme3.util.TempVars) },
+     * but reading the compact arrays directly.
+     * The translation, rotation and scale are stored in that order in
+     * <code>store</code>, the scale is left untouched if the track has none.
+     *
+     * @param time the time of the animation
+     * @param store an array of at least 10 floats
+     */
+    void sample(float time, float[] store) {
+        float[] tData = translations.getSerializedData();
+        float[] rData = rotations.getSerializedData();
+        float[] sData = scales != null ? scales.getSerializedData() : null;
+
+        int lastFrame = times.length - 1;
+        int startFrame;
+        if (time < 0 || lastFrame == 0) {
+            startFrame = 0;
+        } else if (time >= times[lastFrame]) {
+            startFrame = lastFrame;
+        } else {
+            // the last frame before lastFrame that starts before the time,
+            // as found by the linear search of setTime
+            int low = 0;
+            int high = lastFrame - 1;
+            startFrame = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    startFrame = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            int endFrame = startFrame + 1;
+            float blend = (time - times[startFrame])
+                    / (times[endFrame] - times[startFrame]);
+
+            int t0 = translations.getCompactIndex(startFrame) * 3;
+            int t1 = translations.getCompactIndex(endFrame) * 3;
+            float blendI = 1 - blend;
+            store[0] = blendI * tData[t0] + blend * tData[t1];
+            store[1] = blendI * tData[t0 + 1] + blend * tData[t1 + 1];
+            store[2] = blendI * tData[t0 + 2] + blend * tData[t1 + 2];
+
+            int r0 = rotations.getCompactIndex(startFrame) * 4;
+            int r1 = rotations.getCompactIndex(endFrame) * 4;
+            store[3] = rData[r0];
+            store[4] = rData[r0 + 1];
+            store[5] = rData[r0 + 2];
+            store[6] = rData[r0 + 3];
+            PoseBuffer.nlerp(store, 3, rData[r1], rData[r1 + 1], rData[r1 + 2], rData[r1 + 3], blend);
+
+            if (sData != null) {
+                int s0 = scales.getCompactIndex(startFrame) * 3;
+                int s1 = scales.getCompactIndex(endFrame) * 3;
+                store[7] = blendI * sData[s0] + blend * sData[s1];
+                store[8] = blendI * sData[s0 + 1] + blend * sData[s1 + 1];
+                store[9] = blendI * sData[s0 + 2] + blend * sData[s1 + 2];
+            }
+            return;
+        }
+
+        int t = translations.getCompactIndex(startFrame) * 3;
+        store[0] = tData[t];
+        store[1] = tData[t + 1];
+        store[2] = tData[t + 2];
+        int r = rotations.getCompactIndex(startFrame) * 4;
+        store[3] = rData[r];
+        store[4] = rData[r + 1];
+        store[5] = rData[r + 2];
+        store[6] = rData[r + 3];
+        if (sData != null) {
+            int sc = scales.getCompactIndex(startFrame) * 3;
+            store[7] = sData[sc];
+            store[8] = sData[sc + 1];
+            store[9] = sData[sc + 2];
+        }
+    }
+
     /**
      * @return the length of the track
      */
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <code>ParallelAnimationState</code> evaluates the skeletons of the
+ * registered {@link AnimControl}s on a fork-join pool.
+ * <p>
+ * The registered controls use a {@link PoseBuffer}. During the logical
+ * update, they only advance their channels, notify their listeners and
+ * record the animations to blend, on the main thread as usual. The state
+ * then evaluates the recorded poses of all the controls updated in the
+ * frame in parallel: the track sampling, the blending, the bone transforms
+ * and the skinning matrices. This happens in {@link #render(com.jme3.renderer.RenderManager) },
+ * after the scene update and before the scene is rendered, so the skinning
+ * matrices are ready when the {@link SkeletonControl}s render.
+ * <p>
+ * Each skeleton is evaluated by a single thread with the same code as a
+ * control evaluating its own pose buffer, so the results are exactly the
+ * same as with serial updates. The attachments nodes are updated on the
+ * calling thread, and the geometric state of their scenes is refreshed.
+ * <p>
+ * Note that the bones of a registered control only receive the new pose
+ * when the state renders, code reading them during the logical update
+ * sees the pose of the previous frame.
+ */
+public class ParallelAnimationState extends AbstractAppState {
+
+    /**
+     * Number of chunks created per pool thread, so that skeletons with
+     * more bones or layers can still be balanced by work stealing.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ArrayList<AnimControl> controls = new ArrayList<AnimControl>();
+    private final IdentityHashMap<Spatial, Spatial> roots = new IdentityHashMap<Spatial, Spatial>();
+    private PoseBuffer[] pending = new PoseBuffer[16];
+    private AnimControl[] pendingControls = new AnimControl[16];
+    private ForkJoinPool pool;
+    private final boolean ownPool;
+
+    /**
+     * Creates a state evaluating the skeletons on its own pool, sized to
+     * the number of processors.
+     */
+    public ParallelAnimationState() {
+        this.ownPool = true;
+    }
+
+    /**
+     * Creates a state evaluating the skeletons on the given pool, which is
+     * not shut down by the state.
+     *
+     * @param pool the pool to use
+     */
+    public ParallelAnimationState(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        this.pool = pool;
+        this.ownPool = false;
+    }
+
+    /**
+     * Registers a control whose skeleton is evaluated by this state.
+     * This enables its {@link PoseBuffer}.
+     *
+     * @param control the control to register
+     * @throws IllegalArgumentException if the control has no skeleton, or
+     * if its skeleton is already evaluated for another registered control
+     */
+    public void register(AnimControl control) {
+        if (controls.contains(control)) {
+            return;
+        }
+        Skeleton skeleton = control.getSkeleton();
+        if (skeleton == null) {
+            throw new IllegalArgumentException("The control has no skeleton");
+        }
+        for (int i = 0; i < controls.size(); i++) {
+            if (controls.get(i).getSkeleton() == skeleton) {
+                throw new IllegalArgumentException("The skeleton is already evaluated for another control");
+            }
+        }
+        control.setPoseBufferEnabled(true);
+        control.setDeferredEvaluation(true);
+        controls.add(control);
+    }
+
+    /**
+     * Unregisters a control, it evaluates its own skeleton again.
+     *
+     * @param control the control to unregister
+     */
+    public void unregister(AnimControl control) {
+        if (controls.remove(control)) {
+            PoseBuffer pose = control.takePendingPose();
+            if (pose != null) {
+                // recorded but not evaluated yet
+                pose.evaluate();
+                pose.updateAttachments();
+            }
+            control.setDeferredEvaluation(false);
+        }
+    }
+
+    /**
+     * @return the number of registered controls
+     */
+    public int getControlCount() {
+        return controls.size();
+    }
+
+    /**
+     * Evaluates the poses recorded by the registered controls since the
+     * last call.
+     */
+    @Override
+    public void render(RenderManager rm) {
+        int count = 0;
+        for (int i = 0; i < controls.size(); i++) {
+            PoseBuffer pose = controls.get(i).takePendingPose();
+            if (pose != null) {
+                if (count == pending.length) {
+                    pending = Arrays.copyOf(pending, count * 2);
+                    pendingControls = Arrays.copyOf(pendingControls, count * 2);
+                }
+                pendingControls[count] = controls.get(i);
+                pending[count++] = pose;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        try {
+            if (count == 1) {
+                pending[0].evaluate();
+            } else {
+                if (pool == null) {
+                    pool = new ForkJoinPool();
+                }
+                int chunkSize = Math.max(1, count / (pool.getParallelism() * CHUNKS_PER_THREAD));
+                pool.invoke(new EvaluateTask(pending, 0, count, chunkSize));
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (!pending[i].updateAttachments()) {
+                    continue;
+                }
+                Spatial root = pendingControls[i].getSpatial();
+                while (root != null && root.getParent() != null) {
+                    root = root.getParent();
+                }
+                if (root != null) {
+                    roots.put(root, root);
+                }
+            }
+            // the attachments nodes were moved after the scene update
+            for (Spatial root : roots.keySet()) {
+                root.updateGeometricState();
+            }
+        } finally {
+            Arrays.fill(pending, 0, count, null);
+            Arrays.fill(pendingControls, 0, count, null);
+            roots.clear();
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        for (int i = controls.size() - 1; i >= 0; i--) {
+            unregister(controls.get(i));
+        }
+        if (ownPool && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Evaluates a range of pose buffers, splitting it in halves down to
+     * the chunk size.
+     */
+    private static final class EvaluateTask extends RecursiveAction {
+
+        private final PoseBuffer[] poses;
+        private final int start, end, chunkSize;
+
+        EvaluateTask(PoseBuffer[] poses, int start, int end, int chunkSize) {
+            this.poses = poses;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= chunkSize) {
+                for (int i = start; i < end; i++) {
+                    poses[i].evaluate();
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new EvaluateTask(poses, start, middle, chunkSize),
+                    new EvaluateTask(poses, middle, end, chunkSize));
+        }
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.util.TempVars;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * <code>PoseBuffer</code> evaluates the pose of a skeleton in flat float
+ * arrays instead of going through the {@link Bone} objects.
+ * <p>
+ * The local, model and bind transforms of all the bones are stored in one
+ * array per attribute, indexed by bone index. The animations played by
+ * the channels are recorded as layers during the update of the
+ * {@link AnimControl}, then {@link #evaluate() } samples the bone tracks
+ * of every layer straight from their compact keyframe arrays, blends them
+ * on the arrays, computes the model transforms in a single pass over the
+ * bones sorted parents first, and the skinning matrices in another linear
+ * pass. No temporary objects are involved.
+ * <p>
+ * The math reproduces the blending of {@link Bone} operation by operation,
+ * so the resulting pose is the same as with the bone objects. The bones
+ * still receive the local and model transforms, so attachments and code
+ * reading the bones keep working.
+ * <p>
+ * Tracks other than {@link BoneTrack}s, like audio or effect tracks, are
+ * applied immediately when the layer is recorded.
+ * <p>
+ * For the {@link AnimationLod} of distant models, the bones can be limited
+ * to a mask, and the displayed pose can be interpolated between the model
+ * transforms of the two last evaluations.
+ *
+ * @see AnimControl#setPoseBufferEnabled(boolean)
+ */
+public final class PoseBuffer {
+
+    private final Skeleton skeleton;
+    private final int boneCount;
+    private final Bone[] bones;
+
+    /**
+     * Bone indices sorted so that parents come before their children.
+     */
+    private final int[] order;
+    private final int[] parents;
+
+    private final float[] bindPos, bindRot, bindScale;
+    private final float[] invBindPos, invBindRot, invBindScale;
+    private final float[] localPos, localRot, localScale;
+    private final float[] modelPos, modelRot, modelScale;
+
+    /**
+     * Same as the weight sum of {@link Bone}, -1 when no transform was
+     * blended in yet.
+     */
+    private final float[] weightSums;
+    private final boolean[] userControl;
+    private boolean anyUserControl;
+
+    private final float[] sample = new float[10];
+
+    /**
+     * Only the bones in the mask are animated when it is set, the others
+     * stay in their bind pose.
+     */
+    private BitSet boneMask;
+
+    /**
+     * Model transforms of the previous evaluation, and the transforms
+     * interpolated from them, allocated when the interpolation is first
+     * requested.
+     */
+    private float[] prevPos, prevRot, prevScale;
+    private float[] lerpPos, lerpRot, lerpScale;
+    private boolean hasPrevious;
+    private float interpolation = -1;
+    private boolean sampleNext = true;
+
+    private final ArrayList<Animation> layerAnims = new ArrayList<Animation>();
+    private final ArrayList<BitSet> layerBones = new ArrayList<BitSet>();
+    private float[] layerTimes = new float[4];
+    private float[] layerWeights = new float[4];
+
+    /**
+     * Creates a pose buffer for the given skeleton.
+     *
+     * @param skeleton the skeleton to evaluate
+     */
+    public PoseBuffer(Skeleton skeleton) {
+        this.skeleton = skeleton;
+        boneCount = skeleton.getBoneCount();
+        bones = new Bone[boneCount];
+        parents = new int[boneCount];
+        for (int i = 0; i < boneCount; i++) {
+            bones[i] = skeleton.getBone(i);
+        }
+        for (int i = 0; i < boneCount; i++) {
+            Bone parent = bones[i].getParent();
+            parents[i] = parent != null ? skeleton.getBoneIndex(parent) : -1;
+        }
+
+        order = new int[boneCount];
+        int count = 0;
+        for (Bone root : skeleton.getRoots()) {
+            order[count++] = skeleton.getBoneIndex(root);
+        }
+        for (int i = 0; i < count; i++) {
+            for (Bone child : bones[order[i]].getChildren()) {
+                order[count++] = skeleton.getBoneIndex(child);
+            }
+        }
+
+        bindPos = new float[boneCount * 3];
+        bindRot = new float[boneCount * 4];
+        bindScale = new float[boneCount * 3];
+        invBindPos = new float[boneCount * 3];
+        invBindRot = new float[boneCount * 4];
+        invBindScale = new float[boneCount * 3];
+        localPos = new float[boneCount * 3];
+        localRot = new float[boneCount * 4];
+        localScale = new float[boneCount * 3];
+        modelPos = new float[boneCount * 3];
+        modelRot = new float[boneCount * 4];
+        modelScale = new float[boneCount * 3];
+        weightSums = new float[boneCount];
+        userControl = new boolean[boneCount];
+    }
+
+    /**
+     * @return the skeleton evaluated by this pose buffer
+     */
+    public Skeleton getSkeleton() {
+        return skeleton;
+    }
+
+    /**
+     * Restricts the animated bones to the given mask, the other bones stay
+     * in their bind pose. Used to animate fewer bones on distant models.
+     *
+     * @param boneMask the bones to animate, or null for all of them
+     */
+    void setBoneMask(BitSet boneMask) {
+        this.boneMask = boneMask;
+    }
+
+    /**
+     * Makes the next {@link #evaluate() } show an interpolation between the
+     * model transforms of the two last evaluations.
+     * <p>
+     * When the layers are sampled too, the new pose becomes the last one
+     * before the interpolation, so a pose sampled every few frames is shown
+     * one interval late, moving steadily from one evaluation to the next.
+     * The model transforms of the previous evaluation are kept from the
+     * first call on.
+     *
+     * @param alpha the interpolation amount between the before last pose
+     * (0) and the last pose (1), or a negative value to show the sampled
+     * pose
+     * @param sample true to sample the layers first. Always done when alpha
+     * is negative.
+     */
+    void setInterpolation(float alpha, boolean sample) {
+        interpolation = alpha;
+        sampleNext = sample || alpha < 0;
+        if (prevPos == null) {
+            prevPos = new float[boneCount * 3];
+            prevRot = new float[boneCount * 4];
+            prevScale = new float[boneCount * 3];
+            lerpPos = new float[boneCount * 3];
+            lerpRot = new float[boneCount * 4];
+            lerpScale = new float[boneCount * 3];
+        }
+    }
+
+    /**
+     * Forgets the previous pose, so that the next interpolations start from
+     * the next evaluated pose. Called when the pose was not updated for a
+     * while.
+     */
+    void clearPrevious() {
+        hasPrevious = false;
+    }
+
+    /**
+     * Clears the recorded layers, called before the channels are updated.
+     */
+    void beginFrame() {
+        layerAnims.clear();
+        layerBones.clear();
+    }
+
+    /**
+     * Records an animation to blend in at the given time and weight, for
+     * the bones affected by the channel. The tracks that are not bone
+     * tracks are applied right away.
+     */
+    void addLayer(Animation anim, float time, float weight, AnimControl control, AnimChannel channel, TempVars vars) {
+        Track[] tracks = anim.getTracks();
+        boolean hasBoneTracks = false;
+        for (int i = 0; i < tracks.length; i++) {
+            if (tracks[i] instanceof BoneTrack) {
+                hasBoneTracks = true;
+            } else {
+                tracks[i].setTime(time, weight, control, channel, vars);
+            }
+        }
+        if (!hasBoneTracks) {
+            return;
+        }
+
+        int layer = layerAnims.size();
+        if (layer == layerTimes.length) {
+            float[] times = new float[layer * 2];
+            float[] weights = new float[layer * 2];
+            System.arraycopy(layerTimes, 0, times, 0, layer);
+            System.arraycopy(layerWeights, 0, weights, 0, layer);
+            layerTimes = times;
+            layerWeights = weights;
+        }
+        layerAnims.add(anim);
+        layerBones.add(channel.getAffectedBones());
+        layerTimes[layer] = time;
+        layerWeights[layer] = weight;
+    }
+
+    /**
+     * Evaluates the recorded layers, stores the resulting transforms in
+     * the bones and the skinning matrices in the skeleton.
+     * <p>
+     * Only the bones and the skeleton of this buffer are modified, so
+     * buffers of different skeletons can be evaluated concurrently. The
+     * attachments nodes are updated separately by
+     * {@link #updateAttachments() }.
+     */
+    public void evaluate() {
+        float alpha = interpolation;
+        boolean sample = sampleNext || !hasPrevious;
+        interpolation = -1;
+        sampleNext = true;
+        if (sample) {
+            sampleLayers();
+        }
+        if (alpha >= 0 && hasPrevious) {
+            interpolateModelTransforms(alpha);
+            writeModelTransforms(lerpPos, lerpRot, lerpScale);
+            if (!anyUserControl) {
+                computeSkinningMatrices(skeleton.getSkinningMatrices(), lerpPos, lerpRot, lerpScale);
+                skeleton.setSkinningMatricesComputed();
+            }
+            return;
+        }
+
+        writeBones();
+        if (!anyUserControl) {
+            // bones with user control can be moved after this update,
+            // the skeleton computes their matrices from the bones then
+            computeSkinningMatrices(skeleton.getSkinningMatrices(), modelPos, modelRot, modelScale);
+            skeleton.setSkinningMatricesComputed();
+        }
+    }
+
+    /**
+     * Samples the layers into the local and model transforms, keeping the
+     * previous model transforms when they are needed for interpolations.
+     */
+    private void sampleLayers() {
+        boolean keepPrevious = prevPos != null;
+        if (keepPrevious && hasPrevious) {
+            copyModelTransforms(prevPos, prevRot, prevScale);
+        }
+        reset();
+        for (int i = 0; i < layerAnims.size(); i++) {
+            applyLayer(layerAnims.get(i), layerTimes[i], layerWeights[i], layerBones.get(i));
+        }
+        updateModelTransforms();
+        if (keepPrevious && !hasPrevious) {
+            copyModelTransforms(prevPos, prevRot, prevScale);
+            hasPrevious = true;
+        }
+    }
+
+    /**
+     * Copies the model transforms of the bones to their attachments nodes.
+     * Must be called from the thread that owns the scene graph.
+     *
+     * @return true if at least one bone has an attachments node
+     */
+    public boolean updateAttachments() {
+        boolean updated = false;
+        for (int i = 0; i < boneCount; i++) {
+            updated |= bones[i].updateAttachNode();
+        }
+        return updated;
+    }
+
+    /**
+     * Resets the local transforms to the bind pose, except for the bones
+     * under user control.
+     */
+    private void reset() {
+        anyUserControl = false;
+        for (int i = 0; i < boneCount; i++) {
+            Bone bone = bones[i];
+            load(bone.getBindPosition(), bindPos, i);
+            load(bone.getBindRotation(), bindRot, i);
+            load(bone.getBindScale(), bindScale, i);
+            load(bone.getModelBindInversePosition(), invBindPos, i);
+            load(bone.getModelBindInverseRotation(), invBindRot, i);
+            load(bone.getModelBindInverseScale(), invBindScale, i);
+
+            userControl[i] = bone.hasUserControl();
+            if (userControl[i]) {
+                anyUserControl = true;
+                load(bone.getLocalPosition(), localPos, i);
+                load(bone.getLocalRotation(), localRot, i);
+                load(bone.getLocalScale(), localScale, i);
+            } else {
+                System.arraycopy(bindPos, i * 3, localPos, i * 3, 3);
+                System.arraycopy(bindRot, i * 4, localRot, i * 4, 4);
+                System.arraycopy(bindScale, i * 3, localScale, i * 3, 3);
+            }
+            weightSums[i] = -1;
+        }
+    }
+
+    private void applyLayer(Animation anim, float time, float weight, BitSet affectedBones) {
+        if (weight == 0) {
+            return;
+        }
+        Track[] tracks = anim.getTracks();
+        for (int t = 0; t < tracks.length; t++) {
+            if (!(tracks[t] instanceof BoneTrack)) {
+                continue;
+            }
+            BoneTrack track = (BoneTrack) tracks[t];
+            int bone = track.getTargetBoneIndex();
+            if (affectedBones != null && !affectedBones.get(bone)) {
+                continue;
+            }
+            if (boneMask != null && !boneMask.get(bone)) {
+                continue;
+            }
+            if (userControl[bone] || weightSums[bone] == 1) {
+                continue;
+            }
+            track.sample(time, sample);
+            blend(bone, track.hasScales(), weight);
+        }
+    }
+
+    /**
+     * Same as Bone.blendAnimTransforms, with the sampled transforms.
+     */
+    private void blend(int bone, boolean hasScale, float weight) {
+        int v = bone * 3;
+        int q = bone * 4;
+        float[] s = sample;
+
+        float px = bindPos[v] + s[0];
+        float py = bindPos[v + 1] + s[1];
+        float pz = bindPos[v + 2] + s[2];
+
+        float bx = bindRot[q], by = bindRot[q + 1], bz = bindRot[q + 2], bw = bindRot[q + 3];
+        float rx = bx * s[6] + by * s[5] - bz * s[4] + bw * s[3];
+        float ry = -bx * s[5] + by * s[6] + bz * s[3] + bw * s[4];
+        float rz = bx * s[4] - by * s[3] + bz * s[6] + bw * s[5];
+        float rw = -bx * s[3] - by * s[4] - bz * s[5] + bw * s[6];
+
+        float weightSum = weightSums[bone];
+        if (weightSum == -1 || weightSum == 0) {
+            // Set the transform fully
+            localPos[v] = px;
+            localPos[v + 1] = py;
+            localPos[v + 2] = pz;
+            localRot[q] = rx;
+            localRot[q + 1] = ry;
+            localRot[q + 2] = rz;
+            localRot[q + 3] = rw;
+            if (hasScale) {
+                localScale[v] = bindScale[v] * s[7];
+                localScale[v + 1] = bindScale[v + 1] * s[8];
+                localScale[v + 2] = bindScale[v + 2] * s[9];
+            }
+            weightSums[bone] = weight;
+        } else {
+            // Blend in the new transform
+            interpolate(localPos, v, px, py, pz, weight);
+            nlerp(localRot, q, rx, ry, rz, rw, weight);
+            if (hasScale) {
+                interpolate(localScale, v, bindScale[v] * s[7], bindScale[v + 1] * s[8], bindScale[v + 2] * s[9], weight);
+            }
+            weightSums[bone] = 1;
+        }
+    }
+
+    /**
+     * Same as Bone.updateModelTransforms, for all the bones.
+     */
+    private void updateModelTransforms() {
+        for (int o = 0; o < boneCount; o++) {
+            int i = order[o];
+            int v = i * 3;
+            int q = i * 4;
+
+            float weightSum = weightSums[i];
+            if (weightSum != -1 && weightSum != 1) {
+                if (weightSum == 0) {
+                    System.arraycopy(bindPos, v, localPos, v, 3);
+                    System.arraycopy(bindRot, q, localRot, q, 4);
+                    System.arraycopy(bindScale, v, localScale, v, 3);
+                } else {
+                    float invWeightSum = 1f - weightSum;
+                    nlerp(localRot, q, bindRot[q], bindRot[q + 1], bindRot[q + 2], bindRot[q + 3], invWeightSum);
+                    interpolate(localPos, v, bindPos[v], bindPos[v + 1], bindPos[v + 2], invWeightSum);
+                    interpolate(localScale, v, bindScale[v], bindScale[v + 1], bindScale[v + 2], invWeightSum);
+                }
+            }
+            weightSums[i] = -1;
+
+            int parent = parents[i];
+            if (parent < 0) {
+                System.arraycopy(localPos, v, modelPos, v, 3);
+                System.arraycopy(localRot, q, modelRot, q, 4);
+                System.arraycopy(localScale, v, modelScale, v, 3);
+                continue;
+            }
+
+            int pv = parent * 3;
+            int pq = parent * 4;
+            float x = modelRot[pq], y = modelRot[pq + 1], z = modelRot[pq + 2], w = modelRot[pq + 3];
+            float lx = localRot[q], ly = localRot[q + 1], lz = localRot[q + 2], lw = localRot[q + 3];
+            modelRot[q] = x * lw + y * lz - z * ly + w * lx;
+            modelRot[q + 1] = -x * lz + y * lw + z * lx + w * ly;
+            modelRot[q + 2] = x * ly - y * lx + z * lw + w * lz;
+            modelRot[q + 3] = -x * lx - y * ly - z * lz + w * lw;
+
+            modelScale[v] = modelScale[pv] * localScale[v];
+            modelScale[v + 1] = modelScale[pv + 1] * localScale[v + 1];
+            modelScale[v + 2] = modelScale[pv + 2] * localScale[v + 2];
+
+            rotate(x, y, z, w, localPos[v], localPos[v + 1], localPos[v + 2], modelPos, v);
+            modelPos[v] = modelPos[v] * modelScale[pv] + modelPos[pv];
+            modelPos[v + 1] = modelPos[v + 1] * modelScale[pv + 1] + modelPos[pv + 1];
+            modelPos[v + 2] = modelPos[v + 2] * modelScale[pv + 2] + modelPos[pv + 2];
+        }
+    }
+
+    /**
+     * Interpolates the model transforms of the previous and the last
+     * evaluation into the lerp arrays. The bones under user control keep
+     * their last model transforms.
+     */
+    private void interpolateModelTransforms(float alpha) {
+        System.arraycopy(prevPos, 0, lerpPos, 0, lerpPos.length);
+        System.arraycopy(prevRot, 0, lerpRot, 0, lerpRot.length);
+        System.arraycopy(prevScale, 0, lerpScale, 0, lerpScale.length);
+        for (int i = 0; i < boneCount; i++) {
+            int v = i * 3;
+            int q = i * 4;
+            if (userControl[i]) {
+                System.arraycopy(modelPos, v, lerpPos, v, 3);
+                System.arraycopy(modelRot, q, lerpRot, q, 4);
+                System.arraycopy(modelScale, v, lerpScale, v, 3);
+                continue;
+            }
+            interpolate(lerpPos, v, modelPos[v], modelPos[v + 1], modelPos[v + 2], alpha);
+            nlerp(lerpRot, q, modelRot[q], modelRot[q + 1], modelRot[q + 2], modelRot[q + 3], alpha);
+            interpolate(lerpScale, v, modelScale[v], modelScale[v + 1], modelScale[v + 2], alpha);
+        }
+    }
+
+    private void copyModelTransforms(float[] pos, float[] rot, float[] scale) {
+        System.arraycopy(modelPos, 0, pos, 0, pos.length);
+        System.arraycopy(modelRot, 0, rot, 0, rot.length);
+        System.arraycopy(modelScale, 0, scale, 0, scale.length);
+    }
+
+    private void writeBones() {
+        for (int i = 0; i < boneCount; i++) {
+            if (!userControl[i]) {
+                Bone bone = bones[i];
+                int v = i * 3;
+                int q = i * 4;
+                bone.getLocalPosition().set(localPos[v], localPos[v + 1], localPos[v + 2]);
+                bone.getLocalRotation().set(localRot[q], localRot[q + 1], localRot[q + 2], localRot[q + 3]);
+                bone.getLocalScale().set(localScale[v], localScale[v + 1], localScale[v + 2]);
+            }
+        }
+        writeModelTransforms(modelPos, modelRot, modelScale);
+    }
+
+    private void writeModelTransforms(float[] pos, float[] rot, float[] scale) {
+        for (int i = 0; i < boneCount; i++) {
+            Bone bone = bones[i];
+            int v = i * 3;
+            int q = i * 4;
+            bone.getModelSpacePosition().set(pos[v], pos[v + 1], pos[v + 2]);
+            bone.getModelSpaceRotation().set(rot[q], rot[q + 1], rot[q + 2], rot[q + 3]);
+            bone.getModelSpaceScale().set(scale[v], scale[v + 1], scale[v + 2]);
+        }
+    }
+
+    /**
+     * Same as Bone.getOffsetTransform, for all the bones.
+     */
+    private void computeSkinningMatrices(Matrix4f[] store, float[] modelPos, float[] modelRot, float[] modelScale) {
+        float[] t = sample;
+        for (int i = 0; i < boneCount; i++) {
+            int v = i * 3;
+            int q = i * 4;
+
+            float sx = modelScale[v] * invBindScale[v];
+            float sy = modelScale[v + 1] * invBindScale[v + 1];
+            float sz = modelScale[v + 2] * invBindScale[v + 2];
+
+            float mx = modelRot[q], my = modelRot[q + 1], mz = modelRot[q + 2], mw = modelRot[q + 3];
+            float ix = invBindRot[q], iy = invBindRot[q + 1], iz = invBindRot[q + 2], iw = invBindRot[q + 3];
+            float x = mx * iw + my * iz - mz * iy + mw * ix;
+            float y = -mx * iz + my * iw + mz * ix + mw * iy;
+            float z = mx * iy - my * ix + mz * iw + mw * iz;
+            float w = -mx * ix - my * iy - mz * iz + mw * iw;
+
+            rotate(x, y, z, w, sx * invBindPos[v], sy * invBindPos[v + 1], sz * invBindPos[v + 2], t, 0);
+
+            float norm = w * w + x * x + y * y + z * z;
+            float s = (norm == 1f) ? 2f : (norm > 0f) ? 2f / norm : 0;
+            float xs = x * s;
+            float ys = y * s;
+            float zs = z * s;
+            float xx = x * xs;
+            float xy = x * ys;
+            float xz = x * zs;
+            float xw = w * xs;
+            float yy = y * ys;
+            float yz = y * zs;
+            float yw = w * ys;
+            float zz = z * zs;
+            float zw = w * zs;
+
+            Matrix4f m = store[i];
+            m.m00 = sx * (1 - (yy + zz));
+            m.m01 = sy * (xy - zw);
+            m.m02 = sz * (xz + yw);
+            m.m03 = modelPos[v] + t[0];
+            m.m10 = sx * (xy + zw);
+            m.m11 = sy * (1 - (xx + zz));
+            m.m12 = sz * (yz - xw);
+            m.m13 = modelPos[v + 1] + t[1];
+            m.m20 = sx * (xz - yw);
+            m.m21 = sy * (yz + xw);
+            m.m22 = sz * (1 - (xx + yy));
+            m.m23 = modelPos[v + 2] + t[2];
+            m.m30 = 0;
+            m.m31 = 0;
+            m.m32 = 0;
+            m.m33 = 1;
+        }
+    }
+
+    private static void load(Vector3f vector, float[] store, int index) {
+        int i = index * 3;
+        store[i] = vector.x;
+        store[i + 1] = vector.y;
+        store[i + 2] = vector.z;
+    }
+
+    private static void load(Quaternion quat, float[] store, int index) {
+        int i = index * 4;
+        store[i] = quat.getX();
+        store[i + 1] = quat.getY();
+        store[i + 2] = quat.getZ();
+        store[i + 3] = quat.getW();
+    }
+
+    /**
+     * Same as Vector3f.interpolateLocal.
+     */
+    private static void interpolate(float[] v, int i, float x, float y, float z, float amount) {
+        v[i] = (1 - amount) * v[i] + amount * x;
+        v[i + 1] = (1 - amount) * v[i + 1] + amount * y;
+        v[i + 2] = (1 - amount) * v[i + 2] + amount * z;
+    }
+
+    /**
+     * Same as Quaternion.nlerp, on the quaternion stored at the given
+     * offset of the array.
+     */
+    static void nlerp(float[] q, int i, float x2, float y2, float z2, float w2, float blend) {
+        float x = q[i], y = q[i + 1], z = q[i + 2], w = q[i + 3];
+        float dot = w * w2 + x * x2 + y * y2 + z * z2;
+        float blendI = 1.0f - blend;
+        if (dot < 0.0f) {
+            x = blendI * x - blend * x2;
+            y = blendI * y - blend * y2;
+            z = blendI * z - blend * z2;
+            w = blendI * w - blend * w2;
+        } else {
+            x = blendI * x + blend * x2;
+            y = blendI * y + blend * y2;
+            z = blendI * z + blend * z2;
+            w = blendI * w + blend * w2;
+        }
+        float n = (float) (1.0f / Math.sqrt(w * w + x * x + y * y + z * z));
+        q[i] = x * n;
+        q[i + 1] = y * n;
+        q[i + 2] = z * n;
+        q[i + 3] = w * n;
+    }
+
+    /**
+     * Same as Quaternion.mult(Vector3f, Vector3f).
+     */
+    private static void rotate(float x, float y, float z, float w, float vx, float vy, float vz, float[] store, int i) {
+        if (vx == 0 && vy == 0 && vz == 0) {
+            store[i] = 0;
+            store[i + 1] = 0;
+            store[i + 2] = 0;
+            return;
+        }
+        store[i] = w * w * vx + 2 * y * w * vz - 2 * z * w * vy + x * x
+                * vx + 2 * y * x * vy + 2 * z * x * vz - z * z * vx - y
+                * y * vx;
+        store[i + 1] = 2 * x * y * vx + y * y * vy + 2 * z * y * vz + 2 * w
+                * z * vx - z * z * vy + w * w * vy - 2 * x * w * vz - x
+                * x * vy;
+        store[i + 2] = 2 * x * z * vx + 2 * y * z * vy + z * z * vz - 2 * w
+                * y * vx - y * y * vz + 2 * w * x * vy - x * x * vz + w
+                * w * vz;
+    }
+}
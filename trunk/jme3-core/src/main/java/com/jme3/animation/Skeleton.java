@@ -58,6 +58,12 @@ public final class Skeleton implements Savable, JmeCloneable {
      */
     private transient Matrix4f[] skinningMatrixes;
 
+    /**
+     * Set when a {@link PoseBuffer} computed the skinning matrices from the
+     * current pose, cleared when the bones are updated again.
+     */
+    private transient boolean skinningMatricesComputed;
+
     /**
      * Creates a skeleton from a bone list. 
      * The root bones are found automatically.
@@ -163,6 +169,7 @@ public final class Skeleton implements Savable, JmeCloneable {
      * Typically called after setting local animation transforms.
      */
     public void updateWorldVectors() {
+        skinningMatricesComputed = false;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].update();
         }
@@ -172,6 +179,7 @@ public final class Skeleton implements Savable, JmeCloneable {
      * Saves the current skeleton state as it's binding pose.
      */
     public void setBindingPose() {
+        skinningMatricesComputed = false;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].setBindingPose();
         }
@@ -181,6 +189,7 @@ public final class Skeleton implements Savable, JmeCloneable {
      * Reset the skeleton to bind pose.
      */
     public final void reset() {
+        skinningMatricesComputed = false;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             rootBones[i].reset();
         }
@@ -190,6 +199,7 @@ public final class Skeleton implements Savable, JmeCloneable {
      * Reset the skeleton to bind pose and updates the bones
      */
     public final void resetAndUpdate() {
+        skinningMatricesComputed = false;
         for (int i = rootBones.length - 1; i >= 0; i--) {
             Bone rootBone = rootBones[i];
             rootBone.reset();
@@ -263,6 +273,10 @@ public final class Skeleton implements Savable, JmeCloneable {
      * @return 
      */
     public Matrix4f[] computeSkinningMatrices() {
+        if (skinningMatricesComputed && !isAnyModelTransformChanged()) {
+            return skinningMatrixes;
+        }
+        skinningMatricesComputed = false;
         TempVars vars = TempVars.get();
         for (int i = 0; i < boneList.length; i++) {
             boneList[i].getOffsetTransform(skinningMatrixes[i], vars.quat1, vars.vect1, vars.vect2, vars.tempMat3);
@@ -271,6 +285,38 @@ public final class Skeleton implements Savable, JmeCloneable {
         return skinningMatrixes;
     }
 
+    /**
+     * @return the skinning matrices, as last computed
+     */
+    Matrix4f[] getSkinningMatrices() {
+        return skinningMatrixes;
+    }
+
+    /**
+     * Called by {@link PoseBuffer} after it stored the skinning matrices
+     * of the current pose, so that {@link #computeSkinningMatrices() }
+     * returns them until the bones are updated again.
+     */
+    void setSkinningMatricesComputed() {
+        for (Bone bone : boneList) {
+            bone.clearModelTransformsChanged();
+        }
+        skinningMatricesComputed = true;
+    }
+
+    /**
+     * @return true if a bone was moved after the skinning matrices were
+     * computed, for example by user control
+     */
+    private boolean isAnyModelTransformChanged() {
+        for (Bone bone : boneList) {
+            if (bone.isModelTransformsChanged()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * returns the number of bones of this skeleton
      * @return 
@@ -55,6 +55,7 @@ import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -102,6 +103,25 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
      * this variable will be set to true if supported, and false if otherwise.
      */
     private transient boolean hwSkinningSupported = false;
+
+    /**
+     * Software skinning splits the vertices over a fork-join pool.
+     */
+    private transient boolean parallelSkinning = false;
+    private transient ForkJoinPool parallelSkinningPool;
+
+    /**
+     * Software skinning transforms the normals and tangents, not only the
+     * positions.
+     */
+    private transient boolean normalsSkinned = true;
+
+    /**
+     * True if the normals and tangents were skinned and must be reset to
+     * the bind pose before skinning the positions only.
+     */
+    private transient boolean normalsResetNeeded = false;
+    private transient SoftwareSkinning softwareSkinning;
     
     /**
      * Bone offset matrices, recreated each frame
@@ -196,6 +216,65 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
     public boolean isHardwareSkinningUsed() {
         return hwSkinningEnabled;
     }
+
+    /**
+     * Specifies if software skinning splits the vertices of the meshes
+     * over several threads. Meshes with few vertices are still skinned
+     * on the render thread. This has no effect while hardware skinning is
+     * used.
+     *
+     * @param parallel true to skin on a fork-join pool. Disabled by
+     * default.
+     * @see #setParallelSkinningPool(java.util.concurrent.ForkJoinPool)
+     */
+    public void setParallelSkinning(boolean parallel) {
+        parallelSkinning = parallel;
+    }
+
+    /**
+     * @return True if software skinning is done on several threads.
+     * @see #setParallelSkinning(boolean)
+     */
+    public boolean isParallelSkinning() {
+        return parallelSkinning;
+    }
+
+    /**
+     * Sets the pool used by parallel software skinning.
+     *
+     * @param pool the pool, or null to use a pool shared by all the
+     * skeleton controls
+     * @see #setParallelSkinning(boolean)
+     */
+    public void setParallelSkinningPool(ForkJoinPool pool) {
+        parallelSkinningPool = pool;
+    }
+
+    /**
+     * Specifies if software skinning transforms the normals and tangents
+     * of the meshes. They can be left in the bind pose when the material
+     * does not use them, for example with unshaded materials, or for
+     * meshes that are only used for collisions like the hitboxes of a
+     * server.
+     *
+     * @param skinned false to only transform the positions. True by
+     * default.
+     */
+    public void setNormalsSkinned(boolean skinned) {
+        if (normalsSkinned && !skinned) {
+            normalsResetNeeded = true;
+        }
+        normalsSkinned = skinned;
+    }
+
+    /**
+     * @return True if software skinning transforms the normals and
+     * tangents.
+     * @see #setNormalsSkinned(boolean)
+     */
+    public boolean isNormalsSkinned() {
+        return normalsSkinned;
+    }
     
     /**
      * Creates a skeleton control. The list of targets will be acquired
@@ -232,6 +311,23 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
     }
 
     private void controlRenderSoftware() {
+        if (parallelSkinning || !normalsSkinned) {
+            offsetMatrices = skeleton.computeSkinningMatrices();
+            if (softwareSkinning == null) {
+                softwareSkinning = new SoftwareSkinning();
+            }
+            ForkJoinPool pool = null;
+            if (parallelSkinning) {
+                pool = parallelSkinningPool != null ? parallelSkinningPool : SoftwareSkinning.getDefaultPool();
+            }
+            softwareSkinning.skin(targets, offsetMatrices, normalsSkinned, pool);
+            if (normalsResetNeeded && !normalsSkinned) {
+                resetNormalsToBind();
+            }
+            normalsResetNeeded = false;
+            return;
+        }
+
         resetToBind(); // reset morph meshes to bind pose
 
         offsetMatrices = skeleton.computeSkinningMatrices();
@@ -351,6 +447,36 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
         }
     }
 
+    /**
+     * Resets the normals and tangents that were skinned before
+     * {@link #setNormalsSkinned(boolean) } was set to false.
+     */
+    private void resetNormalsToBind() {
+        for (Mesh mesh : targets) {
+            VertexBuffer bindNorm = mesh.getBuffer(Type.BindPoseNormal);
+            VertexBuffer norm = mesh.getBuffer(Type.Normal);
+            if (bindNorm == null || norm == null) {
+                continue;
+            }
+            copyBindPose(bindNorm, norm);
+            VertexBuffer bindTangents = mesh.getBuffer(Type.BindPoseTangent);
+            VertexBuffer tangents = mesh.getBuffer(Type.Tangent);
+            if (bindTangents != null && tangents != null) {
+                copyBindPose(bindTangents, tangents);
+            }
+        }
+    }
+
+    private static void copyBindPose(VertexBuffer bindPose, VertexBuffer target) {
+        FloatBuffer src = (FloatBuffer) bindPose.getData();
+        FloatBuffer dst = (FloatBuffer) target.getData();
+        src.clear();
+        dst.clear();
+        dst.put(src).clear();
+        src.clear();
+        target.updateData(dst);
+    }
+
     @Override
     public Control cloneForSpatial(Spatial spatial) {
         Node clonedNode = (Node) spatial;
@@ -369,6 +495,10 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
         clone.hwSkinningEnabled = this.hwSkinningEnabled;
         clone.hwSkinningSupported = this.hwSkinningSupported;
         clone.hwSkinningTested = this.hwSkinningTested;
+        clone.parallelSkinning = this.parallelSkinning;
+        clone.parallelSkinningPool = this.parallelSkinningPool;
+        clone.normalsSkinned = this.normalsSkinned;
+        clone.normalsResetNeeded = this.normalsResetNeeded;
         
         clone.setSpatial(clonedNode);
 
@@ -402,6 +532,7 @@ public class SkeletonControl extends AbstractControl implements Cloneable, JmeCl
         super.cloneFields(cloner, original);
          
         this.skeleton = cloner.clone(skeleton);
+        this.softwareSkinning = null;
         
         // If the targets were cloned then this will clone them.  If the targets
         // were shared then this will share them.
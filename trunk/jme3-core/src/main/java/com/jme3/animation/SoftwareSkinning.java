@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Skins the target meshes of a {@link SkeletonControl} in software,
+ * optionally splitting the vertices of each mesh over a fork-join pool.
+ * <p>
+ * The skinning matrices are flattened into one float array, and every
+ * task skins a contiguous range of vertices from the bind pose buffers
+ * into the position, normal and tangent buffers. Heap buffers are read and
+ * written straight through their backing arrays, direct buffers are
+ * copied in and out of a per task array with bulk operations. The mesh
+ * doesn't need to be reset to its bind pose first.
+ * <p>
+ * The result is the same as the chunked skinning of
+ * {@link SkeletonControl}, operation by operation.
+ *
+ * @see SkeletonControl#setParallelSkinning(boolean)
+ */
+final class SoftwareSkinning {
+
+    /**
+     * Meshes with fewer vertices per pool thread are not split further,
+     * the overhead of a task would exceed its work.
+     */
+    private static final int MIN_VERTICES_PER_TASK = 2048;
+
+    /**
+     * Number of chunks created per pool thread, so that the threads busy
+     * with other work can be balanced by work stealing.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ArrayList<SkinTask> tasks = new ArrayList<SkinTask>();
+    private final ArrayList<VertexBuffer> updated = new ArrayList<VertexBuffer>();
+    private float[] palette = new float[0];
+
+    /**
+     * @return the pool shared by the controls that skin in parallel
+     * without a pool of their own
+     */
+    static ForkJoinPool getDefaultPool() {
+        return PoolHolder.POOL;
+    }
+
+    private static final class PoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * Skins the given meshes.
+     *
+     * @param targets the animated meshes
+     * @param offsetMatrices the skinning matrices of the skeleton
+     * @param normals true to skin the normals and tangents, false to only
+     * skin the positions
+     * @param pool the pool to split the work over, or null to skin on the
+     * calling thread
+     */
+    void skin(List<Mesh> targets, Matrix4f[] offsetMatrices, boolean normals, ForkJoinPool pool) {
+        loadPalette(offsetMatrices);
+
+        int maxChunks = pool != null ? pool.getParallelism() * CHUNKS_PER_THREAD : 1;
+        int taskCount = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            Mesh mesh = targets.get(i);
+            int vertexCount = mesh.getVertexCount();
+            int chunkCount = Math.max(1, Math.min(maxChunks, vertexCount / MIN_VERTICES_PER_TASK));
+            for (int c = 0; c < chunkCount; c++) {
+                if (taskCount == tasks.size()) {
+                    tasks.add(new SkinTask());
+                }
+                SkinTask task = tasks.get(taskCount++);
+                task.reinitialize();
+                task.setup(mesh, normals, palette, c * vertexCount / chunkCount, (c + 1) * vertexCount / chunkCount);
+            }
+            collectUpdated(mesh, normals);
+        }
+
+        try {
+            List<SkinTask> chunks = tasks.subList(0, taskCount);
+            if (pool == null) {
+                for (int i = 0; i < taskCount; i++) {
+                    tasks.get(i).compute();
+                }
+            } else if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(chunks);
+            } else {
+                pool.invoke(new SkinRoot(chunks));
+            }
+
+            for (int i = 0; i < updated.size(); i++) {
+                VertexBuffer vb = updated.get(i);
+                vb.updateData(vb.getData());
+            }
+        } finally {
+            for (int i = 0; i < taskCount; i++) {
+                tasks.get(i).reset();
+            }
+            updated.clear();
+        }
+    }
+
+    private void loadPalette(Matrix4f[] offsetMatrices) {
+        if (palette.length != offsetMatrices.length * 12) {
+            palette = new float[offsetMatrices.length * 12];
+        }
+        for (int i = 0, p = 0; i < offsetMatrices.length; i++) {
+            Matrix4f m = offsetMatrices[i];
+            palette[p++] = m.m00;
+            palette[p++] = m.m01;
+            palette[p++] = m.m02;
+            palette[p++] = m.m03;
+            palette[p++] = m.m10;
+            palette[p++] = m.m11;
+            palette[p++] = m.m12;
+            palette[p++] = m.m13;
+            palette[p++] = m.m20;
+            palette[p++] = m.m21;
+            palette[p++] = m.m22;
+            palette[p++] = m.m23;
+        }
+    }
+
+    private void collectUpdated(Mesh mesh, boolean normals) {
+        updated.add(mesh.getBuffer(Type.Position));
+        if (normals && hasBindPose(mesh, Type.Normal, Type.BindPoseNormal)) {
+            updated.add(mesh.getBuffer(Type.Normal));
+            if (hasBindPose(mesh, Type.Tangent, Type.BindPoseTangent)) {
+                updated.add(mesh.getBuffer(Type.Tangent));
+            }
+        }
+    }
+
+    private static boolean hasBindPose(Mesh mesh, Type type, Type bindType) {
+        return mesh.getBuffer(type) != null && mesh.getBuffer(bindType) != null;
+    }
+
+    /**
+     * Forks all chunks and waits for them.
+     */
+    private static final class SkinRoot extends RecursiveAction {
+
+        private final List<SkinTask> chunks;
+
+        SkinRoot(List<SkinTask> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(chunks);
+        }
+    }
+
+    /**
+     * Skins a contiguous range of vertices of a mesh. Instances are reused
+     * from frame to frame.
+     */
+    private static final class SkinTask extends RecursiveAction {
+
+        private FloatBuffer bindPos, pos, bindNorm, norm, bindTan, tan;
+        private float[] weights;
+        private byte[] indices;
+        private float[] palette;
+        private int maxWeights, start, end;
+
+        private float[] posArray = new float[0];
+        private float[] normArray = new float[0];
+        private float[] tanArray = new float[0];
+
+        void setup(Mesh mesh, boolean normals, float[] palette, int start, int end) {
+            VertexBuffer indexBuffer = mesh.getBuffer(Type.BoneIndex);
+            VertexBuffer weightBuffer = mesh.getBuffer(Type.BoneWeight);
+            if (!indexBuffer.getData().hasArray() || !weightBuffer.getData().hasArray()) {
+                mesh.prepareForAnim(true); // prepare for software animation
+            }
+            maxWeights = mesh.getMaxNumWeights();
+            if (maxWeights <= 0) {
+                throw new IllegalStateException("Max weights per vert is incorrectly set!");
+            }
+
+            ByteBuffer ib = (ByteBuffer) indexBuffer.getData();
+            FloatBuffer wb = (FloatBuffer) weightBuffer.getData();
+            indices = ib.array();
+            weights = wb.array();
+            this.palette = palette;
+            this.start = start;
+            this.end = end;
+
+            bindPos = (FloatBuffer) mesh.getBuffer(Type.BindPosePosition).getData();
+            pos = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
+            if (normals && hasBindPose(mesh, Type.Normal, Type.BindPoseNormal)) {
+                bindNorm = (FloatBuffer) mesh.getBuffer(Type.BindPoseNormal).getData();
+                norm = (FloatBuffer) mesh.getBuffer(Type.Normal).getData();
+                if (hasBindPose(mesh, Type.Tangent, Type.BindPoseTangent)) {
+                    bindTan = (FloatBuffer) mesh.getBuffer(Type.BindPoseTangent).getData();
+                    tan = (FloatBuffer) mesh.getBuffer(Type.Tangent).getData();
+                }
+            }
+        }
+
+        void reset() {
+            bindPos = pos = bindNorm = norm = bindTan = tan = null;
+            weights = null;
+            indices = null;
+            palette = null;
+        }
+
+        @Override
+        protected void compute() {
+            int count = end - start;
+            if (count <= 0) {
+                return;
+            }
+
+            // source and destination arrays with their offsets, either the
+            // backing arrays or the task arrays skinned in place
+            float[] srcPos, dstPos, srcNorm = null, dstNorm = null, srcTan = null, dstTan = null;
+            int srcPosOff, dstPosOff, srcNormOff = 0, dstNormOff = 0, srcTanOff = 0, dstTanOff = 0;
+
+            if (bindPos.hasArray() && pos.hasArray()) {
+                srcPos = bindPos.array();
+                srcPosOff = bindPos.arrayOffset() + start * 3;
+                dstPos = pos.array();
+                dstPosOff = pos.arrayOffset() + start * 3;
+            } else {
+                posArray = read(bindPos, start * 3, count * 3, posArray);
+                srcPos = dstPos = posArray;
+                srcPosOff = dstPosOff = 0;
+            }
+            if (norm != null) {
+                if (bindNorm.hasArray() && norm.hasArray()) {
+                    srcNorm = bindNorm.array();
+                    srcNormOff = bindNorm.arrayOffset() + start * 3;
+                    dstNorm = norm.array();
+                    dstNormOff = norm.arrayOffset() + start * 3;
+                } else {
+                    normArray = read(bindNorm, start * 3, count * 3, normArray);
+                    srcNorm = dstNorm = normArray;
+                }
+            }
+            if (tan != null) {
+                if (bindTan.hasArray() && tan.hasArray()) {
+                    srcTan = bindTan.array();
+                    srcTanOff = bindTan.arrayOffset() + start * 4;
+                    dstTan = tan.array();
+                    dstTanOff = tan.arrayOffset() + start * 4;
+                } else {
+                    tanArray = read(bindTan, start * 4, count * 4, tanArray);
+                    srcTan = dstTan = tanArray;
+                }
+            }
+
+            float[] m = palette;
+            int idxWeights = start * 4;
+            for (int v = 0; v < count; v++, idxWeights += 4) {
+                int sp = srcPosOff + v * 3;
+                int dp = dstPosOff + v * 3;
+                float vtx = srcPos[sp], vty = srcPos[sp + 1], vtz = srcPos[sp + 2];
+
+                // Leave the bind pose if the first weight is zero.
+                if (weights[idxWeights] == 0) {
+                    dstPos[dp] = vtx;
+                    dstPos[dp + 1] = vty;
+                    dstPos[dp + 2] = vtz;
+                    if (dstNorm != null) {
+                        System.arraycopy(srcNorm, srcNormOff + v * 3, dstNorm, dstNormOff + v * 3, 3);
+                    }
+                    if (dstTan != null) {
+                        System.arraycopy(srcTan, srcTanOff + v * 4, dstTan, dstTanOff + v * 4, 4);
+                    }
+                    continue;
+                }
+
+                float rx = 0, ry = 0, rz = 0;
+                for (int w = 0; w < maxWeights; w++) {
+                    float weight = weights[idxWeights + w];
+                    int b = (indices[idxWeights + w] & 0xff) * 12;
+                    rx += (m[b] * vtx + m[b + 1] * vty + m[b + 2] * vtz + m[b + 3]) * weight;
+                    ry += (m[b + 4] * vtx + m[b + 5] * vty + m[b + 6] * vtz + m[b + 7]) * weight;
+                    rz += (m[b + 8] * vtx + m[b + 9] * vty + m[b + 10] * vtz + m[b + 11]) * weight;
+                }
+                dstPos[dp] = rx;
+                dstPos[dp + 1] = ry;
+                dstPos[dp + 2] = rz;
+
+                if (dstNorm != null) {
+                    skinDirection(srcNorm, srcNormOff + v * 3, dstNorm, dstNormOff + v * 3, idxWeights);
+                }
+                if (dstTan != null) {
+                    // the 4th component of the tangent is not transformed
+                    int st = srcTanOff + v * 4;
+                    int dt = dstTanOff + v * 4;
+                    skinDirection(srcTan, st, dstTan, dt, idxWeights);
+                    dstTan[dt + 3] = srcTan[st + 3];
+                }
+            }
+
+            if (dstPos == posArray) {
+                write(pos, start * 3, count * 3, posArray);
+            }
+            if (dstNorm != null && dstNorm == normArray) {
+                write(norm, start * 3, count * 3, normArray);
+            }
+            if (dstTan != null && dstTan == tanArray) {
+                write(tan, start * 4, count * 4, tanArray);
+            }
+        }
+
+        private void skinDirection(float[] src, int s, float[] dst, int d, int idxWeights) {
+            float[] m = palette;
+            float nmx = src[s], nmy = src[s + 1], nmz = src[s + 2];
+            float rnx = 0, rny = 0, rnz = 0;
+            for (int w = 0; w < maxWeights; w++) {
+                float weight = weights[idxWeights + w];
+                int b = (indices[idxWeights + w] & 0xff) * 12;
+                rnx += (nmx * m[b] + nmy * m[b + 1] + nmz * m[b + 2]) * weight;
+                rny += (nmx * m[b + 4] + nmy * m[b + 5] + nmz * m[b + 6]) * weight;
+                rnz += (nmx * m[b + 8] + nmy * m[b + 9] + nmz * m[b + 10]) * weight;
+            }
+            dst[d] = rnx;
+            dst[d + 1] = rny;
+            dst[d + 2] = rnz;
+        }
+
+        private static float[] read(FloatBuffer source, int offset, int length, float[] store) {
+            if (store.length < length) {
+                store = new float[length];
+            }
+            // the buffers are shared by the tasks, use a view per task
+            FloatBuffer view = source.duplicate();
+            view.clear();
+            view.position(offset);
+            view.get(store, 0, length);
+            return store;
+        }
+
+        private static void write(FloatBuffer target, int offset, int length, float[] data) {
+            FloatBuffer view = target.duplicate();
+            view.clear();
+            view.position(offset);
+            view.put(data, 0, length);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An asset load scheduled by an {@link AssetLoadScheduler}.
+ * <p>
+ * The request can be reprioritized or cancelled as long as it is waiting
+ * for a loading thread. A load that already started cannot be stopped,
+ * cancelling it only prevents its delivery; the asset still ends up in the
+ * asset manager cache.
+ *
+ * @param <T> the type of the asset
+ */
+public final class AssetLoadRequest<T> implements Future<T>, Runnable, Comparable<AssetLoadRequest<?>> {
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final AssetLoadScheduler scheduler;
+    private final AssetKey<T> key;
+    private final AssetLoadScheduler.Listener<T> listener;
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /**
+     * Requests are ordered by priority, then by the request that caused
+     * them, so the dependencies of a request come before the requests made
+     * after it, then by creation.
+     */
+    private volatile float priority;
+    private final long rootSequence;
+    private final long sequence;
+
+    private ArrayList<AssetLoadRequest<?>> children;
+    private int state = PENDING;
+    private T asset;
+    private Throwable error;
+
+    AssetLoadRequest(AssetLoadScheduler scheduler, AssetKey<T> key, float priority,
+            long rootSequence, long sequence, AssetLoadScheduler.Listener<T> listener) {
+        this.scheduler = scheduler;
+        this.key = key;
+        this.priority = priority;
+        this.rootSequence = rootSequence;
+        this.sequence = sequence;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the key of the asset
+     */
+    public AssetKey<T> getKey() {
+        return key;
+    }
+
+    /**
+     * @return the priority, the lower the sooner
+     */
+    public float getPriority() {
+        return priority;
+    }
+
+    /**
+     * Changes the priority of the request, if it is still waiting.
+     * The assets prefetched for it keep their priority.
+     *
+     * @param priority the lower the sooner, e.g. the distance to the camera
+     */
+    public void setPriority(float priority) {
+        synchronized (this) {
+            if (state != PENDING || !scheduler.unschedule(this)) {
+                // running, finished, or being started
+                this.priority = priority;
+                return;
+            }
+            this.priority = priority;
+        }
+        scheduler.reschedule(this);
+    }
+
+    AssetLoadScheduler getScheduler() {
+        return scheduler;
+    }
+
+    long getRootSequence() {
+        return rootSequence;
+    }
+
+    synchronized boolean addChild(AssetLoadRequest<?> child) {
+        if (state == CANCELLED) {
+            return false;
+        }
+        if (children == null) {
+            children = new ArrayList<AssetLoadRequest<?>>();
+        }
+        children.add(child);
+        return true;
+    }
+
+    public int compareTo(AssetLoadRequest<?> other) {
+        int result = Float.compare(priority, other.priority);
+        if (result == 0) {
+            result = rootSequence < other.rootSequence ? -1 : (rootSequence > other.rootSequence ? 1 : 0);
+        }
+        if (result == 0) {
+            result = sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the asset, called by the loading threads.
+     */
+    public void run() {
+        synchronized (this) {
+            if (state != PENDING) {
+                return;
+            }
+            state = RUNNING;
+        }
+
+        T loaded = null;
+        Throwable failure = null;
+        AssetLoadRequest<?> previous = AssetLoadScheduler.setCurrentRequest(this);
+        try {
+            loaded = scheduler.getAssetManager().loadAsset(key);
+        } catch (Throwable ex) {
+            // errors must also complete the request, or get() would never return
+            failure = ex;
+        } finally {
+            AssetLoadScheduler.setCurrentRequest(previous);
+        }
+
+        synchronized (this) {
+            if (state == CANCELLED) {
+                return;
+            }
+            asset = loaded;
+            error = failure;
+            state = DONE;
+            children = null;
+        }
+
+        if (listener != null) {
+            scheduler.deliver(new Runnable() {
+                public void run() {
+                    if (error != null) {
+                        listener.assetFailed(AssetLoadRequest.this, error);
+                    } else {
+                        listener.assetLoaded(AssetLoadRequest.this, asset);
+                    }
+                }
+            });
+        }
+        latch.countDown();
+    }
+
+    /**
+     * Cancels the request and the assets prefetched for it that did not
+     * start loading. The listener is not called for a cancelled request.
+     *
+     * @param mayInterruptIfRunning ignored, loads are never interrupted
+     * @return false if the asset was already delivered or cancelled
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        ArrayList<AssetLoadRequest<?>> cancelledChildren;
+        synchronized (this) {
+            if (state == DONE || state == CANCELLED) {
+                return false;
+            }
+            if (state == PENDING) {
+                scheduler.unschedule(this);
+            }
+            state = CANCELLED;
+            cancelledChildren = children;
+            children = null;
+        }
+        latch.countDown();
+        if (cancelledChildren != null) {
+            for (AssetLoadRequest<?> child : cancelledChildren) {
+                child.cancel(false);
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    public synchronized boolean isDone() {
+        return state == DONE || state == CANCELLED;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return getResult();
+    }
+
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private synchronized T getResult() throws ExecutionException {
+        if (state == CANCELLED) {
+            throw new CancellationException();
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return asset;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[key=" + key + ", priority=" + priority + "]";
+    }
+}
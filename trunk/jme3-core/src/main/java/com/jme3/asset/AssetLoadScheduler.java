@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.app.Application;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>AssetLoadScheduler</code> loads assets in the background, in order
+ * of priority, and delivers them on the render thread.
+ * <p>
+ * Each call to {@link #load(com.jme3.asset.AssetKey, float, com.jme3.asset.AssetLoadScheduler.Listener) }
+ * returns an {@link AssetLoadRequest} that can be reprioritized or
+ * cancelled while it is waiting, so a streamer can load what is near the
+ * camera first and drop what went out of range. When the asset is loaded,
+ * the listener is called through {@link Application#enqueue(java.lang.Runnable) }.
+ * <p>
+ * Loaders that know the assets they depend on before loading them, like
+ * the J3M loader for its textures, can pass them to
+ * {@link #prefetch(com.jme3.asset.AssetManager, com.jme3.asset.AssetKey) }
+ * so that they are loaded in parallel by the other loading threads. When
+ * the loader then asks for them, it gets the cached asset or waits for the
+ * load in progress instead of loading them again.
+ *
+ * @see ThreadingManager
+ */
+public class AssetLoadScheduler {
+
+    private static final ThreadLocal<AssetLoadRequest<?>> currentRequest
+            = new ThreadLocal<AssetLoadRequest<?>>();
+
+    /**
+     * Receives the result of a request on the render thread.
+     *
+     * @param <T> the type of the asset
+     */
+    public interface Listener<T> {
+
+        /**
+         * Called on the render thread when the asset is loaded.
+         *
+         * @param request the request that loaded the asset
+         * @param asset the asset
+         */
+        public void assetLoaded(AssetLoadRequest<T> request, T asset);
+
+        /**
+         * Called on the render thread when the asset could not be loaded.
+         *
+         * @param request the request that failed
+         * @param error the exception or error thrown by the asset manager
+         */
+        public void assetFailed(AssetLoadRequest<T> request, Throwable error);
+    }
+
+    private final Application app;
+    private final AssetManager assetManager;
+    private final ThreadPoolExecutor executor;
+    private long nextSequence = 0;
+    private int nextThreadId = 0;
+
+    /**
+     * Creates a scheduler with one loading thread per processor.
+     *
+     * @param app the application whose asset manager loads the assets and
+     * that receives the results
+     */
+    public AssetLoadScheduler(Application app) {
+        this(app, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param app the application whose asset manager loads the assets and
+     * that receives the results
+     * @param threads the number of loading threads
+     */
+    public AssetLoadScheduler(Application app, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one loading thread is required");
+        }
+        this.app = app;
+        this.assetManager = app.getAssetManager();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t;
+                        synchronized (AssetLoadScheduler.this) {
+                            t = new Thread(r, "jME3-asset-scheduler-" + (nextThreadId++));
+                        }
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Schedules the loading of an asset.
+     *
+     * @param <T> the type of the asset
+     * @param key the asset to load
+     * @param priority the lower the sooner, e.g. the distance to the camera
+     * @param listener notified on the render thread, or null
+     * @return the request, which can be used to wait for the asset,
+     * change its priority or cancel it
+     */
+    public <T> AssetLoadRequest<T> load(AssetKey<T> key, float priority, Listener<T> listener) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        AssetLoadRequest<T> request;
+        synchronized (this) {
+            long sequence = nextSequence++;
+            request = new AssetLoadRequest<T>(this, key, priority, sequence, sequence, listener);
+        }
+        executor.execute(request);
+        return request;
+    }
+
+    /**
+     * Loads an asset the current loader depends on in parallel, if the
+     * current thread is loading an asset for a scheduler of the given
+     * asset manager. The asset is loaded with the same priority as the
+     * asset that depends on it and cancelled with it.
+     * <p>
+     * Only cached assets are prefetched, since the loader must find the
+     * result when it loads them.
+     *
+     * @param manager the asset manager the loader got its asset info from
+     * @param key the asset the current loader will load
+     */
+    public static void prefetch(AssetManager manager, AssetKey<?> key) {
+        AssetLoadRequest<?> parent = currentRequest.get();
+        if (parent == null || key.getCacheType() == null) {
+            return;
+        }
+        AssetLoadScheduler scheduler = parent.getScheduler();
+        if (scheduler.assetManager != manager || scheduler.executor.isShutdown()) {
+            return;
+        }
+        AssetLoadRequest<?> child = scheduler.createChild(parent, key);
+        if (parent.addChild(child)) {
+            scheduler.executor.execute(child);
+        }
+    }
+
+    private <T> AssetLoadRequest<T> createChild(AssetLoadRequest<?> parent, AssetKey<T> key) {
+        synchronized (this) {
+            return new AssetLoadRequest<T>(this, key, parent.getPriority(),
+                    parent.getRootSequence(), nextSequence++, null);
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a loading thread
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the loading threads. The waiting requests are cancelled, the
+     * loads in progress complete but are not delivered.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        Object[] pending = executor.getQueue().toArray();
+        for (Object request : pending) {
+            ((AssetLoadRequest<?>) request).cancel(false);
+        }
+    }
+
+    AssetManager getAssetManager() {
+        return assetManager;
+    }
+
+    boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    void deliver(Runnable delivery) {
+        app.enqueue(delivery);
+    }
+
+    boolean unschedule(AssetLoadRequest<?> request) {
+        return executor.remove(request);
+    }
+
+    void reschedule(AssetLoadRequest<?> request) {
+        executor.execute(request);
+    }
+
+    static AssetLoadRequest<?> setCurrentRequest(AssetLoadRequest<?> request) {
+        AssetLoadRequest<?> previous = currentRequest.get();
+        currentRequest.set(request);
+        return previous;
+    }
+}
@@ -32,6 +32,7 @@
 package com.jme3.asset;
 
 import com.jme3.asset.cache.AssetCache;
+import com.jme3.asset.cache.BoundedAssetCache;
 import com.jme3.audio.AudioData;
 import com.jme3.audio.AudioKey;
 import com.jme3.font.BitmapFont;
@@ -52,7 +53,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -75,6 +79,36 @@ public class DesktopAssetManager implements AssetManager {
     private List<ClassLoader> classLoaders =
             Collections.synchronizedList(new ArrayList<ClassLoader>());
 
+    /**
+     * The cached assets currently being loaded, so that concurrent requests
+     * for the same key wait for one load instead of starting their own.
+     */
+    private final ConcurrentHashMap<AssetKey<?>, PendingLoad> pendingLoads =
+            new ConcurrentHashMap<AssetKey<?>, PendingLoad>();
+
+    private final AtomicLong numLoads = new AtomicLong();
+    private final AtomicLong numCoalescedLoads = new AtomicLong();
+
+    /**
+     * A load in progress, shared by all the threads requesting the asset.
+     */
+    private static final class PendingLoad {
+
+        final Thread owner = Thread.currentThread();
+        final CountDownLatch done = new CountDownLatch(1);
+        Object asset;
+        RuntimeException error;
+
+        void await(AssetKey<?> key) {
+            try {
+                done.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new AssetLoadException("Interrupted while waiting for asset: " + key, ex);
+            }
+        }
+    }
+
     public DesktopAssetManager(){
         this(null);
     }
@@ -239,6 +273,42 @@ public class DesktopAssetManager implements AssetManager {
         }
     }
 
+    /**
+     * Returns the cache of the given type, creating it if needed, for
+     * example to configure a {@link com.jme3.asset.cache.BoundedAssetCache}.
+     * This is the instance used for all the keys whose
+     * {@link AssetKey#getCacheType() } returns this class.
+     * 
+     * @param <T> the cache type
+     * @param cacheClass the class of the cache
+     * @return the cache instance
+     */
+    public <T extends AssetCache> T getCache(Class<T> cacheClass) {
+        if (cacheClass == null) {
+            throw new IllegalArgumentException("cacheClass cannot be null");
+        }
+        return handler.getCache(cacheClass);
+    }
+
+    /**
+     * @return the number of assets loaded by their {@link AssetLoader}
+     * since this asset manager was created
+     */
+    public long getNumLoads() {
+        return numLoads.get();
+    }
+
+    /**
+     * Returns the number of loads that were saved by sharing the result of
+     * a concurrent load of the same cached asset.
+     * 
+     * @return the number of requests that waited for another thread's load
+     * since this asset manager was created
+     */
+    public long getNumCoalescedLoads() {
+        return numCoalescedLoads.get();
+    }
+
     /**
      * Loads an asset that has already been located.
      * @param <T> The asset type
@@ -254,6 +324,7 @@ public class DesktopAssetManager implements AssetManager {
     protected <T> T loadLocatedAsset(AssetKey<T> key, AssetInfo info, AssetProcessor proc, AssetCache cache) {
         AssetLoader loader = handler.aquireLoader(key);
         Object obj;
+        numLoads.incrementAndGet();
         try {
             handler.establishParentKey(key);
             obj = loader.load(info);
@@ -356,21 +427,11 @@ public class DesktopAssetManager implements AssetManager {
         Object obj = cache != null ? cache.getFromCache(key) : null;
         if (obj == null){
             // Asset not in cache, load it from file system.
-            AssetInfo info = handler.tryLocate(key);
-            if (info == null){
-                if (handler.getParentKey() != null){
-                    // Inform event listener that an asset has failed to load.
-                    // If the parent AssetLoader chooses not to propagate
-                    // the exception, this is the only means of finding
-                    // that something went wrong.
-                    for (AssetEventListener listener : eventListeners){
-                        listener.assetDependencyNotFound(handler.getParentKey(), key);
-                    }
-                }
-                throw new AssetNotFoundException(key.toString());
+            if (cache != null) {
+                obj = loadSharedAsset(key, proc, cache);
+            } else {
+                obj = locateAndLoadAsset(key, proc, null);
             }
-            
-            obj = loadLocatedAsset(key, info, proc, cache);
         }
 
         T clone = (T) obj;
@@ -382,6 +443,89 @@ public class DesktopAssetManager implements AssetManager {
         return clone;
     }
 
+    /**
+     * Loads a cached asset, or waits for the result if another thread is
+     * already loading it.
+     * <p>
+     * The returned asset has been obtained from the cache as if by
+     * {@link AssetCache#getFromCache(com.jme3.asset.AssetKey) }, so that it
+     * can be cloned and registered in the current thread.
+     */
+    private <T> Object loadSharedAsset(AssetKey<T> key, AssetProcessor proc, AssetCache cache) {
+        while (true) {
+            PendingLoad pending = new PendingLoad();
+            PendingLoad existing = pendingLoads.putIfAbsent(key, pending);
+            if (existing == null) {
+                try {
+                    // The asset may have been added since the cache was checked
+                    Object obj = getFromCacheAgain(key, cache);
+                    if (obj == null) {
+                        obj = locateAndLoadAsset(key, proc, cache);
+                    }
+                    pending.asset = obj;
+                    return obj;
+                } catch (RuntimeException ex) {
+                    pending.error = ex;
+                    throw ex;
+                } finally {
+                    pendingLoads.remove(key, pending);
+                    pending.done.countDown();
+                }
+            }
+
+            if (existing.owner == Thread.currentThread()) {
+                // The asset depends on itself, let the loader deal with it
+                return locateAndLoadAsset(key, proc, cache);
+            }
+
+            existing.await(key);
+            if (existing.error != null) {
+                throw existing.error;
+            }
+
+            Object obj = cache.getFromCache(key);
+            if (obj == null && existing.asset != null
+                    && !(existing.asset instanceof CloneableSmartAsset)) {
+                // Already dropped from the cache, the original can still be used
+                obj = existing.asset;
+            }
+            if (obj != null) {
+                numCoalescedLoads.incrementAndGet();
+                return obj;
+            }
+            // Dropped from the cache before it could be shared, load it again
+        }
+    }
+
+    /**
+     * Checks the cache again for an asset that was just missed, without
+     * counting a second miss in the statistics of a {@link BoundedAssetCache}.
+     */
+    private static <T> Object getFromCacheAgain(AssetKey<T> key, AssetCache cache) {
+        if (cache instanceof BoundedAssetCache) {
+            return ((BoundedAssetCache) cache).peek(key);
+        }
+        return cache.getFromCache(key);
+    }
+
+    private <T> Object locateAndLoadAsset(AssetKey<T> key, AssetProcessor proc, AssetCache cache) {
+        AssetInfo info = handler.tryLocate(key);
+        if (info == null){
+            if (handler.getParentKey() != null){
+                // Inform event listener that an asset has failed to load.
+                // If the parent AssetLoader chooses not to propagate
+                // the exception, this is the only means of finding
+                // that something went wrong.
+                for (AssetEventListener listener : eventListeners){
+                    listener.assetDependencyNotFound(handler.getParentKey(), key);
+                }
+            }
+            throw new AssetNotFoundException(key.toString());
+        }
+
+        return loadLocatedAsset(key, info, proc, cache);
+    }
+
     public Object loadAsset(String name){
         return loadAsset(new AssetKey(name));
     }
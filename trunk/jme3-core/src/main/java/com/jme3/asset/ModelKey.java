@@ -33,7 +33,13 @@ package com.jme3.asset;
 
 import com.jme3.asset.cache.AssetCache;
 import com.jme3.asset.cache.WeakRefCloneAssetCache;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.scene.ModelProcessor;
 import com.jme3.scene.Spatial;
+import java.io.IOException;
 
 /**
  * Used to load model files, such as OBJ or Blender models.
@@ -46,6 +52,8 @@ import com.jme3.scene.Spatial;
  */
 public class ModelKey extends AssetKey<Spatial> {
 
+    private boolean createCollisionData = false;
+
     public ModelKey(String name) {
         super(name);
     }
@@ -61,6 +69,68 @@ public class ModelKey extends AssetKey<Spatial> {
     
     @Override
     public Class<? extends AssetProcessor> getProcessorType(){
-        return CloneableAssetProcessor.class;
+        return ModelProcessor.class;
+    }
+
+    /**
+     * @return true if the collision data of the model meshes is generated
+     * in the background when the model is loaded.
+     * @see #setCreateCollisionData(boolean)
+     */
+    public boolean isCreateCollisionData() {
+        return createCollisionData;
+    }
+
+    /**
+     * Enable to start generating the collision data of the model meshes on a
+     * background thread as soon as the model is loaded, instead of on the
+     * first collision query. Meshes whose collision data was saved with the
+     * model are left untouched.
+     *
+     * @param createCollisionData true to generate collision data on load
+     * @see com.jme3.scene.Mesh#createCollisionDataAsync()
+     */
+    public void setCreateCollisionData(boolean createCollisionData) {
+        this.createCollisionData = createCollisionData;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ModelKey other = (ModelKey) obj;
+        if (!super.equals(obj)) {
+            return false;
+        }
+        if (this.createCollisionData != other.createCollisionData) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 17 * hash + (super.hashCode());
+        hash = 17 * hash + (this.createCollisionData ? 1 : 0);
+        return hash;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        super.write(ex);
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(createCollisionData, "create_collision_data", false);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        InputCapsule ic = im.getCapsule(this);
+        createCollisionData = ic.readBoolean("create_collision_data", false);
     }
 }
@@ -38,6 +38,8 @@ import java.util.concurrent.*;
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active. 
+ *
+ * @see AssetLoadScheduler for prioritized and cancellable loading
  */
 public class ThreadingManager {
 
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>BoundedAssetCache</code> is an asset cache that keeps the assets
+ * in memory up to a given size, and then removes the least recently used
+ * ones.
+ * <p>
+ * Unlike the weak reference caches, assets are not dropped when the GC
+ * feels like it: they stay cached as long as they fit in the budget, even if
+ * the application does not reference them anymore, and the least recently
+ * requested ones are removed first.
+ * <p>
+ * The size of each asset is estimated by {@link #estimateSize(com.jme3.asset.AssetKey, java.lang.Object) }
+ * from its image, vertex or audio data. The asset returned to the user is
+ * the cached one or a clone made by its processor, as with
+ * {@link SimpleAssetCache}.
+ * <p>
+ * To use it, return this class from {@link AssetKey#getCacheType() }; the
+ * budget of the cache can then be changed through
+ * {@link com.jme3.asset.DesktopAssetManager#getCache(java.lang.Class) }.
+ */
+public class BoundedAssetCache implements AssetCache {
+
+    private static final Logger logger = Logger.getLogger(BoundedAssetCache.class.getName());
+
+    /**
+     * The budget used by new caches, in bytes.
+     */
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * The size assumed for the assets without any known data.
+     */
+    private static final long BASE_ASSET_SIZE = 1024;
+
+    private static final class Entry {
+
+        final Object asset;
+        final long size;
+
+        Entry(Object asset, long size) {
+            this.asset = asset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Iterates from the least recently used entry.
+     */
+    private final LinkedHashMap<AssetKey<?>, Entry> entries
+            = new LinkedHashMap<AssetKey<?>, Entry>(16, 0.75f, true);
+
+    private long budget = DEFAULT_BUDGET;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_BUDGET default budget}.
+     */
+    public BoundedAssetCache() {
+    }
+
+    /**
+     * Creates a cache with the given budget.
+     * 
+     * @param budget the maximum estimated size of the cached assets, in bytes
+     */
+    public BoundedAssetCache(long budget) {
+        setBudget(budget);
+    }
+
+    /**
+     * Sets the maximum estimated size of the cached assets. The least
+     * recently used assets are removed immediately if the cache is larger.
+     * 
+     * @param budget the budget in bytes
+     */
+    public synchronized void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget cannot be negative");
+        }
+        this.budget = budget;
+        evict(null);
+    }
+
+    /**
+     * @return the maximum estimated size of the cached assets, in bytes
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the estimated size of the cached assets, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of cached assets
+     */
+    public synchronized int getAssetCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of requests that found their asset in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of requests that did not find their asset in the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of assets removed to stay within the budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Removes the least recently used assets until the cache fits in its
+     * budget, except the given key which has just been added.
+     */
+    private void evict(AssetKey<?> keep) {
+        int evicted = 0;
+        Iterator<Map.Entry<AssetKey<?>, Entry>> it = entries.entrySet().iterator();
+        while (size > budget && it.hasNext()) {
+            Map.Entry<AssetKey<?>, Entry> e = it.next();
+            if (e.getKey() == keep) {
+                continue;
+            }
+            size -= e.getValue().size;
+            it.remove();
+            evicted++;
+        }
+        evictionCount += evicted;
+        if (evicted > 0 && logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "BoundedAssetCache: {0} assets were evicted from the cache.", evicted);
+        }
+    }
+
+    public <T> void addToCache(AssetKey<T> key, T obj) {
+        long assetSize = estimateSize(key, obj);
+        synchronized (this) {
+            Entry old = entries.put(key, new Entry(obj, assetSize));
+            if (old != null) {
+                size -= old.size;
+            }
+            size += assetSize;
+            evict(key);
+        }
+    }
+
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    public void notifyNoAssetClone() {
+    }
+
+    public synchronized <T> T getFromCache(AssetKey<T> key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return getAsset(key, entry);
+    }
+
+    /**
+     * Returns the cached asset like {@link #getFromCache(com.jme3.asset.AssetKey) }
+     * but without counting a hit or a miss. Used by the asset manager to
+     * check the cache again when a request that already missed starts
+     * loading the asset.
+     *
+     * @param <T> the type of the asset
+     * @param key the key of the asset
+     * @return the cached asset, or null
+     */
+    public synchronized <T> T peek(AssetKey<T> key) {
+        Entry entry = entries.get(key);
+        return entry != null ? getAsset(key, entry) : null;
+    }
+
+    /**
+     * The assets are only added with their own key by
+     * {@link #addToCache(com.jme3.asset.AssetKey, java.lang.Object) }.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T getAsset(AssetKey<T> key, Entry entry) {
+        return (T) entry.asset;
+    }
+
+    @SuppressWarnings("rawtypes") // declared raw by AssetCache
+    public synchronized boolean deleteFromCache(AssetKey key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        size -= entry.size;
+        return true;
+    }
+
+    public synchronized void clearCache() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Estimates the memory used by an asset, counting the data of the
+     * textures, meshes and audio buffers it contains. Subclasses can
+     * override it to handle other asset types.
+     * 
+     * @param key the key of the asset
+     * @param asset the asset to measure
+     * @return the estimated size in bytes
+     */
+    protected long estimateSize(AssetKey<?> key, Object asset) {
+        if (asset instanceof Texture) {
+            return BASE_ASSET_SIZE + estimateSize(((Texture) asset).getImage());
+        } else if (asset instanceof Image) {
+            return BASE_ASSET_SIZE + estimateSize((Image) asset);
+        } else if (asset instanceof Mesh) {
+            return BASE_ASSET_SIZE + estimateSize((Mesh) asset);
+        } else if (asset instanceof Spatial) {
+            final Set<Mesh> meshes = Collections.newSetFromMap(new IdentityHashMap<Mesh, Boolean>());
+            ((Spatial) asset).depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    if (geom.getMesh() != null) {
+                        meshes.add(geom.getMesh());
+                    }
+                }
+            });
+            long total = BASE_ASSET_SIZE;
+            for (Mesh mesh : meshes) {
+                total += estimateSize(mesh);
+            }
+            return total;
+        } else if (asset instanceof AudioBuffer) {
+            ByteBuffer data = ((AudioBuffer) asset).getData();
+            return BASE_ASSET_SIZE + (data != null ? data.capacity() : 0);
+        } else if (asset instanceof CharSequence) {
+            return BASE_ASSET_SIZE + 2L * ((CharSequence) asset).length();
+        } else if (asset instanceof byte[]) {
+            return BASE_ASSET_SIZE + ((byte[]) asset).length;
+        }
+        return BASE_ASSET_SIZE;
+    }
+
+    private static long estimateSize(Image image) {
+        if (image == null || image.getData() == null) {
+            return 0;
+        }
+        long total = 0;
+        for (ByteBuffer data : image.getData()) {
+            if (data != null) {
+                total += data.capacity();
+            }
+        }
+        return total;
+    }
+
+    private static long estimateSize(Mesh mesh) {
+        long total = 0;
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            Buffer data = vb.getData();
+            if (data != null) {
+                total += (long) data.capacity() * vb.getFormat().getComponentSize();
+            }
+        }
+        return total;
+    }
+}
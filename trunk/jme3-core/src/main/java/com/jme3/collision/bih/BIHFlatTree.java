@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.collision.CollisionResult;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
+import com.jme3.math.Triangle;
+import com.jme3.math.Vector3f;
+import com.jme3.util.TempVars;
+import java.util.Arrays;
+
+/**
+ * Array backed layout of a {@link BIHTree}, used for closest hit ray queries.
+ * <p>
+ * The nodes are packed in depth first order into an <code>int[]</code>
+ * holding 3 entries per node: the split axis (3 for a leaf), then the
+ * indices of the left and right children for an inner node, or the first
+ * and last triangle for a leaf. The left and right planes of each node are
+ * stored in a parallel <code>float[]</code>.
+ * <p>
+ * Queries walk the arrays with a per thread traversal stack and do not
+ * allocate any object once the stack and the result have been created.
+ *
+ * @see BIHTree#collideWithClosest(com.jme3.math.Ray, com.jme3.math.Matrix4f, com.jme3.collision.CollisionResult)
+ */
+final class BIHFlatTree {
+
+    private static final int LEAF = 3;
+
+    private static final ThreadLocal<TraversalStack> stacks = new ThreadLocal<TraversalStack>() {
+        @Override
+        protected TraversalStack initialValue() {
+            return new TraversalStack();
+        }
+    };
+
+    private final BIHTree tree;
+    private final int[] nodes;
+    private final float[] planes;
+    private final float[] boundMin = new float[3];
+    private final float[] boundMax = new float[3];
+
+    BIHFlatTree(BIHTree tree, BIHNode root) {
+        this.tree = tree;
+        int nodeCount = countNodes(root);
+        nodes = new int[nodeCount * 3];
+        planes = new float[nodeCount * 2];
+        pack(root, 0);
+
+        Arrays.fill(boundMin, Float.POSITIVE_INFINITY);
+        Arrays.fill(boundMax, Float.NEGATIVE_INFINITY);
+        float[] points = tree.getPointData();
+        for (int i = 0; i < points.length; i++) {
+            int a = i % 3;
+            boundMin[a] = Math.min(boundMin[a], points[i]);
+            boundMax[a] = Math.max(boundMax[a], points[i]);
+        }
+    }
+
+    private static int countNodes(BIHNode node) {
+        if (node.getAxis() == LEAF) {
+            return 1;
+        }
+        return 1 + countNodes(node.getLeftChild()) + countNodes(node.getRightChild());
+    }
+
+    /**
+     * Packs the subtree of the given node starting at the given index.
+     *
+     * @return the index following the last node of the subtree
+     */
+    private int pack(BIHNode node, int index) {
+        int n = index * 3;
+        nodes[n] = node.getAxis();
+        planes[index * 2] = node.getLeftPlane();
+        planes[index * 2 + 1] = node.getRightPlane();
+        if (node.getAxis() == LEAF) {
+            nodes[n + 1] = node.getLeftIndex();
+            nodes[n + 2] = node.getRightIndex();
+            return index + 1;
+        }
+        int right = pack(node.getLeftChild(), index + 1);
+        nodes[n + 1] = index + 1;
+        nodes[n + 2] = right;
+        return pack(node.getRightChild(), right);
+    }
+
+    /**
+     * Finds the closest triangle hit by the ray.
+     *
+     * @param ray the ray, in world space
+     * @param worldMatrix the world matrix of the mesh, or null
+     * @param result filled with the closest collision, if any
+     * @return true if the ray hits the mesh
+     */
+    boolean intersectClosest(Ray ray, Matrix4f worldMatrix, CollisionResult result) {
+        TraversalStack stack = stacks.get();
+        TempVars vars = TempVars.get();
+        try {
+            // bring the ray to model space. The traversal parameter is the
+            // model space distance along the normalized local direction.
+            Vector3f origin = stack.ray.getOrigin();
+            Vector3f direction = stack.ray.getDirection();
+            float dirScale = 1f;
+            if (worldMatrix != null) {
+                Matrix4f inv = vars.tempMat4.set(worldMatrix).invertLocal();
+                inv.mult(ray.getOrigin(), origin);
+                inv.multNormal(ray.getDirection(), direction);
+                dirScale = direction.length();
+                direction.divideLocal(dirScale);
+            } else {
+                origin.set(ray.getOrigin());
+                direction.set(ray.getDirection());
+            }
+            float[] o = stack.origin;
+            float[] invDir = stack.invDirection;
+            o[0] = origin.x;
+            o[1] = origin.y;
+            o[2] = origin.z;
+            invDir[0] = 1f / direction.x;
+            invDir[1] = 1f / direction.y;
+            invDir[2] = 1f / direction.z;
+
+            float limit = ray.getLimit() / ray.getDirection().length() * dirScale;
+            float sceneMin = 0;
+            float sceneMax = limit;
+            for (int a = 0; a < 3; a++) {
+                float t1 = (boundMin[a] - o[a]) * invDir[a];
+                float t2 = (boundMax[a] - o[a]) * invDir[a];
+                if (t1 > t2) {
+                    float tmp = t1;
+                    t1 = t2;
+                    t2 = tmp;
+                }
+                // NaN (ray on a slab border) never passes these tests
+                if (t1 > sceneMin) {
+                    sceneMin = t1;
+                }
+                if (t2 < sceneMax) {
+                    sceneMax = t2;
+                }
+            }
+            if (sceneMin > sceneMax) {
+                return false;
+            }
+
+            Vector3f v1 = vars.vect1,
+                    v2 = vars.vect2,
+                    v3 = vars.vect3;
+            float closest = Float.POSITIVE_INFINITY;
+            int closestTri = -1;
+
+            int top = stack.push(0, 0, sceneMin, sceneMax);
+            stackloop:
+            while (top > 0) {
+                top--;
+                int node = stack.nodes[top];
+                float tMin = stack.mins[top];
+                float tMax = Math.min(stack.maxs[top], closest);
+                if (tMax < tMin) {
+                    continue;
+                }
+
+                int n = node * 3;
+                while (nodes[n] != LEAF) {
+                    int a = nodes[n];
+                    float tNearSplit = (planes[node * 2] - o[a]) * invDir[a];
+                    float tFarSplit = (planes[node * 2 + 1] - o[a]) * invDir[a];
+                    int nearNode = nodes[n + 1];
+                    int farNode = nodes[n + 2];
+
+                    if (invDir[a] < 0) {
+                        float tmpSplit = tNearSplit;
+                        tNearSplit = tFarSplit;
+                        tFarSplit = tmpSplit;
+
+                        int tmpNode = nearNode;
+                        nearNode = farNode;
+                        farNode = tmpNode;
+                    }
+
+                    if (tMin > tNearSplit && tMax < tFarSplit) {
+                        continue stackloop;
+                    }
+
+                    if (tMin > tNearSplit) {
+                        tMin = Math.max(tMin, tFarSplit);
+                        node = farNode;
+                    } else if (tMax < tFarSplit) {
+                        tMax = Math.min(tMax, tNearSplit);
+                        node = nearNode;
+                    } else {
+                        // the near side is visited first, so the far side can
+                        // be skipped once a closer hit has been found
+                        top = stack.push(top, farNode, Math.max(tMin, tFarSplit), tMax);
+                        tMax = Math.min(tMax, tNearSplit);
+                        node = nearNode;
+                    }
+                    n = node * 3;
+                }
+
+                for (int i = nodes[n + 1]; i <= nodes[n + 2]; i++) {
+                    tree.getTriangle(i, v1, v2, v3);
+                    float t = stack.ray.intersects(v1, v2, v3);
+                    if (t < closest && t <= limit) {
+                        closest = t;
+                        closestTri = i;
+                    }
+                }
+            }
+
+            if (closestTri < 0) {
+                return false;
+            }
+
+            Vector3f contactPoint = result.getContactPoint();
+            if (contactPoint == null) {
+                contactPoint = new Vector3f();
+                result.setContactPoint(contactPoint);
+            }
+            Vector3f contactNormal = result.getContactNormal();
+            if (contactNormal == null) {
+                contactNormal = new Vector3f();
+                result.setContactNormal(contactNormal);
+            }
+
+            tree.getTriangle(closestTri, v1, v2, v3);
+            if (worldMatrix != null) {
+                worldMatrix.mult(v1, v1);
+                worldMatrix.mult(v2, v2);
+                worldMatrix.mult(v3, v3);
+            }
+            Triangle.computeTriangleNormal(v1, v2, v3, contactNormal);
+            contactPoint.set(ray.getDirection()).multLocal(closest / dirScale).addLocal(ray.getOrigin());
+            result.setDistance(ray.getOrigin().distance(contactPoint));
+            result.setTriangleIndex(tree.getTriangleIndex(closestTri));
+            return true;
+        } finally {
+            vars.release();
+        }
+    }
+
+    /**
+     * Per thread traversal state, reused from query to query.
+     */
+    private static final class TraversalStack {
+
+        final Ray ray = new Ray();
+        final float[] origin = new float[3];
+        final float[] invDirection = new float[3];
+        int[] nodes = new int[64];
+        float[] mins = new float[64];
+        float[] maxs = new float[64];
+
+        /**
+         * @return the new stack size
+         */
+        int push(int top, int node, float min, float max) {
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                mins = Arrays.copyOf(mins, top * 2);
+                maxs = Arrays.copyOf(maxs, top * 2);
+            }
+            nodes[top] = node;
+            mins[top] = min;
+            maxs[top] = max;
+            return top + 1;
+        }
+    }
+}
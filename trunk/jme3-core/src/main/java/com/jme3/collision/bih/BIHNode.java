@@ -111,6 +111,27 @@ public final class BIHNode implements Savable {
         this.rightPlane = rightPlane;
     }
 
+    /**
+     * @return the split axis, or 3 for a leaf
+     */
+    int getAxis() {
+        return axis;
+    }
+
+    /**
+     * @return the first triangle of a leaf
+     */
+    int getLeftIndex() {
+        return leftIndex;
+    }
+
+    /**
+     * @return the last triangle of a leaf
+     */
+    int getRightIndex() {
+        return rightIndex;
+    }
+
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(leftIndex, "left_index", 0);
@@ -35,6 +35,7 @@ import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingSphere;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.collision.UnsupportedCollisionException;
 import com.jme3.export.InputCapsule;
@@ -57,20 +58,41 @@ import com.jme3.util.TempVars;
 import java.io.IOException;
 import static java.lang.Math.max;
 import java.nio.FloatBuffer;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Bounding interval hierarchy over the triangles of a {@link Mesh}.
+ * <p>
+ * Construction of big trees is done on a fork-join pool: once the
+ * triangles of a node have been partitioned, its left and right subtrees
+ * cover disjoint triangle ranges and are built concurrently. The resulting
+ * tree is exactly the same as the one built on a single thread.
+ * <p>
+ * A constructed tree is saved along with its mesh, see {@link Mesh#createCollisionData() }.
+ * <p>
+ * Closest hit ray queries use an array backed copy of the tree and do not
+ * create garbage, see {@link #collideWithClosest(com.jme3.math.Ray, com.jme3.math.Matrix4f, com.jme3.collision.CollisionResult) }.
+ */
 public class BIHTree implements CollisionData {
 
     public static final int MAX_TREE_DEPTH = 100;
     public static final int MAX_TRIS_PER_NODE = 21;
+    /**
+     * Minimum number of triangles in a node for its subtrees to be built
+     * in parallel.
+     */
+    public static final int PARALLEL_BUILD_THRESHOLD = 4096;
     private Mesh mesh;
     private BIHNode root;
     private int maxTrisPerNode;
     private int numTris;
     private float[] pointData;
     private int[] triIndices;
+    private transient volatile BIHFlatTree flatTree;
     
     // private transient CollisionResults boundResults = new CollisionResults();
-    private transient float[] bihSwapTmp;
     
     private static final TriangleAxisComparator[] comparators = new TriangleAxisComparator[]
     {
@@ -116,8 +138,6 @@ public class BIHTree implements CollisionData {
             throw new IllegalArgumentException("Mesh cannot be null");
         }
 
-        bihSwapTmp = new float[9];
-
         VertexBuffer vBuffer = mesh.getBuffer(Type.Position);
         if(vBuffer == null){
             throw new IllegalArgumentException("A mesh should at least contain a Position buffer");
@@ -142,9 +162,69 @@ public class BIHTree implements CollisionData {
     public BIHTree() {
     }
 
+    /**
+     * Builds the tree. Trees of at least {@link #PARALLEL_BUILD_THRESHOLD}
+     * triangles are built on the shared build pool, or on the current pool
+     * when called from a fork-join task.
+     *
+     * @see #getBuildPool()
+     */
     public void construct() {
+        flatTree = null;
         BoundingBox sceneBbox = createBox(0, numTris - 1);
-        root = createNode(0, numTris - 1, sceneBbox, 0);
+        if (numTris < PARALLEL_BUILD_THRESHOLD) {
+            root = createNode(0, numTris - 1, sceneBbox, 0);
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            root = new BuildTask(0, numTris - 1, sceneBbox, 0).invoke();
+        } else {
+            root = getBuildPool().invoke(new BuildTask(0, numTris - 1, sceneBbox, 0));
+        }
+    }
+
+    /**
+     * Builds the tree on the given pool.
+     *
+     * @param pool the pool that runs the construction tasks
+     */
+    public void construct(ForkJoinPool pool) {
+        flatTree = null;
+        BoundingBox sceneBbox = createBox(0, numTris - 1);
+        root = pool.invoke(new BuildTask(0, numTris - 1, sceneBbox, 0));
+    }
+
+    /**
+     * Returns the pool used to construct big trees and to build
+     * collision data in the background. Its threads are daemon threads.
+     *
+     * @return the shared build pool
+     */
+    public static ForkJoinPool getBuildPool() {
+        return BuildPoolHolder.POOL;
+    }
+
+    private static final class BuildPoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * Builds the subtree of a triangle range.
+     */
+    private final class BuildTask extends RecursiveTask<BIHNode> {
+
+        private final int l, r, depth;
+        private final BoundingBox nodeBbox;
+
+        BuildTask(int l, int r, BoundingBox nodeBbox, int depth) {
+            this.l = l;
+            this.r = r;
+            this.nodeBbox = nodeBbox;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BIHNode compute() {
+            return createNode(l, r, nodeBbox, depth);
+        }
     }
 
     private BoundingBox createBox(int l, int r) {
@@ -173,6 +253,10 @@ public class BIHTree implements CollisionData {
         return triIndices[triIndex];
     }
 
+    float[] getPointData() {
+        return pointData;
+    }
+
     private int sortTriangles(int l, int r, float split, int axis) {
         int pivot = l;
         int j = r;
@@ -354,14 +438,23 @@ public class BIHTree implements CollisionData {
 
             //The left node right border is the plane most right
             node.setLeftPlane(getMinMax(createBox(l, max(l, pivot - 1)), false, axis));
-            node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1)); //Recursive call
 
             //Right Child
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
             //The right node left border is the plane most left
             node.setRightPlane(getMinMax(createBox(pivot, r), true, axis));
-            node.setRightChild(createNode(pivot, r, rbbox, depth + 1)); //Recursive call
+
+            if (r - l >= PARALLEL_BUILD_THRESHOLD && ForkJoinTask.inForkJoinPool()) {
+                //Both children work on disjoint triangle ranges
+                BuildTask leftTask = new BuildTask(l, max(l, pivot - 1), lbbox, depth + 1);
+                leftTask.fork();
+                node.setRightChild(createNode(pivot, r, rbbox, depth + 1));
+                node.setLeftChild(leftTask.join());
+            } else {
+                node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1)); //Recursive call
+                node.setRightChild(createNode(pivot, r, rbbox, depth + 1)); //Recursive call
+            }
 
             return node;
         }
@@ -387,14 +480,12 @@ public class BIHTree implements CollisionData {
         int p1 = index1 * 9;
         int p2 = index2 * 9;
 
-        // store p1 in tmp
-        System.arraycopy(pointData, p1, bihSwapTmp, 0, 9);
-
-        // copy p2 to p1
-        System.arraycopy(pointData, p2, pointData, p1, 9);
-
-        // copy tmp to p2
-        System.arraycopy(bihSwapTmp, 0, pointData, p2, 9);
+        // swap in place, subtrees may be built concurrently
+        for (int i = 0; i < 9; i++) {
+            float tmp = pointData[p1 + i];
+            pointData[p1 + i] = pointData[p2 + i];
+            pointData[p2 + i] = tmp;
+        }
 
         // swap indices
         int tmp2 = triIndices[index1];
@@ -477,6 +568,47 @@ public class BIHTree implements CollisionData {
         }
     }
 
+    /**
+     * Packs the constructed tree into primitive arrays used by
+     * {@link #collideWithClosest(com.jme3.math.Ray, com.jme3.math.Matrix4f, com.jme3.collision.CollisionResult) }.
+     * This is done automatically on the first closest hit query.
+     */
+    public synchronized void flatten() {
+        if (flatTree != null) {
+            return;
+        }
+        if (root == null) {
+            throw new IllegalStateException("The tree must be constructed before it is flattened");
+        }
+        flatTree = new BIHFlatTree(this, root);
+    }
+
+    /**
+     * Finds the closest triangle hit by the ray, which is the
+     * {@link CollisionResults#getClosestCollision() closest collision} that
+     * {@link #collideWith(com.jme3.collision.Collidable, com.jme3.math.Matrix4f, com.jme3.bounding.BoundingVolume, com.jme3.collision.CollisionResults) }
+     * would report, except that hits beyond the ray limit are ignored.
+     * <p>
+     * The traversal stops visiting the far side of a split as soon as a
+     * closer hit has been found. The contact point and normal vectors of
+     * the result are reused when set, so that repeated queries with the same
+     * result object do not allocate anything.
+     *
+     * @param ray the ray, in world space
+     * @param worldMatrix the world matrix of the mesh, or null
+     * @param result filled with the contact point, normal, distance and
+     * triangle index of the closest hit. Untouched if there is none.
+     * @return true if the ray hits the mesh
+     */
+    public boolean collideWithClosest(Ray ray, Matrix4f worldMatrix, CollisionResult result) {
+        BIHFlatTree flat = flatTree;
+        if (flat == null) {
+            flatten();
+            flat = flatTree;
+        }
+        return flat.intersectClosest(ray, worldMatrix, result);
+    }
+
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(mesh, "mesh", null);
@@ -493,5 +625,6 @@ public class BIHTree implements CollisionData {
         maxTrisPerNode = ic.readInt("tris_per_node", 0);
         pointData = ic.readFloatArray("points", null);
         triIndices = ic.readIntArray("indices", null);
+        numTris = triIndices != null ? triIndices.length : 0;
     }
 }
@@ -34,16 +34,27 @@ package com.jme3.light;
 import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingSphere;
 import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.NullComparator;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.SceneIndex;
 import com.jme3.util.TempVars;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 public final class DefaultLightFilter implements LightFilter {
 
     private Camera camera;
     private final HashSet<Light> processedLights = new HashSet<Light>();
     private final LightProbeBlendingStrategy probeBlendStrat;
+    private SceneIndex sceneIndex;
+    private final HashMap<Light, Set<Geometry>> litGeometries = new HashMap<Light, Set<Geometry>>();
+    private final GeometryList indexQuery = new GeometryList(new NullComparator());
 
     public DefaultLightFilter() {
         probeBlendStrat = new BasicProbeBlendingStrategy();
@@ -59,6 +70,67 @@ public final class DefaultLightFilter implements LightFilter {
         for (Light light : processedLights) {
             light.frustumCheckNeeded = true;
         }
+        for (Set<Geometry> lit : litGeometries.values()) {
+            lit.clear();
+        }
+    }
+
+    /**
+     * Uses an index of the scene to find once per frame the geometries in
+     * range of each point and spot light, instead of testing every
+     * geometry against every light.
+     * The geometries that are not in the index are still tested against
+     * the lights.
+     *
+     * @param sceneIndex the index of the rendered scene, or null
+     */
+    public void setSceneIndex(SceneIndex sceneIndex) {
+        this.sceneIndex = sceneIndex;
+        litGeometries.clear();
+    }
+
+    /**
+     * @return the index of the rendered scene, or null
+     * @see #setSceneIndex(com.jme3.scene.SceneIndex)
+     */
+    public SceneIndex getSceneIndex() {
+        return sceneIndex;
+    }
+
+    /**
+     * Finds the indexed geometries within the range of the light, if it
+     * has one.
+     */
+    private void findLitGeometries(Light light) {
+        Vector3f position;
+        float range;
+        if (light.getType() == Light.Type.Point) {
+            position = ((PointLight) light).getPosition();
+            range = ((PointLight) light).getRadius();
+        } else if (light.getType() == Light.Type.Spot) {
+            position = ((SpotLight) light).getPosition();
+            range = ((SpotLight) light).getSpotRange();
+        } else {
+            return;
+        }
+        if (range <= 0) {
+            litGeometries.remove(light);
+            return;
+        }
+
+        Set<Geometry> lit = litGeometries.get(light);
+        if (lit == null) {
+            lit = Collections.newSetFromMap(new IdentityHashMap<Geometry, Boolean>());
+            litGeometries.put(light, lit);
+        }
+        try {
+            sceneIndex.getGeometriesInRadius(position, range, indexQuery);
+            for (int i = 0; i < indexQuery.size(); i++) {
+                lit.add(indexQuery.get(i));
+            }
+        } finally {
+            indexQuery.clear();
+        }
     }
 
     @Override
@@ -79,12 +151,22 @@ public final class DefaultLightFilter implements LightFilter {
                     processedLights.add(light);
                     light.frustumCheckNeeded = false;
                     light.intersectsFrustum = light.intersectsFrustum(camera, vars);
+                    if (sceneIndex != null && light.intersectsFrustum) {
+                        findLitGeometries(light);
+                    }
                 }
 
                 if (!light.intersectsFrustum) {
                     continue;
                 }
 
+                if (sceneIndex != null) {
+                    Set<Geometry> lit = litGeometries.get(light);
+                    if (lit != null && !lit.contains(geometry) && sceneIndex.contains(geometry)) {
+                        continue;
+                    }
+                }
+
                 BoundingVolume bv = geometry.getWorldBound();
                 
                 if (bv instanceof BoundingBox) {
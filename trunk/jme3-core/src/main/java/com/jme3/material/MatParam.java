@@ -297,7 +297,10 @@ When arrays can be inserted in J3M files
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(type, "varType", null);
         oc.write(name, "name", null);
-        if (value instanceof Savable) {
+        if (value == null) {
+            // parameter of a material definition without a default value
+            oc.write(true, "value_null", false);
+        } else if (value instanceof Savable) {
             Savable s = (Savable) value;
             oc.write(s, "value_savable", null);
         } else if (value instanceof Float) {
@@ -319,6 +322,10 @@ When arrays can be inserted in J3M files
         type = ic.readEnum("varType", VarType.class, null);
         name = ic.readString("name", null);
         prefixedName = "m_" + name;
+        if (ic.readBoolean("value_null", false)) {
+            value = null;
+            return;
+        }
         switch (getVarType()) {
             case Boolean:
                 value = ic.readBoolean("value_bool", false);
@@ -705,6 +705,21 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
      * the system capabilities.
      */
     public void selectTechnique(String name, final RenderManager renderManager) {
+        Technique tech = getTechnique(name, renderManager);
+        if (technique == tech) {
+            // attempting to switch to an already
+            // active technique.
+            return;
+        }
+
+        technique = tech;
+        tech.notifyTechniqueSwitched();
+
+        // shader was changed
+        sortingId = -1;
+    }
+
+    private Technique getTechnique(String name, RenderManager renderManager) {
         // check if already created
         Technique tech = techniques.get(name);
         // When choosing technique, we choose one that
@@ -738,17 +753,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                                 name, def.getName(), lastTech.getRequiredCaps()));
             }
             logger.log(Level.FINE, this.getMaterialDef().getName() + " selected technique def " + tech.getDef());
-        } else if (technique == tech) {
-            // attempting to switch to an already
-            // active technique.
-            return;
         }
-
-        technique = tech;
-        tech.notifyTechniqueSwitched();
-
-        // shader was changed
-        sortingId = -1;
+        return tech;
     }
 
     private int applyOverrides(Renderer renderer, Shader shader, SafeArrayList<MatParamOverride> overrides, int unit) {
@@ -849,6 +855,78 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         renderManager.getRenderer().setShader(shader);
     }
 
+    /**
+     * Preloads the shader variant that the active technique would use to
+     * render a geometry with the given world overrides and lights.
+     * <p>
+     * Unlike {@link #preload(com.jme3.renderer.RenderManager) }, the
+     * forced material parameters of the render manager are applied, so the
+     * variant is the same as the one selected by
+     * {@link #render(com.jme3.scene.Geometry, com.jme3.light.LightList, com.jme3.renderer.RenderManager) }.
+     *
+     * @param renderManager The render manager to preload for
+     * @param worldOverrides The world overrides of the geometry, or null
+     * @param lights The lights affecting the geometry, or null
+     * @return true if the variant had to be compiled, false if it was
+     * already uploaded to the renderer or the technique does not render.
+     *
+     * @see com.jme3.renderer.ShaderPrecompiler
+     */
+    public boolean preload(RenderManager renderManager, SafeArrayList<MatParamOverride> worldOverrides, LightList lights) {
+        if (technique == null) {
+            selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager);
+        }
+        return preload(technique, renderManager, worldOverrides, lights);
+    }
+
+    /**
+     * Preloads the shader variant that the given technique would use to
+     * render a geometry with the given world overrides and lights, without
+     * selecting the technique.
+     *
+     * @param techniqueName The name of the technique to preload
+     * @param renderManager The render manager to preload for
+     * @param worldOverrides The world overrides of the geometry, or null
+     * @param lights The lights affecting the geometry, or null
+     * @return true if the variant had to be compiled, false if it was
+     * already uploaded to the renderer or the technique does not render.
+     *
+     * @throws IllegalArgumentException If no technique exists with the given
+     * name.
+     * @throws UnsupportedOperationException If no candidate technique supports
+     * the system capabilities.
+     *
+     * @see #preload(com.jme3.renderer.RenderManager, com.jme3.util.SafeArrayList, com.jme3.light.LightList)
+     */
+    public boolean preload(String techniqueName, RenderManager renderManager,
+            SafeArrayList<MatParamOverride> worldOverrides, LightList lights) {
+        Technique tech = getTechnique(techniqueName, renderManager);
+        if (tech != technique) {
+            // only the active technique is notified of parameter changes
+            tech.notifyTechniqueSwitched();
+        }
+        return preload(tech, renderManager, worldOverrides, lights);
+    }
+
+    private boolean preload(Technique tech, RenderManager renderManager,
+            SafeArrayList<MatParamOverride> worldOverrides, LightList lights) {
+        TechniqueDef techniqueDef = tech.getDef();
+        Renderer renderer = renderManager.getRenderer();
+
+        if (techniqueDef.isNoRender()) {
+            return false;
+        }
+
+        Shader shader = tech.makeCurrent(renderManager, worldOverrides, renderManager.getForcedMatParams(),
+                lights, renderer.getCaps());
+        if (!shader.isUpdateNeeded()) {
+            return false;
+        }
+        updateShaderMaterialParameters(renderer, shader, worldOverrides, renderManager.getForcedMatParams());
+        renderer.setShader(shader);
+        return true;
+    }
+
     private void clearUniformsSetByCurrent(Shader shader) {
         ListMap<String, Uniform> uniforms = shader.getUniformMap();
         int size = uniforms.size();
@@ -953,6 +1031,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         // Select shader to use
         Shader shader = technique.makeCurrent(renderManager, overrides, renderManager.getForcedMatParams(), lights, rendererCaps);
+        if (shader.isUpdateNeeded()) {
+            // the variant will be compiled in the middle of the frame
+            renderManager.getShaderPrecompiler().variantMissed(def, techniqueDef, shader);
+        }
         
         // Begin tracking which uniforms were changed by material.
         clearUniformsSetByCurrent(shader);
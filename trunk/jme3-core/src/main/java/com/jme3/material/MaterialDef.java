@@ -32,20 +32,31 @@
 package com.jme3.material;
 
 import com.jme3.asset.AssetManager;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
 import com.jme3.renderer.RenderManager;
 import com.jme3.shader.VarType;
 import com.jme3.texture.image.ColorSpace;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Describes a J3MD (Material definition).
+ * <p>
+ * A material definition can be exported in binary form, usually with the
+ * shader sources of its techniques compiled, so that it is loaded without
+ * parsing the J3MD text.
  * 
  * @author Kirill Vainer
+ * @see TechniqueDef#compileShaderSources(com.jme3.asset.AssetManager, java.util.EnumSet)
  */
-public class MaterialDef{
+public class MaterialDef implements Savable {
 
     private static final Logger logger = Logger.getLogger(MaterialDef.class.getName());
 
@@ -195,4 +206,32 @@ public class MaterialDef{
         return techniques.keySet();
     }
 
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(name, "name", null);
+        oc.write(assetName, "assetName", null);
+        oc.writeSavableArrayList(new ArrayList<MatParam>(matParams.values()), "matParams", null);
+        ArrayList<TechniqueDef> techniqueDefs = new ArrayList<TechniqueDef>();
+        for (List<TechniqueDef> list : techniques.values()) {
+            techniqueDefs.addAll(list);
+        }
+        oc.writeSavableArrayList(techniqueDefs, "techniques", null);
+    }
+
+    public void read(JmeImporter im) throws IOException {
+        InputCapsule ic = im.getCapsule(this);
+        assetManager = im.getAssetManager();
+        name = ic.readString("name", null);
+        assetName = ic.readString("assetName", null);
+        techniques = new HashMap<String, List<TechniqueDef>>();
+        matParams = new HashMap<String, MatParam>();
+        ArrayList<?> params = ic.readSavableArrayList("matParams", new ArrayList<MatParam>());
+        for (Object param : params) {
+            matParams.put(((MatParam) param).getName(), (MatParam) param);
+        }
+        ArrayList<?> techniqueDefs = ic.readSavableArrayList("techniques", new ArrayList<TechniqueDef>());
+        for (Object techniqueDef : techniqueDefs) {
+            addTechniqueDef((TechniqueDef) techniqueDef);
+        }
+    }
 }
@@ -51,8 +51,9 @@ public class TechniqueDef implements Savable, Cloneable {
 
     /**
      * Version #1: Separate shader language for each shader source.
+     * Version #2: Defines, world bindings, logic and compiled shader sources.
      */
-    public static final int SAVABLE_VERSION = 1;
+    public static final int SAVABLE_VERSION = 2;
 
     /**
      * The default technique name.
@@ -145,6 +146,11 @@ public class TechniqueDef implements Savable, Cloneable {
     private ArrayList<VarType> defineTypes;
     private HashMap<String, Integer> paramToDefineId;
     private final HashMap<DefineList, Shader> definesToShaderMap;
+
+    //shader sources resolved by compileShaderSources, indexed by shader type
+    private String[] compiledNames;
+    private String[] compiledSources;
+    private String[] compiledLanguages;
     
     private boolean usesNodes = false;
     private List<ShaderNode> shaderNodes;
@@ -492,7 +498,15 @@ public class TechniqueDef implements Savable, Cloneable {
         String definesSourceCode = sb.toString();
 
         Shader shader;
-        if (isUsingShaderNodes()) {
+        if (hasCompiledSources(rendererCaps)) {
+            shader = new Shader();
+            for (ShaderType type : ShaderType.values()) {
+                int i = type.ordinal();
+                if (compiledSources[i] != null) {
+                    shader.addSource(type, compiledNames[i], compiledSources[i], definesSourceCode, compiledLanguages[i]);
+                }
+            }
+        } else if (isUsingShaderNodes()) {
             ShaderGenerator shaderGenerator = assetManager.getShaderGenerator(rendererCaps);
             if (shaderGenerator == null) {
                 throw new UnsupportedOperationException("ShaderGenerator was not initialized, "
@@ -522,6 +536,60 @@ public class TechniqueDef implements Savable, Cloneable {
         return shader;
     }
     
+    /**
+     * @return true if the compiled shader sources can be used with the
+     * given renderer capabilities.
+     */
+    private boolean hasCompiledSources(EnumSet<Caps> rendererCaps) {
+        if (compiledSources == null) {
+            return false;
+        }
+        for (String language : compiledLanguages) {
+            if (language != null && !rendererCaps.contains(Caps.valueOf(language))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the shader sources of this technique and keeps them, so that
+     * they are exported along with the technique.
+     * <p>
+     * The shader files are loaded with their imports, and techniques using
+     * shader nodes are generated with the shader generator of the given
+     * asset manager. A technique read back with compiled sources builds its
+     * shaders from them, without loading or generating anything, as long as
+     * the renderer supports the languages they were compiled for. Otherwise
+     * the shaders are loaded or generated as usual.
+     *
+     * @param assetManager the asset manager used to load or generate the shaders
+     * @param rendererCaps the capabilities used to select the shader generator
+     */
+    public void compileShaderSources(AssetManager assetManager, EnumSet<Caps> rendererCaps) {
+        compiledSources = null;
+        Shader shader = loadShader(assetManager, rendererCaps, createDefineList());
+
+        int count = ShaderType.values().length;
+        compiledNames = new String[count];
+        compiledSources = new String[count];
+        compiledLanguages = new String[count];
+        for (Shader.ShaderSource source : shader.getSources()) {
+            int i = source.getType().ordinal();
+            compiledNames[i] = source.getName();
+            compiledSources[i] = source.getSource();
+            compiledLanguages[i] = source.getLanguage();
+        }
+    }
+
+    /**
+     * @return true if the shader sources of this technique were compiled
+     * @see #compileShaderSources(com.jme3.asset.AssetManager, java.util.EnumSet)
+     */
+    public boolean hasCompiledShaderSources() {
+        return compiledSources != null;
+    }
+
     public Shader getShader(AssetManager assetManager, EnumSet<Caps> rendererCaps, DefineList defines) {
           Shader shader = definesToShaderMap.get(defines);
           if (shader == null) {
@@ -679,10 +747,39 @@ public class TechniqueDef implements Savable, Cloneable {
         oc.writeSavableArrayList((ArrayList)shaderNodes,"shaderNodes", null);
         oc.write(shaderGenerationInfo, "shaderGenerationInfo", null);
 
-        // TODO: Finish this when Map<String, String> export is available
-//        oc.write(defineParams, "defineParams", null);
-        // TODO: Finish this when List<Enum> export is available
-//        oc.write(worldBinds, "worldBinds", null);
+        oc.write(sortId, "sortId", 0);
+        oc.write(weight, "weight", 0f);
+        oc.write(toNames(requiredCaps), "requiredCaps", null);
+        oc.write(lightSpace, "lightSpace", null);
+        oc.write(forcedRenderState, "forcedRenderState", null);
+        oc.write(logic != null ? logic.getClass().getName() : null, "logic", null);
+
+        oc.write(defineNames.toArray(new String[defineNames.size()]), "defineNames", null);
+        oc.write(toNames(defineTypes), "defineTypes", null);
+        String[] defineParams = new String[paramToDefineId.size()];
+        int[] defineParamIds = new int[defineParams.length];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : paramToDefineId.entrySet()) {
+            defineParams[i] = entry.getKey();
+            defineParamIds[i] = entry.getValue();
+            i++;
+        }
+        oc.write(defineParams, "defineParams", null);
+        oc.write(defineParamIds, "defineParamIds", null);
+        oc.write(worldBinds != null ? toNames(worldBinds) : null, "worldBinds", null);
+
+        oc.write(compiledNames, "compiledNames", null);
+        oc.write(compiledSources, "compiledSources", null);
+        oc.write(compiledLanguages, "compiledLanguages", null);
+    }
+
+    private static String[] toNames(Collection<? extends Enum<?>> values) {
+        String[] names = new String[values.size()];
+        int i = 0;
+        for (Enum<?> value : values) {
+            names[i++] = value.name();
+        }
+        return names;
     }
 
     public void read(JmeImporter im) throws IOException{
@@ -715,6 +812,58 @@ public class TechniqueDef implements Savable, Cloneable {
         usesNodes = ic.readBoolean("usesNodes", false);
         shaderNodes = ic.readSavableArrayList("shaderNodes", null);
         shaderGenerationInfo = (ShaderGenerationInfo) ic.readSavable("shaderGenerationInfo", null);
+
+        sortId = ic.readInt("sortId", 0);
+        weight = ic.readFloat("weight", 0f);
+        requiredCaps.clear();
+        for (String cap : ic.readStringArray("requiredCaps", new String[0])) {
+            requiredCaps.add(Caps.valueOf(cap));
+        }
+        lightSpace = ic.readEnum("lightSpace", LightSpace.class, null);
+        forcedRenderState = (RenderState) ic.readSavable("forcedRenderState", null);
+
+        defineNames.clear();
+        defineNames.addAll(Arrays.asList(ic.readStringArray("defineNames", new String[0])));
+        defineTypes.clear();
+        for (String type : ic.readStringArray("defineTypes", new String[0])) {
+            defineTypes.add(VarType.valueOf(type));
+        }
+        paramToDefineId.clear();
+        String[] defineParams = ic.readStringArray("defineParams", new String[0]);
+        int[] defineParamIds = ic.readIntArray("defineParamIds", new int[0]);
+        for (int i = 0; i < defineParams.length; i++) {
+            paramToDefineId.put(defineParams[i], defineParamIds[i]);
+        }
+        String[] worldBindNames = ic.readStringArray("worldBinds", null);
+        if (worldBindNames != null) {
+            worldBinds = new ArrayList<UniformBinding>(worldBindNames.length);
+            for (String binding : worldBindNames) {
+                worldBinds.add(UniformBinding.valueOf(binding));
+            }
+        }
+
+        compiledNames = ic.readStringArray("compiledNames", null);
+        compiledSources = ic.readStringArray("compiledSources", null);
+        compiledLanguages = ic.readStringArray("compiledLanguages", null);
+
+        String logicClass = ic.readString("logic", null);
+        if (logicClass != null) {
+            // the logic adds its own defines again, they were exported last
+            TechniqueDef probe = new TechniqueDef();
+            createLogic(logicClass, probe);
+            int ownDefines = defineNames.size() - probe.defineNames.size();
+            defineNames.subList(ownDefines, defineNames.size()).clear();
+            defineTypes.subList(ownDefines, defineTypes.size()).clear();
+            logic = createLogic(logicClass, this);
+        }
+    }
+
+    private static TechniqueDefLogic createLogic(String className, TechniqueDef def) throws IOException {
+        try {
+            return (TechniqueDefLogic) Class.forName(className).getConstructor(TechniqueDef.class).newInstance(def);
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
+            throw new IOException("Cannot create the logic of technique " + def.getName(), e);
+        }
     }
 
     public List<ShaderNode> getShaderNodes() {
@@ -825,6 +974,10 @@ public class TechniqueDef implements Savable, Cloneable {
             clone.worldBinds.addAll(worldBinds);
         }
 
+        clone.compiledNames = compiledNames;
+        clone.compiledSources = compiledSources;
+        clone.compiledLanguages = compiledLanguages;
+
         return clone;
     }
 }
@@ -64,7 +64,12 @@ public class DefaultTechniqueDefLogic implements TechniqueDefLogic {
         int lodLevel = geom.getLodLevel();
         if (geom instanceof InstancedGeometry) {
             InstancedGeometry instGeom = (InstancedGeometry) geom;
-            renderer.renderMesh(mesh, lodLevel, instGeom.getActualNumInstances(),
+            int numInstances = instGeom.getNumVisibleInstances();
+            if (numInstances == 0) {
+                // every instance was culled
+                return;
+            }
+            renderer.renderMesh(mesh, lodLevel, numInstances,
                     instGeom.getAllInstanceData());
         } else {
             renderer.renderMesh(mesh, lodLevel, 1, null);
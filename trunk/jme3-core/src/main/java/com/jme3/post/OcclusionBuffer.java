@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.post;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Low resolution depth buffer rasterized on the CPU, with a hierarchical-Z
+ * pyramid used to test bounding boxes against it.
+ * <p>
+ * Depths are normalized device coordinates, from -1 on the near plane to
+ * 1 on the far plane. Level 0 of the pyramid is the depth buffer itself,
+ * each texel of the next levels holds the farthest depth of the 2x2 texels
+ * it covers in the previous level. A box is occluded when its nearest
+ * point is farther than the farthest occluder depth over its screen
+ * rectangle.
+ *
+ * @see OcclusionCullingProcessor
+ */
+final class OcclusionBuffer {
+
+    /**
+     * Clip space w under which a point is considered at or behind the eye.
+     */
+    private static final float MIN_W = 1e-5f;
+
+    private final int width, height;
+    private final float[][] levels;
+    private final int[] levelWidths, levelHeights;
+
+    // screen space vertices of the current triangle
+    private final float[] sx = new float[3], sy = new float[3], sz = new float[3];
+
+    OcclusionBuffer(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid occlusion buffer size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+
+        int count = 1;
+        for (int w = width, h = height; w > 1 || h > 1; w = (w + 1) / 2, h = (h + 1) / 2) {
+            count++;
+        }
+        levels = new float[count][];
+        levelWidths = new int[count];
+        levelHeights = new int[count];
+        for (int i = 0, w = width, h = height; i < count; i++, w = (w + 1) / 2, h = (h + 1) / 2) {
+            levels[i] = new float[w * h];
+            levelWidths[i] = w;
+            levelHeights[i] = h;
+        }
+        clear();
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getNumLevels() {
+        return levels.length;
+    }
+
+    /**
+     * @return the depth of the given texel of the given pyramid level
+     */
+    float getDepth(int level, int x, int y) {
+        return levels[level][y * levelWidths[level] + x];
+    }
+
+    /**
+     * Resets the depth buffer to the far plane.
+     */
+    void clear() {
+        Arrays.fill(levels[0], 1f);
+    }
+
+    /**
+     * Rasterizes the triangles of the given mesh into the depth buffer.
+     * Triangles with a vertex behind the eye are skipped, which can only
+     * make the occluders smaller.
+     *
+     * @param mesh the occluder mesh
+     * @param worldViewProjection the matrix bringing the mesh positions to clip space
+     */
+    void rasterize(Mesh mesh, Matrix4f worldViewProjection) {
+        VertexBuffer pb = mesh.getBuffer(VertexBuffer.Type.Position);
+        if (pb == null) {
+            return;
+        }
+        switch (mesh.getMode()) {
+            case Triangles:
+            case TriangleStrip:
+            case TriangleFan:
+                break;
+            default:
+                return;
+        }
+        FloatBuffer positions = (FloatBuffer) pb.getData();
+        IndexBuffer indices = mesh.getIndicesAsList();
+        Matrix4f m = worldViewProjection;
+
+        int numIndices = indices.size() - indices.size() % 3;
+        trianglesloop:
+        for (int i = 0; i < numIndices; i += 3) {
+            for (int v = 0; v < 3; v++) {
+                int p = indices.get(i + v) * 3;
+                float x = positions.get(p), y = positions.get(p + 1), z = positions.get(p + 2);
+                float w = m.m30 * x + m.m31 * y + m.m32 * z + m.m33;
+                if (w < MIN_W) {
+                    continue trianglesloop;
+                }
+                float invW = 1f / w;
+                sx[v] = ((m.m00 * x + m.m01 * y + m.m02 * z + m.m03) * invW * 0.5f + 0.5f) * width;
+                sy[v] = ((m.m10 * x + m.m11 * y + m.m12 * z + m.m13) * invW * 0.5f + 0.5f) * height;
+                sz[v] = (m.m20 * x + m.m21 * y + m.m22 * z + m.m23) * invW;
+            }
+            rasterizeTriangle();
+        }
+    }
+
+    /**
+     * Fills the pixels whose center is covered by the current triangle,
+     * keeping the nearest depth.
+     */
+    private void rasterizeTriangle() {
+        float area = (sx[1] - sx[0]) * (sy[2] - sy[0]) - (sx[2] - sx[0]) * (sy[1] - sy[0]);
+        if (area == 0 || Float.isNaN(area)) {
+            return;
+        }
+        // occluders are double sided, make the edge functions positive inside
+        int i1 = 1, i2 = 2;
+        if (area < 0) {
+            i1 = 2;
+            i2 = 1;
+            area = -area;
+        }
+        float x0 = sx[0], y0 = sy[0], z0 = sz[0];
+        float x1 = sx[i1], y1 = sy[i1], z1 = sz[i1];
+        float x2 = sx[i2], y2 = sy[i2], z2 = sz[i2];
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        float invArea = 1f / area;
+        float[] depth = levels[0];
+        for (int y = minY; y <= maxY; y++) {
+            float py = y + 0.5f;
+            int row = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                float px = x + 0.5f;
+                // barycentric weights of vertex 0, 1 and 2
+                float w0 = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+                float w1 = (x0 - x2) * (py - y2) - (y0 - y2) * (px - x2);
+                float w2 = (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0);
+                if (w0 < 0 || w1 < 0 || w2 < 0) {
+                    continue;
+                }
+                float z = (w0 * z0 + w1 * z1 + w2 * z2) * invArea;
+                if (z < depth[row + x]) {
+                    depth[row + x] = z;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the pyramid levels from the depth buffer.
+     * Must be called once all occluders have been rasterized.
+     */
+    void buildPyramid() {
+        for (int level = 1; level < levels.length; level++) {
+            float[] src = levels[level - 1];
+            float[] dst = levels[level];
+            int srcWidth = levelWidths[level - 1];
+            int srcHeight = levelHeights[level - 1];
+            int dstWidth = levelWidths[level];
+            int dstHeight = levelHeights[level];
+            for (int y = 0; y < dstHeight; y++) {
+                int row0 = (y * 2) * srcWidth;
+                int row1 = Math.min(y * 2 + 1, srcHeight - 1) * srcWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    int c0 = x * 2;
+                    int c1 = Math.min(x * 2 + 1, srcWidth - 1);
+                    dst[y * dstWidth + x] = Math.max(Math.max(src[row0 + c0], src[row0 + c1]),
+                                                     Math.max(src[row1 + c0], src[row1 + c1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests a world space box against the pyramid.
+     *
+     * @param box the box to test
+     * @param viewProjection the view projection matrix used to rasterize the occluders
+     * @return true if the box is entirely hidden by the occluders
+     */
+    boolean isOccluded(BoundingBox box, Matrix4f viewProjection) {
+        Vector3f c = box.getCenter();
+        float ex = box.getXExtent(), ey = box.getYExtent(), ez = box.getZExtent();
+        Matrix4f m = viewProjection;
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 8; i++) {
+            float x = (i & 1) == 0 ? c.x - ex : c.x + ex;
+            float y = (i & 2) == 0 ? c.y - ey : c.y + ey;
+            float z = (i & 4) == 0 ? c.z - ez : c.z + ez;
+            float w = m.m30 * x + m.m31 * y + m.m32 * z + m.m33;
+            if (w < MIN_W) {
+                // the box reaches the eye plane
+                return false;
+            }
+            float invW = 1f / w;
+            float px = ((m.m00 * x + m.m01 * y + m.m02 * z + m.m03) * invW * 0.5f + 0.5f) * width;
+            float py = ((m.m10 * x + m.m11 * y + m.m12 * z + m.m13) * invW * 0.5f + 0.5f) * height;
+            float pz = (m.m20 * x + m.m21 * y + m.m22 * z + m.m23) * invW;
+            minX = Math.min(minX, px);
+            maxX = Math.max(maxX, px);
+            minY = Math.min(minY, py);
+            maxY = Math.max(maxY, py);
+            minZ = Math.min(minZ, pz);
+        }
+        if (maxX < 0 || maxY < 0 || minX >= width || minY >= height || !(minZ <= 1f)) {
+            // outside of the buffer, frustum culling deals with those
+            return false;
+        }
+
+        int x0 = Math.max(0, (int) minX);
+        int y0 = Math.max(0, (int) minY);
+        int x1 = Math.min(width - 1, (int) maxX);
+        int y1 = Math.min(height - 1, (int) maxY);
+
+        // coarsest level where the rectangle covers at most 2x2 texels
+        int level = 0;
+        while (level < levels.length - 1
+                && ((x1 >> level) - (x0 >> level) > 1 || (y1 >> level) - (y0 >> level) > 1)) {
+            level++;
+        }
+
+        float[] depth = levels[level];
+        int levelWidth = levelWidths[level];
+        for (int y = y0 >> level; y <= y1 >> level; y++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                if (minZ <= depth[y * levelWidth + x]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.post;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Matrix4f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.util.SafeArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the geometries hidden behind occluders from the render queue.
+ * <p>
+ * Each frame, the meshes of the occluders are rasterized into a low
+ * resolution depth buffer on the CPU, and a hierarchical-Z pyramid is built
+ * from it. The world bound of every geometry of the opaque, transparent and
+ * translucent buckets that survived frustum culling is then tested against
+ * the pyramid, and the hidden ones are removed before the queue is
+ * rendered. Gui and sky geometries are never tested.
+ * <p>
+ * Occluders are typically big, simple meshes such as walls, floors or
+ * terrain chunks, or invisible low poly proxies of complex models. They do
+ * not need to be attached to the scene but their geometric state must be
+ * up to date. Occluders are never culled themselves.
+ * <p>
+ * The processor should be added before any other processor of the
+ * viewport so that they only see the visible geometries. The number of
+ * tested and culled geometries are reported in the renderer
+ * {@link com.jme3.renderer.Statistics}.
+ */
+public class OcclusionCullingProcessor implements SceneProcessor {
+
+    private static final Bucket[] TESTED_BUCKETS = {Bucket.Opaque, Bucket.Transparent, Bucket.Translucent};
+
+    private final OcclusionBuffer buffer;
+    private final SafeArrayList<Geometry> occluders = new SafeArrayList<Geometry>(Geometry.class);
+    private final Set<Geometry> occluderSet = new HashSet<Geometry>();
+    private final Matrix4f tempMat = new Matrix4f();
+    private final BoundingBox tempBox = new BoundingBox();
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private int numTested;
+    private int numCulled;
+
+    /**
+     * Creates a processor with a 256x128 depth buffer.
+     */
+    public OcclusionCullingProcessor() {
+        this(256, 128);
+    }
+
+    /**
+     * Creates a processor with a depth buffer of the given size.
+     * Small buffers are faster to rasterize but cull less.
+     *
+     * @param width the width of the depth buffer
+     * @param height the height of the depth buffer
+     */
+    public OcclusionCullingProcessor(int width, int height) {
+        buffer = new OcclusionBuffer(width, height);
+    }
+
+    /**
+     * Adds a geometry whose mesh hides the geometries behind it.
+     *
+     * @param occluder the occluder to add
+     */
+    public void addOccluder(Geometry occluder) {
+        if (occluder == null) {
+            throw new IllegalArgumentException("occluder cannot be null");
+        }
+        if (occluderSet.add(occluder)) {
+            occluders.add(occluder);
+        }
+    }
+
+    /**
+     * Removes an occluder.
+     *
+     * @param occluder the occluder to remove
+     */
+    public void removeOccluder(Geometry occluder) {
+        if (occluderSet.remove(occluder)) {
+            occluders.remove(occluder);
+        }
+    }
+
+    /**
+     * Removes all the occluders.
+     */
+    public void clearOccluders() {
+        occluderSet.clear();
+        occluders.clear();
+    }
+
+    /**
+     * @return a read only view of the occluders
+     */
+    public List<Geometry> getOccluders() {
+        return Collections.unmodifiableList(occluders);
+    }
+
+    /**
+     * @return the number of geometries tested during the last frame
+     */
+    public int getNumTested() {
+        return numTested;
+    }
+
+    /**
+     * @return the number of geometries culled during the last frame
+     */
+    public int getNumCulled() {
+        return numCulled;
+    }
+
+    public void initialize(RenderManager rm, ViewPort vp) {
+        this.renderManager = rm;
+        this.viewPort = vp;
+    }
+
+    public void reshape(ViewPort vp, int w, int h) {
+        this.viewPort = vp;
+    }
+
+    public boolean isInitialized() {
+        return viewPort != null;
+    }
+
+    public void preFrame(float tpf) {
+    }
+
+    public void postQueue(RenderQueue rq) {
+        numTested = 0;
+        numCulled = 0;
+        if (occluders.isEmpty()) {
+            return;
+        }
+
+        Matrix4f viewProjection = viewPort.getCamera().getViewProjectionMatrix();
+        buffer.clear();
+        for (Geometry occluder : occluders.getArray()) {
+            if (occluder.getMesh() != null) {
+                tempMat.set(viewProjection).multLocal(occluder.getWorldMatrix());
+                buffer.rasterize(occluder.getMesh(), tempMat);
+            }
+        }
+        buffer.buildPyramid();
+
+        for (Bucket bucket : TESTED_BUCKETS) {
+            cull(rq.getList(bucket), viewProjection);
+        }
+        renderManager.getRenderer().getStatistics().onOcclusionCulled(numTested, numCulled);
+    }
+
+    private void cull(GeometryList list, Matrix4f viewProjection) {
+        int size = list.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Geometry geom = list.get(i);
+            if (!isOccluded(geom, viewProjection)) {
+                list.set(kept++, geom);
+            }
+        }
+        numCulled += size - kept;
+        list.truncate(kept);
+    }
+
+    private boolean isOccluded(Geometry geom, Matrix4f viewProjection) {
+        if (occluderSet.contains(geom)) {
+            return false;
+        }
+        BoundingVolume bound = geom.getWorldBound();
+        BoundingBox box;
+        if (bound instanceof BoundingBox) {
+            box = (BoundingBox) bound;
+        } else if (bound instanceof BoundingSphere) {
+            float radius = ((BoundingSphere) bound).getRadius();
+            box = tempBox;
+            box.setCenter(bound.getCenter());
+            box.setXExtent(radius);
+            box.setYExtent(radius);
+            box.setZExtent(radius);
+        } else {
+            return false;
+        }
+        numTested++;
+        return buffer.isOccluded(box, viewProjection);
+    }
+
+    public void postFrame(FrameBuffer out) {
+    }
+
+    public void cleanup() {
+        viewPort = null;
+        renderManager = null;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Culls the children of a scene node on a fork-join pool and flattens
+ * the visible geometries into a {@link RenderQueue}.
+ * <p>
+ * The children are split into contiguous chunks. Each chunk is culled
+ * against its own copy of the camera, so the frustum plane state is never
+ * shared between threads, and fills its own queue shards.
+ * <p>
+ * {@link Spatial#runControlRender(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort) }
+ * is not thread safe, and controls like the BillboardControl or the
+ * LodControl change the spatials they control before their subtree is
+ * culled. The culling tasks therefore stop at the spatials with controls
+ * and record them, with the camera plane state they passed culling with,
+ * between two shards. After the join, the shards are merged into the
+ * viewport queue in scene order on the calling thread, and each recorded
+ * spatial runs its controls and has its subtree culled serially at its
+ * place in that order. This gives exactly the same queue content as a
+ * serial traversal.
+ *
+ * @see RenderManager#setParallelCulling(boolean)
+ */
+final class ParallelSceneCuller {
+
+    /**
+     * Number of chunks created per pool thread, so that uneven subtrees
+     * can still be balanced by work stealing.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ArrayList<CullTask> tasks = new ArrayList<CullTask>();
+    private ForkJoinPool pool;
+
+    ParallelSceneCuller(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Culls the children of the given node and adds the visible geometries
+     * to the viewport's queue.
+     * The node itself must already have passed culling, leaving the camera
+     * plane state that its children must start from.
+     *
+     * @param node the node whose children are culled
+     * @param rm the render manager, passed to the controls
+     * @param vp the viewport providing the camera and the queue
+     */
+    void cullChildren(Node node, RenderManager rm, ViewPort vp) {
+        List<Spatial> children = node.getChildren();
+        int childCount = children.size();
+        int chunkCount = Math.min(childCount, pool.getParallelism() * CHUNKS_PER_THREAD);
+
+        Camera cam = vp.getCamera();
+        int camState = cam.getPlaneState();
+        while (tasks.size() < chunkCount) {
+            tasks.add(new CullTask());
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            CullTask task = tasks.get(i);
+            task.reinitialize();
+            task.setup(children, i * childCount / chunkCount, (i + 1) * childCount / chunkCount, cam, camState);
+        }
+
+        try {
+            pool.invoke(new CullRoot(tasks.subList(0, chunkCount)));
+
+            RenderQueue queue = vp.getQueue();
+            for (int i = 0; i < chunkCount; i++) {
+                CullTask task = tasks.get(i);
+                for (int j = 0; j < task.controlled.size(); j++) {
+                    queue.addAll(task.shards.get(j));
+                    renderControlled(task.controlled.get(j), task.controlledStates[j], rm, vp);
+                }
+                queue.addAll(task.shards.get(task.controlled.size()));
+            }
+        } finally {
+            cam.setPlaneState(camState);
+            for (int i = 0; i < chunkCount; i++) {
+                tasks.get(i).reset();
+            }
+        }
+    }
+
+    /**
+     * Runs the controls of a spatial that passed culling in a task, then
+     * culls its subtree on the calling thread, like the serial traversal.
+     */
+    private static void renderControlled(Spatial scene, int planeState, RenderManager rm, ViewPort vp) {
+        Camera cam = vp.getCamera();
+        cam.setPlaneState(planeState);
+        scene.runControlRender(rm, vp);
+        if (scene instanceof Node) {
+            List<Spatial> children = ((Node) scene).getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                cam.setPlaneState(planeState);
+                rm.renderSubScene(children.get(i), vp);
+            }
+        } else if (scene instanceof Geometry) {
+            Geometry gm = (Geometry) scene;
+            if (gm.getMaterial() == null) {
+                throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+            }
+
+            vp.getQueue().addToQueue(gm, scene.getQueueBucket());
+        }
+    }
+
+    /**
+     * Forks all chunks and waits for them.
+     */
+    private static final class CullRoot extends RecursiveAction {
+
+        private final List<CullTask> chunks;
+
+        CullRoot(List<CullTask> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(chunks);
+        }
+    }
+
+    /**
+     * Culls a contiguous range of children into its own queue shards.
+     * The spatials with controls are left to the calling thread, shard
+     * <i>i</i> holds the geometries found before the <i>i</i>th of them.
+     * Instances are reused from frame to frame.
+     */
+    private static final class CullTask extends RecursiveAction {
+
+        private final ArrayList<RenderQueue> shards = new ArrayList<RenderQueue>();
+        private final ArrayList<Spatial> controlled = new ArrayList<Spatial>();
+        private int[] controlledStates = new int[8];
+        private RenderQueue shard;
+        private Camera cam;
+        private List<Spatial> children;
+        private int start, end, camState;
+
+        void setup(List<Spatial> children, int start, int end, Camera source, int camState) {
+            this.children = children;
+            this.start = start;
+            this.end = end;
+            this.camState = camState;
+            if (cam == null) {
+                cam = source.clone();
+            } else {
+                cam.copyFrom(source);
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i <= controlled.size() && i < shards.size(); i++) {
+                shards.get(i).clear();
+            }
+            controlled.clear();
+            children = null;
+        }
+
+        private void nextShard() {
+            int index = controlled.size();
+            if (index == shards.size()) {
+                shards.add(new RenderQueue());
+            }
+            shard = shards.get(index);
+        }
+
+        @Override
+        protected void compute() {
+            nextShard();
+            for (int i = start; i < end; i++) {
+                cam.setPlaneState(camState);
+                cull(children.get(i));
+            }
+        }
+
+        private void cull(Spatial scene) {
+            if (!scene.checkCulling(cam)) {
+                return;
+            }
+
+            if (scene.getNumControls() > 0) {
+                // the controls may change the subtree before it is culled
+                if (controlled.size() == controlledStates.length) {
+                    controlledStates = Arrays.copyOf(controlledStates, controlledStates.length * 2);
+                }
+                controlledStates[controlled.size()] = cam.getPlaneState();
+                controlled.add(scene);
+                nextShard();
+                return;
+            }
+            if (scene instanceof Node) {
+                List<Spatial> subChildren = ((Node) scene).getChildren();
+                int state = cam.getPlaneState();
+                for (int i = 0; i < subChildren.size(); i++) {
+                    cam.setPlaneState(state);
+                    cull(subChildren.get(i));
+                }
+            } else if (scene instanceof Geometry) {
+                Geometry gm = (Geometry) scene;
+                if (gm.getMaterial() == null) {
+                    throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+                }
+
+                shard.addToQueue(gm, scene.getQueueBucket());
+            }
+        }
+    }
+}
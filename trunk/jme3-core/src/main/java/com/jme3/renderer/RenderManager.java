@@ -59,6 +59,7 @@ import com.jme3.util.SafeArrayList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
@@ -92,6 +93,9 @@ public class RenderManager {
     private LightFilter lightFilter = new DefaultLightFilter();
     private TechniqueDef.LightMode preferredLightMode = TechniqueDef.LightMode.MultiPass;
     private int singlePassLightBatchSize = 1;
+    private boolean parallelCulling = false;
+    private ParallelSceneCuller parallelCuller;
+    private ShaderPrecompiler shaderPrecompiler;
 
 
     /**
@@ -644,6 +648,10 @@ public class RenderManager {
      * when rendering a scene for the first time. Note that it is not 
      * guaranteed that the underlying renderer will actually choose to upload
      * the data to the GPU so some pause is still to be expected.
+     * <p>
+     * Only the default shader variant of each material is compiled, use
+     * the {@link #getShaderPrecompiler() shader precompiler} to also
+     * compile the variants selected by the lights and forced techniques.
      * 
      * @param scene The scene to preload
      */
@@ -709,11 +717,28 @@ public class RenderManager {
         //reset of the camera plane state for proper culling (must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
         //rendering the scene
-        renderSubScene(scene, vp);
+        if (parallelCulling && scene instanceof Node && ((Node) scene).getQuantity() > 1) {
+            renderSubSceneParallel((Node) scene, vp);
+        } else {
+            renderSubScene(scene, vp);
+        }
+    }
+
+    // culls the top level subtrees of the scene on the culling pool
+    private void renderSubSceneParallel(Node scene, ViewPort vp) {
+        if (!scene.checkCulling(vp.getCamera())) {
+            return;
+        }
+
+        scene.runControlRender(this, vp);
+        if (parallelCuller == null) {
+            parallelCuller = new ParallelSceneCuller(new ForkJoinPool());
+        }
+        parallelCuller.cullChildren(scene, this, vp);
     }
     
     // recursively renders the scene
-    private void renderSubScene(Spatial scene, ViewPort vp) {
+    void renderSubScene(Spatial scene, ViewPort vp) {
 
         // check culling first.
         if (!scene.checkCulling(vp.getCamera())) {
@@ -743,6 +768,73 @@ public class RenderManager {
         }
     }
 
+    /**
+     * Enables or disables parallel culling.
+     * <p>
+     * When enabled, {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort) }
+     * culls the children of the scene root on a fork-join pool. Each task
+     * uses its own copy of the camera frustum and fills its own queue shard;
+     * the shards are then merged into the viewport queue in scene order, so
+     * the result is the same as with serial culling.
+     * <p>
+     * The {@link Spatial#runControlRender(com.jme3.renderer.RenderManager, com.jme3.renderer.ViewPort) render}
+     * callbacks of controls are still invoked on the render thread, before
+     * the subtree of their spatial is culled: the subtrees of spatials with
+     * controls are culled on the render thread after the parallel pass. The
+     * scene graph must not be modified by another thread while it is being
+     * culled.
+     * <p>
+     * This pays off for large scenes with many top level subtrees whose
+     * nodes have no controls, it is disabled by default.
+     *
+     * @param parallelCulling true to cull the scene on several threads.
+     *
+     * @see #setParallelCullingPool(java.util.concurrent.ForkJoinPool)
+     */
+    public void setParallelCulling(boolean parallelCulling) {
+        this.parallelCulling = parallelCulling;
+    }
+
+    /**
+     * @return true if parallel culling is enabled.
+     * @see #setParallelCulling(boolean)
+     */
+    public boolean isParallelCulling() {
+        return parallelCulling;
+    }
+
+    /**
+     * Returns the shader precompiler of this render manager, which compiles
+     * the pending shader variants at the start of every frame and records
+     * the variants compiled while rendering.
+     *
+     * @return the shader precompiler
+     */
+    public ShaderPrecompiler getShaderPrecompiler() {
+        if (shaderPrecompiler == null) {
+            shaderPrecompiler = new ShaderPrecompiler(this);
+        }
+        return shaderPrecompiler;
+    }
+
+    /**
+     * Sets the pool used for parallel culling.
+     * If no pool is set, a pool with one thread per available processor
+     * is created the first time parallel culling is used.
+     *
+     * @param pool the pool to run the culling tasks on.
+     */
+    public void setParallelCullingPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        if (parallelCuller == null) {
+            parallelCuller = new ParallelSceneCuller(pool);
+        } else {
+            parallelCuller.setPool(pool);
+        }
+    }
+
     /**
      * Returns the camera currently used for rendering.
      * <p>
@@ -1139,6 +1231,10 @@ public class RenderManager {
 
         uniformBindingManager.newFrame();        
 
+        if (shaderPrecompiler != null && !shaderPrecompiler.isDone()) {
+            shaderPrecompiler.update();
+        }
+
         if (prof!=null) prof.appStep(AppStep.RenderPreviewViewPorts);        
         for (int i = 0; i < preViewPorts.size(); i++) {
             ViewPort vp = preViewPorts.get(i);
@@ -0,0 +1,491 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.light.Light;
+import com.jme3.light.LightList;
+import com.jme3.material.MatParam;
+import com.jme3.material.MatParamOverride;
+import com.jme3.material.Material;
+import com.jme3.material.MaterialDef;
+import com.jme3.material.TechniqueDef;
+import com.jme3.material.TechniqueDef.LightMode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.shader.Shader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles the shader variants a scene can use ahead of time, spread over
+ * several frames.
+ * <p>
+ * {@link RenderManager#preloadScene(com.jme3.scene.Spatial) } only
+ * uploads the default variant of each material, so a variant is still
+ * compiled in the middle of a frame the first time a material is rendered
+ * with a new light count or a forced technique. For each geometry of an
+ * enqueued scene, the precompiler enumerates the defines reachable with
+ * its world overrides and lights, for the default technique and the
+ * techniques added with {@link #addTechnique(java.lang.String) }:
+ * <ul>
+ * <li>with {@link LightMode#StaticPass}, every combination of
+ * directional, point and spot light counts up to the counts of the world
+ * light list, since the light filter can drop any of them;</li>
+ * <li>with the other light modes, the world light list with and without
+ * its light probes.</li>
+ * </ul>
+ * Variants with the same material definition, technique, light counts
+ * and parameter defines are only processed once. They are processed at
+ * the start of the next frames, at most {@link #getFrameBudget() } per
+ * frame, including the variants that turn out to be compiled already.
+ * The light lists are read when a geometry is processed, so the scene
+ * must be attached and updated by then. The active technique of the
+ * materials is left unchanged.
+ * <p>
+ * Variants compiled while rendering are recorded as misses, see
+ * {@link #getMissedVariants() }.
+ *
+ * @see RenderManager#getShaderPrecompiler()
+ */
+public final class ShaderPrecompiler {
+
+    private static final Logger logger = Logger.getLogger(ShaderPrecompiler.class.getName());
+
+    private final RenderManager renderManager;
+    private final ArrayList<String> techniques = new ArrayList<String>();
+    private final ArrayDeque<Geometry> pendingGeometries = new ArrayDeque<Geometry>();
+    private final ArrayDeque<Variant> pendingVariants = new ArrayDeque<Variant>();
+    private final Set<List<Object>> enqueuedVariants = new HashSet<List<Object>>();
+    /**
+     * The light counts enumerated so far for the static pass techniques,
+     * per material definition, technique and parameter defines.
+     */
+    private final Map<List<Object>, List<int[]>> staticPassCounts = new HashMap<List<Object>, List<int[]>>();
+    private final Set<String> missedVariants = new LinkedHashSet<String>();
+    private int frameBudget = 4;
+    private int compiledCount = 0;
+    private int missCount = 0;
+
+    ShaderPrecompiler(RenderManager renderManager) {
+        this.renderManager = renderManager;
+        techniques.add(TechniqueDef.DEFAULT_TECHNIQUE_NAME);
+    }
+
+    /**
+     * Adds a technique to precompile, in addition to the default one.
+     * Typically the techniques forced by the scene processors, e.g.
+     * "PreShadow" and "PostShadow" for the shadow renderers.
+     *
+     * @param techniqueName the technique name
+     */
+    public void addTechnique(String techniqueName) {
+        if (!techniques.contains(techniqueName)) {
+            techniques.add(techniqueName);
+        }
+    }
+
+    /**
+     * @return the techniques that are precompiled
+     */
+    public List<String> getTechniques() {
+        return Collections.unmodifiableList(techniques);
+    }
+
+    /**
+     * Sets how many variants can be processed per frame. Variants that are
+     * already compiled count against the budget too.
+     *
+     * @param frameBudget the number of variants, at least 1
+     */
+    public void setFrameBudget(int frameBudget) {
+        if (frameBudget < 1) {
+            throw new IllegalArgumentException("The frame budget must be at least 1");
+        }
+        this.frameBudget = frameBudget;
+    }
+
+    /**
+     * @return how many variants can be processed per frame
+     * @see #setFrameBudget(int)
+     */
+    public int getFrameBudget() {
+        return frameBudget;
+    }
+
+    /**
+     * Enqueues the geometries of the given scene, their variants are
+     * compiled during the next frames.
+     *
+     * @param scene the scene to precompile
+     */
+    public void enqueue(Spatial scene) {
+        if (scene instanceof Node) {
+            List<Spatial> children = ((Node) scene).getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                enqueue(children.get(i));
+            }
+        } else if (scene instanceof Geometry) {
+            Geometry geom = (Geometry) scene;
+            if (geom.getMaterial() == null) {
+                throw new IllegalStateException("No material is set for Geometry: " + geom.getName());
+            }
+            pendingGeometries.add(geom);
+        }
+    }
+
+    /**
+     * @return true if all the enqueued variants were compiled
+     */
+    public boolean isDone() {
+        return pendingGeometries.isEmpty() && pendingVariants.isEmpty();
+    }
+
+    /**
+     * Drops the variants that were not compiled yet.
+     */
+    public void cancel() {
+        pendingGeometries.clear();
+        pendingVariants.clear();
+        enqueuedVariants.clear();
+        staticPassCounts.clear();
+    }
+
+    /**
+     * Processes pending variants until the frame budget is spent.
+     * Called by the render manager at the start of every frame.
+     */
+    public void update() {
+        int processed = 0;
+        while (true) {
+            // the geometries with only duplicate variants are drained even
+            // when the budget is spent
+            if (pendingVariants.isEmpty()) {
+                if (pendingGeometries.isEmpty()) {
+                    break;
+                }
+                enumerateVariants(pendingGeometries.poll());
+                continue;
+            }
+            if (processed == frameBudget) {
+                break;
+            }
+            if (compile(pendingVariants.poll())) {
+                compiledCount++;
+            }
+            processed++;
+        }
+        if (isDone()) {
+            // the variants can be enqueued again, e.g. after a context restart
+            enqueuedVariants.clear();
+            staticPassCounts.clear();
+        }
+    }
+
+    /**
+     * Internal use only. Called by {@link Material} when a variant that was
+     * never compiled is about to be rendered.
+     */
+    public void variantMissed(MaterialDef materialDef, TechniqueDef techniqueDef, Shader shader) {
+        missCount++;
+        String variant = materialDef.getName() + "/" + techniqueDef.getName() + " [" + getDefines(shader) + "]";
+        if (missedVariants.add(variant) && logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Shader variant compiled while rendering: {0}", variant);
+        }
+    }
+
+    /**
+     * Returns the variants that were compiled while rendering, as the
+     * material definition name, the technique name and the defines.
+     * Each variant is listed once.
+     *
+     * @return the missed variants, in the order they were missed
+     */
+    public Set<String> getMissedVariants() {
+        return Collections.unmodifiableSet(missedVariants);
+    }
+
+    /**
+     * @return how many times a variant was compiled while rendering
+     */
+    public int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return how many variants the precompiler compiled
+     */
+    public int getCompiledCount() {
+        return compiledCount;
+    }
+
+    /**
+     * Clears the recorded misses and counters.
+     */
+    public void resetStatistics() {
+        missedVariants.clear();
+        missCount = 0;
+        compiledCount = 0;
+    }
+
+    private void enumerateVariants(Geometry geom) {
+        Material material = geom.getMaterial();
+        LightList worldLights = geom.getWorldLightList();
+        int[] counts = new int[5];
+        for (Light light : worldLights) {
+            counts[countIndex(light)]++;
+        }
+
+        for (int i = 0; i < techniques.size(); i++) {
+            String techniqueName = techniques.get(i);
+            List<TechniqueDef> techniqueDefs = material.getMaterialDef().getTechniqueDefs(techniqueName);
+            if (techniqueDefs == null) {
+                continue;
+            }
+
+            List<Object> variants = Arrays.<Object>asList(material.getMaterialDef(), techniqueName,
+                    getParamDefines(geom, techniqueDefs));
+            if (isStaticPass(techniqueDefs)) {
+                enumerateStaticPass(geom, techniqueName, variants, worldLights, counts);
+            } else {
+                addVariant(geom, techniqueName, variants, worldLights, counts, true);
+                if (counts[3] > 0) {
+                    addVariant(geom, techniqueName, variants, worldLights, counts, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Enqueues every combination of directional, point and spot light
+     * counts up to the given counts, except the combinations enumerated
+     * for an earlier geometry. The light lists are only built for the
+     * enqueued variants.
+     */
+    private void enumerateStaticPass(Geometry geom, String techniqueName, List<Object> variants,
+            LightList worldLights, int[] counts) {
+        List<int[]> enumerated = staticPassCounts.get(variants);
+        if (enumerated == null) {
+            enumerated = new ArrayList<int[]>();
+            staticPassCounts.put(variants, enumerated);
+        } else if (isEnumerated(enumerated, counts)) {
+            return;
+        }
+
+        int[] limits = new int[3];
+        for (limits[0] = 0; limits[0] <= counts[0]; limits[0]++) {
+            for (limits[1] = 0; limits[1] <= counts[1]; limits[1]++) {
+                for (limits[2] = 0; limits[2] <= counts[2]; limits[2]++) {
+                    if (!isEnumerated(enumerated, limits)) {
+                        pendingVariants.add(new Variant(geom, techniqueName, subset(worldLights, limits, true)));
+                    }
+                }
+            }
+        }
+        // the counts below the new ones do not need to be checked anymore
+        for (int i = enumerated.size() - 1; i >= 0; i--) {
+            if (isBelow(enumerated.get(i), counts)) {
+                enumerated.remove(i);
+            }
+        }
+        enumerated.add(Arrays.copyOf(counts, 3));
+    }
+
+    private static boolean isEnumerated(List<int[]> enumerated, int[] counts) {
+        for (int i = 0; i < enumerated.size(); i++) {
+            if (isBelow(counts, enumerated.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBelow(int[] counts, int[] max) {
+        return counts[0] <= max[0] && counts[1] <= max[1] && counts[2] <= max[2];
+    }
+
+    private void addVariant(Geometry geom, String techniqueName, List<Object> variants,
+            LightList worldLights, int[] counts, boolean keepProbes) {
+        List<Object> key = Arrays.<Object>asList(variants, counts[0], counts[1], counts[2],
+                keepProbes ? counts[3] : 0, counts[4]);
+        if (enqueuedVariants.add(key)) {
+            pendingVariants.add(new Variant(geom, techniqueName, subset(worldLights, null, keepProbes)));
+        }
+    }
+
+    /**
+     * @return the defines bound to the material parameters, then to the
+     * overrides
+     */
+    private static Map<String, Object> getParamDefines(Geometry geom, List<TechniqueDef> techniqueDefs) {
+        Map<String, Object> defines = new TreeMap<String, Object>();
+        for (MatParam param : geom.getMaterial().getParams()) {
+            if (isDefine(techniqueDefs, param.getName())) {
+                defines.put(param.getName(), defineValue(param.getValue()));
+            }
+        }
+        for (MatParamOverride override : geom.getWorldMatParamOverrides()) {
+            if (override.isEnabled() && isDefine(techniqueDefs, override.getName())) {
+                defines.put(override.getName(), defineValue(override.getValue()));
+            }
+        }
+        return defines;
+    }
+
+    private static boolean isDefine(List<TechniqueDef> techniqueDefs, String paramName) {
+        for (TechniqueDef techniqueDef : techniqueDefs) {
+            if (techniqueDef.getShaderParamDefineId(paramName) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Only numbers and booleans set the define to their value, the other
+     * types only define it.
+     */
+    private static Object defineValue(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Only the light mode of the technique def the material will select
+     * matters, but all defs of a technique normally share it.
+     */
+    private boolean isStaticPass(List<TechniqueDef> techniqueDefs) {
+        for (TechniqueDef techniqueDef : techniqueDefs) {
+            if (techniqueDef.getLightMode() == LightMode.StaticPass) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int typeIndex(Light light) {
+        switch (light.getType()) {
+            case Directional:
+                return 0;
+            case Point:
+                return 1;
+            case Spot:
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return the index of the light in the counts of the directional,
+     * point, spot, probe and other lights
+     */
+    private static int countIndex(Light light) {
+        if (light.getType() == Light.Type.Probe) {
+            return 3;
+        }
+        int type = typeIndex(light);
+        return type >= 0 ? type : 4;
+    }
+
+    /**
+     * @param limits the maximum number of directional, point and spot
+     * lights to keep, or null to keep them all
+     * @param keepProbes whether to keep the light probes
+     */
+    private static LightList subset(LightList lights, int[] limits, boolean keepProbes) {
+        LightList result = new LightList(null);
+        int[] counts = new int[3];
+        for (Light light : lights) {
+            if (light.getType() == Light.Type.Probe && !keepProbes) {
+                continue;
+            }
+            int type = typeIndex(light);
+            if (type >= 0 && limits != null) {
+                if (counts[type] == limits[type]) {
+                    continue;
+                }
+                counts[type]++;
+            }
+            result.add(light);
+        }
+        return result;
+    }
+
+    private boolean compile(Variant variant) {
+        Material material = variant.geometry.getMaterial();
+        try {
+            return material.preload(variant.techniqueName, renderManager,
+                    variant.geometry.getWorldMatParamOverrides(), variant.lights);
+        } catch (UnsupportedOperationException ex) {
+            // no technique def is supported, rendering would fail the same way
+            logger.log(Level.FINE, "Cannot precompile " + variant.techniqueName + " of " + material, ex);
+            return false;
+        }
+    }
+
+    private static String getDefines(Shader shader) {
+        for (Shader.ShaderSource source : shader.getSources()) {
+            String defines = source.getDefines();
+            if (defines != null) {
+                return defines.replace("#define ", "").trim().replace('\n', ',');
+            }
+        }
+        return "";
+    }
+
+    private static final class Variant {
+
+        private final Geometry geometry;
+        private final String techniqueName;
+        private final LightList lights;
+
+        Variant(Geometry geometry, String techniqueName, LightList lights) {
+            this.geometry = geometry;
+            this.techniqueName = techniqueName;
+            this.lights = lights;
+        }
+    }
+}
@@ -55,6 +55,11 @@ public class Statistics {
     protected int numTextureBinds;
     protected int numFboSwitches;
     protected int numUniformsSet;
+    protected int numUniformsSkipped;
+    protected int numRenderStateChanges;
+    protected int numRenderStateSkipped;
+    protected int numOcclusionTested;
+    protected int numOcclusionCulled;
 
     protected int memoryShaders;
     protected int memoryFrameBuffers;
@@ -90,7 +95,14 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "Uniforms (Skipped)",
+                             "RenderStates (Applied)",
+                             "RenderStates (Skipped)",
+
+                             "Objects (Occlusion Tested)",
+                             "Objects (Occlusion Culled)" };
 
     }
 
@@ -118,6 +130,13 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = numUniformsSkipped;
+        data[14] = numRenderStateChanges;
+        data[15] = numRenderStateSkipped;
+
+        data[16] = numOcclusionTested;
+        data[17] = numOcclusionCulled;
     }
 
     /**
@@ -173,6 +192,47 @@ public class Statistics {
         numUniformsSet ++;
     }
 
+    /**
+     * Called by the Renderer when a uniform upload was skipped because
+     * the same value was already uploaded to the shader.
+     */
+    public void onUniformSkipped(){
+        if( !enabled )
+            return;
+        numUniformsSkipped ++;
+    }
+
+    /**
+     * Called by the Renderer when a render state was applied.
+     *
+     * @param changed The number of render state fields that required
+     * a call to the driver.
+     * @param skipped The number of render state fields that were already
+     * set to the requested value.
+     */
+    public void onRenderStateApplied(int changed, int skipped){
+        if( !enabled )
+            return;
+        numRenderStateChanges += changed;
+        numRenderStateSkipped += skipped;
+    }
+
+    /**
+     * Called by occlusion culling once the render queue has been tested.
+     *
+     * @param tested The number of geometries tested against the occluders.
+     * @param culled The number of geometries removed from the queue
+     * because they are hidden by the occluders.
+     *
+     * @see com.jme3.post.OcclusionCullingProcessor
+     */
+    public void onOcclusionCulled(int tested, int culled){
+        if( !enabled )
+            return;
+        numOcclusionTested += tested;
+        numOcclusionCulled += culled;
+    }
+
     /**
      * Called by the Renderer when a texture has been set.
      * 
@@ -228,6 +288,11 @@ public class Statistics {
         numTextureBinds = 0;
         numFboSwitches = 0;
         numUniformsSet = 0;
+        numUniformsSkipped = 0;
+        numRenderStateChanges = 0;
+        numRenderStateSkipped = 0;
+        numOcclusionTested = 0;
+        numOcclusionCulled = 0;
         
         lastShader = -1;
     }
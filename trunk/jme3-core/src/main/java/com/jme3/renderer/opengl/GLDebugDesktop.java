@@ -3,17 +3,28 @@ package com.jme3.renderer.opengl;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
-public class GLDebugDesktop extends GLDebugES implements GL2, GL3, GL4 {
+public class GLDebugDesktop extends GLDebugES implements GL2, GL3, GL4, GLProgramBinary {
 
     private final GL2 gl2;
     private final GL3 gl3;
     private final GL4 gl4;
+    private final GLProgramBinary glpb;
     
     public GLDebugDesktop(GL gl, GLExt glext, GLFbo glfbo) {
         super(gl, glext, glfbo);
         this.gl2 = gl instanceof GL2 ? (GL2) gl : null;
         this.gl3 = gl instanceof GL3 ? (GL3) gl : null;
         this.gl4 = gl instanceof GL4 ? (GL4) gl : null;
+        this.glpb = glext instanceof GLProgramBinary ? (GLProgramBinary) glext : null;
+    }
+
+    /**
+     * @return true if the wrapped extensions implement
+     * {@link GLProgramBinary}, otherwise its functions throw an
+     * UnsupportedOperationException.
+     */
+    public boolean isProgramBinarySupported() {
+        return glpb != null;
     }
     
     public void glAlphaFunc(int func, float ref) {
@@ -105,4 +116,29 @@ public class GLDebugDesktop extends GLDebugES implements GL2, GL3, GL4 {
         gl.glBlendEquationSeparate(colorMode, alphaMode);
         checkError();
     }
+
+    @Override
+    public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary) {
+        getProgramBinary().glGetProgramBinary(program, length, binaryFormat, binary);
+        checkError();
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary) {
+        getProgramBinary().glProgramBinary(program, binaryFormat, binary);
+        checkError();
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        getProgramBinary().glProgramParameteri(program, pname, value);
+        checkError();
+    }
+
+    private GLProgramBinary getProgramBinary() {
+        if (glpb == null) {
+            throw new UnsupportedOperationException("The wrapped extensions do not support program binaries");
+        }
+        return glpb;
+    }
 }
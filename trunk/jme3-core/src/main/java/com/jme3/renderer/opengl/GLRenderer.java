@@ -78,6 +78,13 @@ public final class GLRenderer implements Renderer {
     private static final boolean VALIDATE_SHADER = false;
     private static final Pattern GLVERSION_PATTERN = Pattern.compile(".*?(\\d+)\\.(\\d+).*");
 
+    /**
+     * Number of render state fields tracked by applyRenderState: wireframe,
+     * depth test, depth function, depth write, color write, polygon offset,
+     * face culling, blend mode, blend equation, stencil and line width.
+     */
+    private static final int RENDER_STATE_FIELDS = 11;
+
     private final ByteBuffer nameBuf = BufferUtils.createByteBuffer(250);
     private final StringBuilder stringBuf = new StringBuilder(250);
     private final IntBuffer intBuf1 = BufferUtils.createIntBuffer(1);
@@ -95,6 +102,8 @@ public final class GLRenderer implements Renderer {
     private int defaultAnisotropicFilter = 1;
     private boolean linearizeSrgbImages;
     private HashSet<String> extensions;
+    private UniformUploadCache uniformCache;
+    private ShaderBinaryCache binaryCache;
 
     private final GL gl;
     private final GL2 gl2;
@@ -102,6 +111,7 @@ public final class GLRenderer implements Renderer {
     private final GL4 gl4;
     private final GLExt glext;
     private final GLFbo glfbo;
+    private final GLProgramBinary glProgramBinary;
     private final TextureUtil texUtil;
 
     public GLRenderer(GL gl, GLExt glext, GLFbo glfbo) {
@@ -111,6 +121,12 @@ public final class GLRenderer implements Renderer {
         this.gl4 = gl instanceof GL4 ? (GL4)gl : null;
         this.glfbo = glfbo;
         this.glext = glext;
+        if (glext instanceof GLDebugDesktop) {
+            // the debug wrapper implements the interface even if the wrapped extensions do not
+            this.glProgramBinary = ((GLDebugDesktop) glext).isProgramBinarySupported() ? (GLProgramBinary) glext : null;
+        } else {
+            this.glProgramBinary = glext instanceof GLProgramBinary ? (GLProgramBinary) glext : null;
+        }
         this.texUtil = new TextureUtil(gl, gl2, glext);
     }
 
@@ -542,6 +558,9 @@ public final class GLRenderer implements Renderer {
 
     public void invalidateState() {
         context.reset();
+        if (uniformCache != null) {
+            uniformCache.clear();
+        }
         if (gl2 != null) {
             context.initialDrawBuf = getInteger(GL2.GL_DRAW_BUFFER);
             context.initialReadBuf = getInteger(GL2.GL_READ_BUFFER);
@@ -627,42 +646,52 @@ public final class GLRenderer implements Renderer {
     }
 
     public void applyRenderState(RenderState state) {
+        int changes = 0;
         if (gl2 != null) {
             if (state.isWireframe() && !context.wireframe) {
                 gl2.glPolygonMode(GL.GL_FRONT_AND_BACK, GL2.GL_LINE);
                 context.wireframe = true;
+                changes++;
             } else if (!state.isWireframe() && context.wireframe) {
                 gl2.glPolygonMode(GL.GL_FRONT_AND_BACK, GL2.GL_FILL);
                 context.wireframe = false;
+                changes++;
             }
         }
 
         if (state.isDepthTest() && !context.depthTestEnabled) {
             gl.glEnable(GL.GL_DEPTH_TEST);
             context.depthTestEnabled = true;
+            changes++;
         } else if (!state.isDepthTest() && context.depthTestEnabled) {
             gl.glDisable(GL.GL_DEPTH_TEST);
             context.depthTestEnabled = false;
+            changes++;
         }
         if (state.isDepthTest() && state.getDepthFunc() != context.depthFunc) {
             gl.glDepthFunc(convertTestFunction(state.getDepthFunc()));
             context.depthFunc = state.getDepthFunc();
+            changes++;
         }
         
         if (state.isDepthWrite() && !context.depthWriteEnabled) {
             gl.glDepthMask(true);
             context.depthWriteEnabled = true;
+            changes++;
         } else if (!state.isDepthWrite() && context.depthWriteEnabled) {
             gl.glDepthMask(false);
             context.depthWriteEnabled = false;
+            changes++;
         }
 
         if (state.isColorWrite() && !context.colorWriteEnabled) {
             gl.glColorMask(true, true, true, true);
             context.colorWriteEnabled = true;
+            changes++;
         } else if (!state.isColorWrite() && context.colorWriteEnabled) {
             gl.glColorMask(false, false, false, false);
             context.colorWriteEnabled = false;
+            changes++;
         }
 
         if (state.isPolyOffset()) {
@@ -673,6 +702,7 @@ public final class GLRenderer implements Renderer {
                 context.polyOffsetEnabled = true;
                 context.polyOffsetFactor = state.getPolyOffsetFactor();
                 context.polyOffsetUnits = state.getPolyOffsetUnits();
+                changes++;
             } else {
                 if (state.getPolyOffsetFactor() != context.polyOffsetFactor
                         || state.getPolyOffsetUnits() != context.polyOffsetUnits) {
@@ -680,6 +710,7 @@ public final class GLRenderer implements Renderer {
                             state.getPolyOffsetUnits());
                     context.polyOffsetFactor = state.getPolyOffsetFactor();
                     context.polyOffsetUnits = state.getPolyOffsetUnits();
+                    changes++;
                 }
             }
         } else {
@@ -688,6 +719,7 @@ public final class GLRenderer implements Renderer {
                 context.polyOffsetEnabled = false;
                 context.polyOffsetFactor = 0;
                 context.polyOffsetUnits = 0;
+                changes++;
             }
         }
 
@@ -716,6 +748,7 @@ public final class GLRenderer implements Renderer {
             }
 
             context.cullMode = state.getFaceCullMode();
+            changes++;
         }
 
         if (state.getBlendMode() != context.blendMode) {
@@ -776,10 +809,12 @@ public final class GLRenderer implements Renderer {
                     gl.glBlendEquationSeparate(colorMode, alphaMode);
                     context.blendEquation = state.getBlendEquation();
                     context.blendEquationAlpha = state.getBlendEquationAlpha();
+                    changes++;
                 }
             }
 
             context.blendMode = state.getBlendMode();
+            changes++;
         }
 
         if (context.stencilTest != state.isStencilTest()
@@ -800,6 +835,7 @@ public final class GLRenderer implements Renderer {
             context.backStencilDepthPassOperation = state.getBackStencilDepthPassOperation();
             context.frontStencilFunction = state.getFrontStencilFunction();
             context.backStencilFunction = state.getBackStencilFunction();
+            changes++;
 
             if (state.isStencilTest()) {
                 gl.glEnable(GL.GL_STENCIL_TEST);
@@ -824,7 +860,10 @@ public final class GLRenderer implements Renderer {
         if (context.lineWidth != state.getLineWidth()) {
             gl.glLineWidth(state.getLineWidth());
             context.lineWidth = state.getLineWidth();
+            changes++;
         }
+
+        statistics.onRenderStateApplied(changes, RENDER_STATE_FIELDS - changes);
     }
 
     private int convertBlendEquation(RenderState.BlendEquation blendEquation) {
@@ -1035,6 +1074,12 @@ public final class GLRenderer implements Renderer {
         if (uniform.getVarType() == null) {
             return; // value not set yet..
         }
+        if (uniformCache != null && !uniformCache.update(shaderId, loc, uniform)) {
+            // same value already uploaded to this location
+            uniform.clearUpdateNeeded();
+            statistics.onUniformSkipped();
+            return;
+        }
         statistics.onUniformSet();
 
         uniform.clearUpdateNeeded();
@@ -1262,48 +1307,71 @@ public final class GLRenderer implements Renderer {
             needRegister = true;
         }
 
-        // If using GLSL 1.5, we bind the outputs for the user
-        // For versions 3.3 and up, user should use layout qualifiers instead.
-        boolean bindFragDataRequired = false;
+        // A new program can be loaded from its stored binary, the sources
+        // are then never compiled
+        String binaryKey = null;
+        boolean linkOK = false;
+        if (needRegister && binaryCache != null) {
+            binaryKey = binaryCache.getKey(shader, linearizeSrgbImages ? "SRGB" : "");
+            linkOK = binaryCache.loadProgram(binaryKey, id, gl, glProgramBinary);
+        }
+        String infoLog = null;
 
-        for (ShaderSource source : shader.getSources()) {
-            if (source.isUpdateNeeded()) {
-                updateShaderSourceData(source);
+        if (!linkOK) {
+            // If using GLSL 1.5, we bind the outputs for the user
+            // For versions 3.3 and up, user should use layout qualifiers instead.
+            boolean bindFragDataRequired = false;
+
+            for (ShaderSource source : shader.getSources()) {
+                if (source.isUpdateNeeded()) {
+                    updateShaderSourceData(source);
+                }
+                if (source.getType() == ShaderType.Fragment
+                        && source.getLanguage().equals("GLSL150")) {
+                    bindFragDataRequired = true;
+                }
+                gl.glAttachShader(id, source.getId());
             }
-            if (source.getType() == ShaderType.Fragment
-                    && source.getLanguage().equals("GLSL150")) {
-                bindFragDataRequired = true;
+
+            if (bindFragDataRequired) {
+                // Check if GLSL version is 1.5 for shader
+                gl3.glBindFragDataLocation(id, 0, "outFragColor");
+                // For MRT
+                for (int i = 0; i < limits.get(Limits.FrameBufferMrtAttachments); i++) {
+                    gl3.glBindFragDataLocation(id, i, "outFragData[" + i + "]");
+                }
             }
-            gl.glAttachShader(id, source.getId());
-        }
 
-        if (bindFragDataRequired) {
-            // Check if GLSL version is 1.5 for shader
-            gl3.glBindFragDataLocation(id, 0, "outFragColor");
-            // For MRT
-            for (int i = 0; i < limits.get(Limits.FrameBufferMrtAttachments); i++) {
-                gl3.glBindFragDataLocation(id, i, "outFragData[" + i + "]");
+            if (binaryKey != null) {
+                glProgramBinary.glProgramParameteri(id, GLProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
             }
-        }
 
-        // Link shaders to program
-        gl.glLinkProgram(id);
+            // Link shaders to program
+            gl.glLinkProgram(id);
 
-        // Check link status
-        gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
-        boolean linkOK = intBuf1.get(0) == GL.GL_TRUE;
-        String infoLog = null;
+            // Check link status
+            gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
+            linkOK = intBuf1.get(0) == GL.GL_TRUE;
 
-        if (VALIDATE_SHADER || !linkOK) {
-            gl.glGetProgram(id, GL.GL_INFO_LOG_LENGTH, intBuf1);
-            int length = intBuf1.get(0);
-            if (length > 3) {
-                // get infos
-                infoLog = gl.glGetProgramInfoLog(id, length);
+            if (VALIDATE_SHADER || !linkOK) {
+                gl.glGetProgram(id, GL.GL_INFO_LOG_LENGTH, intBuf1);
+                int length = intBuf1.get(0);
+                if (length > 3) {
+                    // get infos
+                    infoLog = gl.glGetProgramInfoLog(id, length);
+                }
+            }
+
+            if (linkOK && binaryKey != null) {
+                binaryCache.saveProgram(binaryKey, id, gl, glProgramBinary);
             }
         }
 
         if (linkOK) {
+            if (uniformCache != null) {
+                // uniforms are reset when the program is linked
+                uniformCache.clear(id);
+            }
             if (infoLog != null) {
                 logger.log(Level.WARNING, "Shader linked successfully. Linker warnings: \n{0}", infoLog);
             } else {
@@ -1368,6 +1436,9 @@ public final class GLRenderer implements Renderer {
             }
         }
 
+        if (uniformCache != null) {
+            uniformCache.clear(shader.getId());
+        }
         gl.glDeleteProgram(shader.getId());
         statistics.onDeleteShader();
         shader.resetObject();
@@ -2390,6 +2461,12 @@ public final class GLRenderer implements Renderer {
             }
         }
 
+        if (!created && vb.hasUpdateRegion()) {
+            updateBufferRegion(target, vb);
+            vb.clearUpdateNeeded();
+            return;
+        }
+
         int usage = convertUsage(vb.getUsage());
         vb.getData().rewind();
 
@@ -2416,6 +2493,37 @@ public final class GLRenderer implements Renderer {
         vb.clearUpdateNeeded();
     }
 
+    private void updateBufferRegion(int target, VertexBuffer vb) {
+        Buffer data = vb.getData();
+        int components = vb.getNumComponents();
+        int start = vb.getUpdateRegionStart() * components;
+        int end = vb.getUpdateRegionEnd() * components;
+        long offset = (long) start * vb.getFormat().getComponentSize();
+
+        int limit = data.limit();
+        data.limit(end).position(start);
+        switch (vb.getFormat()) {
+            case Byte:
+            case UnsignedByte:
+                gl.glBufferSubData(target, offset, (ByteBuffer) data);
+                break;
+            case Short:
+            case UnsignedShort:
+                gl.glBufferSubData(target, offset, (ShortBuffer) data);
+                break;
+            case Int:
+            case UnsignedInt:
+                glext.glBufferSubData(target, offset, (IntBuffer) data);
+                break;
+            case Float:
+                gl.glBufferSubData(target, offset, (FloatBuffer) data);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown buffer format.");
+        }
+        data.limit(limit).rewind();
+    }
+
     public void deleteBuffer(VertexBuffer vb) {
         int bufId = vb.getId();
         if (bufId != -1) {
@@ -2846,6 +2954,63 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    /**
+     * Enables or disables uniform upload caching.
+     * <p>
+     * When enabled, the last value uploaded to each uniform location of
+     * each shader program is remembered, and uploading the same value again
+     * is skipped. The number of skipped uploads is reported by
+     * {@link Statistics} next to the number of uniforms set.
+     * <p>
+     * This is meant to measure and reduce driver overhead, it costs a copy
+     * of every uniform value on the CPU side. It is disabled by default.
+     *
+     * @param enabled true to skip redundant uniform uploads.
+     */
+    public void setUniformUploadCaching(boolean enabled) {
+        if (enabled && uniformCache == null) {
+            uniformCache = new UniformUploadCache();
+        } else if (!enabled) {
+            uniformCache = null;
+        }
+    }
+
+    /**
+     * @return true if redundant uniform uploads are skipped.
+     * @see #setUniformUploadCaching(boolean)
+     */
+    public boolean isUniformUploadCaching() {
+        return uniformCache != null;
+    }
+
+    /**
+     * Sets the cache storing the binaries of the linked shader programs on
+     * disk, so that they are not compiled and linked again on the next
+     * launches.
+     * <p>
+     * The renderer must be initialized, the cache is opened with the
+     * fingerprint of the driver, which preloads the binaries. It is only
+     * used if the driver supports program binaries.
+     *
+     * @param cache the cache, or null to compile every shader
+     * @see Caps#BinaryShader
+     */
+    public void setShaderBinaryCache(ShaderBinaryCache cache) {
+        if (cache != null && (glProgramBinary == null || !caps.contains(Caps.BinaryShader))) {
+            logger.log(Level.INFO, "Program binaries are not supported, shaders will not be cached");
+            cache = null;
+        }
+        binaryCache = cache;
+        if (cache != null) {
+            cache.open(gl.glGetString(GL.GL_VENDOR) + "|" + gl.glGetString(GL.GL_RENDERER)
+                    + "|" + gl.glGetString(GL.GL_VERSION));
+        }
+    }
+
+    public ShaderBinaryCache getShaderBinaryCache() {
+        return binaryCache;
+    }
+
     public void setLinearizeSrgbImages(boolean linearize) {
         if (caps.contains(Caps.Srgb)) {
             linearizeSrgbImages = linearize;
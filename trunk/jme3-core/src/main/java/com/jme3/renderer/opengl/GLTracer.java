@@ -118,6 +118,9 @@ public final class GLTracer implements InvocationHandler {
         noEnumArgs("glShaderSource", 0);
         noEnumArgs("glCompileShader", 0);
         noEnumArgs("glGetShader", 0);
+        noEnumArgs("glGetProgramBinary", 0);
+        noEnumArgs("glProgramBinary", 0, 1);
+        noEnumArgs("glProgramParameteri", 0, 2);
         noEnumArgs("glAttachShader", 0, 1);
         noEnumArgs("glLinkProgram", 0);
         noEnumArgs("glGetProgram", 0);
@@ -185,7 +188,8 @@ public final class GLTracer implements InvocationHandler {
      * @return A tracer that implements the given interface
      */
     public static Object createDesktopGlTracer(Object glInterface, Class<?> ... glInterfaceClasses) {
-        IntMap<String> constMap = generateConstantMap(GL2.class, GL3.class, GL4.class, GLFbo.class, GLExt.class);
+        IntMap<String> constMap = generateConstantMap(GL2.class, GL3.class, GL4.class, GLFbo.class, GLExt.class,
+                                                      GLProgramBinary.class);
         return Proxy.newProxyInstance(glInterface.getClass().getClassLoader(),
                                       glInterfaceClasses, 
                                       new GLTracer(glInterface, constMap));
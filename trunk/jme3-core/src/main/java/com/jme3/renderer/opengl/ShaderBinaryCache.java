@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.shader.Shader;
+import com.jme3.shader.Shader.ShaderSource;
+import com.jme3.util.BufferUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the binaries of linked shader programs on disk, so that they are
+ * loaded instead of being compiled and linked again on the next launches.
+ * <p>
+ * A program is identified by a key computed from the sources and defines of
+ * the shader, and from the renderer fingerprint, which changes with the
+ * driver. Each binary is stored in its own file in the cache directory,
+ * along with the fingerprint it was produced for. The binaries of the
+ * current fingerprint are preloaded when the cache is opened; the others
+ * cannot be used anymore and are deleted.
+ * <p>
+ * The GL functions are only called through the {@link GL} and
+ * {@link GLProgramBinary} interfaces given to
+ * {@link #loadProgram(java.lang.String, int, com.jme3.renderer.opengl.GL, com.jme3.renderer.opengl.GLProgramBinary) }
+ * and {@link #saveProgram(java.lang.String, int, com.jme3.renderer.opengl.GL, com.jme3.renderer.opengl.GLProgramBinary) }.
+ * The cache is not thread safe, it is meant to be used by the renderer
+ * thread only.
+ *
+ * @see GLRenderer#setShaderBinaryCache(com.jme3.renderer.opengl.ShaderBinaryCache)
+ */
+public class ShaderBinaryCache {
+
+    private static final Logger logger = Logger.getLogger(ShaderBinaryCache.class.getName());
+
+    private static final int SIGNATURE = 0x4A4D5342; // "JMSB"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".bin";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+    private final IntBuffer intBuf1 = BufferUtils.createIntBuffer(1);
+    private final IntBuffer formatBuf = BufferUtils.createIntBuffer(1);
+    private ByteBuffer binaryBuf;
+    private String fingerprint;
+    private int hits, misses;
+
+    private static final class Entry {
+
+        final int format;
+        final byte[] binary;
+
+        Entry(int format, byte[] binary) {
+            this.format = format;
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * Creates a cache storing its binaries in the given directory, which is
+     * created if needed.
+     *
+     * @param directory the cache directory
+     */
+    public ShaderBinaryCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the renderer fingerprint, or null if the cache is not opened
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Sets the renderer fingerprint and preloads the binaries stored for it.
+     * Binaries stored for another fingerprint are deleted.
+     *
+     * @param fingerprint identifies the renderer and driver version
+     */
+    public void open(String fingerprint) {
+        this.fingerprint = fingerprint;
+        entries.clear();
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(EXTENSION)) {
+                continue;
+            }
+            Entry entry = null;
+            try {
+                entry = read(file);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Cannot read shader binary " + file, ex);
+            }
+            if (entry != null) {
+                entries.put(name.substring(0, name.length() - EXTENSION.length()), entry);
+            } else if (!file.delete()) {
+                logger.log(Level.WARNING, "Cannot delete outdated shader binary {0}", file);
+            }
+        }
+        logger.log(Level.FINE, "Preloaded {0} shader binaries", entries.size());
+    }
+
+    /**
+     * @return the entry stored in the file, or null if it was stored for
+     * another fingerprint or in another format
+     */
+    private Entry read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != SIGNATURE || in.readInt() != VERSION
+                    || !in.readUTF().equals(fingerprint)) {
+                return null;
+            }
+            int format = in.readInt();
+            byte[] binary = new byte[in.readInt()];
+            in.readFully(binary);
+            return new Entry(format, binary);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(String key, Entry entry) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // written aside and renamed, so that a crash leaves no partial binary
+        File file = new File(directory, key + EXTENSION);
+        File temp = new File(directory, key + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(SIGNATURE);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(entry.format);
+            out.writeInt(entry.binary.length);
+            out.write(entry.binary);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * Computes the key of the program linked from the given shader.
+     *
+     * @param shader the shader
+     * @param options the renderer options that change the final shader
+     * sources, for example the defines it adds
+     * @return the key of the program
+     */
+    public String getKey(Shader shader, String options) {
+        if (fingerprint == null) {
+            throw new IllegalStateException("The cache is not opened");
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new UnsupportedOperationException(ex);
+        }
+        update(digest, fingerprint);
+        update(digest, options);
+        for (ShaderSource source : shader.getSources()) {
+            update(digest, source.getType().name());
+            update(digest, source.getLanguage());
+            update(digest, source.getDefines());
+            update(digest, source.getSource());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(UTF8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private ByteBuffer getBinaryBuffer(int size) {
+        if (binaryBuf == null || binaryBuf.capacity() < size) {
+            binaryBuf = BufferUtils.createByteBuffer(Math.max(size, 64 * 1024));
+        }
+        binaryBuf.clear().limit(size);
+        return binaryBuf;
+    }
+
+    /**
+     * Loads the stored binary of a program, which replaces compiling and
+     * linking it.
+     * <p>
+     * A binary that the driver does not accept anymore is removed from the
+     * cache, the program must then be linked from its sources.
+     *
+     * @param key the key of the program
+     * @param program the program to load the binary in
+     * @return true if the program is linked from the stored binary
+     */
+    public boolean loadProgram(String key, int program, GL gl, GLProgramBinary glpb) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+
+        ByteBuffer binary = getBinaryBuffer(entry.binary.length);
+        binary.put(entry.binary).flip();
+        glpb.glProgramBinary(program, entry.format, binary);
+
+        gl.glGetProgram(program, GL.GL_LINK_STATUS, intBuf1);
+        if (intBuf1.get(0) == GL.GL_TRUE) {
+            hits++;
+            return true;
+        }
+
+        logger.log(Level.FINE, "Shader binary {0} was rejected by the driver", key);
+        remove(key);
+        misses++;
+        return false;
+    }
+
+    /**
+     * Stores the binary of a program that was just linked.
+     *
+     * @param key the key of the program
+     * @param program the linked program
+     */
+    public void saveProgram(String key, int program, GL gl, GLProgramBinary glpb) {
+        gl.glGetProgram(program, GLProgramBinary.GL_PROGRAM_BINARY_LENGTH, intBuf1);
+        int length = intBuf1.get(0);
+        if (length <= 0) {
+            return;
+        }
+
+        ByteBuffer binary = getBinaryBuffer(length);
+        intBuf1.clear();
+        formatBuf.clear();
+        glpb.glGetProgramBinary(program, intBuf1, formatBuf, binary);
+        byte[] bytes = new byte[intBuf1.get(0)];
+        binary.get(bytes);
+
+        Entry entry = new Entry(formatBuf.get(0), bytes);
+        entries.put(key, entry);
+        try {
+            write(key, entry);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot store shader binary " + key, ex);
+        }
+    }
+
+    /**
+     * Removes the binary of a program from the cache.
+     *
+     * @param key the key of the program
+     */
+    public void remove(String key) {
+        entries.remove(key);
+        File file = new File(directory, key + EXTENSION);
+        if (file.exists() && !file.delete()) {
+            logger.log(Level.WARNING, "Cannot delete shader binary {0}", file);
+        }
+    }
+
+    /**
+     * Removes all the binaries from the cache.
+     */
+    public void clear() {
+        for (String key : entries.keySet().toArray(new String[entries.size()])) {
+            remove(key);
+        }
+    }
+
+    /**
+     * @return the number of binaries available for the current fingerprint
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of programs loaded from their binary
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return the number of programs that had to be linked from their sources
+     */
+    public int getMissCount() {
+        return misses;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.Uniform;
+import com.jme3.util.IntMap;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Internal utility class used by {@link GLRenderer} to remember the last
+ * value uploaded to each uniform location of each shader program, so that
+ * uploads of an identical value can be skipped.
+ * <p>
+ * Values are stored as raw int bits, prefixed with the uniform type.
+ * Entries of a program must be cleared whenever it is deleted or re-linked,
+ * since the driver resets its uniforms.
+ */
+final class UniformUploadCache {
+
+    private final IntMap<IntMap<int[]>> programs = new IntMap<IntMap<int[]>>();
+    private int[] scratch = new int[32];
+
+    /**
+     * Records the current value of the uniform.
+     *
+     * @param program The shader program ID
+     * @param location The uniform location in the program
+     * @param uniform The uniform to upload
+     * @return false if the same value was already recorded for this
+     * location, meaning the upload can be skipped.
+     */
+    boolean update(int program, int location, Uniform uniform) {
+        int length = snapshot(uniform);
+
+        IntMap<int[]> locations = programs.get(program);
+        if (locations == null) {
+            locations = new IntMap<int[]>();
+            programs.put(program, locations);
+        }
+
+        int[] last = locations.get(location);
+        if (last != null && last.length == length) {
+            boolean same = true;
+            for (int i = 0; i < length; i++) {
+                if (last[i] != scratch[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return false;
+            }
+        } else {
+            last = new int[length];
+            locations.put(location, last);
+        }
+        System.arraycopy(scratch, 0, last, 0, length);
+        return true;
+    }
+
+    /**
+     * Forgets the values recorded for the given program.
+     *
+     * @param program The shader program ID
+     */
+    void clear(int program) {
+        programs.remove(program);
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    void clear() {
+        programs.clear();
+    }
+
+    private int snapshot(Uniform uniform) {
+        scratch[0] = uniform.getVarType().ordinal();
+        int length = 1;
+        switch (uniform.getVarType()) {
+            case Float:
+                length = put(length, ((Float) uniform.getValue()).floatValue());
+                break;
+            case Vector2:
+                Vector2f v2 = (Vector2f) uniform.getValue();
+                length = put(length, v2.x);
+                length = put(length, v2.y);
+                break;
+            case Vector3:
+                Vector3f v3 = (Vector3f) uniform.getValue();
+                length = put(length, v3.x);
+                length = put(length, v3.y);
+                length = put(length, v3.z);
+                break;
+            case Vector4:
+                Object val = uniform.getValue();
+                if (val instanceof ColorRGBA) {
+                    ColorRGBA c = (ColorRGBA) val;
+                    length = put(length, c.r);
+                    length = put(length, c.g);
+                    length = put(length, c.b);
+                    length = put(length, c.a);
+                } else if (val instanceof Vector4f) {
+                    Vector4f c = (Vector4f) val;
+                    length = put(length, c.x);
+                    length = put(length, c.y);
+                    length = put(length, c.z);
+                    length = put(length, c.w);
+                } else {
+                    Quaternion c = (Quaternion) val;
+                    length = put(length, c.getX());
+                    length = put(length, c.getY());
+                    length = put(length, c.getZ());
+                    length = put(length, c.getW());
+                }
+                break;
+            case Boolean:
+                ensureCapacity(length + 1);
+                scratch[length++] = ((Boolean) uniform.getValue()).booleanValue() ? 1 : 0;
+                break;
+            case Int:
+                ensureCapacity(length + 1);
+                scratch[length++] = ((Integer) uniform.getValue()).intValue();
+                break;
+            case IntArray:
+                IntBuffer ib = (IntBuffer) uniform.getValue();
+                ensureCapacity(length + ib.remaining());
+                for (int i = ib.position(); i < ib.limit(); i++) {
+                    scratch[length++] = ib.get(i);
+                }
+                break;
+            case Matrix3:
+            case Matrix4:
+            case FloatArray:
+            case Vector2Array:
+            case Vector3Array:
+            case Vector4Array:
+            case Matrix4Array:
+                FloatBuffer fb = uniform.getMultiData();
+                ensureCapacity(length + fb.remaining());
+                for (int i = fb.position(); i < fb.limit(); i++) {
+                    scratch[length++] = Float.floatToRawIntBits(fb.get(i));
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported uniform type: " + uniform.getVarType());
+        }
+        return length;
+    }
+
+    private int put(int index, float value) {
+        ensureCapacity(index + 1);
+        scratch[index] = Float.floatToRawIntBits(value);
+        return index + 1;
+    }
+
+    private void ensureCapacity(int length) {
+        if (scratch.length < length) {
+            int[] temp = new int[Math.max(length, scratch.length * 2)];
+            System.arraycopy(scratch, 0, temp, 0, scratch.length);
+            scratch = temp;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.NoSuchElementException;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.util.ListSort;
+import com.jme3.util.RadixSort;
 
 /**
  * This class is a special purpose list of {@link Geometry} objects for render
@@ -50,10 +51,20 @@ public class GeometryList implements Iterable<Geometry>{
 
     private static final int DEFAULT_SIZE = 32;
 
+    /**
+     * Below this size, sorting with the comparator is cheaper than
+     * computing the keys for the radix sort.
+     */
+    private static final int RADIX_SORT_THRESHOLD = 64;
+
     private Geometry[] geometries;    
     private ListSort listSort;
     private int size;
     private GeometryComparator comparator;
+    private RadixSort radixSort;
+    private long[] sortKeys;
+    private int[] sortIndices;
+    private Geometry[] sortTemp;
 
     /**
      * Initializes the GeometryList to use the given {@link GeometryComparator}
@@ -135,6 +146,39 @@ public class GeometryList implements Iterable<Geometry>{
         geometries[size++] = g;
     }
 
+    /**
+     * Adds all the geometries of the given list to this list,
+     * preserving their order.
+     *
+     * @param list The list to copy the geometries from.
+     */
+    public void addAll(GeometryList list) {
+        int newSize = size + list.size;
+        if (newSize > geometries.length) {
+            Geometry[] temp = new Geometry[Math.max(newSize, geometries.length * 2)];
+            System.arraycopy(geometries, 0, temp, 0, size);
+            geometries = temp;
+        }
+        System.arraycopy(list.geometries, 0, geometries, size, list.size);
+        size = newSize;
+    }
+
+    /**
+     * Shrinks the list to the given size, removing the geometries
+     * at the end of the list.
+     *
+     * @param newSize The new size, no greater than the current size
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Cannot truncate a list of size " + size + " to " + newSize);
+        }
+        for (int i = newSize; i < size; i++){
+            geometries[i] = null;
+        }
+        size = newSize;
+    }
+
     /**
      * Resets list size to 0.
      */
@@ -148,9 +192,15 @@ public class GeometryList implements Iterable<Geometry>{
 
     /**
      * Sorts the elements in the list according to their Comparator.
+     * <p>
+     * If the comparator is a {@link KeyedGeometryComparator}, the key
+     * of each geometry is computed once and the keys are radix sorted.
+     * The resulting order is the same as with the comparator.
      */
     public void sort() {
-        if (size > 1) {
+        if (size >= RADIX_SORT_THRESHOLD && comparator instanceof KeyedGeometryComparator) {
+            radixSort((KeyedGeometryComparator) comparator);
+        } else if (size > 1) {
             // sort the spatial list using the comparator
             if(listSort.getLength() != size){
                 listSort.allocateStack(size);
@@ -159,6 +209,29 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    private void radixSort(KeyedGeometryComparator keyedComparator) {
+        if (radixSort == null) {
+            radixSort = new RadixSort();
+        }
+        if (sortKeys == null || sortKeys.length < size) {
+            sortKeys = new long[geometries.length];
+            sortIndices = new int[geometries.length];
+            sortTemp = new Geometry[geometries.length];
+        }
+
+        for (int i = 0; i < size; i++) {
+            sortKeys[i] = keyedComparator.getSortKey(geometries[i]);
+            sortIndices[i] = i;
+        }
+        radixSort.sort(sortKeys, sortIndices, size);
+
+        System.arraycopy(geometries, 0, sortTemp, 0, size);
+        for (int i = 0; i < size; i++) {
+            geometries[i] = sortTemp[sortIndices[i]];
+            sortTemp[sortIndices[i]] = null;
+        }
+    }
+
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
 
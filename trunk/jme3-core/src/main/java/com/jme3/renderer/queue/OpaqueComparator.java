@@ -35,8 +35,9 @@ import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.RadixSort;
 
-public class OpaqueComparator implements GeometryComparator {
+public class OpaqueComparator implements KeyedGeometryComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
@@ -92,4 +93,15 @@ public class OpaqueComparator implements GeometryComparator {
         }
     }
 
+    /**
+     * The material sort id in the upper 32 bits, the distance
+     * to the camera in the lower 32 bits.
+     */
+    @Override
+    public long getSortKey(Geometry geom) {
+        long sortId = geom.getMaterial().getSortId() ^ Integer.MIN_VALUE;
+        long distance = RadixSort.sortableBits(distanceToCam(geom)) & 0xFFFFFFFFL;
+        return (sortId << 32) | distance;
+    }
+
 }
@@ -225,6 +225,28 @@ public class RenderQueue {
         }
     }
 
+    /**
+     *  Returns the list of geometries queued in the specified bucket,
+     *  one of Gui, Opaque, Sky, Transparent, or Translucent.
+     *  The list is only valid until the bucket is rendered.
+     */
+    public GeometryList getList(Bucket bucket) {
+        switch (bucket) {
+            case Gui:
+                return guiList;
+            case Opaque:
+                return opaqueList;
+            case Sky:
+                return skyList;
+            case Transparent:
+                return transparentList;
+            case Translucent:
+                return translucentList;
+            default:
+                throw new UnsupportedOperationException("Unknown bucket type: " + bucket);
+        }
+    }
+
     /**
      * Adds a geometry to the given bucket.
      * The {@link RenderManager} automatically handles this task
@@ -319,6 +341,21 @@ public class RenderQueue {
         }
     }
 
+    /**
+     * Adds the content of every bucket of the given queue to the
+     * matching bucket of this queue.
+     * This is used to merge the queue shards filled by parallel culling.
+     *
+     * @param queue The queue to copy the geometries from
+     */
+    public void addAll(RenderQueue queue) {
+        opaqueList.addAll(queue.opaqueList);
+        guiList.addAll(queue.guiList);
+        transparentList.addAll(queue.transparentList);
+        translucentList.addAll(queue.translucentList);
+        skyList.addAll(queue.skyList);
+    }
+
     public void clear() {
         opaqueList.clear();
         guiList.clear();
@@ -35,11 +35,14 @@ import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.Collidable;
 import com.jme3.collision.CollisionResults;
 import com.jme3.material.Material;
@@ -62,6 +65,12 @@ import com.jme3.util.clone.JmeCloneable;
  * Sub geoms can be removed but it may be slower than the normal spatial removing
  * Sub geoms can be added after the batch() method has been called but won't be batched and will just be rendered as normal geometries.
  * To integrate them in the batch you have to call the batch() method again on the batchNode.
+ * <p>
+ * Each batched geometry owns a contiguous vertex range of its batch mesh. In incremental update mode
+ * (see {@link #setIncrementalUpdate(boolean)}) transform changes are collected during
+ * {@link #updateGeometricState()} and only the ranges of the geometries that moved are re-transformed and
+ * flagged for a partial upload. The number of vertices of a single batch can be limited with
+ * {@link #setMaxBatchVertices(int)}, geometries that do not fit are put in an additional batch of the same material.
  *
  * TODO normal or tangents or both looks a bit weird
  * TODO more automagic (batch when needed in the updateLogicalState)
@@ -87,6 +96,18 @@ public class BatchNode extends GeometryGroupNode {
     int maxVertCount = 0;
     boolean useTangents = false;
     boolean needsFullRebatch = true;
+    /**
+     * maximum number of vertices in a single batch, 0 means no limit
+     */
+    private int maxBatchVertices = 0;
+    /**
+     * when true, sub geometry transform changes are applied once at the end of updateGeometricState
+     */
+    private boolean incrementalUpdate = false;
+    /**
+     * the batched geometries whose transform changed since the last update, in incremental update mode
+     */
+    protected Set<Geometry> dirtyGeometries = new HashSet<Geometry>();
 
     /**
      * Construct a batchNode
@@ -101,7 +122,11 @@ public class BatchNode extends GeometryGroupNode {
 
     @Override
     public void onTransformChange(Geometry geom) {
-        updateSubBatch(geom);
+        if (incrementalUpdate) {
+            dirtyGeometries.add(geom);
+        } else {
+            updateSubBatch(geom);
+        }
     }
 
     @Override
@@ -162,6 +187,81 @@ public class BatchNode extends GeometryGroupNode {
         }
     }
 
+    @Override
+    public void updateGeometricState() {
+        super.updateGeometricState();
+        if (updateDirtyBatches()) {
+            // the batch bounds changed, refresh the world bounds of this branch
+            super.updateGeometricState();
+        }
+    }
+
+    /**
+     * Re-transforms the vertex ranges of the geometries that moved since the last call,
+     * flags those ranges for a partial upload and updates the bounds of the modified batches.
+     *
+     * @return true if at least one batch has been modified
+     */
+    protected boolean updateDirtyBatches() {
+        if (dirtyGeometries.isEmpty()) {
+            return false;
+        }
+        boolean modified = false;
+        for (Geometry geom : dirtyGeometries) {
+            Batch batch = batchesByGeom.get(geom);
+            if (batch != null) {
+                updateSubBatchRegion(batch, geom);
+                batch.needsBoundUpdate = true;
+                modified = true;
+            }
+        }
+        dirtyGeometries.clear();
+
+        if (modified) {
+            for (Batch batch : batches.getArray()) {
+                if (batch.needsBoundUpdate) {
+                    batch.updateBound();
+                }
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Transforms the vertex range owned by the given geometry and only flags that
+     * range of the batch buffers for upload.
+     */
+    private void updateSubBatchRegion(Batch batch, Geometry bg) {
+        Mesh mesh = batch.geometry.getMesh();
+        Mesh origMesh = bg.getMesh();
+        int start = bg.startIndex;
+        int count = bg.getVertexCount();
+
+        VertexBuffer pvb = mesh.getBuffer(VertexBuffer.Type.Position);
+        FloatBuffer posBuf = (FloatBuffer) pvb.getData();
+        VertexBuffer nvb = mesh.getBuffer(VertexBuffer.Type.Normal);
+        FloatBuffer normBuf = (FloatBuffer) nvb.getData();
+
+        FloatBuffer oposBuf = (FloatBuffer) origMesh.getBuffer(VertexBuffer.Type.Position).getData();
+        FloatBuffer onormBuf = (FloatBuffer) origMesh.getBuffer(VertexBuffer.Type.Normal).getData();
+        Matrix4f transformMat = getTransformMatrix(bg);
+
+        VertexBuffer tvb = mesh.getBuffer(VertexBuffer.Type.Tangent);
+        if (tvb != null) {
+            FloatBuffer tanBuf = (FloatBuffer) tvb.getData();
+            FloatBuffer otanBuf = (FloatBuffer) origMesh.getBuffer(VertexBuffer.Type.Tangent).getData();
+            doTransformsTangents(oposBuf, onormBuf, otanBuf, posBuf, normBuf, tanBuf, start, start + count, transformMat);
+            tanBuf.rewind();
+            tvb.updateRegion(start, count);
+        } else {
+            doTransforms(oposBuf, onormBuf, posBuf, normBuf, start, start + count, transformMat);
+        }
+        posBuf.rewind();
+        normBuf.rewind();
+        pvb.updateRegion(start, count);
+        nvb.updateRegion(start, count);
+    }
+
     /**
      * Batch this batchNode
      * every geometry of the sub scene graph of this node will be batched into a single mesh that will be rendered in one call
@@ -193,38 +293,53 @@ public class BatchNode extends GeometryGroupNode {
         }
 
         for (Map.Entry<Material, List<Geometry>> entry : matMap.entrySet()) {
-            Mesh m = new Mesh();
             Material material = entry.getKey();
             List<Geometry> list = entry.getValue();
             nbGeoms += list.size();
-            String batchName = name + "-batch" + batches.size();
-            Batch batch;
+            Batch batch = null;
             if (!needsFullRebatch) {
                 batch = findBatchByMaterial(material);
+            }
+            int start = 0;
+            while (start < list.size()) {
+                int end = findChunkEnd(list, start, batch == null ? 0 : batch.vertexCount);
+                if (end == start) {
+                    //nothing fits in the existing batch, start a new one
+                    batch = null;
+                    continue;
+                }
+                List<Geometry> chunk = new ArrayList<Geometry>(list.subList(start, end));
+                Mesh m = new Mesh();
+                String batchName;
                 if (batch != null) {
-                    list.add(0, batch.geometry);
+                    chunk.add(0, batch.geometry);
                     batchName = batch.geometry.getName();
                     batch.geometry.removeFromParent();
                 } else {
                     batch = new Batch();
+                    batchName = name + "-batch" + batches.size();
                 }
-            } else {
-                batch = new Batch();
-            }
-            mergeGeometries(m, list);
-            m.setDynamic();
+                mergeGeometries(m, chunk);
+                m.setDynamic();
 
-            batch.updateGeomList(list);
+                batch.updateGeomList(chunk);
 
-            batch.geometry = new Geometry(batchName);
-            batch.geometry.setMaterial(material);
-            this.attachChild(batch.geometry);
+                batch.geometry = new Geometry(batchName);
+                batch.geometry.setMaterial(material);
+                this.attachChild(batch.geometry);
 
 
-            batch.geometry.setMesh(m);
-            batch.geometry.getMesh().updateCounts();
-            batch.geometry.updateModelBound();
-            batches.add(batch);
+                batch.geometry.setMesh(m);
+                batch.geometry.getMesh().updateCounts();
+                batch.geometry.updateModelBound();
+                batch.vertexCount = m.getVertexCount();
+                batch.needsBoundUpdate = false;
+                if (!batches.contains(batch)) {
+                    batches.add(batch);
+                }
+                batch = null;
+                start = end;
+            }
         }
         if (batches.size() > 0) {
             needsFullRebatch = false;
@@ -312,13 +427,39 @@ public class BatchNode extends GeometryGroupNode {
 
     }
 
+    /**
+     * Returns the end (exclusive) of the run of geometries starting at <code>start</code>
+     * that fits in a batch already holding <code>vertexCount</code> vertices.
+     * An empty batch always takes at least one geometry, even if it exceeds the budget on its own.
+     */
+    private int findChunkEnd(List<Geometry> list, int start, int vertexCount) {
+        if (maxBatchVertices <= 0) {
+            return list.size();
+        }
+        int end = start;
+        while (end < list.size()) {
+            int count = list.get(end).getVertexCount();
+            if (vertexCount > 0 && vertexCount + count > maxBatchVertices) {
+                break;
+            }
+            vertexCount += count;
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the smallest batch using the given material, or null.
+     */
     private Batch findBatchByMaterial(Material m) {
+        Batch result = null;
         for (Batch batch : batches.getArray()) {
-            if (batch.geometry.getMaterial().contentEquals(m)) {
-                return batch;
+            if (batch.geometry.getMaterial().contentEquals(m)
+                    && (result == null || batch.vertexCount < result.vertexCount)) {
+                result = batch;
             }
         }
-        return null;
+        return result;
     }
 
     public final boolean isBatch(Spatial s) {
@@ -673,15 +814,55 @@ public class BatchNode extends GeometryGroupNode {
             for (Geometry geom : list) {
                 if (!isBatch(geom)) {
                     batchesByGeom.put(geom, this);
+                    geometries.add(geom);
+                }
+            }
+        }
+
+        /**
+         * Sets the bound of the batch mesh to the merged world bounds of its geometries,
+         * which avoids iterating over all the vertices of the batch.
+         */
+        void updateBound() {
+            BoundingVolume bound = null;
+            for (int i = 0; i < geometries.size(); i++) {
+                BoundingVolume worldBound = geometries.get(i).getWorldBound();
+                if (worldBound == null) {
+                    continue;
                 }
+                if (bound == null) {
+                    bound = worldBound.clone();
+                } else {
+                    bound.mergeLocal(worldBound);
+                }
+            }
+            if (bound == null) {
+                geometry.updateModelBound();
+            } else {
+                geometry.setModelBound(bound);
             }
+            needsBoundUpdate = false;
         }
+
         Geometry geometry;
+        /**
+         * the batched geometries, each one owns the vertex range [startIndex, startIndex + vertexCount) of the batch mesh
+         */
+        ArrayList<Geometry> geometries = new ArrayList<Geometry>();
+        int vertexCount;
+        boolean needsBoundUpdate;
 
         public final Geometry getGeometry() {
             return geometry;
         }
 
+        /**
+         * @return the number of vertices in this batch
+         */
+        public final int getVertexCount() {
+            return vertexCount;
+        }
+
         @Override
         public Batch jmeClone() {
             try {
@@ -694,6 +875,7 @@ public class BatchNode extends GeometryGroupNode {
         @Override
         public void cloneFields( Cloner cloner, Object original ) {
             this.geometry = cloner.clone(geometry);
+            this.geometries = cloner.clone(geometries);
         }
 
     }
@@ -702,6 +884,55 @@ public class BatchNode extends GeometryGroupNode {
         this.needsFullRebatch = needsFullRebatch;
     }
 
+    /**
+     * Sets the maximum number of vertices of a single batch.
+     * Geometries of the same material that do not fit are put in additional batches.
+     * A geometry bigger than the budget gets a batch of its own.
+     * Takes effect on the next call to {@link #batch()}.
+     *
+     * @param maxBatchVertices the vertex budget of a batch, 0 for no limit (the default)
+     */
+    public void setMaxBatchVertices(int maxBatchVertices) {
+        if (maxBatchVertices < 0) {
+            throw new IllegalArgumentException("maxBatchVertices cannot be negative");
+        }
+        this.maxBatchVertices = maxBatchVertices;
+    }
+
+    /**
+     * @return the maximum number of vertices of a single batch, 0 if there is no limit
+     * @see #setMaxBatchVertices(int)
+     */
+    public int getMaxBatchVertices() {
+        return maxBatchVertices;
+    }
+
+    /**
+     * Enables or disables incremental update mode.
+     * <p>
+     * By default the batch is updated as soon as a batched geometry's transform changes,
+     * the whole batch buffers are uploaded and the batch bound is recomputed from all its vertices.
+     * In incremental mode the changes are collected and applied once at the end of
+     * {@link #updateGeometricState()}: only the vertex ranges of the moved geometries are transformed and
+     * uploaded, and the batch bound is merged from the world bounds of the batched geometries.
+     *
+     * @param incrementalUpdate true to enable incremental updates
+     */
+    public void setIncrementalUpdate(boolean incrementalUpdate) {
+        if (!incrementalUpdate) {
+            updateDirtyBatches();
+        }
+        this.incrementalUpdate = incrementalUpdate;
+    }
+
+    /**
+     * @return true if incremental update mode is enabled
+     * @see #setIncrementalUpdate(boolean)
+     */
+    public boolean isIncrementalUpdate() {
+        return incrementalUpdate;
+    }
+
     @Override
     public Node clone(boolean cloneMaterials) {
         BatchNode clone = (BatchNode)super.clone(cloneMaterials);
@@ -717,6 +948,7 @@ public class BatchNode extends GeometryGroupNode {
             clone.needsFullRebatch = true;
             clone.batches = new SafeArrayList<Batch>(Batch.class);
             clone.batchesByGeom = new HashMap<Geometry, Batch>();
+            clone.dirtyGeometries = new HashSet<Geometry>();
             clone.batch();
         }
         return clone;
@@ -740,6 +972,12 @@ public class BatchNode extends GeometryGroupNode {
             newBatchesByGeom.put(cloner.clone(e.getKey()), cloner.clone(e.getValue()));
         }
         this.batchesByGeom = newBatchesByGeom;
+
+        HashSet<Geometry> newDirtyGeometries = new HashSet<Geometry>();
+        for (Geometry geom : dirtyGeometries) {
+            newDirtyGeometries.add(cloner.clone(geom));
+        }
+        this.dirtyGeometries = newDirtyGeometries;
     }
 
     @Override
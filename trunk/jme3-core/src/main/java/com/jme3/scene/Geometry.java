@@ -34,6 +34,7 @@ package com.jme3.scene;
 import com.jme3.asset.AssetNotFoundException;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.export.InputCapsule;
 import com.jme3.export.JmeExporter;
@@ -41,6 +42,7 @@ import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.material.Material;
 import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.util.clone.Cloner;
@@ -304,6 +306,11 @@ public class Geometry extends Spatial {
                 worldBound = mesh.getBound().transform(worldTransform, worldBound);
             }
         }
+
+        SceneIndex index = findSceneIndex();
+        if (index != null) {
+            index.markDirty(this);
+        }
     }
 
     @Override
@@ -464,6 +471,34 @@ public class Geometry extends Spatial {
         return 0;
     }
 
+    /**
+     * Finds the closest point where the ray hits this geometry's mesh.
+     * <p>
+     * Unlike {@link #collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) },
+     * only the closest hit is computed and hits beyond the ray limit are
+     * ignored. Reusing the same result object for every query avoids any
+     * allocation, which makes it suitable for large numbers of ray casts,
+     * such as line of sight checks.
+     *
+     * @param ray the ray to cast, in world space
+     * @param result filled with the closest collision, if any
+     * @return true if the ray hits this geometry
+     */
+    public boolean collideWithClosest(Ray ray, CollisionResult result) {
+        // Force bound to update
+        checkDoBoundUpdate();
+        // Update transform, and compute cached world matrix
+        computeWorldMatrix();
+
+        assert (refreshFlags & (RF_BOUND | RF_TRANSFORM)) == 0;
+
+        if (mesh != null && mesh.collideWithClosest(ray, cachedWorldMat, result)) {
+            result.setGeometry(this);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public void depthFirstTraversal(SceneGraphVisitor visitor, DFSMode mode) {
         visitor.visit(this);
@@ -34,12 +34,14 @@ package com.jme3.scene;
 import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.collision.bih.BIHTree;
 import com.jme3.export.*;
 import com.jme3.material.Material;
 import com.jme3.material.RenderState;
 import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
 import com.jme3.math.Triangle;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
@@ -56,6 +58,9 @@ import com.jme3.util.clone.JmeCloneable;
 import java.io.IOException;
 import java.nio.*;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * <code>Mesh</code> is used to store rendering data.
@@ -170,6 +175,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
     private BoundingVolume meshBound =  new BoundingBox();
 
     private CollisionData collisionTree = null;
+    private transient Future<BIHTree> pendingCollisionTree = null;
 
     private SafeArrayList<VertexBuffer> buffersList = new SafeArrayList<VertexBuffer>(VertexBuffer.class);
     private IntMap<VertexBuffer> buffers = new IntMap<VertexBuffer>();
@@ -239,6 +245,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
             // TODO: Collision tree cloning
             //clone.collisionTree = collisionTree != null ? collisionTree : null;
             clone.collisionTree = null; // it will get re-generated in any case
+            clone.pendingCollisionTree = null;
 
             clone.buffers = new IntMap<VertexBuffer>();
             clone.buffersList = new SafeArrayList<VertexBuffer>(VertexBuffer.class);
@@ -323,6 +330,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
 
         // Probably could clone this now but it will get regenerated anyway.
         this.collisionTree = null;
+        this.pendingCollisionTree = null;
 
         this.meshBound = cloner.clone(meshBound);
         this.buffersList = cloner.clone(buffersList);
@@ -961,19 +969,73 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
      * com.jme3.math.Matrix4f,
      * com.jme3.bounding.BoundingVolume,
      * com.jme3.collision.CollisionResults) }.
+     * <p>
+     * The collision tree is saved along with the mesh, generating it before
+     * exporting a model avoids building it when the model is picked.
      */
     public void createCollisionData(){
+        cancelPendingCollisionData();
         BIHTree tree = new BIHTree(this);
         tree.construct();
         collisionTree = tree;
     }
 
+    /**
+     * Starts generating the collision tree of the mesh on the
+     * {@link BIHTree#getBuildPool() BIH build pool}.
+     * The triangles are read from the mesh before this method returns,
+     * the first collision query waits for the tree to be done if needed.
+     * Does nothing if collision data exists or is already being generated.
+     *
+     * @see #createCollisionData()
+     */
+    public void createCollisionDataAsync(){
+        if (collisionTree != null || pendingCollisionTree != null) {
+            return;
+        }
+        final BIHTree tree = new BIHTree(this);
+        pendingCollisionTree = BIHTree.getBuildPool().submit(new Callable<BIHTree>() {
+            public BIHTree call() {
+                tree.construct();
+                return tree;
+            }
+        });
+    }
+
+    /**
+     * Waits for the collision tree being generated in the background, if any.
+     */
+    private void finishPendingCollisionData() {
+        Future<BIHTree> pending = pendingCollisionTree;
+        if (pending == null) {
+            return;
+        }
+        pendingCollisionTree = null;
+        try {
+            collisionTree = pending.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pending.cancel(false);
+            createCollisionData();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Failed to generate the collision data", ex.getCause());
+        }
+    }
+
+    private void cancelPendingCollisionData() {
+        if (pendingCollisionTree != null) {
+            pendingCollisionTree.cancel(false);
+            pendingCollisionTree = null;
+        }
+    }
+
     /**
      * Clears any previously generated collision data.  Use this if
      * the mesh has changed in some way that invalidates any previously
      * generated BIHTree.
      */
     public void clearCollisionData() {
+        cancelPendingCollisionData();
         collisionTree = null;
     }
 
@@ -992,12 +1054,42 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         }
 
         if (collisionTree == null){
-            createCollisionData();
+            if (pendingCollisionTree != null) {
+                finishPendingCollisionData();
+            } else {
+                createCollisionData();
+            }
         }
 
         return collisionTree.collideWith(other, worldMatrix, worldBound, results);
     }
 
+    /**
+     * Finds the closest triangle of the mesh hit by the ray without
+     * creating garbage, internal use only.
+     * User code should use {@link Geometry#collideWithClosest(com.jme3.math.Ray, com.jme3.collision.CollisionResult) }.
+     *
+     * @see BIHTree#collideWithClosest(com.jme3.math.Ray, com.jme3.math.Matrix4f, com.jme3.collision.CollisionResult)
+     */
+    public boolean collideWithClosest(Ray ray,
+                                      Matrix4f worldMatrix,
+                                      CollisionResult result){
+
+        if (getVertexCount() == 0) {
+            return false;
+        }
+
+        if (collisionTree == null){
+            if (pendingCollisionTree != null) {
+                finishPendingCollisionData();
+            } else {
+                createCollisionData();
+            }
+        }
+
+        return ((BIHTree) collisionTree).collideWithClosest(ray, worldMatrix, result);
+    }
+
     /**
      * Sets the {@link VertexBuffer} on the mesh.
      * This will update the vertex/triangle counts if needed.
@@ -1440,6 +1532,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         out.write(instanceCount, "instanceCount", -1);
         out.write(maxNumWeights, "max_num_weights", -1);
         out.write(mode, "mode", Mode.Triangles);
+        finishPendingCollisionData();
         out.write(collisionTree, "collisionTree", null);
         out.write(elementLengths, "elementLengths", null);
         out.write(modeStart, "modeStart", null);
@@ -1493,6 +1586,12 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
 
         //creating hw animation buffers empty so that they are put in the cache
         if(isAnimated()){
+            // skinned in software, the buffers loaded from a memory-mapped
+            // file are read-only
+            copyIfReadOnly(Type.Position);
+            copyIfReadOnly(Type.Normal);
+            copyIfReadOnly(Type.Tangent);
+
             VertexBuffer hwBoneIndex = new VertexBuffer(Type.HWBoneIndex);
             hwBoneIndex.setUsage(Usage.CpuOnly);
             setBuffer(hwBoneIndex);
@@ -1508,4 +1607,11 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         }
     }
 
+    private void copyIfReadOnly(Type type) {
+        VertexBuffer vb = getBuffer(type);
+        if (vb != null && vb.getData() != null && vb.getData().isReadOnly()) {
+            vb.updateData(BufferUtils.clone(vb.getData()));
+        }
+    }
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.CloneableAssetProcessor;
+import com.jme3.asset.ModelKey;
+
+/**
+ * <code>ModelProcessor</code> clones models like {@link CloneableAssetProcessor}
+ * and, when requested by the {@link ModelKey}, starts generating the
+ * collision data of the loaded meshes in the background.
+ *
+ * @see ModelKey#setCreateCollisionData(boolean)
+ */
+public class ModelProcessor extends CloneableAssetProcessor {
+
+    @Override
+    @SuppressWarnings("rawtypes") // declared raw by AssetProcessor
+    public Object postProcess(AssetKey key, Object obj) {
+        if (obj instanceof Spatial && key instanceof ModelKey
+                && ((ModelKey) key).isCreateCollisionData()) {
+            ((Spatial) obj).depthFirstTraversal(new SceneGraphVisitorAdapter() {
+                @Override
+                public void visit(Geometry geom) {
+                    Mesh mesh = geom.getMesh();
+                    if (mesh.getVertexCount() > 0 && isTriangleMode(mesh.getMode())) {
+                        mesh.createCollisionDataAsync();
+                    }
+                }
+            });
+        }
+        return obj;
+    }
+
+    private static boolean isTriangleMode(Mesh.Mode mode) {
+        return mode == Mesh.Mode.Triangles
+                || mode == Mesh.Mode.TriangleStrip
+                || mode == Mesh.Mode.TriangleFan;
+    }
+}
@@ -83,6 +83,14 @@ public class Node extends Spatial {
      */
     private boolean updateListValid = false;
 
+    /**
+     * True if the geometric state of the children is updated on several threads.
+     */
+    private transient boolean parallelUpdate = false;
+    private transient ParallelStateUpdater parallelUpdater = null;
+
+    private transient SceneIndex sceneIndex = null;
+
     /**
      * Serialization only. Do not use.
      */
@@ -267,8 +275,15 @@ public class Node extends Spatial {
             // a round-trip later on.
             // NOTE 9/19/09
             // Although it does save a round trip,
-            for (Spatial child : children.getArray()) {
-                child.updateGeometricState();
+            if (parallelUpdate && !isInGeometryGroup()) {
+                if (parallelUpdater == null) {
+                    parallelUpdater = new ParallelStateUpdater();
+                }
+                parallelUpdater.updateChildren(children.getArray());
+            } else {
+                for (Spatial child : children.getArray()) {
+                    child.updateGeometricState();
+                }
             }
         }
 
@@ -279,6 +294,106 @@ public class Node extends Spatial {
         assert refreshFlags == 0;
     }
 
+    /**
+     * Enables updating the geometric state of the children of this node
+     * on several threads.
+     * <p>
+     * The children that need a refresh are updated concurrently on a shared
+     * fork-join pool, each one along with its whole subtree, then the world
+     * bound of this node is merged from theirs as usual. This pays off when
+     * the node has many independent branches with moving spatials. Nested
+     * nodes can also enable it to split big branches further.
+     * <p>
+     * The subtrees must not share mutable state that is modified while
+     * their geometric state is updated. Geometries of a
+     * {@link GeometryGroupNode} are always updated together, so this setting
+     * is ignored on a group node and on the nodes below it.
+     * This setting is not saved nor cloned.
+     *
+     * @param parallelUpdate true to update the children in parallel
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        this.parallelUpdate = parallelUpdate;
+    }
+
+    /**
+     * @return true if the children of this node are updated in parallel
+     * @see #setParallelUpdate(boolean)
+     */
+    public boolean isParallelUpdate() {
+        return parallelUpdate;
+    }
+
+    /**
+     * Indexes the geometries below this node by their world bound.
+     * <p>
+     * The index is kept up to date as the geometries move and are attached
+     * or detached, and can be used to find the geometries in a frustum or a
+     * volume without traversing the scene graph. Only one node can use a
+     * given index. The geometries below a node with its own index are not
+     * in the index of its ancestors. This setting is not saved nor cloned.
+     *
+     * @param sceneIndex the index to fill, or null to stop indexing this node
+     * @throws IllegalStateException if the index is already used by another node
+     */
+    public void setSceneIndex(SceneIndex sceneIndex) {
+        if (this.sceneIndex == sceneIndex) {
+            return;
+        }
+        if (sceneIndex != null) {
+            sceneIndex.setNode(this);
+        }
+        if (this.sceneIndex != null) {
+            this.sceneIndex.setNode(null);
+        }
+        boolean wasIndexed = this.sceneIndex != null;
+        this.sceneIndex = sceneIndex;
+        setChildrenSceneIndex(sceneIndex != null ? sceneIndex : ancestorSceneIndex);
+        if (sceneIndex != null) {
+            sceneIndex.markDirty(this);
+        }
+        SceneIndex outerIndex = findSceneIndex();
+        if (outerIndex != null && wasIndexed != (sceneIndex != null)) {
+            // the subtree leaves or joins the index of an ancestor
+            outerIndex.markDirty(this);
+        }
+    }
+
+    @Override
+    void setAncestorSceneIndex(SceneIndex index) {
+        if (ancestorSceneIndex == index) {
+            // the subtree is already up to date
+            return;
+        }
+        super.setAncestorSceneIndex(index);
+        if (sceneIndex == null) {
+            setChildrenSceneIndex(index);
+        }
+    }
+
+    private void setChildrenSceneIndex(SceneIndex index) {
+        for (Spatial child : children.getArray()) {
+            child.setAncestorSceneIndex(index);
+        }
+    }
+
+    /**
+     * @return the index of the geometries below this node, or null
+     * @see #setSceneIndex(SceneIndex)
+     */
+    public SceneIndex getSceneIndex() {
+        return sceneIndex;
+    }
+
+    private boolean isInGeometryGroup() {
+        for (Spatial s = this; s != null; s = s.getParent()) {
+            if (s instanceof GeometryGroupNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * <code>getTriangleCount</code> returns the number of triangles contained
      * in all sub-branches of this node that contain geometry.
@@ -428,6 +543,11 @@ public class Node extends Spatial {
             child.setParent( null );
             logger.log(Level.FINE, "{0}: Child removed.", this.toString());
 
+            SceneIndex ownerIndex = sceneIndex != null ? sceneIndex : findSceneIndex();
+            if (ownerIndex != null) {
+                ownerIndex.markDirty(child);
+            }
+
             // since a child with a bound was detached;
             // our own bound will probably change.
             setBoundRefresh();
@@ -728,6 +848,10 @@ public class Node extends Spatial {
         // or not... after all, we might be cloning a root node in which case
         // cloning this list is fine.
         this.updateList = cloner.clone(updateList);
+
+        this.parallelUpdate = false;
+        this.parallelUpdater = null;
+        this.sceneIndex = null;
     }
     @Override
     public void write(JmeExporter e) throws IOException {
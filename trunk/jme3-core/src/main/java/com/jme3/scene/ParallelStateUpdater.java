@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the geometric state of the children of a node on a fork-join
+ * pool.
+ * <p>
+ * Only the children with refresh flags are updated. They are split into
+ * contiguous chunks, and each chunk updates the whole subtree of its
+ * children on one thread. The parent has already refreshed its own
+ * transform, light list and overrides, which the children only read, and
+ * merges their world bounds once all the chunks are done, so the refresh
+ * flag contract is the same as with a serial update.
+ *
+ * @see Node#setParallelUpdate(boolean)
+ */
+final class ParallelStateUpdater {
+
+    /**
+     * Number of chunks created per pool thread, so that uneven subtrees
+     * can still be balanced by work stealing.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ArrayList<UpdateTask> tasks = new ArrayList<UpdateTask>();
+    private Spatial[] dirty = new Spatial[16];
+
+    /**
+     * @return the pool shared by all the nodes updated in parallel
+     */
+    static ForkJoinPool getPool() {
+        return PoolHolder.POOL;
+    }
+
+    private static final class PoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * Updates the geometric state of the given children.
+     *
+     * @param children the children of the node being updated
+     */
+    void updateChildren(Spatial[] children) {
+        int count = 0;
+        for (Spatial child : children) {
+            if (child.refreshFlags != 0) {
+                if (count == dirty.length) {
+                    dirty = Arrays.copyOf(dirty, count * 2);
+                }
+                dirty[count++] = child;
+            }
+        }
+
+        try {
+            if (count < 2) {
+                for (int i = 0; i < count; i++) {
+                    dirty[i].updateGeometricState();
+                }
+                return;
+            }
+
+            ForkJoinPool pool = getPool();
+            int chunkCount = Math.min(count, pool.getParallelism() * CHUNKS_PER_THREAD);
+            while (tasks.size() < chunkCount) {
+                tasks.add(new UpdateTask());
+            }
+            for (int i = 0; i < chunkCount; i++) {
+                UpdateTask task = tasks.get(i);
+                task.reinitialize();
+                task.setup(dirty, i * count / chunkCount, (i + 1) * count / chunkCount);
+            }
+
+            List<UpdateTask> chunks = tasks.subList(0, chunkCount);
+            if (ForkJoinTask.inForkJoinPool()) {
+                // nested parallel node, already running on a pool
+                ForkJoinTask.invokeAll(chunks);
+            } else {
+                pool.invoke(new UpdateRoot(chunks));
+            }
+        } finally {
+            Arrays.fill(dirty, 0, count, null);
+        }
+    }
+
+    /**
+     * Forks all chunks and waits for them.
+     */
+    private static final class UpdateRoot extends RecursiveAction {
+
+        private final List<UpdateTask> chunks;
+
+        UpdateRoot(List<UpdateTask> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(chunks);
+        }
+    }
+
+    /**
+     * Updates a contiguous range of children.
+     * Instances are reused from frame to frame.
+     */
+    private static final class UpdateTask extends RecursiveAction {
+
+        private Spatial[] children;
+        private int start, end;
+
+        void setup(Spatial[] children, int start, int end) {
+            this.children = children;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                for (int i = start; i < end; i++) {
+                    children[i].updateGeometricState();
+                }
+            } finally {
+                children = null;
+            }
+        }
+    }
+}
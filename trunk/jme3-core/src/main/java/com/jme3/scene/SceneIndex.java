@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * A loose octree indexing the geometries below a node by their world
+ * bound, to answer frustum and volume queries without traversing the
+ * whole scene graph.
+ * <p>
+ * The index is attached to a node with {@link Node#setSceneIndex(SceneIndex)}.
+ * Every geometry below that node registers itself when its world bound is
+ * refreshed, and detached geometries are unregistered, so the index follows
+ * the scene without any extra call. The changes are recorded while the
+ * geometric state is updated and applied at the next query, only moving the
+ * geometries that actually changed.
+ * <p>
+ * Each cell of the octree is twice as large as its position in the tree,
+ * so a geometry is stored at the deepest level whose cells are larger than
+ * it, in the cell containing its center, and never needs to be split between
+ * cells. Geometries that do not fit in the root cell, or have an infinite
+ * bound, are always tested.
+ * <p>
+ * Queries only test the world bounds: the cull hints, the shadow modes and
+ * the other settings of the results must still be checked by the caller.
+ * All the methods of the index are synchronized.
+ *
+ * @see com.jme3.shadow.ShadowUtil
+ * @see com.jme3.light.DefaultLightFilter#setSceneIndex(SceneIndex)
+ */
+public class SceneIndex {
+
+    /**
+     * The number of levels used by {@link #SceneIndex(Vector3f, float) }.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    private final Cell root;
+    private final int maxDepth;
+    private final IdentityHashMap<Geometry, Entry> entries = new IdentityHashMap<Geometry, Entry>();
+    private final ArrayList<Entry> outside = new ArrayList<Entry>();
+    private final ArrayList<Entry> dirty = new ArrayList<Entry>();
+    private final BoundingBox tmpBox = new BoundingBox();
+    private Node node;
+
+    /**
+     * Creates an index covering the given cube, with the default number of
+     * levels.
+     *
+     * @param center the center of the indexed region, in world space
+     * @param halfSize half the size of the indexed region
+     */
+    public SceneIndex(Vector3f center, float halfSize) {
+        this(center, halfSize, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Creates an index covering the given cube.
+     * Geometries outside of this region are still indexed, but always
+     * tested by the queries.
+     *
+     * @param center the center of the indexed region, in world space
+     * @param halfSize half the size of the indexed region
+     * @param maxDepth the maximum number of levels below the root cell
+     */
+    public SceneIndex(Vector3f center, float halfSize, int maxDepth) {
+        if (!(halfSize > 0) || Float.isInfinite(halfSize)) {
+            throw new IllegalArgumentException("halfSize must be positive and finite");
+        }
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth cannot be negative");
+        }
+        this.root = new Cell(null, center.x, center.y, center.z, halfSize);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return the node this index is attached to, or null
+     */
+    public synchronized Node getNode() {
+        return node;
+    }
+
+    /**
+     * Called by {@link Node#setSceneIndex(SceneIndex)}.
+     */
+    synchronized void setNode(Node node) {
+        if (node != null && this.node != null && this.node != node) {
+            throw new IllegalStateException("The index is already attached to " + this.node);
+        }
+        this.node = node;
+        clear();
+    }
+
+    /**
+     * @return the number of geometries in the index, including the pending
+     * changes
+     */
+    public synchronized int size() {
+        flush();
+        return entries.size();
+    }
+
+    /**
+     * @param geometry the geometry to look for
+     * @return true if the geometry is in the index, including the pending
+     * changes
+     */
+    public synchronized boolean contains(Geometry geometry) {
+        flush();
+        return entries.containsKey(geometry);
+    }
+
+    /**
+     * Records that the world bound of a geometry has changed.
+     * Called when the world bound of a geometry below the indexed node is
+     * refreshed, and for all the geometries of a detached subtree.
+     */
+    synchronized void markDirty(Geometry geometry) {
+        Entry entry = entries.get(geometry);
+        if (entry == null) {
+            entry = new Entry(geometry);
+            entries.put(geometry, entry);
+        }
+        if (!entry.dirty) {
+            entry.dirty = true;
+            dirty.add(entry);
+        }
+    }
+
+    /**
+     * Records the changes of all the geometries below the given spatial.
+     */
+    void markDirty(Spatial spatial) {
+        if (spatial instanceof Geometry) {
+            markDirty((Geometry) spatial);
+        } else if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                markDirty(child);
+            }
+        }
+    }
+
+    /**
+     * Applies the pending changes. The queries already do it before
+     * searching the index.
+     */
+    public synchronized void flush() {
+        for (int i = 0; i < dirty.size(); i++) {
+            Entry entry = dirty.get(i);
+            entry.dirty = false;
+            remove(entry);
+
+            Geometry geometry = entry.geometry;
+            if (geometry.worldBound == null || !isIndexed(geometry)) {
+                entries.remove(geometry);
+            } else {
+                insert(entry, geometry.worldBound);
+            }
+        }
+        dirty.clear();
+    }
+
+    private boolean isIndexed(Spatial spatial) {
+        for (Node p = spatial.parent; p != null; p = p.parent) {
+            if (p.getSceneIndex() != null) {
+                return p == node;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the geometries from the index. The geometries are added
+     * back the next time their world bound is refreshed.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.cell = null;
+        }
+        entries.clear();
+        outside.clear();
+        dirty.clear();
+        root.clear();
+    }
+
+    private void insert(Entry entry, BoundingVolume bound) {
+        Vector3f center = bound.getCenter();
+        float size;
+        if (bound instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) bound;
+            size = Math.max(box.getXExtent(), Math.max(box.getYExtent(), box.getZExtent()));
+        } else if (bound instanceof BoundingSphere) {
+            size = ((BoundingSphere) bound).getRadius();
+        } else {
+            size = Float.POSITIVE_INFINITY;
+        }
+
+        Cell cell = root;
+        if (!(size <= cell.half) || !cell.containsCenter(center)) {
+            entry.cell = null;
+            entry.slot = outside.size();
+            outside.add(entry);
+            return;
+        }
+        for (int depth = 0; depth < maxDepth && size <= cell.half * 0.5f; depth++) {
+            cell = cell.getChild(center);
+        }
+        cell.add(entry);
+    }
+
+    private void remove(Entry entry) {
+        if (entry.cell != null) {
+            entry.cell.remove(entry);
+        } else if (entry.slot >= 0) {
+            Entry last = outside.remove(outside.size() - 1);
+            if (last != entry) {
+                last.slot = entry.slot;
+                outside.set(entry.slot, last);
+            }
+        }
+        entry.slot = -1;
+    }
+
+    /**
+     * Adds to the store the geometries whose world bound intersects the
+     * frustum of the camera.
+     * The plane state of the camera is restored after the query.
+     *
+     * @param cam the camera to test against
+     * @param store the list where the geometries are added
+     */
+    public synchronized void getGeometriesInFrustum(Camera cam, GeometryList store) {
+        flush();
+        int planeState = cam.getPlaneState();
+        try {
+            for (int i = 0; i < outside.size(); i++) {
+                Geometry geometry = outside.get(i).geometry;
+                cam.setPlaneState(0);
+                if (cam.contains(geometry.worldBound) != Camera.FrustumIntersect.Outside) {
+                    store.add(geometry);
+                }
+            }
+            queryFrustum(root, cam, store);
+        } finally {
+            cam.setPlaneState(planeState);
+        }
+    }
+
+    private void queryFrustum(Cell cell, Camera cam, GeometryList store) {
+        if (cell.total == 0) {
+            return;
+        }
+        cam.setPlaneState(0);
+        switch (cam.contains(cell.getLooseBound(tmpBox))) {
+            case Outside:
+                return;
+            case Inside:
+                cell.addAll(store);
+                return;
+        }
+        for (int i = 0; i < cell.items.size(); i++) {
+            Geometry geometry = cell.items.get(i).geometry;
+            cam.setPlaneState(0);
+            if (cam.contains(geometry.worldBound) != Camera.FrustumIntersect.Outside) {
+                store.add(geometry);
+            }
+        }
+        if (cell.children != null) {
+            for (Cell child : cell.children) {
+                if (child != null) {
+                    queryFrustum(child, cam, store);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds to the store the geometries whose world bound intersects the
+     * given volume.
+     *
+     * @param volume the volume to test against, in world space
+     * @param store the list where the geometries are added
+     */
+    public synchronized void getGeometriesIntersecting(BoundingVolume volume, GeometryList store) {
+        flush();
+        for (int i = 0; i < outside.size(); i++) {
+            Geometry geometry = outside.get(i).geometry;
+            if (volume.intersects(geometry.worldBound)) {
+                store.add(geometry);
+            }
+        }
+        queryVolume(root, volume, store);
+    }
+
+    private void queryVolume(Cell cell, BoundingVolume volume, GeometryList store) {
+        if (cell.total == 0 || !volume.intersects(cell.getLooseBound(tmpBox))) {
+            return;
+        }
+        for (int i = 0; i < cell.items.size(); i++) {
+            Geometry geometry = cell.items.get(i).geometry;
+            if (volume.intersects(geometry.worldBound)) {
+                store.add(geometry);
+            }
+        }
+        if (cell.children != null) {
+            for (Cell child : cell.children) {
+                if (child != null) {
+                    queryVolume(child, volume, store);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds to the store the geometries whose world bound intersects the
+     * given sphere.
+     *
+     * @param center the center of the sphere, in world space
+     * @param radius the radius of the sphere
+     * @param store the list where the geometries are added
+     */
+    public synchronized void getGeometriesInRadius(Vector3f center, float radius, GeometryList store) {
+        getGeometriesIntersecting(new BoundingSphere(radius, center), store);
+    }
+
+    /**
+     * The place of a geometry in the index.
+     */
+    private static final class Entry {
+
+        final Geometry geometry;
+        Cell cell;
+        int slot = -1;
+        boolean dirty;
+
+        Entry(Geometry geometry) {
+            this.geometry = geometry;
+        }
+    }
+
+    /**
+     * A cell of the octree. Its loose bound is twice its nominal size.
+     */
+    private static final class Cell {
+
+        final Cell parent;
+        final float x, y, z, half;
+        final ArrayList<Entry> items = new ArrayList<Entry>(0);
+        Cell[] children;
+        /**
+         * The number of geometries in this cell and below.
+         */
+        int total;
+
+        Cell(Cell parent, float x, float y, float z, float half) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.half = half;
+        }
+
+        boolean containsCenter(Vector3f p) {
+            return Math.abs(p.x - x) <= half
+                    && Math.abs(p.y - y) <= half
+                    && Math.abs(p.z - z) <= half;
+        }
+
+        BoundingBox getLooseBound(BoundingBox store) {
+            store.setCenter(x, y, z);
+            store.setXExtent(half * 2f);
+            store.setYExtent(half * 2f);
+            store.setZExtent(half * 2f);
+            return store;
+        }
+
+        Cell getChild(Vector3f p) {
+            int i = (p.x >= x ? 1 : 0) | (p.y >= y ? 2 : 0) | (p.z >= z ? 4 : 0);
+            if (children == null) {
+                children = new Cell[8];
+            }
+            Cell child = children[i];
+            if (child == null) {
+                float h = half * 0.5f;
+                child = new Cell(this,
+                        (i & 1) != 0 ? x + h : x - h,
+                        (i & 2) != 0 ? y + h : y - h,
+                        (i & 4) != 0 ? z + h : z - h,
+                        h);
+                children[i] = child;
+            }
+            return child;
+        }
+
+        void add(Entry entry) {
+            entry.cell = this;
+            entry.slot = items.size();
+            items.add(entry);
+            for (Cell c = this; c != null; c = c.parent) {
+                c.total++;
+            }
+        }
+
+        void remove(Entry entry) {
+            Entry last = items.remove(items.size() - 1);
+            if (last != entry) {
+                last.slot = entry.slot;
+                items.set(entry.slot, last);
+            }
+            entry.cell = null;
+            for (Cell c = this; c != null; c = c.parent) {
+                c.total--;
+            }
+        }
+
+        void addAll(GeometryList store) {
+            for (int i = 0; i < items.size(); i++) {
+                store.add(items.get(i).geometry);
+            }
+            if (children != null) {
+                for (Cell child : children) {
+                    if (child != null && child.total > 0) {
+                        child.addAll(store);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            items.clear();
+            children = null;
+            total = 0;
+        }
+    }
+}
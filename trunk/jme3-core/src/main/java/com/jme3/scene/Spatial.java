@@ -164,6 +164,12 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
      * Spatial's parent, or null if it has none.
      */
     protected transient Node parent;
+    /**
+     * The index of the closest ancestor that has a {@link SceneIndex},
+     * updated when this spatial or one of its ancestors is attached,
+     * detached or indexed.
+     */
+    transient SceneIndex ancestorSceneIndex;
     /**
      * Refresh flags. Indicate what data of the spatial need to be
      * updated to reflect the correct state.
@@ -964,6 +970,29 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
      */
     protected void setParent(Node parent) {
         this.parent = parent;
+        if (parent == null) {
+            setAncestorSceneIndex(null);
+        } else {
+            SceneIndex index = parent.getSceneIndex();
+            setAncestorSceneIndex(index != null ? index : parent.ancestorSceneIndex);
+        }
+    }
+
+    /**
+     * Sets the index of the closest ancestor that has a {@link SceneIndex}.
+     *
+     * @param index the index, or null
+     */
+    void setAncestorSceneIndex(SceneIndex index) {
+        ancestorSceneIndex = index;
+    }
+
+    /**
+     * @return the index of the closest ancestor that has a
+     * {@link SceneIndex}, or null
+     */
+    SceneIndex findSceneIndex() {
+        return ancestorSceneIndex;
     }
 
     /**
@@ -1409,6 +1438,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
             }
 
             clone.parent = null;
+            clone.ancestorSceneIndex = null;
             clone.setBoundRefresh();
             clone.setTransformRefresh();
             clone.setLightListRefresh();
@@ -1495,6 +1525,8 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         // Clone all of the fields that need fix-ups and/or potential
         // sharing.
         this.parent = cloner.clone(parent);
+        // cloned nodes are not indexed
+        this.ancestorSceneIndex = null;
         this.worldBound = cloner.clone(worldBound);
         this.worldLights = cloner.clone(worldLights);
         this.localLights = cloner.clone(localLights);
@@ -212,7 +212,16 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
          * Format should be {@link Format#Float} and number of components
          * should be 16.
          */
-        InstanceData
+        InstanceData,
+
+        /**
+         * Animation state of this instance, the clip index and the time
+         * offset of a baked animation.
+         *
+         * Format should be {@link Format#Float} and number of components
+         * should be 2.
+         */
+        InstanceAnimation
     }
 
     /**
@@ -334,6 +343,8 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
     protected boolean normalized = false;
     protected int instanceSpan = 0;
     protected transient boolean dataSizeChanged = false;
+    protected transient int updateRegionStart = 0;
+    protected transient int updateRegionEnd = 0;
 
     /**
      * Creates an empty, uninitialized buffer.
@@ -707,10 +718,76 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         return dataSizeChanged;
     }
 
+    /**
+     * Marks a range of elements as modified, so that only this range
+     * is sent to the GPU instead of the whole buffer.
+     * <p>
+     * The data buffer must not be replaced or resized; use
+     * {@link #updateData(java.nio.Buffer) } for that. Several calls before
+     * the next upload are merged into one range covering all of them. If a
+     * full update is already pending, this call has no effect.
+     * 
+     * @param startElement The first modified element
+     * @param numElements The number of modified elements
+     */
+    public void updateRegion(int startElement, int numElements){
+        if (startElement < 0 || numElements < 0 || startElement + numElements > getNumElements()) {
+            throw new IndexOutOfBoundsException("Region " + startElement + ", " + numElements
+                    + " is outside of the buffer (" + getNumElements() + " elements)");
+        }
+        if (numElements == 0) {
+            return;
+        }
+
+        if (!updateNeeded) {
+            updateRegionStart = startElement;
+            updateRegionEnd = startElement + numElements;
+            updateNeeded = true;
+        } else if (updateRegionEnd > 0) {
+            updateRegionStart = Math.min(updateRegionStart, startElement);
+            updateRegionEnd = Math.max(updateRegionEnd, startElement + numElements);
+        }
+    }
+
+    /**
+     * Returns true if only a region of the buffer has to be sent to the GPU.
+     * Internal use only.
+     * 
+     * @return true if a partial update is pending
+     * 
+     * @see #updateRegion(int, int) 
+     */
+    public boolean hasUpdateRegion() {
+        return updateNeeded && updateRegionEnd > 0 && !dataSizeChanged;
+    }
+
+    /**
+     * @return The first element of the pending update region.
+     */
+    public int getUpdateRegionStart() {
+        return updateRegionStart;
+    }
+
+    /**
+     * @return The element after the last one of the pending update region.
+     */
+    public int getUpdateRegionEnd() {
+        return updateRegionEnd;
+    }
+
+    @Override
+    public void setUpdateNeeded(){
+        super.setUpdateNeeded();
+        updateRegionStart = 0;
+        updateRegionEnd = 0;
+    }
+
     @Override
     public void clearUpdateNeeded(){
         super.clearUpdateNeeded();
         dataSizeChanged = false;
+        updateRegionStart = 0;
+        updateRegionEnd = 0;
     }
 
     /**
@@ -39,6 +39,8 @@ import com.jme3.export.Savable;
 import com.jme3.math.Matrix3f;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Quaternion;
+import com.jme3.math.Vector2f;
+import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.VertexBuffer;
@@ -52,17 +54,44 @@ import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 
 public class InstancedGeometry extends Geometry {
 
     private static final int INSTANCE_SIZE = 16;
+    private static final int ANIMATION_SIZE = 2;
+
+    /**
+     * User data of an instance holding its animation state, a
+     * {@link Vector2f} with the clip index and the time offset of a baked
+     * animation. Once an instance has it, the states of all the instances
+     * are written to a {@link Type#InstanceAnimation} buffer, in the same
+     * order as the transforms.
+     *
+     * @see com.jme3.animation.BakedAnimation#setInstanceState(com.jme3.scene.Geometry, int, float)
+     */
+    public static final String ANIMATION_STATE = "InstanceAnimationState";
 
     private VertexBuffer[] globalInstanceData;
     private VertexBuffer transformInstanceData;
+    private VertexBuffer animationInstanceData;
     private Geometry[] geometries = new Geometry[1];
 
     private int firstUnusedIndex = 0;
 
+    /**
+     * Instances whose transform must be written again to the buffer.
+     */
+    private BitSet dirtyInstances = new BitSet();
+
+    /**
+     * When culling instances, the instance index written in each slot
+     * of the transform buffer at the last update, or -1.
+     */
+    private int[] slotInstances = new int[1];
+    private int numVisibleInstances = 0;
+    private boolean instanceCulling = false;
+
     /**
      * Serialization only. Do not use.
      */
@@ -135,6 +164,46 @@ public class InstancedGeometry extends Geometry {
         return transformInstanceData;
     }
 
+    /**
+     * Returns the per-instance animation states, created when the first
+     * instance with an {@link #ANIMATION_STATE} is added or changed.
+     *
+     * @return the animation states, or null
+     */
+    public VertexBuffer getAnimationInstanceData() {
+        return animationInstanceData;
+    }
+
+    private void checkAnimationState(Geometry geom) {
+        if (animationInstanceData == null && geom.getUserData(ANIMATION_STATE) != null) {
+            animationInstanceData = new VertexBuffer(Type.InstanceAnimation);
+            animationInstanceData.setInstanced(true);
+            animationInstanceData.setupData(Usage.Stream,
+                    ANIMATION_SIZE,
+                    Format.Float,
+                    BufferUtils.createFloatBuffer(geometries.length * ANIMATION_SIZE));
+            // write the states of all the instances
+            Arrays.fill(slotInstances, -1);
+            dirtyInstances.set(0, firstUnusedIndex);
+        }
+    }
+
+    private void writeAnimationState(Geometry geom, int slot) {
+        if (animationInstanceData == null) {
+            return;
+        }
+        FloatBuffer fb = (FloatBuffer) animationInstanceData.getData();
+        Vector2f state = geom.getUserData(ANIMATION_STATE);
+        fb.limit(fb.capacity());
+        fb.position(slot * ANIMATION_SIZE);
+        if (state != null) {
+            fb.put(state.x).put(state.y);
+        } else {
+            fb.put(0).put(0);
+        }
+        fb.rewind();
+    }
+
     private void updateInstance(Matrix4f worldMatrix, float[] store,
                                 int offset, Matrix3f tempMat3,
                                 Quaternion tempQuat) {
@@ -191,10 +260,19 @@ public class InstancedGeometry extends Geometry {
             System.arraycopy(originalGeometries, 0, geometries, 0, originalGeometries.length);
         }
 
+        slotInstances = new int[maxNumInstances];
+        Arrays.fill(slotInstances, -1);
+
         // Resize instance data.
         if (transformInstanceData != null) {
             BufferUtils.destroyDirectBuffer(transformInstanceData.getData());
             transformInstanceData.updateData(BufferUtils.createFloatBuffer(geometries.length * INSTANCE_SIZE));
+            // the new buffer is empty, every instance must be written again
+            dirtyInstances.set(0, firstUnusedIndex);
+            if (animationInstanceData != null) {
+                BufferUtils.destroyDirectBuffer(animationInstanceData.getData());
+                animationInstanceData.updateData(BufferUtils.createFloatBuffer(geometries.length * ANIMATION_SIZE));
+            }
         } else if (transformInstanceData == null) {
             transformInstanceData = new VertexBuffer(Type.InstanceData);
             transformInstanceData.setInstanced(true);
@@ -213,10 +291,69 @@ public class InstancedGeometry extends Geometry {
         return firstUnusedIndex;
     }
 
+    /**
+     * Returns the number of instances in the transform buffer, which
+     * is the number of instances rendered.
+     * This is the {@link #getActualNumInstances() actual number of instances},
+     * unless {@link #setInstanceCulling(boolean) instance culling} is enabled.
+     *
+     * @return The number of instances to render.
+     */
+    public int getNumVisibleInstances() {
+        return instanceCulling ? numVisibleInstances : firstUnusedIndex;
+    }
+
+    /**
+     * Enables or disables instance culling.
+     * <p>
+     * When enabled, {@link #updateInstances(com.jme3.renderer.Camera) }
+     * tests the bound of each instance against the camera and only writes
+     * the visible instances, packed at the start of the transform buffer.
+     * Slots that still hold the same, unmoved instance as in the previous
+     * update are not uploaded again.
+     * <p>
+     * Note that instances are culled against the viewport camera only, so
+     * instances outside of it won't be rendered into shadow maps either.
+     *
+     * @param instanceCulling true to cull instances on the CPU.
+     */
+    public void setInstanceCulling(boolean instanceCulling) {
+        if (this.instanceCulling != instanceCulling) {
+            this.instanceCulling = instanceCulling;
+            // the buffer layout changes, rewrite everything
+            Arrays.fill(slotInstances, -1);
+            dirtyInstances.set(0, firstUnusedIndex);
+        }
+    }
+
+    /**
+     * @return true if instances are culled on the CPU.
+     * @see #setInstanceCulling(boolean)
+     */
+    public boolean isInstanceCulling() {
+        return instanceCulling;
+    }
+
+    /**
+     * Marks the transform of the given instance as changed, so that
+     * it is written to the buffer at the next update.
+     *
+     * @param geom An instance of this geometry.
+     */
+    public void setInstanceTransformChanged(Geometry geom) {
+        int idx = InstancedNode.getGeometryStartIndex2(geom);
+        if (idx >= 0) {
+            dirtyInstances.set(idx);
+            checkAnimationState(geom);
+        }
+    }
+
     private void swap(int idx1, int idx2) {
         Geometry g = geometries[idx1];
         geometries[idx1] = geometries[idx2];
         geometries[idx2] = g;
+        dirtyInstances.set(idx1);
+        dirtyInstances.set(idx2);
 
         if (geometries[idx1] != null) {
             InstancedNode.setGeometryStartIndex2(geometries[idx1], idx1);
@@ -247,46 +384,145 @@ public class InstancedGeometry extends Geometry {
         }
     }
 
+    /**
+     * Moves the last instances into the holes left by deleted instances,
+     * so that the live instances are packed at the start of the array.
+     */
+    private void compactInstances() {
+        for (int i = 0; i < firstUnusedIndex; i++) {
+            if (geometries[i] == null) {
+                if (geometries[firstUnusedIndex - 1] == null) {
+                    throw new AssertionError();
+                }
+
+                swap(i, firstUnusedIndex - 1);
+
+                while (geometries[firstUnusedIndex - 1] == null) {
+                    firstUnusedIndex--;
+                }
+            }
+        }
+        dirtyInstances.clear(firstUnusedIndex, Math.max(firstUnusedIndex, dirtyInstances.length()));
+    }
+
+    /**
+     * Writes the transforms of the instances that changed since the last
+     * update to the transform buffer, and flags the modified range for
+     * upload.
+     */
     public void updateInstances() {
+        if (instanceCulling) {
+            // nothing to cull against, render everything
+            updateInstances(null);
+            return;
+        }
+
+        compactInstances();
+
         FloatBuffer fb = (FloatBuffer) transformInstanceData.getData();
         fb.limit(fb.capacity());
-        fb.position(0);
+
+        int first = dirtyInstances.nextSetBit(0);
+        if (first < 0) {
+            return;
+        }
+        int last = first;
 
         TempVars vars = TempVars.get();
         {
             float[] temp = vars.matrixWrite;
 
-            for (int i = 0; i < firstUnusedIndex; i++) {
+            for (int i = first; i >= 0; i = dirtyInstances.nextSetBit(i + 1)) {
                 Geometry geom = geometries[i];
+                updateInstance(geom.getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+                fb.position(i * INSTANCE_SIZE);
+                fb.put(temp);
+                writeAnimationState(geom, i);
+                last = i;
+            }
+        }
+        vars.release();
 
-                if (geom == null) {
-                    geom = geometries[firstUnusedIndex - 1];
+        fb.rewind();
+        dirtyInstances.clear();
+        transformInstanceData.updateRegion(first, last - first + 1);
+        if (animationInstanceData != null) {
+            animationInstanceData.updateRegion(first, last - first + 1);
+        }
+    }
 
-                    if (geom == null) {
-                        throw new AssertionError();
-                    }
+    /**
+     * Culls the instances against the camera, then writes the visible ones
+     * to the start of the transform buffer.
+     * Only slots whose instance or transform changed since the last update
+     * are written and flagged for upload.
+     *
+     * @param cam The camera to cull against, or null to keep every instance.
+     *
+     * @see #setInstanceCulling(boolean)
+     */
+    public void updateInstances(Camera cam) {
+        if (!instanceCulling) {
+            updateInstances();
+            return;
+        }
 
-                    swap(i, firstUnusedIndex - 1);
+        compactInstances();
+
+        FloatBuffer fb = (FloatBuffer) transformInstanceData.getData();
+        fb.limit(fb.capacity());
+
+        int first = -1;
+        int last = -1;
+        int visible = 0;
+        int planeState = cam != null ? cam.getPlaneState() : 0;
+
+        TempVars vars = TempVars.get();
+        {
+            float[] temp = vars.matrixWrite;
 
-                    while (geometries[firstUnusedIndex -1] == null) {
-                        firstUnusedIndex--;
+            for (int i = 0; i < firstUnusedIndex; i++) {
+                Geometry geom = geometries[i];
+                if (cam != null) {
+                    cam.setPlaneState(0);
+                    if (cam.contains(geom.getWorldBound()) == Camera.FrustumIntersect.Outside) {
+                        continue;
                     }
                 }
 
-                Matrix4f worldMatrix = geom.getWorldMatrix();
-                updateInstance(worldMatrix, temp, 0, vars.tempMat3, vars.quat1);
-                fb.put(temp);
+                int slot = visible++;
+                if (slotInstances[slot] != i || dirtyInstances.get(i)) {
+                    updateInstance(geom.getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+                    fb.position(slot * INSTANCE_SIZE);
+                    fb.put(temp);
+                    writeAnimationState(geom, slot);
+                    slotInstances[slot] = i;
+                    // culled instances stay dirty until they are written
+                    dirtyInstances.clear(i);
+                    if (first < 0) {
+                        first = slot;
+                    }
+                    last = slot;
+                }
             }
         }
         vars.release();
 
-        fb.flip();
-
-        if (fb.limit() / INSTANCE_SIZE != firstUnusedIndex) {
-            throw new AssertionError();
+        if (cam != null) {
+            cam.setPlaneState(planeState);
         }
 
-        transformInstanceData.updateData(fb);
+        fb.rewind();
+        // the slots past the visible ones are not rendered, they will be
+        // written again when they are used
+        Arrays.fill(slotInstances, visible, slotInstances.length, -1);
+        numVisibleInstances = visible;
+        if (first >= 0) {
+            transformInstanceData.updateRegion(first, last - first + 1);
+            if (animationInstanceData != null) {
+                animationInstanceData.updateRegion(first, last - first + 1);
+            }
+        }
     }
 
     public void deleteInstance(Geometry geom) {
@@ -327,6 +563,8 @@ public class InstancedGeometry extends Geometry {
 
         geometries[freeIndex] = geometry;
         InstancedNode.setGeometryStartIndex2(geometry, freeIndex);
+        dirtyInstances.set(freeIndex);
+        checkAnimationState(geometry);
     }
 
     public Geometry[] getGeometries() {
@@ -338,6 +576,9 @@ public class InstancedGeometry extends Geometry {
         if (transformInstanceData != null) {
             allData.add(transformInstanceData);
         }
+        if (animationInstanceData != null) {
+            allData.add(animationInstanceData);
+        }
         if (globalInstanceData != null) {
             allData.addAll(Arrays.asList(globalInstanceData));
         }
@@ -353,7 +594,12 @@ public class InstancedGeometry extends Geometry {
 
         this.globalInstanceData = cloner.clone(globalInstanceData);
         this.transformInstanceData = cloner.clone(transformInstanceData);
+        this.animationInstanceData = cloner.clone(animationInstanceData);
         this.geometries = cloner.clone(geometries);
+        this.dirtyInstances = new BitSet();
+        this.dirtyInstances.set(0, firstUnusedIndex);
+        this.slotInstances = new int[geometries.length];
+        Arrays.fill(slotInstances, -1);
     }
 
     @Override
@@ -163,7 +163,7 @@ public class InstancedNode extends GeometryGroupNode {
         }
 
         public void render(RenderManager rm, ViewPort vp) {
-            node.renderFromControl();
+            node.renderFromControl(vp);
         }
 
         public void write(JmeExporter ex) throws IOException {
@@ -183,6 +183,8 @@ public class InstancedNode extends GeometryGroupNode {
     private HashMap<InstanceTypeKey, InstancedGeometry> instancesMap =
             new HashMap<InstanceTypeKey, InstancedGeometry>();
 
+    private boolean instanceCulling = false;
+
     public InstancedNode() {
         super();
         // NOTE: since we are deserializing,
@@ -195,12 +197,39 @@ public class InstancedNode extends GeometryGroupNode {
         addControl(control);
     }
 
-    private void renderFromControl() {
+    private void renderFromControl(ViewPort vp) {
+        for (InstancedGeometry ig : instancesMap.values()) {
+            ig.updateInstances(vp.getCamera());
+        }
+    }
+
+    /**
+     * Enables or disables CPU culling of the instances.
+     * <p>
+     * When enabled, the instances outside of the viewport camera are removed
+     * from the transform buffer before it is uploaded, so that only visible
+     * instances are drawn. Instances culled this way are not rendered into
+     * shadow maps either.
+     *
+     * @param instanceCulling true to cull instances on the CPU.
+     *
+     * @see InstancedGeometry#setInstanceCulling(boolean)
+     */
+    public void setInstanceCulling(boolean instanceCulling) {
+        this.instanceCulling = instanceCulling;
         for (InstancedGeometry ig : instancesMap.values()) {
-            ig.updateInstances();
+            ig.setInstanceCulling(instanceCulling);
         }
     }
 
+    /**
+     * @return true if instances are culled on the CPU.
+     * @see #setInstanceCulling(boolean)
+     */
+    public boolean isInstanceCulling() {
+        return instanceCulling;
+    }
+
     private InstancedGeometry lookUpByGeometry(Geometry geom) {
         lookUp.mesh = geom.getMesh();
         lookUp.material = geom.getMaterial();
@@ -217,6 +246,7 @@ public class InstancedNode extends GeometryGroupNode {
             ig.setMesh(lookUp.mesh);
             ig.setUserData(UserData.JME_PHYSICSIGNORE, true);
             ig.setCullHint(CullHint.Never);
+            ig.setInstanceCulling(instanceCulling);
             instancesMap.put(lookUp.clone(), ig);
             attachChild(ig);
         }
@@ -370,7 +400,10 @@ public class InstancedNode extends GeometryGroupNode {
 
     @Override
     public void onTransformChange(Geometry geom) {
-        // Handled automatically
+        InstancedGeometry ig = igByGeom.get(geom);
+        if (ig != null) {
+            ig.setInstanceTransformChanged(geom);
+        }
     }
 
     @Override
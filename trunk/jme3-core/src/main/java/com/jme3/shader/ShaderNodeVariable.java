@@ -52,6 +52,12 @@ public class ShaderNodeVariable implements Savable, Cloneable {
     private boolean shaderOutput = false;
     private String multiplicity;
 
+    /**
+     * Serialization only. Do not use.
+     */
+    public ShaderNodeVariable() {
+    }
+
     /**
      * creates a ShaderNodeVariable
      *
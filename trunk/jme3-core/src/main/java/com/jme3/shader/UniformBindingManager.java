@@ -52,7 +52,8 @@ public class UniformBindingManager {
 
     private Timer timer;
     private float near, far;
-    private Float time, tpf;
+    // zero until the first frame, for geometries rendered before it
+    private Float time = 0f, tpf = 0f;
     private int viewX, viewY, viewWidth, viewHeight;
     private Vector3f camUp = new Vector3f(),
             camLeft = new Vector3f(),
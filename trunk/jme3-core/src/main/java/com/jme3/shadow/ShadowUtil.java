@@ -44,6 +44,7 @@ import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
+import com.jme3.scene.SceneIndex;
 import com.jme3.scene.Spatial;
 import com.jme3.util.TempVars;
 import static java.lang.Math.max;
@@ -618,7 +619,9 @@ public class ShadowUtil {
 
     /**
      * Populates the outputGeometryList with the rootScene children geometries
-     * that are in the frustum of the given camera
+     * that are in the frustum of the given camera.
+     * If the rootScene has a {@link SceneIndex}, it is queried instead of
+     * traversing the scene.
      *
      * @param rootScene the rootNode of the scene to traverse
      * @param camera the camera to check geometries against
@@ -626,13 +629,52 @@ public class ShadowUtil {
      * camera frustum
      */    
     public static void getGeometriesInCamFrustum(Spatial rootScene, Camera camera, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
-        if (rootScene != null && rootScene instanceof Node) {
+        if (rootScene instanceof Node && ((Node) rootScene).getSceneIndex() != null) {
+            getGeometriesInCamFrustum(((Node) rootScene).getSceneIndex(), camera, mode, outputGeometryList);
+        } else if (rootScene != null && rootScene instanceof Node) {
             int planeState = camera.getPlaneState();
             addGeometriesInCamFrustumFromNode(camera, (Node)rootScene, mode, outputGeometryList);
             camera.setPlaneState(planeState);
         }
     }
     
+    /**
+     * Populates the outputGeometryList with the indexed geometries that are
+     * in the frustum of the given camera
+     *
+     * @param index the index of the scene
+     * @param camera the camera to check geometries against
+     * @param mode the desired ShadowMode
+     * @param outputGeometryList the list of all geometries that are in the
+     * camera frustum
+     */
+    public static void getGeometriesInCamFrustum(SceneIndex index, Camera camera, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
+        int start = outputGeometryList.size();
+        index.getGeometriesInFrustum(camera, outputGeometryList);
+
+        int count = start;
+        for (int i = start; i < outputGeometryList.size(); i++) {
+            Geometry g = outputGeometryList.get(i);
+            if (checkShadowMode(g.getShadowMode(), mode) && !g.isGrouped() && !isCulledAlways(g)) {
+                outputGeometryList.set(count++, g);
+            }
+        }
+        outputGeometryList.truncate(count);
+    }
+
+    /**
+     * Helper function checking whether a spatial or one of its ancestors is
+     * always culled, as the scene traversals stop on such spatials.
+     */
+    private static boolean isCulledAlways(Spatial spatial) {
+        for (Spatial s = spatial; s != null; s = s.getParent()) {
+            if (s.getLocalCullHint() == Spatial.CullHint.Always) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Helper function to distinguish between Occluders and Receivers
      * 
@@ -723,10 +765,73 @@ public class ShadowUtil {
      * @param outputGeometryList the output list of all geometries that are in the camera frustum
      */
     public static void getLitGeometriesInViewPort(Spatial rootScene, Camera vpCamera, Camera[] cameras, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
-        if (rootScene != null && rootScene instanceof Node) {
+        if (rootScene instanceof Node && ((Node) rootScene).getSceneIndex() != null) {
+            getLitGeometriesInViewPort(((Node) rootScene).getSceneIndex(), vpCamera, cameras, mode, outputGeometryList);
+        } else if (rootScene != null && rootScene instanceof Node) {
             addGeometriesInCamFrustumAndViewPortFromNode(vpCamera, cameras, (Node)rootScene, mode, outputGeometryList);
         }
     }
+
+    /**
+     * Populates the outputGeometryList with the indexed geometries that are
+     * both in the frustum of the given vpCamera and some camera inside cameras array.
+     *
+     * @param index the index of the scene
+     * @param vpCamera the viewPort camera
+     * @param cameras the camera array to check geometries against, representing the light viewspace
+     * @param mode the desired ShadowMode
+     * @param outputGeometryList the output list of all geometries that are in the camera frustum
+     */
+    public static void getLitGeometriesInViewPort(SceneIndex index, Camera vpCamera, Camera[] cameras, RenderQueue.ShadowMode mode, GeometryList outputGeometryList) {
+        int start = outputGeometryList.size();
+        index.getGeometriesInFrustum(vpCamera, outputGeometryList);
+
+        int count = start;
+        for (int i = start; i < outputGeometryList.size(); i++) {
+            Geometry g = outputGeometryList.get(i);
+            // CullHint.Never geometries are collected below, wherever they are
+            if (g.getCullHint() == Spatial.CullHint.Never || !isLitCaster(g, mode)) {
+                continue;
+            }
+            if (isInAnyCamera(g, cameras, cameras.length)) {
+                outputGeometryList.set(count++, g);
+            }
+        }
+        outputGeometryList.truncate(count);
+
+        // like checkCulling(vpCamera), keep CullHint.Never geometries outside of the viewPort
+        for (int j = 0; j < cameras.length; j++) {
+            int queried = outputGeometryList.size();
+            index.getGeometriesInFrustum(cameras[j], outputGeometryList);
+            for (int i = queried; i < outputGeometryList.size(); i++) {
+                Geometry g = outputGeometryList.get(i);
+                // a geometry seen by several cameras is added by the first one only
+                if (g.getCullHint() == Spatial.CullHint.Never && isLitCaster(g, mode)
+                        && !isInAnyCamera(g, cameras, j)) {
+                    outputGeometryList.set(count++, g);
+                }
+            }
+            outputGeometryList.truncate(count);
+        }
+    }
+
+    private static boolean isLitCaster(Geometry g, RenderQueue.ShadowMode mode) {
+        return checkShadowMode(g.getShadowMode(), mode) && !g.isGrouped() && !isCulledAlways(g);
+    }
+
+    private static boolean isInAnyCamera(Geometry g, Camera[] cameras, int cameraCount) {
+        for (int j = 0; j < cameraCount; j++) {
+            Camera camera = cameras[j];
+            int planeState = camera.getPlaneState();
+            camera.setPlaneState(0);
+            boolean inFrustum = camera.contains(g.getWorldBound()) != Camera.FrustumIntersect.Outside;
+            camera.setPlaneState(planeState);
+            if (inFrustum) {
+                return true;
+            }
+        }
+        return false;
+    }
     /**
      * Helper function to recursively collect the geometries for getLitGeometriesInViewPort function.
      * 
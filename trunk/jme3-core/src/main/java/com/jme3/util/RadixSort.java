@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+/**
+ * Stable least significant digit radix sort of 64 bit keys,
+ * carrying an int payload (usually the index of the sorted element).
+ * <p>
+ * Keys are compared as unsigned values, 8 bits per pass. Passes where every
+ * key has the same byte are skipped, so keys that only use their lower bits
+ * are sorted in fewer passes.
+ * <p>
+ * Like {@link ListSort}, a RadixSort should be kept with the list it sorts so
+ * that its temporary arrays are allocated once and reused.
+ *
+ * @see #sortableBits(float)
+ */
+public class RadixSort {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int PASSES = 64 / RADIX_BITS;
+
+    private final int[] counts = new int[RADIX];
+    private long[] tmpKeys = new long[0];
+    private int[] tmpValues = new int[0];
+
+    /**
+     * Converts a float to an int whose unsigned order is the order of the
+     * float values. -0.0 and 0.0 give the same result.
+     *
+     * @param value the float to convert, must not be NaN
+     * @return the sortable bits of the float
+     */
+    public static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value + 0.0f);
+        return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+    }
+
+    /**
+     * Sorts the first <code>size</code> keys in unsigned ascending order,
+     * moving the values along. Equal keys keep their relative order.
+     *
+     * @param keys the keys to sort
+     * @param values the values to reorder with the keys
+     * @param size the number of elements to sort
+     */
+    public void sort(long[] keys, int[] values, int size) {
+        if (size < 2) {
+            return;
+        }
+        if (tmpKeys.length < size) {
+            tmpKeys = new long[size];
+            tmpValues = new int[size];
+        }
+
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = tmpKeys;
+        int[] dstValues = tmpValues;
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            int shift = pass * RADIX_BITS;
+
+            for (int i = 0; i < RADIX; i++) {
+                counts[i] = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                counts[(int) (srcKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (counts[(int) (srcKeys[0] >>> shift) & (RADIX - 1)] == size) {
+                // every key has the same digit, nothing to do for this pass
+                continue;
+            }
+
+            int offset = 0;
+            for (int i = 0; i < RADIX; i++) {
+                int count = counts[i];
+                counts[i] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = srcKeys[i];
+                int dst = counts[(int) (key >>> shift) & (RADIX - 1)]++;
+                dstKeys[dst] = key;
+                dstValues[dst] = srcValues[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapValues = srcValues;
+            srcValues = dstValues;
+            dstValues = swapValues;
+        }
+
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, size);
+            System.arraycopy(srcValues, 0, values, 0, size);
+        }
+    }
+}
@@ -58,7 +58,11 @@ public class FileLocator implements AssetLocator {
         }
     }
 
-    private static class AssetInfoFile extends AssetInfo {
+    /**
+     * An asset located in a folder. Loaders can use the file directly,
+     * e.g. to map it into memory instead of reading it through a stream.
+     */
+    public static class AssetInfoFile extends AssetInfo {
 
         private File file;
 
@@ -67,6 +71,13 @@ public class FileLocator implements AssetLocator {
             this.file = file;
         }
 
+        /**
+         * @return the file of the asset
+         */
+        public File getFile() {
+            return file;
+        }
+
         @Override
         public InputStream openStream() {
             try{
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.plugins;
+
+import com.jme3.asset.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * <code>MappedZipLocator</code> is a {@link ZipLocator} for large archives
+ * shared by many loading threads.
+ * <p>
+ * The archive is memory-mapped and its central directory is read once
+ * into a hash index, so locating an asset never touches the file and
+ * loaders never contend on a shared <code>ZipFile</code>. The mapping and
+ * the index are shared by all the locators of the same archive, like the
+ * locators the asset manager creates for each loading thread, as long as
+ * the file is not modified. Stored entries
+ * are read directly from the mapping, and are also available as a
+ * read-only buffer through {@link ZipAssetInfo#getStoredData() }.
+ * Deflated entries are inflated with {@link Inflater}s pooled per thread.
+ * <p>
+ * Archives written by <code>jme3tools.pack.AssetPackWriter</code> store
+ * their entries uncompressed and aligned, so data like textures and
+ * j3o files can be used straight from the mapping.
+ * <p>
+ * ZIP64 archives and archives larger than 2GB are not supported.
+ */
+public class MappedZipLocator implements AssetLocator {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    /**
+     * Inflaters kept per thread, a thread can read several entries at once
+     * when a loader loads its dependencies.
+     */
+    private static final int MAX_POOLED_INFLATERS = 4;
+    private static final ThreadLocal<ArrayDeque<PooledInflater>> inflaters
+            = new ThreadLocal<ArrayDeque<PooledInflater>>() {
+        @Override
+        protected ArrayDeque<PooledInflater> initialValue() {
+            return new ArrayDeque<PooledInflater>();
+        }
+    };
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The archives opened by locators, by canonical path. They are released
+     * when no locator uses them anymore.
+     */
+    private static final HashMap<String, WeakReference<SharedArchive>> openArchives
+            = new HashMap<String, WeakReference<SharedArchive>>();
+
+    private SharedArchive shared;
+    private ByteBuffer archive;
+    private HashMap<String, Entry> entries;
+
+    /**
+     * The mapping of an archive and the index of its entries.
+     */
+    private static final class SharedArchive {
+
+        final ByteBuffer data;
+        final HashMap<String, Entry> entries;
+        final long lastModified;
+        final long length;
+
+        SharedArchive(ByteBuffer data, HashMap<String, Entry> entries, long lastModified, long length) {
+            this.data = data;
+            this.entries = entries;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private static final class Entry {
+
+        final String name;
+        final int method;
+        final int compressedSize;
+        final int size;
+        final int headerOffset;
+        volatile int dataOffset = -1;
+
+        Entry(String name, int method, int compressedSize, int size, int headerOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+    }
+
+    private static final class PooledInflater {
+
+        final Inflater inflater = new Inflater(true);
+        final byte[] input = new byte[8192];
+    }
+
+    /**
+     * An entry of the archive.
+     */
+    public final class ZipAssetInfo extends AssetInfo {
+
+        private final Entry entry;
+
+        ZipAssetInfo(AssetManager manager, AssetKey<?> key, Entry entry) {
+            super(manager, key);
+            this.entry = entry;
+        }
+
+        /**
+         * @return the uncompressed size of the entry
+         */
+        public int getSize() {
+            return entry.size;
+        }
+
+        /**
+         * Returns the content of an uncompressed entry without copying it.
+         *
+         * @return a read-only buffer over the mapped entry, or null if the
+         * entry is compressed
+         */
+        public ByteBuffer getStoredData() {
+            if (entry.method != STORED) {
+                return null;
+            }
+            return getData(entry).order(ByteOrder.BIG_ENDIAN);
+        }
+
+        /**
+         * @return the position of the entry data in the archive
+         */
+        int getDataOffset() {
+            return resolveDataOffset(entry);
+        }
+
+        @Override
+        public InputStream openStream() {
+            ByteBuffer data = getData(entry);
+            if (entry.method == STORED) {
+                return new BufferInputStream(data);
+            }
+            return new InflatingInputStream(data, entry.size);
+        }
+    }
+
+    public void setRootPath(String rootPath) {
+        try {
+            shared = openArchive(new File(rootPath));
+        } catch (IOException ex) {
+            throw new AssetLoadException("Failed to open zip file: " + rootPath, ex);
+        }
+        archive = shared.data;
+        entries = shared.entries;
+    }
+
+    /**
+     * Returns the shared mapping and index of an archive, opening it if no
+     * locator uses it or if the file changed since it was opened.
+     */
+    private static SharedArchive openArchive(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (openArchives) {
+            WeakReference<SharedArchive> ref = openArchives.get(path);
+            SharedArchive shared = ref != null ? ref.get() : null;
+            if (shared != null && shared.lastModified == lastModified && shared.length == length) {
+                return shared;
+            }
+
+            ByteBuffer data;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new AssetLoadException("Zip file is larger than 2GB: " + path);
+                }
+                data = channel.map(MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+            } finally {
+                // the mapping stays valid once the file is closed
+                raf.close();
+            }
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            shared = new SharedArchive(data, readCentralDirectory(data), lastModified, length);
+
+            for (Iterator<WeakReference<SharedArchive>> it = openArchives.values().iterator(); it.hasNext();) {
+                if (it.next().get() == null) {
+                    it.remove();
+                }
+            }
+            openArchives.put(path, new WeakReference<SharedArchive>(shared));
+            return shared;
+        }
+    }
+
+    private static HashMap<String, Entry> readCentralDirectory(ByteBuffer archive) throws IOException {
+        // the end record is followed by a comment of up to 64KB
+        int end = -1;
+        for (int i = archive.limit() - END_SIZE; i >= Math.max(0, archive.limit() - END_SIZE - 0xFFFF); i--) {
+            if (archive.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        int count = archive.getShort(end + 10) & 0xFFFF;
+        long directoryOffset = archive.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+
+        HashMap<String, Entry> index = new HashMap<String, Entry>(count * 2);
+        int pos = (int) directoryOffset;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > end || archive.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry " + i);
+            }
+            int method = archive.getShort(pos + 10) & 0xFFFF;
+            int compressedSize = archive.getInt(pos + 20);
+            int size = archive.getInt(pos + 24);
+            int nameLength = archive.getShort(pos + 28) & 0xFFFF;
+            int extraLength = archive.getShort(pos + 30) & 0xFFFF;
+            int commentLength = archive.getShort(pos + 32) & 0xFFFF;
+            int headerOffset = archive.getInt(pos + 42);
+
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameData = archive.duplicate();
+            nameData.position(pos + CENTRAL_HEADER_SIZE);
+            nameData.get(nameBytes);
+            String name = new String(nameBytes, UTF8);
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if (name.endsWith("/")) {
+                // directory
+                continue;
+            }
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method + " for " + name);
+            }
+            if (compressedSize < 0 || size < 0 || headerOffset < 0) {
+                throw new ZipException("ZIP64 entries are not supported: " + name);
+            }
+            index.put(name, new Entry(name, method, compressedSize, size, headerOffset));
+        }
+        return index;
+    }
+
+    /**
+     * The local header can have a different extra field than the central
+     * directory, so the start of the data is only known once it is read.
+     */
+    private int resolveDataOffset(Entry entry) {
+        int offset = entry.dataOffset;
+        if (offset < 0) {
+            int pos = entry.headerOffset;
+            if (pos + LOCAL_HEADER_SIZE > archive.limit()
+                    || archive.getInt(pos) != LOCAL_HEADER_SIGNATURE) {
+                throw new AssetLoadException("Invalid local header for zip entry: " + entry.name);
+            }
+            int nameLength = archive.getShort(pos + 26) & 0xFFFF;
+            int extraLength = archive.getShort(pos + 28) & 0xFFFF;
+            offset = pos + LOCAL_HEADER_SIZE + nameLength + extraLength;
+            if (offset + entry.compressedSize > archive.limit()) {
+                throw new AssetLoadException("Zip entry is truncated: " + entry.name);
+            }
+            entry.dataOffset = offset;
+        }
+        return offset;
+    }
+
+    private ByteBuffer getData(Entry entry) {
+        int offset = resolveDataOffset(entry);
+        ByteBuffer data = archive.duplicate();
+        data.limit(offset + entry.compressedSize);
+        data.position(offset);
+        return data.slice();
+    }
+
+    /**
+     * @return the mapping and index shared with the other locators of the
+     * archive
+     */
+    Object getSharedArchive() {
+        return shared;
+    }
+
+    /**
+     * @return the number of files in the archive
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    @SuppressWarnings("rawtypes") // declared raw by AssetLocator
+    public AssetInfo locate(AssetManager manager, AssetKey key) {
+        String name = key.getName();
+        if (name.startsWith("/")) name = name.substring(1);
+        Entry entry = entries.get(name);
+        if (entry == null)
+            return null;
+
+        return new ZipAssetInfo(manager, key, entry);
+    }
+
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer data;
+
+        BufferInputStream(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return data.hasRemaining() ? data.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, data.remaining());
+            data.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, data.remaining()));
+            data.position(data.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return data.remaining();
+        }
+    }
+
+    /**
+     * Inflates an entry from the mapping, with an inflater taken from the
+     * pool of the thread that opened it and given back on close.
+     */
+    private static final class InflatingInputStream extends InputStream {
+
+        private final ByteBuffer data;
+        private final int size;
+        private PooledInflater pooled;
+        private boolean dummyByteSent;
+        private final byte[] single = new byte[1];
+
+        InflatingInputStream(ByteBuffer data, int size) {
+            this.data = data;
+            this.size = size;
+            this.pooled = inflaters.get().poll();
+            if (pooled == null) {
+                pooled = new PooledInflater();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pooled == null) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            Inflater inflater = pooled.inflater;
+            try {
+                int n;
+                while ((n = inflater.inflate(b, off, len)) == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        fill(inflater);
+                    }
+                }
+                return n;
+            } catch (DataFormatException ex) {
+                throw new ZipException(ex.getMessage());
+            }
+        }
+
+        private void fill(Inflater inflater) throws IOException {
+            int length = Math.min(pooled.input.length, data.remaining());
+            if (length == 0) {
+                // raw inflaters may need one byte past the compressed data
+                if (dummyByteSent) {
+                    throw new ZipException("Unexpected end of zip entry");
+                }
+                dummyByteSent = true;
+                pooled.input[0] = 0;
+                length = 1;
+            } else {
+                data.get(pooled.input, 0, length);
+            }
+            inflater.setInput(pooled.input, 0, length);
+        }
+
+        @Override
+        public int available() {
+            if (pooled == null) {
+                return 0;
+            }
+            return (int) Math.max(0, size - pooled.inflater.getBytesWritten());
+        }
+
+        @Override
+        public void close() {
+            if (pooled == null) {
+                return;
+            }
+            ArrayDeque<PooledInflater> pool = inflaters.get();
+            if (pool.size() < MAX_POOLED_INFLATERS) {
+                pooled.inflater.reset();
+                pool.push(pooled);
+            } else {
+                pooled.inflater.end();
+            }
+            pooled = null;
+        }
+    }
+}
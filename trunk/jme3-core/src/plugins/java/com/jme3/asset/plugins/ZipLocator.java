@@ -47,6 +47,7 @@ import java.util.zip.ZipFile;
  * for example, <br>
  * <code>C:\My App\data.zip</code>
  * 
+ * @see MappedZipLocator for large archives shared by many loading threads
  * @author Kirill Vainer
  */
 public class ZipLocator implements AssetLocator {
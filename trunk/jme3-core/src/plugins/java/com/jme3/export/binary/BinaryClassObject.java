@@ -38,6 +38,12 @@ class BinaryClassObject {
     // When exporting, use nameFields field, importing use aliasFields.
     HashMap<String, BinaryClassField> nameFields;
     HashMap<Byte, BinaryClassField> aliasFields;
+
+    /**
+     * When importing, the number of slots needed to index the fields by
+     * unsigned alias.
+     */
+    int aliasCount;
     
     byte[] alias;
     String className;
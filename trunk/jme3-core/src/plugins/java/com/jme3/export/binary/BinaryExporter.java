@@ -38,7 +38,14 @@ import com.jme3.export.Savable;
 import com.jme3.export.SavableClassUtil;
 import com.jme3.math.FastMath;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.logging.Level;
@@ -161,10 +168,59 @@ public class BinaryExporter implements JmeExporter {
 
     public static boolean debug = false;
     public static boolean useFastBufs = true;
+
+    /**
+     * Objects up to this size are compared with the ones already written
+     * when streaming, larger ones are always written.
+     */
+    static final int MAX_SHARED_SIZE = 256;
+
+    private boolean streaming;
+
+    /**
+     * While streaming, the file the objects are written to as soon as they
+     * are complete, and the class and length of each of them.
+     * The location table maps the ids to the object indices until the
+     * file is assembled.
+     */
+    private OutputStream spillOut;
+    private ArrayList<BinaryClassObject> spillClasses = new ArrayList<BinaryClassObject>();
+    private int[] spillLengths = new int[64];
+    private HashMap<BinaryClassObject, HashMap<BinaryOutputCapsule, Integer>> sharedObjects
+            = new HashMap<BinaryClassObject, HashMap<BinaryOutputCapsule, Integer>>();
       
     public BinaryExporter() {
     }
 
+    /**
+     * Sets if the objects are streamed out while the scene is exported.
+     * <p>
+     * By default the data of every object is kept in memory until the whole
+     * scene has been written, since the class and location tables come
+     * first in the file. When streaming, each object is written to a
+     * temporary file as soon as it is complete and its data is released,
+     * then the tables are written and the temporary file is appended to
+     * them, so the memory used no longer grows with the size of the
+     * exported data. The temporary file is created next to the destination
+     * when saving to a file.
+     * <p>
+     * The output is the same format, but only objects up to 256 bytes are
+     * shared with identical objects written before, instead of all of them.
+     *
+     * @param streaming true to stream the objects out
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return true if the objects are streamed out
+     * @see #setStreaming(boolean)
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     public static BinaryExporter getInstance() {
         return new BinaryExporter();
     }
@@ -195,13 +251,11 @@ public class BinaryExporter implements JmeExporter {
     }
 
     public void save(Savable object, OutputStream os) throws IOException {
-        // reset some vars
-        aliasCount = 1;
-        idCount = 1;
-        classes.clear();
-        contentTable.clear();
-        locationTable.clear();
-        contentKeys.clear();
+        if (streaming) {
+            saveStreaming(object, os, null);
+            return;
+        }
+        reset();
         
         // write signature and version
         os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE));
@@ -210,12 +264,229 @@ public class BinaryExporter implements JmeExporter {
         int id = processBinarySavable(object);
 
         // write out tag table
+        int classNum = classes.keySet().size();
+        int aliasSize = getAliasSize();
+        int classTableSize = writeClassTable(os, aliasSize);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // write out data to a seperate stream
+        int location = 0;
+        // keep track of location for each piece
+        HashMap<String, ArrayList<BinaryIdContentPair>> alreadySaved = new HashMap<String, ArrayList<BinaryIdContentPair>>(
+                contentTable.size());
+        for (Savable savable : contentKeys) {
+            // look back at previous written data for matches
+            String savableName = savable.getClass().getName();
+            BinaryIdContentPair pair = contentTable.get(savable);
+            ArrayList<BinaryIdContentPair> bucket = alreadySaved
+                    .get(savableName + getChunk(pair));
+            int prevLoc = findPrevMatch(pair, bucket);
+            if (prevLoc != -1) {
+                locationTable.put(pair.getId(), prevLoc);
+                continue;
+            }
+
+            locationTable.put(pair.getId(), location);
+            if (bucket == null) {
+                bucket = new ArrayList<BinaryIdContentPair>();
+                alreadySaved.put(savableName + getChunk(pair), bucket);
+            }
+            bucket.add(pair);
+            byte[] aliasBytes = fixClassAlias(classes.get(savableName).alias, aliasSize);
+            out.write(aliasBytes);
+            location += aliasSize;
+            BinaryOutputCapsule cap = contentTable.get(savable).getContent();
+            out.write(ByteUtils.convertToBytes(cap.bytes.length));
+            location += 4; // length of bytes
+            out.write(cap.bytes);
+            location += cap.bytes.length;
+        }
+
+        int locationTableSize = writeLocationTable(os, id);
+
+        // append stream to the output stream
+        out.writeTo(os);
+
+
+        out = null;
+        os = null;
+
+        if (debug) {
+            logger.fine("Stats:");
+            logger.log(Level.FINE, "classes: {0}", classNum);
+            logger.log(Level.FINE, "class table: {0} bytes", classTableSize);
+            logger.log(Level.FINE, "objects: {0}", locationTable.size());
+            logger.log(Level.FINE, "location table: {0} bytes", locationTableSize);
+            logger.log(Level.FINE, "data: {0} bytes", location);
+        }
+    }
+
+    /**
+     * Writes the objects to a temporary file as they are completed, then
+     * writes the tables and appends the objects to them.
+     *
+     * @param spillDirectory where to create the temporary file, or null
+     * for the default temporary directory
+     */
+    private void saveStreaming(Savable object, OutputStream os, File spillDirectory) throws IOException {
+        reset();
+
+        File spillFile = File.createTempFile("export", ".j3o.tmp", spillDirectory);
+        try {
+            int id;
+            spillOut = new BufferedOutputStream(new FileOutputStream(spillFile), 64 * 1024);
+            try {
+                id = processBinarySavable(object);
+            } finally {
+                spillOut.close();
+                spillOut = null;
+            }
+
+            int classNum = classes.keySet().size();
+            int aliasSize = getAliasSize();
+
+            // the objects were written with the alias they had at the time,
+            // they are rewritten if more classes came after them
+            boolean resized = false;
+            int[] locations = new int[spillClasses.size()];
+            long location = 0;
+            for (int i = 0; i < locations.length; i++) {
+                if (location > Integer.MAX_VALUE) {
+                    throw new IOException("The object data exceeds 2GB");
+                }
+                locations[i] = (int) location;
+                resized |= spillClasses.get(i).alias.length != aliasSize;
+                location += aliasSize + 4 + spillLengths[i];
+            }
+            for (Integer key : locationTable.keySet()) {
+                locationTable.put(key, locations[locationTable.get(key)]);
+            }
+
+            BufferedOutputStream header = new BufferedOutputStream(os, 64 * 1024);
+            header.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE));
+            header.write(ByteUtils.convertToBytes(FormatVersion.VERSION));
+            int classTableSize = writeClassTable(header, aliasSize);
+            int locationTableSize = writeLocationTable(header, id);
+
+            FileInputStream spillIn = new FileInputStream(spillFile);
+            try {
+                if (resized) {
+                    copyResized(new BufferedInputStream(spillIn, 64 * 1024), header, aliasSize);
+                    header.flush();
+                } else {
+                    header.flush();
+                    WritableByteChannel target = os instanceof FileOutputStream
+                            ? ((FileOutputStream) os).getChannel()
+                            : Channels.newChannel(os);
+                    FileChannel source = spillIn.getChannel();
+                    long size = source.size();
+                    for (long position = 0; position < size;) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+            } finally {
+                spillIn.close();
+            }
+
+            if (debug) {
+                logger.fine("Stats:");
+                logger.log(Level.FINE, "classes: {0}", classNum);
+                logger.log(Level.FINE, "class table: {0} bytes", classTableSize);
+                logger.log(Level.FINE, "objects: {0}", locationTable.size());
+                logger.log(Level.FINE, "location table: {0} bytes", locationTableSize);
+                logger.log(Level.FINE, "data: {0} bytes", location);
+            }
+        } finally {
+            spillClasses.clear();
+            sharedObjects.clear();
+            if (!spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Copies the objects from the temporary file, widening their alias.
+     */
+    private void copyResized(InputStream in, OutputStream out, int aliasSize) throws IOException {
+        byte[] buffer = new byte[8192];
+        for (int i = 0; i < spillClasses.size(); i++) {
+            byte[] alias = spillClasses.get(i).alias;
+            ByteUtils.readData(buffer, alias.length, in);
+            out.write(fixClassAlias(alias, aliasSize));
+            for (int remaining = 4 + spillLengths[i]; remaining > 0;) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Temporary export file is truncated");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Writes an object to the temporary file once it is complete, unless it
+     * is small and identical to one written before.
+     */
+    private void spillObject(BinaryClassObject bco, BinaryIdContentPair pair) throws IOException {
+        BinaryOutputCapsule cap = pair.getContent();
+        HashMap<BinaryOutputCapsule, Integer> shared = null;
+        if (cap.bytes.length <= MAX_SHARED_SIZE) {
+            shared = sharedObjects.get(bco);
+            if (shared == null) {
+                shared = new HashMap<BinaryOutputCapsule, Integer>();
+                sharedObjects.put(bco, shared);
+            }
+            Integer prevIndex = shared.get(cap);
+            if (prevIndex != null) {
+                locationTable.put(pair.getId(), prevIndex);
+                pair.setContent(null);
+                return;
+            }
+        }
+
+        int index = spillClasses.size();
+        if (index == spillLengths.length) {
+            spillLengths = Arrays.copyOf(spillLengths, index * 2);
+        }
+        spillClasses.add(bco);
+        spillLengths[index] = cap.bytes.length;
+        spillOut.write(bco.alias);
+        spillOut.write(ByteUtils.convertToBytes(cap.bytes.length));
+        spillOut.write(cap.bytes);
+        locationTable.put(pair.getId(), index);
+
+        if (shared != null) {
+            shared.put(cap, index);
+        } else {
+            // only the id is needed from now on
+            pair.setContent(null);
+        }
+    }
+
+    private void reset() {
+        aliasCount = 1;
+        idCount = 1;
+        classes.clear();
+        contentTable.clear();
+        locationTable.clear();
+        contentKeys.clear();
+        spillClasses.clear();
+        sharedObjects.clear();
+    }
+
+    /**
+     * @return the width of the class aliases in the object data
+     */
+    private int getAliasSize() {
+        // make all aliases a fixed width
+        return ((int) FastMath.log(classes.size(), 256) + 1);
+    }
+
+    private int writeClassTable(OutputStream os, int aliasSize) throws IOException {
         int classTableSize = 0;
         int classNum = classes.keySet().size();
-        int aliasSize = ((int) FastMath.log(classNum, 256) + 1); // make all
-                                                                  // aliases a
-                                                                  // fixed width
-        
         os.write(ByteUtils.convertToBytes(classNum));
         for (String key : classes.keySet()) {
             BinaryClassObject bco = classes.get(key);
@@ -253,41 +524,10 @@ public class BinaryExporter implements JmeExporter {
                 classTableSize += 2 + 4 + fNameBytes.length;
             }
         }
+        return classTableSize;
+    }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        // write out data to a seperate stream
-        int location = 0;
-        // keep track of location for each piece
-        HashMap<String, ArrayList<BinaryIdContentPair>> alreadySaved = new HashMap<String, ArrayList<BinaryIdContentPair>>(
-                contentTable.size());
-        for (Savable savable : contentKeys) {
-            // look back at previous written data for matches
-            String savableName = savable.getClass().getName();
-            BinaryIdContentPair pair = contentTable.get(savable);
-            ArrayList<BinaryIdContentPair> bucket = alreadySaved
-                    .get(savableName + getChunk(pair));
-            int prevLoc = findPrevMatch(pair, bucket);
-            if (prevLoc != -1) {
-                locationTable.put(pair.getId(), prevLoc);
-                continue;
-            }
-
-            locationTable.put(pair.getId(), location);
-            if (bucket == null) {
-                bucket = new ArrayList<BinaryIdContentPair>();
-                alreadySaved.put(savableName + getChunk(pair), bucket);
-            }
-            bucket.add(pair);
-            byte[] aliasBytes = fixClassAlias(classes.get(savableName).alias, aliasSize);
-            out.write(aliasBytes);
-            location += aliasSize;
-            BinaryOutputCapsule cap = contentTable.get(savable).getContent();
-            out.write(ByteUtils.convertToBytes(cap.bytes.length));
-            location += 4; // length of bytes
-            out.write(cap.bytes);
-            location += cap.bytes.length;
-        }
-
+    private int writeLocationTable(OutputStream os, int id) throws IOException {
         // write out location table
         // tag/location
         int numLocations = locationTable.keySet().size();
@@ -304,22 +544,7 @@ public class BinaryExporter implements JmeExporter {
 
         // write out root id
         os.write(ByteUtils.convertToBytes(id));
-
-        // append stream to the output stream
-        out.writeTo(os);
-
-
-        out = null;
-        os = null;
-
-        if (debug) {
-            logger.fine("Stats:");
-            logger.log(Level.FINE, "classes: {0}", classNum);
-            logger.log(Level.FINE, "class table: {0} bytes", classTableSize);
-            logger.log(Level.FINE, "objects: {0}", numLocations);
-            logger.log(Level.FINE, "location table: {0} bytes", locationTableSize);
-            logger.log(Level.FINE, "data: {0} bytes", location);
-        }
+        return locationTableSize;
     }
 
     protected String getChunk(BinaryIdContentPair pair) {
@@ -349,17 +574,45 @@ public class BinaryExporter implements JmeExporter {
         return bytes;
     }
 
+    /**
+     * Saves the object to a file. The object is written to a temporary file
+     * which then replaces the given file, so an existing file is never
+     * truncated while objects loaded from it may still be reading it, as
+     * memory-mapped buffers do.
+     *
+     * @param object the object to save
+     * @param f the file to create or replace
+     * @throws IOException if the object cannot be written or the file
+     * cannot be replaced
+     */
     public void save(Savable object, File f) throws IOException {
-        File parentDirectory = f.getParentFile();
+        File parentDirectory = f.getAbsoluteFile().getParentFile();
         if (parentDirectory != null && !parentDirectory.exists()) {
             parentDirectory.mkdirs();
         }
 
-        FileOutputStream fos = new FileOutputStream(f);
+        File tempFile = File.createTempFile(f.getName(), ".tmp", parentDirectory);
         try {
-            save(object, fos);
+            FileOutputStream fos = new FileOutputStream(tempFile);
+            try {
+                if (streaming) {
+                    saveStreaming(object, fos, parentDirectory);
+                } else {
+                    save(object, fos);
+                }
+            } finally {
+                fos.close();
+            }
+            try {
+                Files.move(tempFile.toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } finally {
-            fos.close();
+            if (tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
         }
     }
 
@@ -400,6 +653,9 @@ public class BinaryExporter implements JmeExporter {
         }
         object.write(this);
         newPair.getContent().finish();
+        if (spillOut != null) {
+            spillObject(bco, newPair);
+        }
         return newPair.getId();
 
     }
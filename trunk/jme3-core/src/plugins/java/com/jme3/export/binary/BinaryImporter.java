@@ -33,11 +33,18 @@ package com.jme3.export.binary;
 
 import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.asset.plugins.MappedZipLocator;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.logging.Level;
@@ -68,9 +75,30 @@ public final class BinaryImporter implements JmeImporter {
 
     public static boolean debug = false;
 
-    private byte[] dataArray;
+    private ByteBuffer dataArray;
     private int aliasWidth;
     private int formatVersion;
+    private boolean lazyDecoding = true;
+    private Boolean memoryMapping = null;
+
+    private static volatile boolean defaultMemoryMapping = false;
+
+    /**
+     * The channel of the mapped file being loaded, while its large buffers
+     * can be read in place, otherwise null.
+     */
+    private FileChannel mappedChannel;
+
+    /**
+     * The position of the object data in the mapped file.
+     */
+    private long dataOffset;
+
+    /**
+     * Buffers smaller than this are copied even from a mapped file,
+     * mapping them would waste most of a page and a mapping per buffer.
+     */
+    static final int MIN_MAPPED_BUFFER_SIZE = 16 * 1024;
 
     private static final boolean fastRead = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
     
@@ -85,6 +113,81 @@ public final class BinaryImporter implements JmeImporter {
         return fastRead;
     }
 
+    /**
+     * Sets how the fields of each object are decoded.
+     * <p>
+     * With lazy decoding, which is the default, only the position of each
+     * field is recorded when an object is read, and the fields are decoded
+     * from the file data when the object asks for them. Primitive fields are
+     * never boxed and unused fields are never decoded. Otherwise all the
+     * fields are decoded before the object is read, as in older versions.
+     * 
+     * @param lazyDecoding true to decode the fields on demand
+     */
+    public void setLazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+    }
+
+    /**
+     * @return true if the fields are decoded on demand
+     * @see #setLazyDecoding(boolean) 
+     */
+    public boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
+    /**
+     * Sets if files are memory-mapped when they are loaded.
+     * <p>
+     * When enabled, {@link #load(java.io.File) } and assets found by the
+     * {@link FileLocator} are read directly from a read-only mapping of the
+     * file instead of being copied to the heap first. Vertex and index
+     * buffers of at least 16KB are then read in place when the platform
+     * byte order matches the file, so their data is paged in by the OS
+     * instead of being copied. These buffers are read-only: a buffer that
+     * must be modified has to be replaced by a copy, as meshes do for the
+     * buffers animated in software.
+     * <p>
+     * Mapped buffers keep the file open until they are garbage collected.
+     * Truncating the file while they are in use makes the JVM crash, so
+     * {@link BinaryExporter#save(com.jme3.export.Savable, java.io.File) }
+     * replaces files instead of overwriting them. Follows
+     * {@link #setDefaultMemoryMapping(boolean) } unless set.
+     *
+     * @param memoryMapping true to map the files
+     */
+    public void setMemoryMapping(boolean memoryMapping) {
+        this.memoryMapping = memoryMapping;
+    }
+
+    /**
+     * @return true if files are memory-mapped when they are loaded
+     * @see #setMemoryMapping(boolean)
+     */
+    public boolean isMemoryMapping() {
+        return memoryMapping != null ? memoryMapping : defaultMemoryMapping;
+    }
+
+    /**
+     * Sets if files are memory-mapped by the importers that were not
+     * configured with {@link #setMemoryMapping(boolean) }, in particular
+     * the ones the asset manager creates to load j3o assets.
+     * Disabled by default.
+     *
+     * @param memoryMapping true to map the files
+     */
+    public static void setDefaultMemoryMapping(boolean memoryMapping) {
+        defaultMemoryMapping = memoryMapping;
+    }
+
+    /**
+     * @return true if files are memory-mapped by default
+     * @see #setDefaultMemoryMapping(boolean)
+     */
+    public static boolean isDefaultMemoryMapping() {
+        return defaultMemoryMapping;
+    }
+
     public static BinaryImporter getInstance() {
         return new BinaryImporter();
     }
@@ -105,6 +208,15 @@ public final class BinaryImporter implements JmeImporter {
 
         InputStream is = null;
         try {
+            if (isMemoryMapping() && info instanceof FileLocator.AssetInfoFile) {
+                return loadMapped(((FileLocator.AssetInfoFile) info).getFile(), null);
+            }
+            if (info instanceof MappedZipLocator.ZipAssetInfo) {
+                ByteBuffer stored = ((MappedZipLocator.ZipAssetInfo) info).getStoredData();
+                if (stored != null) {
+                    return load(stored, null);
+                }
+            }
             is = info.openStream();
             Savable s = load(is);
             
@@ -130,9 +242,37 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     public Savable load(InputStream is, ReadListener listener, ByteArrayOutputStream baos) throws IOException {
-        contentTable.clear();
         BufferedInputStream bis = new BufferedInputStream(is);
-        
+        int id = readHeader(bis, listener);
+
+        if (baos == null) {
+                baos = new ByteArrayOutputStream(4096);
+        } else {
+                baos.reset();
+        }
+        int size = -1;
+        byte[] cache = new byte[4096];
+        while((size = bis.read(cache)) != -1) {
+            baos.write(cache, 0, size);
+            if (listener != null) listener.readBytes(size);
+        }
+        bis = null;
+
+        dataArray = ByteBuffer.wrap(baos.toByteArray());
+        baos = null;
+
+        return readRoot(id);
+    }
+
+    /**
+     * Reads the class table and the location table, leaving the stream at
+     * the start of the object data.
+     *
+     * @return the id of the root object
+     */
+    private int readHeader(InputStream bis, ReadListener listener) throws IOException {
+        contentTable.clear();
+
         int numClasses;
         
         // Try to read signature
@@ -199,6 +339,7 @@ public final class BinaryImporter implements JmeImporter {
                 BinaryClassField bcf = new BinaryClassField(fieldName, fieldAlias, fieldType);
                 bco.nameFields.put(fieldName, bcf);
                 bco.aliasFields.put(fieldAlias, bcf);
+                bco.aliasCount = Math.max(bco.aliasCount, (fieldAlias & 0xFF) + 1);
                 bytes += (6 + fieldNameLength);
             }
             classes.put(alias, bco);
@@ -222,32 +363,83 @@ public final class BinaryImporter implements JmeImporter {
         int id = ByteUtils.readInt(bis);
         bytes += 8;
         if (listener != null) listener.readBytes(bytes);
+        return id;
+    }
 
-        if (baos == null) {
-                baos = new ByteArrayOutputStream(bytes);
-        } else {
-                baos.reset();
+    private Savable readRoot(int id) {
+        try {
+            Savable rVal = readObject(id);
+            if (debug) {
+                logger.fine("Importer Stats: ");
+                logger.log(Level.FINE, "Tags: {0}", classes.size());
+                logger.log(Level.FINE, "Objects: {0}", locationTable.size());
+                logger.log(Level.FINE, "Data Size: {0}", dataArray.limit());
+            }
+            return rVal;
+        } finally {
+            dataArray = null;
         }
-        int size = -1;
-        byte[] cache = new byte[4096];
-        while((size = bis.read(cache)) != -1) {
-            baos.write(cache, 0, size);
-            if (listener != null) listener.readBytes(size);
+    }
+
+    /**
+     * Loads a file from a read-only mapping of it, the large buffers are
+     * read-only views of the mapping.
+     */
+    private Savable loadMapped(File f, ReadListener listener) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return load(Channels.newInputStream(channel), listener);
+            }
+            MappedByteBuffer mapping = channel.map(MapMode.READ_ONLY, 0, size);
+            if (fastRead) {
+                mappedChannel = channel;
+            }
+            return load(mapping, listener);
+        } finally {
+            mappedChannel = null;
+            raf.close();
         }
-        bis = null;
+    }
 
-        dataArray = baos.toByteArray();
-        baos = null;
+    /**
+     * Loads the object stored in the given buffer, reading it in place.
+     * The buffers of the object are copied.
+     *
+     * @param data the content of a j3o file, from its position to its limit
+     * @param listener notified of the progress, or null
+     * @return the root object
+     */
+    public Savable load(ByteBuffer data, ReadListener listener) throws IOException {
+        data = data.duplicate();
+        data.order(ByteOrder.BIG_ENDIAN);
+        int id = readHeader(new MappedInputStream(data), listener);
+
+        dataOffset = data.position();
+        dataArray = data.slice();
+        if (listener != null) listener.readBytes(dataArray.limit());
+        return readRoot(id);
+    }
 
-        Savable rVal = readObject(id);
-        if (debug) {
-            logger.fine("Importer Stats: ");
-            logger.log(Level.FINE, "Tags: {0}", numClasses);
-            logger.log(Level.FINE, "Objects: {0}", numLocs);
-            logger.log(Level.FINE, "Data Size: {0}", dataArray.length);
+    /**
+     * Maps the given range of the object data of the mapped file being
+     * loaded.
+     * <p>
+     * Each buffer gets its own mapping rather than a view of the mapping of
+     * the file: {@link com.jme3.util.BufferUtils#destroyDirectBuffer(java.nio.Buffer) }
+     * unmaps the mapping behind a view, which would invalidate every other
+     * buffer of the file.
+     *
+     * @return a read-only mapping of the range in native order, or null if
+     * it must be copied
+     */
+    ByteBuffer mapBuffer(ByteBuffer content, int offset, int length) throws IOException {
+        if (mappedChannel == null || content != dataArray || length < MIN_MAPPED_BUFFER_SIZE) {
+            return null;
         }
-        dataArray = null;
-        return rVal;
+        return mappedChannel.map(MapMode.READ_ONLY, dataOffset + offset, length).order(ByteOrder.nativeOrder());
     }
 
     public Savable load(URL f) throws IOException {
@@ -266,6 +458,9 @@ public final class BinaryImporter implements JmeImporter {
     }
 
     public Savable load(File f, ReadListener listener) throws IOException {
+        if (isMemoryMapping()) {
+            return loadMapped(f, listener);
+        }
         FileInputStream fis = new FileInputStream(f);
         try {
             return load(fis, listener);
@@ -298,7 +493,7 @@ public final class BinaryImporter implements JmeImporter {
     protected String readString(int length, int offset) throws IOException {
         byte[] data = new byte[length];
         for(int j = 0; j < length; j++) {
-            data[j] = dataArray[j+offset];
+            data[j] = dataArray.get(j+offset);
         }
 
         return new String(data);
@@ -323,7 +518,7 @@ public final class BinaryImporter implements JmeImporter {
                 return null;
             }
 
-            int dataLength = ByteUtils.convertIntFromBytes(dataArray, loc);
+            int dataLength = dataArray.getInt(loc);
             loc+=4;
 
             Savable out = null;
@@ -359,4 +554,31 @@ public final class BinaryImporter implements JmeImporter {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the header of a mapped file.
+     */
+    private static final class MappedInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
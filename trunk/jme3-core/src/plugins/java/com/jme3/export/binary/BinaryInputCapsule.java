@@ -43,6 +43,7 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
@@ -62,6 +63,18 @@ final class BinaryInputCapsule implements InputCapsule {
     protected Savable savable;
     protected HashMap<Byte, Object> fieldData;
 
+    /**
+     * With lazy decoding, the content of the savable and the start of each
+     * field in it, indexed by alias, or -1 if the field is missing.
+     */
+    protected ByteBuffer content;
+    protected int[] fieldOffsets;
+
+    /**
+     * Returned by readField for fields of an unknown type.
+     */
+    private static final Object UNKNOWN_FIELD = new Object();
+
     protected int index = 0;
 
     public BinaryInputCapsule(BinaryImporter importer, Savable savable, BinaryClassObject bco) {
@@ -70,193 +83,315 @@ final class BinaryInputCapsule implements InputCapsule {
         this.savable = savable;
     }
 
-    public void setContent(byte[] content, int start, int limit) {
+    public void setContent(ByteBuffer content, int start, int limit) {
+        if (importer.isLazyDecoding()) {
+            indexContent(content, start, limit);
+            return;
+        }
+
         fieldData = new HashMap<Byte, Object>();
         for (index = start; index < limit;) {
-            byte alias = content[index];
+            byte alias = content.get(index);
 
             index++;
 
             try {
                 byte type = cObj.aliasFields.get(alias).type;
-                Object value = null;
-
-                switch (type) {
-                    case BinaryClassField.BITSET: {
-                        value = readBitSet(content);
-                        break;
-                    }
-                    case BinaryClassField.BOOLEAN: {
-                        value = readBoolean(content);
-                        break;
-                    }
-                    case BinaryClassField.BOOLEAN_1D: {
-                        value = readBooleanArray(content);
-                        break;
-                    }
-                    case BinaryClassField.BOOLEAN_2D: {
-                        value = readBooleanArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTE: {
-                        value = readByte(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTE_1D: {
-                        value = readByteArray(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTE_2D: {
-                        value = readByteArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTEBUFFER: {
-                        value = readByteBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.DOUBLE: {
-                        value = readDouble(content);
-                        break;
-                    }
-                    case BinaryClassField.DOUBLE_1D: {
-                        value = readDoubleArray(content);
-                        break;
-                    }
-                    case BinaryClassField.DOUBLE_2D: {
-                        value = readDoubleArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOAT: {
-                        value = readFloat(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOAT_1D: {
-                        value = readFloatArray(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOAT_2D: {
-                        value = readFloatArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOATBUFFER: {
-                        value = readFloatBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOATBUFFER_ARRAYLIST: {
-                        value = readFloatBufferArrayList(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTEBUFFER_ARRAYLIST: {
-                        value = readByteBufferArrayList(content);
-                        break;
-                    }
-                    case BinaryClassField.INT: {
-                        value = readInt(content);
-                        break;
-                    }
-                    case BinaryClassField.INT_1D: {
-                        value = readIntArray(content);
-                        break;
-                    }
-                    case BinaryClassField.INT_2D: {
-                        value = readIntArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.INTBUFFER: {
-                        value = readIntBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.LONG: {
-                        value = readLong(content);
-                        break;
-                    }
-                    case BinaryClassField.LONG_1D: {
-                        value = readLongArray(content);
-                        break;
-                    }
-                    case BinaryClassField.LONG_2D: {
-                        value = readLongArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE: {
-                        value = readSavable(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_1D: {
-                        value = readSavableArray(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_2D: {
-                        value = readSavableArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_ARRAYLIST: {
-                        value = readSavableArray(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_ARRAYLIST_1D: {
-                        value = readSavableArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_ARRAYLIST_2D: {
-                        value = readSavableArray3D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_MAP: {
-                        value = readSavableMap(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING_SAVABLE_MAP: {
-                        value = readStringSavableMap(content);
-                        break;
-                    }
-                    case BinaryClassField.INT_SAVABLE_MAP: {
-                        value = readIntSavableMap(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORT: {
-                        value = readShort(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORT_1D: {
-                        value = readShortArray(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORT_2D: {
-                        value = readShortArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORTBUFFER: {
-                        value = readShortBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING: {
-                        value = readString(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING_1D: {
-                        value = readStringArray(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING_2D: {
-                        value = readStringArray2D(content);
-                        break;
-                    }
-
-                    default:
-                        // skip put statement
-                        continue;
+                Object value = readField(type, content);
+                if (value == UNKNOWN_FIELD) {
+                    // skip put statement
+                    continue;
                 }
 
                 fieldData.put(alias, value);
 
             } catch (IOException e) {
                 logger.logp(Level.SEVERE, this.getClass().toString(),
-                        "setContent(byte[] content)", "Exception", e);
+                        "setContent(ByteBuffer content)", "Exception", e);
+            }
+        }
+    }
+
+    /**
+     * Only records where each field starts, the fields are decoded when
+     * the savable reads them.
+     */
+    private void indexContent(ByteBuffer content, int start, int limit) {
+        this.content = content;
+        fieldOffsets = new int[cObj.aliasCount];
+        Arrays.fill(fieldOffsets, -1);
+        for (index = start; index < limit;) {
+            byte alias = content.get(index);
+
+            index++;
+
+            BinaryClassField field = cObj.aliasFields.get(alias);
+            fieldOffsets[alias & 0xFF] = index;
+            try {
+                if (!skipField(field.type, content)) {
+                    logger.log(Level.SEVERE, "Unknown type {0} of field {1}, the next fields are ignored",
+                            new Object[]{field.type, field.name});
+                    break;
+                }
+            } catch (IOException e) {
+                logger.logp(Level.SEVERE, this.getClass().toString(),
+                        "indexContent(ByteBuffer content)", "Exception", e);
+                break;
             }
         }
     }
-    
+
+    /**
+     * Decodes the field starting at the current index.
+     *
+     * @return the value, or {@link #UNKNOWN_FIELD} if the type is unknown
+     */
+    private Object readField(byte type, ByteBuffer content) throws IOException {
+        switch (type) {
+            case BinaryClassField.BITSET:
+                return readBitSet(content);
+            case BinaryClassField.BOOLEAN:
+                return readBoolean(content);
+            case BinaryClassField.BOOLEAN_1D:
+                return readBooleanArray(content);
+            case BinaryClassField.BOOLEAN_2D:
+                return readBooleanArray2D(content);
+            case BinaryClassField.BYTE:
+                return readByte(content);
+            case BinaryClassField.BYTE_1D:
+                return readByteArray(content);
+            case BinaryClassField.BYTE_2D:
+                return readByteArray2D(content);
+            case BinaryClassField.BYTEBUFFER:
+                return readByteBuffer(content);
+            case BinaryClassField.DOUBLE:
+                return readDouble(content);
+            case BinaryClassField.DOUBLE_1D:
+                return readDoubleArray(content);
+            case BinaryClassField.DOUBLE_2D:
+                return readDoubleArray2D(content);
+            case BinaryClassField.FLOAT:
+                return readFloat(content);
+            case BinaryClassField.FLOAT_1D:
+                return readFloatArray(content);
+            case BinaryClassField.FLOAT_2D:
+                return readFloatArray2D(content);
+            case BinaryClassField.FLOATBUFFER:
+                return readFloatBuffer(content);
+            case BinaryClassField.FLOATBUFFER_ARRAYLIST:
+                return readFloatBufferArrayList(content);
+            case BinaryClassField.BYTEBUFFER_ARRAYLIST:
+                return readByteBufferArrayList(content);
+            case BinaryClassField.INT:
+                return readInt(content);
+            case BinaryClassField.INT_1D:
+                return readIntArray(content);
+            case BinaryClassField.INT_2D:
+                return readIntArray2D(content);
+            case BinaryClassField.INTBUFFER:
+                return readIntBuffer(content);
+            case BinaryClassField.LONG:
+                return readLong(content);
+            case BinaryClassField.LONG_1D:
+                return readLongArray(content);
+            case BinaryClassField.LONG_2D:
+                return readLongArray2D(content);
+            case BinaryClassField.SAVABLE:
+                return readSavable(content);
+            case BinaryClassField.SAVABLE_1D:
+                return readSavableArray(content);
+            case BinaryClassField.SAVABLE_2D:
+                return readSavableArray2D(content);
+            case BinaryClassField.SAVABLE_ARRAYLIST:
+                return readSavableArray(content);
+            case BinaryClassField.SAVABLE_ARRAYLIST_1D:
+                return readSavableArray2D(content);
+            case BinaryClassField.SAVABLE_ARRAYLIST_2D:
+                return readSavableArray3D(content);
+            case BinaryClassField.SAVABLE_MAP:
+                return readSavableMap(content);
+            case BinaryClassField.STRING_SAVABLE_MAP:
+                return readStringSavableMap(content);
+            case BinaryClassField.INT_SAVABLE_MAP:
+                return readIntSavableMap(content);
+            case BinaryClassField.SHORT:
+                return readShort(content);
+            case BinaryClassField.SHORT_1D:
+                return readShortArray(content);
+            case BinaryClassField.SHORT_2D:
+                return readShortArray2D(content);
+            case BinaryClassField.SHORTBUFFER:
+                return readShortBuffer(content);
+            case BinaryClassField.STRING:
+                return readString(content);
+            case BinaryClassField.STRING_1D:
+                return readStringArray(content);
+            case BinaryClassField.STRING_2D:
+                return readStringArray2D(content);
+            default:
+                return UNKNOWN_FIELD;
+        }
+    }
+
+    /**
+     * Moves the index after the field starting at the current index,
+     * without decoding it.
+     *
+     * @return false if the type is unknown
+     */
+    private boolean skipField(byte type, ByteBuffer content) throws IOException {
+        switch (type) {
+            case BinaryClassField.BYTE:
+            case BinaryClassField.BOOLEAN:
+                index += 1;
+                return true;
+            case BinaryClassField.SHORT:
+                index += 2;
+                return true;
+            case BinaryClassField.FLOAT:
+                index += 4;
+                return true;
+            case BinaryClassField.DOUBLE:
+                index += 8;
+                return true;
+            case BinaryClassField.INT:
+            case BinaryClassField.SAVABLE:
+                readInt(content);
+                return true;
+            case BinaryClassField.LONG:
+                readLong(content);
+                return true;
+            case BinaryClassField.BITSET:
+            case BinaryClassField.BOOLEAN_1D:
+            case BinaryClassField.BYTE_1D:
+            case BinaryClassField.BYTEBUFFER:
+            case BinaryClassField.STRING:
+                skipElements(content, 1);
+                return true;
+            case BinaryClassField.SHORT_1D:
+            case BinaryClassField.SHORTBUFFER:
+                skipElements(content, 2);
+                return true;
+            case BinaryClassField.FLOAT_1D:
+            case BinaryClassField.FLOATBUFFER:
+            case BinaryClassField.INTBUFFER:
+                skipElements(content, 4);
+                return true;
+            case BinaryClassField.DOUBLE_1D:
+                skipElements(content, 8);
+                return true;
+            case BinaryClassField.INT_1D:
+            case BinaryClassField.SAVABLE_1D:
+            case BinaryClassField.SAVABLE_ARRAYLIST:
+                return skipArray(content, BinaryClassField.INT);
+            case BinaryClassField.LONG_1D:
+                return skipArray(content, BinaryClassField.LONG);
+            case BinaryClassField.BOOLEAN_2D:
+                return skipArray(content, BinaryClassField.BOOLEAN_1D);
+            case BinaryClassField.BYTE_2D:
+                return skipArray(content, BinaryClassField.BYTE_1D);
+            case BinaryClassField.SHORT_2D:
+                return skipArray(content, BinaryClassField.SHORT_1D);
+            case BinaryClassField.INT_2D:
+                return skipArray(content, BinaryClassField.INT_1D);
+            case BinaryClassField.LONG_2D:
+                return skipArray(content, BinaryClassField.LONG_1D);
+            case BinaryClassField.FLOAT_2D:
+                return skipArray(content, BinaryClassField.FLOAT_1D);
+            case BinaryClassField.DOUBLE_2D:
+                return skipArray(content, BinaryClassField.DOUBLE_1D);
+            case BinaryClassField.STRING_1D:
+                return skipArray(content, BinaryClassField.STRING);
+            case BinaryClassField.STRING_2D:
+                return skipArray(content, BinaryClassField.STRING_1D);
+            case BinaryClassField.SAVABLE_2D:
+            case BinaryClassField.SAVABLE_ARRAYLIST_1D:
+            case BinaryClassField.SAVABLE_MAP:
+                return skipArray(content, BinaryClassField.SAVABLE_1D);
+            case BinaryClassField.SAVABLE_ARRAYLIST_2D:
+                return skipArray(content, BinaryClassField.SAVABLE_2D);
+            case BinaryClassField.FLOATBUFFER_ARRAYLIST:
+                return skipArray(content, BinaryClassField.FLOATBUFFER);
+            case BinaryClassField.BYTEBUFFER_ARRAYLIST:
+                return skipArray(content, BinaryClassField.BYTEBUFFER);
+            case BinaryClassField.STRING_SAVABLE_MAP:
+                if (readInt(content) != BinaryOutputCapsule.NULL_OBJECT) {
+                    skipField(BinaryClassField.STRING_1D, content);
+                    skipField(BinaryClassField.SAVABLE_1D, content);
+                }
+                return true;
+            case BinaryClassField.INT_SAVABLE_MAP:
+                if (readInt(content) != BinaryOutputCapsule.NULL_OBJECT) {
+                    skipField(BinaryClassField.INT_1D, content);
+                    skipField(BinaryClassField.SAVABLE_1D, content);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void skipElements(ByteBuffer content, int elementSize) throws IOException {
+        int length = readInt(content);
+        if (length != BinaryOutputCapsule.NULL_OBJECT) {
+            index += length * elementSize;
+        }
+    }
+
+    private boolean skipArray(ByteBuffer content, byte elementType) throws IOException {
+        int length = readInt(content);
+        if (length != BinaryOutputCapsule.NULL_OBJECT) {
+            for (int x = 0; x < length; x++) {
+                skipField(elementType, content);
+            }
+        }
+        return true;
+    }
+
+    private boolean hasField(BinaryClassField field) {
+        if (fieldOffsets == null) {
+            return fieldData.containsKey(field.alias);
+        }
+        int slot = field.alias & 0xFF;
+        return slot < fieldOffsets.length && fieldOffsets[slot] >= 0;
+    }
+
+    /**
+     * @return the value of a field that is present, decoding it if needed
+     */
+    private Object getField(BinaryClassField field) throws IOException {
+        if (fieldOffsets == null) {
+            return fieldData.get(field.alias);
+        }
+        if (fieldData != null && fieldData.containsKey(field.alias)) {
+            // already read, with its savables resolved
+            return fieldData.get(field.alias);
+        }
+        index = fieldOffsets[field.alias & 0xFF];
+        return readField(field.type, content);
+    }
+
+    private void putField(BinaryClassField field, Object value) {
+        if (fieldData == null) {
+            fieldData = new HashMap<Byte, Object>();
+        }
+        fieldData.put(field.alias, value);
+    }
+
+    /**
+     * Moves the index to a primitive field that can be read directly from
+     * the content, without boxing.
+     *
+     * @return false if the field must be read with {@link #getField(com.jme3.export.binary.BinaryClassField) }
+     */
+    private boolean seekPrimitive(BinaryClassField field, byte type) {
+        if (fieldOffsets == null || field.type != type) {
+            return false;
+        }
+        index = fieldOffsets[field.alias & 0xFF];
+        return true;
+    }
+
     public int getSavableVersion(Class<? extends Savable> desiredClass){
         return SavableClassUtil.getSavedSavableVersion(savable, desiredClass, 
                                             cObj.classHierarchyVersions, importer.getFormatVersion());
@@ -264,198 +399,210 @@ final class BinaryInputCapsule implements InputCapsule {
 
     public BitSet readBitSet(String name, BitSet defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (BitSet) fieldData.get(field.alias);
+        return (BitSet) getField(field);
     }
 
     public boolean readBoolean(String name, boolean defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Boolean) fieldData.get(field.alias)).booleanValue();
+        if (seekPrimitive(field, BinaryClassField.BOOLEAN))
+            return readBoolean(content);
+        return ((Boolean) getField(field)).booleanValue();
     }
 
     public boolean[] readBooleanArray(String name, boolean[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (boolean[]) fieldData.get(field.alias);
+        return (boolean[]) getField(field);
     }
 
     public boolean[][] readBooleanArray2D(String name, boolean[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (boolean[][]) fieldData.get(field.alias);
+        return (boolean[][]) getField(field);
     }
 
     public byte readByte(String name, byte defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Byte) fieldData.get(field.alias)).byteValue();
+        if (seekPrimitive(field, BinaryClassField.BYTE))
+            return readByte(content);
+        return ((Byte) getField(field)).byteValue();
     }
 
     public byte[] readByteArray(String name, byte[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (byte[]) fieldData.get(field.alias);
+        return (byte[]) getField(field);
     }
 
     public byte[][] readByteArray2D(String name, byte[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (byte[][]) fieldData.get(field.alias);
+        return (byte[][]) getField(field);
     }
 
     public ByteBuffer readByteBuffer(String name, ByteBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (ByteBuffer) fieldData.get(field.alias);
+        return (ByteBuffer) getField(field);
     }
 
     @SuppressWarnings("unchecked")
     public ArrayList<ByteBuffer> readByteBufferArrayList(String name,
             ArrayList<ByteBuffer> defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (ArrayList<ByteBuffer>) fieldData.get(field.alias);
+        return (ArrayList<ByteBuffer>) getField(field);
     }
 
     public double readDouble(String name, double defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Double) fieldData.get(field.alias)).doubleValue();
+        if (seekPrimitive(field, BinaryClassField.DOUBLE))
+            return readDouble(content);
+        return ((Double) getField(field)).doubleValue();
     }
 
     public double[] readDoubleArray(String name, double[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (double[]) fieldData.get(field.alias);
+        return (double[]) getField(field);
     }
 
     public double[][] readDoubleArray2D(String name, double[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (double[][]) fieldData.get(field.alias);
+        return (double[][]) getField(field);
     }
 
     public float readFloat(String name, float defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Float) fieldData.get(field.alias)).floatValue();
+        if (seekPrimitive(field, BinaryClassField.FLOAT))
+            return readFloat(content);
+        return ((Float) getField(field)).floatValue();
     }
 
     public float[] readFloatArray(String name, float[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (float[]) fieldData.get(field.alias);
+        return (float[]) getField(field);
     }
 
     public float[][] readFloatArray2D(String name, float[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (float[][]) fieldData.get(field.alias);
+        return (float[][]) getField(field);
     }
 
     public FloatBuffer readFloatBuffer(String name, FloatBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (FloatBuffer) fieldData.get(field.alias);
+        return (FloatBuffer) getField(field);
     }
 
     @SuppressWarnings("unchecked")
     public ArrayList<FloatBuffer> readFloatBufferArrayList(String name,
             ArrayList<FloatBuffer> defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (ArrayList<FloatBuffer>) fieldData.get(field.alias);
+        return (ArrayList<FloatBuffer>) getField(field);
     }
 
     public int readInt(String name, int defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Integer) fieldData.get(field.alias)).intValue();
+        if (seekPrimitive(field, BinaryClassField.INT))
+            return readInt(content);
+        return ((Integer) getField(field)).intValue();
     }
 
     public int[] readIntArray(String name, int[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (int[]) fieldData.get(field.alias);
+        return (int[]) getField(field);
     }
 
     public int[][] readIntArray2D(String name, int[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (int[][]) fieldData.get(field.alias);
+        return (int[][]) getField(field);
     }
 
     public IntBuffer readIntBuffer(String name, IntBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (IntBuffer) fieldData.get(field.alias);
+        return (IntBuffer) getField(field);
     }
 
     public long readLong(String name, long defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Long) fieldData.get(field.alias)).longValue();
+        if (seekPrimitive(field, BinaryClassField.LONG))
+            return readLong(content);
+        return ((Long) getField(field)).longValue();
     }
 
     public long[] readLongArray(String name, long[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (long[]) fieldData.get(field.alias);
+        return (long[]) getField(field);
     }
 
     public long[][] readLongArray2D(String name, long[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (long[][]) fieldData.get(field.alias);
+        return (long[][]) getField(field);
     }
 
     public Savable readSavable(String name, Savable defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value == null)
             return null;
         else if (value instanceof ID) {
             value = importer.readObject(((ID) value).id);
-            fieldData.put(field.alias, value);
+            putField(field, value);
             return (Savable) value;
         } else
             return defVal;
@@ -464,12 +611,12 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[] readSavableArray(String name, Savable[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object[] values = (Object[]) fieldData.get(field.alias);
+        Object[] values = (Object[]) getField(field);
         if (values instanceof ID[]) {
             values = resolveIDs(values);
-            fieldData.put(field.alias, values);
+            putField(field, values);
             return (Savable[]) values;
         } else
             return defVal;
@@ -491,9 +638,9 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[][] readSavableArray2D(String name, Savable[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null ||!fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object[][] values = (Object[][]) fieldData.get(field.alias);
+        Object[][] values = (Object[][]) getField(field);
         if (values instanceof ID[][]) {
             Savable[][] savables = new Savable[values.length][];
             for (int i = 0; i < values.length; i++) {
@@ -502,7 +649,7 @@ final class BinaryInputCapsule implements InputCapsule {
                 } else savables[i] = null;
             }
             values = savables;
-            fieldData.put(field.alias, values);
+            putField(field, values);
         }
         return (Savable[][]) values;
     }
@@ -510,9 +657,9 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[][][] readSavableArray3D(String name, Savable[][][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object[][][] values = (Object[][][]) fieldData.get(field.alias);
+        Object[][][] values = (Object[][][]) getField(field);
         if (values instanceof ID[][][]) {
             Savable[][][] savables = new Savable[values.length][][];
             for (int i = 0; i < values.length; i++) {
@@ -523,7 +670,7 @@ final class BinaryInputCapsule implements InputCapsule {
                     }
                 } else savables[i] = null;
             }
-            fieldData.put(field.alias, savables);
+            putField(field, savables);
             return savables;
         } else
             return defVal;
@@ -579,14 +726,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList readSavableArrayList(String name, ArrayList defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value instanceof ID[]) {
             // read Savable array and convert to ArrayList
             Savable[] savables = readSavableArray(name, null);
             value = savableArrayListFromArray(savables);
-            fieldData.put(field.alias, value);
+            putField(field, value);
         }
         return (ArrayList) value;
     }
@@ -594,9 +741,9 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList[] readSavableArrayListArray(String name, ArrayList[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value instanceof ID[][]) {
             // read 2D Savable array and convert to ArrayList array
             Savable[][] savables = readSavableArray2D(name, null);
@@ -608,7 +755,7 @@ final class BinaryInputCapsule implements InputCapsule {
                 value = arrayLists;
             } else
                 value = defVal;
-            fieldData.put(field.alias, value);
+            putField(field, value);
         }
         return (ArrayList[]) value;
     }
@@ -616,9 +763,9 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList[][] readSavableArrayListArray2D(String name,
             ArrayList[][] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value instanceof ID[][][]) {
             // read 3D Savable array and convert to 2D ArrayList array
             Savable[][][] savables = readSavableArray3D(name, null);
@@ -633,7 +780,7 @@ final class BinaryInputCapsule implements InputCapsule {
                 value = arrayLists;
             } else
                 value = defVal;
-            fieldData.put(field.alias, value);
+            putField(field, value);
         }
         return (ArrayList[][]) value;
     }
@@ -642,14 +789,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public Map<? extends Savable, ? extends Savable> readSavableMap(String name, Map<? extends Savable, ? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value instanceof ID[][]) {
             // read Savable array and convert to Map
             Savable[][] savables = readSavableArray2D(name, null);
             value = savableMapFrom2DArray(savables);
-            fieldData.put(field.alias, value);
+            putField(field, value);
         }
         return (Map<? extends Savable, ? extends Savable>) value;
     }
@@ -658,15 +805,15 @@ final class BinaryInputCapsule implements InputCapsule {
     public Map<String, ? extends Savable> readStringSavableMap(String name, Map<String, ? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value instanceof StringIDMap) {
             // read Savable array and convert to Map values
             StringIDMap in = (StringIDMap) value;
             Savable[] values = resolveIDs(in.values);
             value = stringSavableMapFromKV(in.keys, values);
-            fieldData.put(field.alias, value);
+            putField(field, value);
         }
         return (Map<String, Savable>) value;
     }
@@ -675,88 +822,90 @@ final class BinaryInputCapsule implements InputCapsule {
     public IntMap<? extends Savable> readIntSavableMap(String name, IntMap<? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        Object value = fieldData.get(field.alias);
+        Object value = getField(field);
         if (value instanceof IntIDMap) {
             // read Savable array and convert to Map values
             IntIDMap in = (IntIDMap) value;
             Savable[] values = resolveIDs(in.values);
             value = intSavableMapFromKV(in.keys, values);
-            fieldData.put(field.alias, value);
+            putField(field, value);
         }
         return (IntMap<Savable>) value;
     }
 
     public short readShort(String name, short defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return ((Short) fieldData.get(field.alias)).shortValue();
+        if (seekPrimitive(field, BinaryClassField.SHORT))
+            return readShort(content);
+        return ((Short) getField(field)).shortValue();
     }
 
     public short[] readShortArray(String name, short[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (short[]) fieldData.get(field.alias);
+        return (short[]) getField(field);
     }
 
     public short[][] readShortArray2D(String name, short[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (short[][]) fieldData.get(field.alias);
+        return (short[][]) getField(field);
     }
 
     public ShortBuffer readShortBuffer(String name, ShortBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (ShortBuffer) fieldData.get(field.alias);
+        return (ShortBuffer) getField(field);
     }
 
     public String readString(String name, String defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (String) fieldData.get(field.alias);
+        return (String) getField(field);
     }
 
     public String[] readStringArray(String name, String[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (String[]) fieldData.get(field.alias);
+        return (String[]) getField(field);
     }
 
     public String[][] readStringArray2D(String name, String[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
-        return (String[][]) fieldData.get(field.alias);
+        return (String[][]) getField(field);
     }
 
     // byte primitive
 
-    protected byte readByte(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByte(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte readByteForBuffer(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByteForBuffer(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte[] readByteArray(byte[] content) throws IOException {
+    protected byte[] readByteArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -766,7 +915,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected byte[][] readByteArray2D(byte[] content) throws IOException {
+    protected byte[][] readByteArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -778,27 +927,32 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int primitive
 
-    protected int readIntForBuffer(byte[] content){
-        int number = ((content[index+3] & 0xFF) << 24)
-                   + ((content[index+2] & 0xFF) << 16)
-                   + ((content[index+1] & 0xFF) << 8)
-                   +  (content[index]   & 0xFF);
+    protected int readIntForBuffer(ByteBuffer content){
+        int number = ((content.get(index+3) & 0xFF) << 24)
+                   + ((content.get(index+2) & 0xFF) << 16)
+                   + ((content.get(index+1) & 0xFF) << 8)
+                   +  (content.get(index)   & 0xFF);
         index += 4;
         return number;
     }
 
-    protected int readInt(byte[] content) throws IOException {
-        byte[] bytes = inflateFrom(content, index);
-        index += 1 + bytes.length;
-        bytes = ByteUtils.rightAlignBytes(bytes, 4);
-        int value = ByteUtils.convertIntFromBytes(bytes);
-        if (value == BinaryOutputCapsule.NULL_OBJECT
-                || value == BinaryOutputCapsule.DEFAULT_OBJECT)
-            index -= 4;
+    protected int readInt(ByteBuffer content) throws IOException {
+        // deflated: byte count, then the low bytes of the value, big endian
+        byte size = content.get(index);
+        index++;
+        if (size == BinaryOutputCapsule.NULL_OBJECT
+                || size == BinaryOutputCapsule.DEFAULT_OBJECT)
+            return size;
+        if (size < 0 || size > 4)
+            throw new IOException("Invalid int size: " + size);
+        int value = 0;
+        for (int x = 0; x < size; x++)
+            value = (value << 8) | (content.get(index + x) & 0xFF);
+        index += size;
         return value;
     }
 
-    protected int[] readIntArray(byte[] content) throws IOException {
+    protected int[] readIntArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -808,7 +962,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected int[][] readIntArray2D(byte[] content) throws IOException {
+    protected int[][] readIntArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -820,18 +974,18 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // float primitive
 
-    protected float readFloat(byte[] content) throws IOException {
-        float value = ByteUtils.convertFloatFromBytes(content, index);
+    protected float readFloat(ByteBuffer content) throws IOException {
+        float value = content.getFloat(index);
         index += 4;
         return value;
     }
 
-    protected float readFloatForBuffer(byte[] content) throws IOException {
+    protected float readFloatForBuffer(ByteBuffer content) throws IOException {
         int number = readIntForBuffer(content);
         return Float.intBitsToFloat(number);
     }
 
-    protected float[] readFloatArray(byte[] content) throws IOException {
+    protected float[] readFloatArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -841,7 +995,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected float[][] readFloatArray2D(byte[] content) throws IOException {
+    protected float[][] readFloatArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -853,13 +1007,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // double primitive
 
-    protected double readDouble(byte[] content) throws IOException {
-        double value = ByteUtils.convertDoubleFromBytes(content, index);
+    protected double readDouble(ByteBuffer content) throws IOException {
+        double value = content.getDouble(index);
         index += 8;
         return value;
     }
 
-    protected double[] readDoubleArray(byte[] content) throws IOException {
+    protected double[] readDoubleArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -869,7 +1023,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected double[][] readDoubleArray2D(byte[] content) throws IOException {
+    protected double[][] readDoubleArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -881,7 +1035,15 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // long primitive
 
-    protected long readLong(byte[] content) throws IOException {
+    protected long readLong(ByteBuffer content) throws IOException {
+        byte size = content.get(index);
+        if (size >= 0) {
+            long value = 0;
+            for (int x = 0; x < size; x++)
+                value = (value << 8) | (content.get(index + 1 + x) & 0xFF);
+            index += 1 + size;
+            return value;
+        }
         byte[] bytes = inflateFrom(content, index);
         index += 1 + bytes.length;
         bytes = ByteUtils.rightAlignBytes(bytes, 8);
@@ -889,7 +1051,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[] readLongArray(byte[] content) throws IOException {
+    protected long[] readLongArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -899,7 +1061,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[][] readLongArray2D(byte[] content) throws IOException {
+    protected long[][] readLongArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -911,20 +1073,20 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short primitive
 
-    protected short readShort(byte[] content) throws IOException {
-        short value = ByteUtils.convertShortFromBytes(content, index);
+    protected short readShort(ByteBuffer content) throws IOException {
+        short value = content.getShort(index);
         index += 2;
         return value;
     }
 
-    protected short readShortForBuffer(byte[] content) throws IOException {
-        short number = (short) ((content[index+0] & 0xFF)
-                             + ((content[index+1] & 0xFF) << 8));
+    protected short readShortForBuffer(ByteBuffer content) throws IOException {
+        short number = (short) ((content.get(index+0) & 0xFF)
+                             + ((content.get(index+1) & 0xFF) << 8));
         index += 2;
         return number;
     }
 
-    protected short[] readShortArray(byte[] content) throws IOException {
+    protected short[] readShortArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -934,7 +1096,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected short[][] readShortArray2D(byte[] content) throws IOException {
+    protected short[][] readShortArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -946,13 +1108,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // boolean primitive
 
-    protected boolean readBoolean(byte[] content) throws IOException {
-        boolean value = ByteUtils.convertBooleanFromBytes(content, index);
+    protected boolean readBoolean(ByteBuffer content) throws IOException {
+        boolean value = content.get(index) != 0;
         index += 1;
         return value;
     }
 
-    protected boolean[] readBooleanArray(byte[] content) throws IOException {
+    protected boolean[] readBooleanArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -962,7 +1124,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected boolean[][] readBooleanArray2D(byte[] content) throws IOException {
+    protected boolean[][] readBooleanArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -995,7 +1157,7 @@ final class BinaryInputCapsule implements InputCapsule {
     private final static int UTF8_ILLEGAL = 10; // not an UTF8 string
 
     // String
-    protected String readString(byte[] content) throws IOException {
+    protected String readString(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1035,7 +1197,7 @@ final class BinaryInputCapsule implements InputCapsule {
         int utf8State = UTF8_START;
         int b;
         for (int x = 0; x < length; x++) {
-            bytes[x] =  content[index++];
+            bytes[x] =  content.get(index++);
             b = (int) bytes[x] & 0xFF; // unsign our byte
 
             switch (utf8State) {
@@ -1097,7 +1259,7 @@ final class BinaryInputCapsule implements InputCapsule {
         }
     }
 
-    protected String[] readStringArray(byte[] content) throws IOException {
+    protected String[] readStringArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1107,7 +1269,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected String[][] readStringArray2D(byte[] content) throws IOException {
+    protected String[][] readStringArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1119,7 +1281,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BitSet
 
-    protected BitSet readBitSet(byte[] content) throws IOException {
+    protected BitSet readBitSet(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1131,8 +1293,8 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // INFLATOR for int and long
 
-    protected static byte[] inflateFrom(byte[] contents, int index) {
-        byte firstByte = contents[index];
+    protected static byte[] inflateFrom(ByteBuffer contents, int index) {
+        byte firstByte = contents.get(index);
         if (firstByte == BinaryOutputCapsule.NULL_OBJECT)
             return ByteUtils.convertToBytes(BinaryOutputCapsule.NULL_OBJECT);
         else if (firstByte == BinaryOutputCapsule.DEFAULT_OBJECT)
@@ -1142,14 +1304,14 @@ final class BinaryInputCapsule implements InputCapsule {
         else {
             byte[] rVal = new byte[firstByte];
             for (int x = 0; x < rVal.length; x++)
-                rVal[x] = contents[x + 1 + index];
+                rVal[x] = contents.get(x + 1 + index);
             return rVal;
         }
     }
 
     // BinarySavable
 
-    protected ID readSavable(byte[] content) throws IOException {
+    protected ID readSavable(ByteBuffer content) throws IOException {
         int id = readInt(content);
         if (id == BinaryOutputCapsule.NULL_OBJECT) {
             return null;
@@ -1160,7 +1322,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable array
 
-    protected ID[] readSavableArray(byte[] content) throws IOException {
+    protected ID[] readSavableArray(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1171,7 +1333,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][] readSavableArray2D(byte[] content) throws IOException {
+    protected ID[][] readSavableArray2D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1182,7 +1344,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][][] readSavableArray3D(byte[] content) throws IOException {
+    protected ID[][][] readSavableArray3D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1195,7 +1357,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable map
 
-    protected ID[][] readSavableMap(byte[] content) throws IOException {
+    protected ID[][] readSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1206,7 +1368,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected StringIDMap readStringSavableMap(byte[] content) throws IOException {
+    protected StringIDMap readStringSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1218,7 +1380,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected IntIDMap readIntSavableMap(byte[] content) throws IOException {
+    protected IntIDMap readIntSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1233,7 +1395,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<FloatBuffer>
 
-    protected ArrayList<FloatBuffer> readFloatBufferArrayList(byte[] content)
+    protected ArrayList<FloatBuffer> readFloatBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1248,7 +1410,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<ByteBuffer>
 
-    protected ArrayList<ByteBuffer> readByteBufferArrayList(byte[] content)
+    protected ArrayList<ByteBuffer> readByteBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1262,18 +1424,37 @@ final class BinaryInputCapsule implements InputCapsule {
     }
 
     // NIO BUFFERS
+
+    /**
+     * Reads the raw bytes of a buffer written in native order.
+     * Large buffers are mapped from the file when the importer is loading
+     * a memory-mapped file, instead of being copied.
+     */
+    private ByteBuffer readBufferBytes(ByteBuffer content, int length) throws IOException {
+        if (index < 0 || length < 0 || index + length > content.limit())
+            throw new IOException("Invalid buffer length: " + length);
+
+        ByteBuffer value = importer.mapBuffer(content, index, length);
+        if (value == null) {
+            ByteBuffer source = content.duplicate();
+            source.limit(index + length);
+            source.position(index);
+            value = BufferUtils.createByteBuffer(length);
+            value.put(source).rewind();
+        }
+        index += length;
+        return value;
+    }
+
     // float buffer
 
-    protected FloatBuffer readFloatBuffer(byte[] content) throws IOException {
+    protected FloatBuffer readFloatBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asFloatBuffer();
+            return readBufferBytes(content, length * 4).asFloatBuffer();
         }else{
             FloatBuffer value = BufferUtils.createFloatBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1286,16 +1467,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int buffer
 
-    protected IntBuffer readIntBuffer(byte[] content) throws IOException {
+    protected IntBuffer readIntBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asIntBuffer();
+            return readBufferBytes(content, length * 4).asIntBuffer();
         }else{
             IntBuffer value = BufferUtils.createIntBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1308,16 +1486,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // byte buffer
 
-    protected ByteBuffer readByteBuffer(byte[] content) throws IOException {
+    protected ByteBuffer readByteBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length);
-            value.put(content, index, length).rewind();
-            index += length;
-            return value;
+            return readBufferBytes(content, length);
         }else{
             ByteBuffer value = BufferUtils.createByteBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1330,16 +1505,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short buffer
 
-    protected ShortBuffer readShortBuffer(byte[] content) throws IOException {
+    protected ShortBuffer readShortBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 2);
-            value.put(content, index, length * 2).rewind();
-            index += length * 2;
-            return value.asShortBuffer();
+            return readBufferBytes(content, length * 2).asShortBuffer();
         }else{
             ShortBuffer value = BufferUtils.createShortBuffer(length);
             for (int x = 0; x < length; x++) {
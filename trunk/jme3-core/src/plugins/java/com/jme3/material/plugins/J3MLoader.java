@@ -33,6 +33,9 @@ package com.jme3.material.plugins;
 
 import com.jme3.material.logic.*;
 import com.jme3.asset.*;
+import com.jme3.export.FormatVersion;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryImporter;
 import com.jme3.material.*;
 import com.jme3.material.RenderState.BlendEquation;
 import com.jme3.material.RenderState.BlendMode;
@@ -52,6 +55,7 @@ import com.jme3.util.blockparser.BlockLanguageParser;
 import com.jme3.util.blockparser.Statement;
 import com.jme3.util.clone.Cloner;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -212,7 +216,7 @@ public class J3MLoader implements AssetLoader {
         return false;
     }
 
-    private Texture parseTextureType(final VarType type, final String value) {
+    private TextureKey parseTextureKey(final VarType type, final String value) {
         final List<String> textureValues = tokenizeTextureValue(value);
         final List<TextureOptionValue> textureOptionValues = parseTextureOptions(textureValues);
 
@@ -276,6 +280,12 @@ public class J3MLoader implements AssetLoader {
         }
 
         textureKey.setGenerateMips(true);
+        return textureKey;
+    }
+
+    private Texture parseTextureType(final VarType type, final String value) {
+        final TextureKey textureKey = parseTextureKey(type, value);
+        final List<TextureOptionValue> textureOptionValues = parseTextureOptions(tokenizeTextureValue(value));
 
         Texture texture;
 
@@ -433,6 +443,24 @@ public class J3MLoader implements AssetLoader {
         }
     }
 
+    /**
+     * Lets the textures of the material load in parallel when the material
+     * is loaded by an {@link AssetLoadScheduler}, they are loaded in order
+     * by {@link #readValueParam(java.lang.String) } otherwise.
+     */
+    private void prefetchTextures(List<Statement> paramsList) {
+        for (Statement statement : paramsList){
+            String[] split = statement.getLine().split(":", 2);
+            if (split.length != 2){
+                continue;
+            }
+            MatParam p = material.getMaterialDef().getMaterialParam(split[0].trim());
+            if (p != null && p.getVarType().isTextureType()){
+                AssetLoadScheduler.prefetch(assetManager, parseTextureKey(p.getVarType(), split[1]));
+            }
+        }
+    }
+
     private void readMaterialParams(List<Statement> paramsList) throws IOException{
         for (Statement statement : paramsList){
             readParam(statement.getLine());
@@ -766,6 +794,7 @@ public class J3MLoader implements AssetLoader {
             String statType = split[0];
             if (extending){
                 if (statType.equals("MaterialParameters")){
+                    prefetchTextures(statement.getContents());
                     readExtendingMaterialParams(statement.getContents());
                 }else if (statType.equals("AdditionalRenderState")){
                     readAdditionalRenderState(statement.getContents());
@@ -787,7 +816,7 @@ public class J3MLoader implements AssetLoader {
     public Object load(AssetInfo info) throws IOException {
         this.assetManager = info.getManager();
 
-        InputStream in = info.openStream();
+        InputStream in = new BufferedInputStream(info.openStream());
         try {
             key = info.getKey();
             if (key.getExtension().equals("j3m") && !(key instanceof MaterialKey)) {
@@ -795,6 +824,9 @@ public class J3MLoader implements AssetLoader {
             } else if (key.getExtension().equals("j3md") && key instanceof MaterialKey) {
                 throw new IOException("Material definitions must be loaded via AssetKey");
             }
+            if (key.getExtension().equals("j3md") && isCompiled(in)) {
+                return loadCompiled(in);
+            }
             loadFromRoot(BlockLanguageParser.parse(in));
         } finally {
             if (in != null){
@@ -811,6 +843,42 @@ public class J3MLoader implements AssetLoader {
         }
     }
 
+    /**
+     * @return true if the stream starts with the signature of the binary
+     * format, which is used by compiled material definitions
+     */
+    private static boolean isCompiled(InputStream in) throws IOException {
+        in.mark(4);
+        int signature = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            signature = (signature << 8) | b;
+        }
+        in.reset();
+        return signature == FormatVersion.SIGNATURE;
+    }
+
+    /**
+     * Reads a material definition exported in binary form, usually with its
+     * shader sources compiled, skipping the parsing of the J3MD text.
+     *
+     * @see TechniqueDef#compileShaderSources(com.jme3.asset.AssetManager, java.util.EnumSet)
+     */
+    private MaterialDef loadCompiled(InputStream in) throws IOException {
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setAssetManager(assetManager);
+        Savable savable = importer.load(in);
+        if (!(savable instanceof MaterialDef)) {
+            throw new IOException(key + " is not a compiled material definition");
+        }
+        MaterialDef def = (MaterialDef) savable;
+        def.setAssetName(key.getName());
+        return def;
+    }
+
     public MaterialDef loadMaterialDef(List<Statement> roots, AssetManager manager, AssetKey key) throws IOException {
         this.key = key;
         this.assetManager = manager;
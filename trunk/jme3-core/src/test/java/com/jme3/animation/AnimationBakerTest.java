@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector4f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.instancing.InstancedGeometry;
+import com.jme3.scene.instancing.InstancedNode;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import com.jme3.texture.Image;
+import java.nio.FloatBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks the matrices and clips baked by {@link AnimationBaker} and the
+ * per instance animation states of {@link InstancedGeometry}.
+ */
+public class AnimationBakerTest {
+
+    private static void assertSameMatrix(String message, Matrix4f expected, Matrix4f actual) {
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 4; c++) {
+                assertEquals(message, expected.get(r, c), actual.get(r, c), 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void testBakedMatrices() {
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        AnimControl control = PoseBufferTest.createControl(skeleton);
+        BakedAnimation baked = AnimationBaker.bake(control, 30);
+
+        AnimChannel channel = control.createChannel();
+        channel.setLoopMode(LoopMode.DontLoop);
+        Matrix4f matrix = new Matrix4f();
+        for (int c = 0; c < baked.getClipCount(); c++) {
+            channel.setAnim(baked.getClipName(c), 0);
+            for (int f = 0; f < baked.getClipFrameCount(c); f++) {
+                channel.setTime(f / baked.getClipFrameRate(c));
+                control.update(0);
+                Matrix4f[] expected = skeleton.computeSkinningMatrices();
+                for (int b = 0; b < baked.getBoneCount(); b++) {
+                    baked.getSkinningMatrix(c, f, b, matrix);
+                    assertSameMatrix(baked.getClipName(c) + " frame " + f + " bone " + b, expected[b], matrix);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testClips() {
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        BakedAnimation baked = AnimationBaker.bake(PoseBufferTest.createControl(skeleton), 10);
+
+        // sorted by name
+        assertEquals(3, baked.getClipCount());
+        assertEquals(0, baked.getClipIndex("idle"));
+        assertEquals(1, baked.getClipIndex("walk"));
+        assertEquals(2, baked.getClipIndex("wave"));
+        assertEquals(-1, baked.getClipIndex("run"));
+
+        // 1.5 seconds at 10 frames per second, both ends included
+        int wave = baked.getClipIndex("wave");
+        assertEquals(16, baked.getClipFrameCount(wave));
+        assertEquals(10, baked.getClipFrameRate(wave), 1e-5f);
+
+        Image image = baked.getTexture().getImage();
+        assertEquals(Image.Format.RGBA32F, image.getFormat());
+        assertEquals(skeleton.getBoneCount() * 3, image.getWidth());
+        assertEquals(31 + 21 + 16, image.getHeight());
+
+        AssetManager assetManager = TestUtil.createAssetManager();
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        baked.setClipLooping(wave, false);
+        baked.applyTo(material);
+        Vector4f[] clips = (Vector4f[]) material.getParam("BakedClips").getValue();
+        assertEquals(new Vector4f(31 + 21, 16, 10, 0), clips[wave]);
+        assertEquals(new Vector4f(0, 31, 10, 1), clips[0]);
+        assertEquals(skeleton.getBoneCount(), material.getParam("NumberOfBones").getValue());
+
+        try {
+            baked.applyTo(new Material(assetManager, "Common/MatDefs/Misc/Particle.j3md"));
+            fail("Particle does not support baked animations");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testInstanceStates() {
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        BakedAnimation baked = AnimationBaker.bake(PoseBufferTest.createControl(skeleton), 10);
+        Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("UseInstancing", true);
+        baked.applyTo(material);
+
+        InstancedNode node = new InstancedNode("crowd");
+        Box mesh = new Box(1, 1, 1);
+        Geometry[] instances = new Geometry[4];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = new Geometry("instance" + i, mesh);
+            instances[i].setMaterial(material);
+            baked.setInstanceState(instances[i], i % 3, i * 0.5f);
+            node.attachChild(instances[i]);
+        }
+        node.instance();
+
+        InstancedGeometry group = null;
+        for (Spatial child : node.getChildren()) {
+            if (child instanceof InstancedGeometry) {
+                group = (InstancedGeometry) child;
+            }
+        }
+        group.updateInstances();
+        assertStates(group);
+
+        // changed after instancing, and moved to another slot
+        baked.setInstanceState(instances[2], 1, 7);
+        node.detachChild(instances[0]);
+        group.updateInstances();
+        assertStates(group);
+        assertEquals(3, group.getActualNumInstances());
+    }
+
+    private static void assertStates(InstancedGeometry group) {
+        FloatBuffer states = (FloatBuffer) group.getAnimationInstanceData().getData();
+        Geometry[] geometries = group.getGeometries();
+        for (int i = 0; i < group.getActualNumInstances(); i++) {
+            Vector2f state = geometries[i].getUserData(InstancedGeometry.ANIMATION_STATE);
+            assertEquals(state.x, states.get(i * 2), 0);
+            assertEquals(state.y, states.get(i * 2 + 1), 0);
+        }
+    }
+}
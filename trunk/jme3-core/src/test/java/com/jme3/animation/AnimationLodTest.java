@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the update rate, culling and bone masks of the animation LOD.
+ */
+public class AnimationLodTest {
+
+    private final ViewPort viewPort = new ViewPort("test", new Camera(640, 480));
+
+    private static AnimControl createControl(Skeleton skeleton, AnimationLod lod) {
+        AnimControl control = PoseBufferTest.createControl(skeleton);
+        control.setAnimationLod(lod);
+        new Node("model").addControl(control);
+        control.createChannel().setAnim("walk");
+        return control;
+    }
+
+    /**
+     * Updates the control and renders it at the given distance from the
+     * camera, or not at all if the distance is negative.
+     */
+    private void frame(AnimControl control, float distance) {
+        control.update(0.05f);
+        if (distance >= 0) {
+            control.getSpatial().setLocalTranslation(0, 0, -distance);
+            control.getSpatial().updateGeometricState();
+            control.render(null, viewPort);
+        }
+    }
+
+    @Test
+    public void testLevels() {
+        AnimationLod lod = new AnimationLod();
+        assertEquals(1, lod.addLevel(10, 2));
+        assertEquals(2, lod.addLevel(50, 4, "root"));
+        assertEquals(0, lod.getLevel(0));
+        assertEquals(0, lod.getLevel(9.9f));
+        assertEquals(1, lod.getLevel(10));
+        assertEquals(2, lod.getLevel(1000));
+        assertArrayEquals(new String[]{"root"}, lod.getBones(2));
+        assertNull(lod.getBones(1));
+
+        try {
+            lod.addLevel(40, 2);
+            fail("levels must be sorted by distance");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            lod.addLevel(100, 0);
+            fail("the update interval must be positive");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testReducedUpdateRate() {
+        AnimationLod lod = new AnimationLod();
+        lod.addLevel(10, 3);
+        Skeleton source = PoseBufferTest.createSkeleton();
+        AnimControl expected = createControl(new Skeleton(source), null);
+        AnimControl actual = createControl(new Skeleton(source), lod);
+
+        Bone expectedBone = expected.getSkeleton().getBone("head");
+        Bone bone = actual.getSkeleton().getBone("head");
+        Vector3f[] poses = new Vector3f[10];
+        float[] shown = new float[10];
+        for (int frame = 0; frame < 10; frame++) {
+            frame(expected, 20);
+            frame(actual, 20);
+            poses[frame] = expectedBone.getModelSpacePosition().clone();
+            shown[frame] = bone.getModelSpacePosition().y;
+
+            // the first update is at level 0, the pose is evaluated every
+            // third frame after that and shown one interval late, moving
+            // from the before last evaluation to the last one
+            Vector3f lerp;
+            if (frame < 3) {
+                lerp = poses[0];
+            } else {
+                int last = frame - frame % 3;
+                lerp = new Vector3f().interpolateLocal(poses[Math.max(last - 3, 0)], poses[last], (frame % 3) / 3f);
+            }
+            assertEquals(lerp.x, bone.getModelSpacePosition().x, 1e-5f);
+            assertEquals(lerp.y, bone.getModelSpacePosition().y, 1e-5f);
+            assertEquals(lerp.z, bone.getModelSpacePosition().z, 1e-5f);
+        }
+
+        // the head moves down steadily in the animation and never moves
+        // back in the reduced updates
+        for (int frame = 1; frame < 10; frame++) {
+            assertTrue(poses[frame].y < poses[frame - 1].y);
+            assertTrue("frame " + frame, shown[frame] <= shown[frame - 1] + 1e-6f);
+        }
+        assertTrue(shown[9] < shown[3]);
+        assertEquals(1, lod.getEvaluatedCount(0));
+        assertEquals(3, lod.getEvaluatedCount(1));
+        assertEquals(6, lod.getInterpolatedCount(1));
+        assertEquals(0, lod.getInterpolatedCount(0));
+
+        lod.resetCounters();
+        assertEquals(0, lod.getEvaluatedCount(1));
+        assertEquals(0, lod.getInterpolatedCount(1));
+    }
+
+    @Test
+    public void testCulledSkipped() {
+        AnimationLod lod = new AnimationLod();
+        Skeleton source = PoseBufferTest.createSkeleton();
+        AnimControl expected = createControl(new Skeleton(source), null);
+        AnimControl actual = createControl(new Skeleton(source), lod);
+
+        frame(expected, 5);
+        frame(actual, 5);
+        // the model was rendered in the previous frame, it is evaluated
+        frame(expected, -1);
+        frame(actual, -1);
+        PoseBufferTest.assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+        Quaternion rotation = actual.getSkeleton().getBone("spine").getModelSpaceRotation().clone();
+        for (int frame = 0; frame < 3; frame++) {
+            frame(expected, -1);
+            frame(actual, -1);
+        }
+        // the culled model keeps its pose while its channels keep playing
+        assertEquals(rotation, actual.getSkeleton().getBone("spine").getModelSpaceRotation());
+        assertEquals(2, lod.getEvaluatedCount(0));
+        assertEquals(3, lod.getSkippedCount(0));
+
+        // back in view, rendered during the last frame
+        frame(expected, 5);
+        frame(actual, 5);
+        frame(expected, 5);
+        frame(actual, 5);
+        PoseBufferTest.assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+
+        lod.setCulledSkipped(false);
+        frame(expected, -1);
+        frame(actual, -1);
+        frame(expected, -1);
+        frame(actual, -1);
+        PoseBufferTest.assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+    }
+
+    @Test
+    public void testBoneMask() {
+        AnimationLod lod = new AnimationLod();
+        lod.addLevel(10, 1, "root", "spine");
+        AnimControl control = createControl(PoseBufferTest.createSkeleton(), lod);
+
+        frame(control, 50);
+        frame(control, 50);
+        Skeleton skeleton = control.getSkeleton();
+        assertNotEquals(skeleton.getBone("root").getBindRotation(), skeleton.getBone("root").getLocalRotation());
+        assertNotEquals(skeleton.getBone("spine").getBindRotation(), skeleton.getBone("spine").getLocalRotation());
+        assertEquals(skeleton.getBone("head").getBindRotation(), skeleton.getBone("head").getLocalRotation());
+        assertEquals(skeleton.getBone("head").getBindPosition(), skeleton.getBone("head").getLocalPosition());
+
+        lod.addLevel(100, 1, "tail");
+        try {
+            frame(control, 200);
+            frame(control, 200);
+            fail("the bone tail does not exist");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Node;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelAnimationStateTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSameResultsAsSerial() {
+        Skeleton source = PoseBufferTest.createSkeleton();
+        ParallelAnimationState state = new ParallelAnimationState(pool);
+        int count = 24;
+        AnimControl[] serial = new AnimControl[count];
+        AnimControl[] parallel = new AnimControl[count];
+        for (int i = 0; i < count; i++) {
+            serial[i] = PoseBufferTest.createControl(new Skeleton(source));
+            parallel[i] = PoseBufferTest.createControl(new Skeleton(source));
+            state.register(parallel[i]);
+            for (AnimControl control : new AnimControl[]{serial[i], parallel[i]}) {
+                AnimChannel channel = control.createChannel();
+                channel.setAnim(i % 2 == 0 ? "walk" : "idle");
+                channel.setTime(0.05f * i);
+                AnimChannel arm = control.createChannel();
+                arm.addBone("arm");
+                arm.setAnim("wave");
+            }
+        }
+
+        for (int frame = 0; frame < 30; frame++) {
+            if (frame == 10) {
+                for (int i = 0; i < count; i++) {
+                    serial[i].getChannel(0).setAnim("wave", 0.4f);
+                    parallel[i].getChannel(0).setAnim("wave", 0.4f);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                serial[i].update(0.04f);
+                parallel[i].update(0.04f);
+            }
+            state.render(null);
+            for (int i = 0; i < count; i++) {
+                PoseBufferTest.assertSamePose(serial[i].getSkeleton(), parallel[i].getSkeleton());
+            }
+        }
+    }
+
+    @Test
+    public void testAttachmentsSceneIsRefreshed() {
+        ParallelAnimationState state = new ParallelAnimationState(pool);
+        Node root = new Node("root");
+        Node model = new Node("model");
+        root.attachChild(model);
+        AnimControl control = PoseBufferTest.createControl(PoseBufferTest.createSkeleton());
+        model.addControl(control);
+        Node attachments = control.getSkeleton().getBone("head").getAttachmentsNode();
+        model.attachChild(attachments);
+        state.register(control);
+        control.createChannel().setAnim("walk");
+
+        root.updateLogicalState(0.3f);
+        root.updateGeometricState();
+        state.render(null);
+
+        Bone head = control.getSkeleton().getBone("head");
+        assertEquals(head.getModelSpacePosition(), attachments.getWorldTranslation());
+        // does not throw, the scene is up to date for rendering
+        root.checkCulling(new Camera(640, 480));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSharedSkeleton() {
+        ParallelAnimationState state = new ParallelAnimationState(pool);
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        state.register(PoseBufferTest.createControl(skeleton));
+        state.register(PoseBufferTest.createControl(skeleton));
+    }
+
+    @Test
+    public void testUnregisterEvaluatesPendingPose() {
+        ParallelAnimationState state = new ParallelAnimationState(pool);
+        Skeleton source = PoseBufferTest.createSkeleton();
+        AnimControl serial = PoseBufferTest.createControl(new Skeleton(source));
+        AnimControl parallel = PoseBufferTest.createControl(new Skeleton(source));
+        state.register(parallel);
+        serial.createChannel().setAnim("walk");
+        parallel.createChannel().setAnim("walk");
+
+        serial.update(0.5f);
+        parallel.update(0.5f);
+        state.unregister(parallel);
+        PoseBufferTest.assertSamePose(serial.getSkeleton(), parallel.getSkeleton());
+
+        serial.update(0.5f);
+        parallel.update(0.5f);
+        PoseBufferTest.assertSamePose(serial.getSkeleton(), parallel.getSkeleton());
+        assertEquals(0, state.getControlCount());
+    }
+}
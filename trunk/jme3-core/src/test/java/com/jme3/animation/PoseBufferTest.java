@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.util.HashMap;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that the pose buffer evaluates the same pose as the bones.
+ */
+public class PoseBufferTest {
+
+    static Skeleton createSkeleton() {
+        Bone root = new Bone("root");
+        root.setBindTransforms(new Vector3f(0, 1, 0), new Quaternion().fromAngles(0, 0.3f, 0), new Vector3f(1, 1, 1));
+        Bone spine = new Bone("spine");
+        spine.setBindTransforms(new Vector3f(0, 2, 0.5f), new Quaternion().fromAngles(0.2f, 0, 0.1f), new Vector3f(1.2f, 1, 1));
+        Bone head = new Bone("head");
+        head.setBindTransforms(new Vector3f(0.1f, 1, 0), new Quaternion().fromAngles(0, 0, -0.4f), new Vector3f(1, 0.9f, 1));
+        Bone arm = new Bone("arm");
+        arm.setBindTransforms(new Vector3f(1, 0, 0), new Quaternion(), new Vector3f(1, 1, 1));
+        root.addChild(spine);
+        spine.addChild(head);
+        root.addChild(arm);
+        // not sorted parents first on purpose
+        return new Skeleton(new Bone[]{head, root, arm, spine});
+    }
+
+    private static BoneTrack track(int bone, float length, float angle, boolean withScales) {
+        int frames = 5;
+        float[] times = new float[frames];
+        Vector3f[] translations = new Vector3f[frames];
+        Quaternion[] rotations = new Quaternion[frames];
+        Vector3f[] scales = new Vector3f[frames];
+        for (int i = 0; i < frames; i++) {
+            times[i] = length * i / (frames - 1);
+            translations[i] = new Vector3f(0.1f * i, -0.05f * i, 0.02f * i * i);
+            rotations[i] = new Quaternion().fromAngles(angle * i, 0.5f * angle, -angle * i * 0.3f);
+            scales[i] = new Vector3f(1 + 0.1f * i, 1, 1 - 0.05f * i);
+        }
+        if (withScales) {
+            return new BoneTrack(bone, times, translations, rotations, scales);
+        }
+        return new BoneTrack(bone, times, translations, rotations);
+    }
+
+    static AnimControl createControl(Skeleton skeleton) {
+        Animation walk = new Animation("walk", 2);
+        walk.addTrack(track(0, 2, 0.3f, true));
+        walk.addTrack(track(1, 2, 0.2f, false));
+        walk.addTrack(track(3, 2, -0.25f, true));
+        Animation wave = new Animation("wave", 1.5f);
+        wave.addTrack(track(2, 1.5f, 0.8f, false));
+        wave.addTrack(track(3, 1.5f, 0.4f, true));
+        Animation idle = new Animation("idle", 3);
+        idle.addTrack(track(1, 3, 0.1f, true));
+        idle.addTrack(track(0, 3, -0.1f, false));
+
+        HashMap<String, Animation> anims = new HashMap<String, Animation>();
+        anims.put(walk.getName(), walk);
+        anims.put(wave.getName(), wave);
+        anims.put(idle.getName(), idle);
+        AnimControl control = new AnimControl(skeleton);
+        control.setAnimations(anims);
+        return control;
+    }
+
+    static void assertSamePose(Skeleton expected, Skeleton actual) {
+        for (int i = 0; i < expected.getBoneCount(); i++) {
+            Bone e = expected.getBone(i);
+            Bone a = actual.getBone(i);
+            assertEquals(e.getLocalPosition(), a.getLocalPosition());
+            assertEquals(e.getLocalRotation(), a.getLocalRotation());
+            assertEquals(e.getLocalScale(), a.getLocalScale());
+            assertEquals(e.getModelSpacePosition(), a.getModelSpacePosition());
+            assertEquals(e.getModelSpaceRotation(), a.getModelSpaceRotation());
+            assertEquals(e.getModelSpaceScale(), a.getModelSpaceScale());
+        }
+        Matrix4f[] expectedMatrices = expected.computeSkinningMatrices();
+        Matrix4f[] actualMatrices = actual.computeSkinningMatrices();
+        for (int i = 0; i < expectedMatrices.length; i++) {
+            assertEquals(expectedMatrices[i], actualMatrices[i]);
+        }
+    }
+
+    @Test
+    public void testSamePoseAsBones() {
+        Skeleton source = createSkeleton();
+        AnimControl expected = createControl(new Skeleton(source));
+        AnimControl actual = createControl(new Skeleton(source));
+        actual.setPoseBufferEnabled(true);
+
+        AnimChannel[][] channels = new AnimChannel[2][];
+        AnimControl[] controls = {expected, actual};
+        for (int c = 0; c < 2; c++) {
+            AnimChannel body = controls[c].createChannel();
+            body.setAnim("walk");
+            AnimChannel arm = controls[c].createChannel();
+            arm.addFromRootBone("spine");
+            arm.addBone("arm");
+            arm.setAnim("wave");
+            arm.setLoopMode(LoopMode.Cycle);
+            channels[c] = new AnimChannel[]{body, arm};
+        }
+
+        float[] steps = {0, 0.016f, 0.05f, 0.1f, 0.033f, 0.4f, 0.016f, 0.7f, 0.25f, 0.016f};
+        for (int frame = 0; frame < 60; frame++) {
+            float tpf = steps[frame % steps.length];
+            if (frame == 20) {
+                for (int c = 0; c < 2; c++) {
+                    // blends walk out while idle blends in
+                    channels[c][0].setAnim("idle", 0.5f);
+                }
+            }
+            if (frame == 35) {
+                for (int c = 0; c < 2; c++) {
+                    channels[c][1].setAnim("walk", 0.3f);
+                    channels[c][1].setSpeed(-0.5f);
+                }
+            }
+            expected.update(tpf);
+            actual.update(tpf);
+            assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+        }
+    }
+
+    @Test
+    public void testUserControlledBone() {
+        Skeleton source = createSkeleton();
+        AnimControl expected = createControl(new Skeleton(source));
+        AnimControl actual = createControl(new Skeleton(source));
+        actual.setPoseBufferEnabled(true);
+
+        Quaternion userRotation = new Quaternion().fromAngles(0, FastMath.HALF_PI, 0);
+        for (AnimControl control : new AnimControl[]{expected, actual}) {
+            control.createChannel().setAnim("walk");
+            Bone spine = control.getSkeleton().getBone("spine");
+            spine.setUserControl(true);
+            spine.setUserTransforms(Vector3f.ZERO, userRotation, Vector3f.UNIT_XYZ);
+        }
+
+        for (int frame = 0; frame < 10; frame++) {
+            expected.update(0.1f);
+            actual.update(0.1f);
+            assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+        }
+
+        // bones under user control can be moved after the update
+        for (AnimControl control : new AnimControl[]{expected, actual}) {
+            control.getSkeleton().getBone("spine").setUserTransformsInModelSpace(Vector3f.UNIT_X, userRotation);
+        }
+        assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+    }
+
+    @Test
+    public void testBonesMovedAfterUpdate() {
+        Skeleton source = createSkeleton();
+        AnimControl expected = createControl(new Skeleton(source));
+        AnimControl actual = createControl(new Skeleton(source));
+        actual.setPoseBufferEnabled(true);
+        for (AnimControl control : new AnimControl[]{expected, actual}) {
+            control.createChannel().setAnim("walk");
+            control.update(0.1f);
+        }
+
+        // the user control is enabled after the pose was evaluated
+        Quaternion userRotation = new Quaternion().fromAngles(0, FastMath.HALF_PI, 0);
+        for (AnimControl control : new AnimControl[]{expected, actual}) {
+            Bone arm = control.getSkeleton().getBone("arm");
+            arm.setUserControl(true);
+            arm.setUserTransformsInModelSpace(Vector3f.UNIT_Y, userRotation);
+        }
+        assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+
+        // a subtree updated from its local transforms
+        for (AnimControl control : new AnimControl[]{expected, actual}) {
+            control.update(0.1f);
+            Bone spine = control.getSkeleton().getBone("spine");
+            spine.getLocalRotation().set(userRotation);
+            spine.update();
+        }
+        assertSamePose(expected.getSkeleton(), actual.getSkeleton());
+    }
+
+    @Test
+    public void testAttachmentsNode() {
+        Skeleton skeleton = createSkeleton();
+        AnimControl control = createControl(skeleton);
+        control.setPoseBufferEnabled(true);
+        Node attachments = skeleton.getBone("head").getAttachmentsNode();
+        control.createChannel().setAnim("walk");
+
+        control.update(0.3f);
+        control.update(0.3f);
+        Bone head = skeleton.getBone("head");
+        assertEquals(head.getModelSpacePosition(), attachments.getLocalTranslation());
+        assertEquals(head.getModelSpaceRotation(), attachments.getLocalRotation());
+    }
+}
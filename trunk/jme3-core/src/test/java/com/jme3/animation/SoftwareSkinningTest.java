@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.animation;
+
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks that the array based and parallel software skinning of
+ * {@link SkeletonControl} give the same meshes as the chunked skinning.
+ */
+public class SoftwareSkinningTest {
+
+    private static final int VERTICES = 10000;
+
+    private final ViewPort viewPort = new ViewPort("test", new Camera(640, 480));
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static Mesh createMesh(boolean direct) {
+        float[] positions = new float[VERTICES * 3];
+        float[] normals = new float[VERTICES * 3];
+        float[] tangents = new float[VERTICES * 4];
+        float[] weights = new float[VERTICES * 4];
+        byte[] indices = new byte[VERTICES * 4];
+        for (int i = 0; i < VERTICES; i++) {
+            for (int c = 0; c < 3; c++) {
+                positions[i * 3 + c] = (float) Math.sin(i * 0.37 + c);
+                normals[i * 3 + c] = (float) Math.cos(i * 0.11 + c);
+                tangents[i * 4 + c] = (float) Math.sin(i * 0.23 - c);
+            }
+            tangents[i * 4 + 3] = i % 2 == 0 ? 1 : -1;
+            if (i % 7 == 0) {
+                // not skinned
+                continue;
+            }
+            for (int w = 0; w < 3; w++) {
+                indices[i * 4 + w] = (byte) ((i + w) % 4);
+            }
+            weights[i * 4] = 0.5f;
+            weights[i * 4 + 1] = 0.3f;
+            weights[i * 4 + 2] = 0.2f;
+        }
+
+        Mesh mesh = new Mesh();
+        if (direct) {
+            mesh.setBuffer(Type.Position, 3, BufferUtils.createFloatBuffer(positions));
+            mesh.setBuffer(Type.Normal, 3, BufferUtils.createFloatBuffer(normals));
+            mesh.setBuffer(Type.Tangent, 4, BufferUtils.createFloatBuffer(tangents));
+        } else {
+            mesh.setBuffer(Type.Position, 3, FloatBuffer.wrap(positions));
+            mesh.setBuffer(Type.Normal, 3, FloatBuffer.wrap(normals));
+            mesh.setBuffer(Type.Tangent, 4, FloatBuffer.wrap(tangents));
+        }
+        mesh.setBuffer(Type.BoneIndex, 4, ByteBuffer.wrap(indices));
+        mesh.setBuffer(Type.BoneWeight, 4, FloatBuffer.wrap(weights));
+        mesh.setMaxNumWeights(3);
+        mesh.generateBindPose(true);
+        return mesh;
+    }
+
+    private static SkeletonControl createModel(Skeleton skeleton, Mesh mesh) {
+        Node model = new Node("model");
+        model.attachChild(new Geometry("body", mesh));
+        SkeletonControl control = new SkeletonControl(skeleton);
+        control.setHardwareSkinningPreferred(false);
+        model.addControl(control);
+        return control;
+    }
+
+    private void render(SkeletonControl control) {
+        control.update(0);
+        control.render(null, viewPort);
+    }
+
+    private static void assertSameBuffer(Mesh expected, Mesh actual, Type type) {
+        FloatBuffer e = (FloatBuffer) expected.getBuffer(type).getData();
+        FloatBuffer a = (FloatBuffer) actual.getBuffer(type).getData();
+        assertEquals(e.limit(), a.limit());
+        for (int i = 0; i < e.limit(); i++) {
+            assertEquals(type + " " + i, e.get(i), a.get(i), 0);
+        }
+    }
+
+    @Test
+    public void testSameMeshes() {
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        AnimControl anim = PoseBufferTest.createControl(skeleton);
+        anim.createChannel().setAnim("walk");
+
+        SkeletonControl expected = createModel(skeleton, createMesh(true));
+        SkeletonControl parallel = createModel(skeleton, createMesh(true));
+        parallel.setParallelSkinning(true);
+        parallel.setParallelSkinningPool(pool);
+        SkeletonControl heap = createModel(skeleton, createMesh(false));
+        heap.setParallelSkinning(true);
+        heap.setParallelSkinningPool(pool);
+
+        for (int frame = 0; frame < 3; frame++) {
+            anim.update(0.3f);
+            for (SkeletonControl control : new SkeletonControl[]{expected, parallel, heap}) {
+                render(control);
+            }
+            for (SkeletonControl control : new SkeletonControl[]{parallel, heap}) {
+                for (Type type : new Type[]{Type.Position, Type.Normal, Type.Tangent}) {
+                    assertSameBuffer(expected.getTargets()[0], control.getTargets()[0], type);
+                    assertTrue(control.getTargets()[0].getBuffer(type).isUpdateNeeded());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNormalsNotSkinned() {
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        AnimControl anim = PoseBufferTest.createControl(skeleton);
+        anim.createChannel().setAnim("walk");
+
+        SkeletonControl expected = createModel(skeleton, createMesh(true));
+        SkeletonControl positions = createModel(skeleton, createMesh(true));
+        // skinned on the render thread
+        positions.setNormalsSkinned(false);
+
+        anim.update(0.3f);
+        render(expected);
+        render(positions);
+        Mesh mesh = positions.getTargets()[0];
+        assertSameBuffer(expected.getTargets()[0], mesh, Type.Position);
+        FloatBuffer normals = (FloatBuffer) mesh.getBuffer(Type.Normal).getData();
+        FloatBuffer bindNormals = (FloatBuffer) mesh.getBuffer(Type.BindPoseNormal).getData();
+        FloatBuffer skinnedNormals = (FloatBuffer) expected.getTargets()[0].getBuffer(Type.Normal).getData();
+        boolean skinned = false;
+        for (int i = 0; i < normals.limit(); i++) {
+            assertEquals(bindNormals.get(i), normals.get(i), 0);
+            skinned |= skinnedNormals.get(i) != bindNormals.get(i);
+        }
+        assertTrue(skinned);
+    }
+
+    @Test
+    public void testNormalsResetWhenNoLongerSkinned() {
+        Skeleton skeleton = PoseBufferTest.createSkeleton();
+        AnimControl anim = PoseBufferTest.createControl(skeleton);
+        anim.createChannel().setAnim("walk");
+
+        SkeletonControl control = createModel(skeleton, createMesh(true));
+        anim.update(0.3f);
+        render(control);
+        Mesh mesh = control.getTargets()[0];
+        mesh.getBuffer(Type.Normal).clearUpdateNeeded();
+        mesh.getBuffer(Type.Tangent).clearUpdateNeeded();
+
+        control.setNormalsSkinned(false);
+        anim.update(0.3f);
+        render(control);
+        for (Type type : new Type[]{Type.Normal, Type.Tangent}) {
+            FloatBuffer buffer = (FloatBuffer) mesh.getBuffer(type).getData();
+            FloatBuffer bindPose = (FloatBuffer) mesh.getBuffer(type == Type.Normal
+                    ? Type.BindPoseNormal : Type.BindPoseTangent).getData();
+            for (int i = 0; i < buffer.limit(); i++) {
+                assertEquals(type + " " + i, bindPose.get(i), buffer.get(i), 0);
+            }
+            assertTrue(mesh.getBuffer(type).isUpdateNeeded());
+            mesh.getBuffer(type).clearUpdateNeeded();
+        }
+
+        // only reset once
+        anim.update(0.3f);
+        render(control);
+        assertFalse(mesh.getBuffer(Type.Normal).isUpdateNeeded());
+        assertFalse(mesh.getBuffer(Type.Tangent).isUpdateNeeded());
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.app.LegacyApplication;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the ordering, cancellation and prefetching of scheduled loads.
+ */
+public class AssetLoadSchedulerTest {
+
+    private static final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+    private static final List<String> childThreads = Collections.synchronizedList(new ArrayList<String>());
+    private static volatile CountDownLatch gate;
+
+    public static class SchedulerLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) throws IOException {
+            String name = assetInfo.getKey().getName();
+            AssetManager manager = assetInfo.getManager();
+            if (name.startsWith("Gate")) {
+                try {
+                    gate.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            } else if (name.startsWith("Missing")) {
+                throw new IOException("Broken asset");
+            } else if (name.startsWith("Fatal")) {
+                throw new LinkageError("Fatal asset");
+            } else if (name.startsWith("Parent")) {
+                AssetKey<Object> first = new AssetKey<Object>("Child1.sched");
+                AssetKey<Object> second = new AssetKey<Object>("Child2.sched");
+                AssetLoadScheduler.prefetch(manager, first);
+                AssetLoadScheduler.prefetch(manager, second);
+                manager.loadAsset(second);
+                manager.loadAsset(first);
+            } else if (name.startsWith("Child")) {
+                childThreads.add(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            loaded.add(name);
+            return name;
+        }
+    }
+
+    private static class TestApplication extends LegacyApplication {
+
+        void runTasks() {
+            runQueuedTasks();
+        }
+    }
+
+    private static class RecordingListener implements AssetLoadScheduler.Listener<Object> {
+
+        final List<Object> results = new ArrayList<Object>();
+
+        public void assetLoaded(AssetLoadRequest<Object> request, Object asset) {
+            results.add(asset);
+        }
+
+        public void assetFailed(AssetLoadRequest<Object> request, Throwable error) {
+            results.add(error);
+        }
+    }
+
+    private TestApplication app;
+    private DesktopAssetManager assetManager;
+
+    @Before
+    public void setUp() {
+        loaded.clear();
+        childThreads.clear();
+        gate = new CountDownLatch(1);
+        assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(null, DesktopAssetManagerTest.MemoryLocator.class);
+        assetManager.registerLoader(SchedulerLoader.class, "sched");
+        app = new TestApplication();
+        app.setAssetManager(assetManager);
+    }
+
+    private static AssetKey<Object> key(String name) {
+        return new AssetKey<Object>(name + ".sched");
+    }
+
+    private void waitFor(AssetLoadRequest<?>... requests) throws Exception {
+        for (AssetLoadRequest<?> request : requests) {
+            try {
+                request.get();
+            } catch (ExecutionException ex) {
+            } catch (CancellationException ex) {
+            }
+        }
+        app.runTasks();
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        AssetLoadScheduler scheduler = new AssetLoadScheduler(app, 1);
+        RecordingListener listener = new RecordingListener();
+        AssetLoadRequest<Object> blocker = scheduler.load(key("Gate"), 0, listener);
+        AssetLoadRequest<Object> far = scheduler.load(key("Far"), 50, listener);
+        AssetLoadRequest<Object> near = scheduler.load(key("Near"), 1, listener);
+        AssetLoadRequest<Object> middle = scheduler.load(key("Middle"), 10, listener);
+        assertEquals(3, scheduler.getPendingCount());
+
+        // the results are only delivered on the render thread
+        gate.countDown();
+        blocker.get();
+        far.get();
+        assertTrue(listener.results.isEmpty());
+        waitFor(near, middle);
+
+        assertEquals(Arrays.asList("Gate.sched", "Near.sched", "Middle.sched", "Far.sched"), loaded);
+        assertEquals(loaded, listener.results);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testReprioritize() throws Exception {
+        AssetLoadScheduler scheduler = new AssetLoadScheduler(app, 1);
+        AssetLoadRequest<Object> blocker = scheduler.load(key("Gate"), 0, null);
+        AssetLoadRequest<Object> first = scheduler.load(key("First"), 1, null);
+        AssetLoadRequest<Object> second = scheduler.load(key("Second"), 2, null);
+        second.setPriority(0);
+        assertEquals(0, second.getPriority(), 0);
+
+        gate.countDown();
+        waitFor(blocker, first, second);
+        assertEquals(Arrays.asList("Gate.sched", "Second.sched", "First.sched"), loaded);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        AssetLoadScheduler scheduler = new AssetLoadScheduler(app, 1);
+        RecordingListener listener = new RecordingListener();
+        AssetLoadRequest<Object> blocker = scheduler.load(key("Gate"), 0, listener);
+        AssetLoadRequest<Object> dropped = scheduler.load(key("Dropped"), 1, listener);
+        AssetLoadRequest<Object> kept = scheduler.load(key("Kept"), 2, listener);
+
+        assertTrue(dropped.cancel(false));
+        assertFalse(dropped.cancel(false));
+        assertTrue(dropped.isCancelled());
+        assertTrue(dropped.isDone());
+        gate.countDown();
+        waitFor(blocker, dropped, kept);
+
+        assertEquals(Arrays.asList("Gate.sched", "Kept.sched"), loaded);
+        assertEquals(loaded, listener.results);
+        try {
+            dropped.get();
+            fail("Expected CancellationException");
+        } catch (CancellationException ex) {
+        }
+        assertFalse(kept.cancel(false));
+        scheduler.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testErrorIsDelivered() throws Exception {
+        AssetLoadScheduler scheduler = new AssetLoadScheduler(app, 1);
+        RecordingListener listener = new RecordingListener();
+        AssetLoadRequest<Object> broken = scheduler.load(key("Fatal"), 0, listener);
+        try {
+            broken.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof LinkageError);
+        }
+        assertTrue(broken.isDone());
+        app.runTasks();
+        assertEquals(1, listener.results.size());
+        assertTrue(listener.results.get(0) instanceof LinkageError);
+
+        // the loading thread survives the error
+        AssetLoadRequest<Object> next = scheduler.load(key("Next"), 0, null);
+        assertEquals("Next.sched", next.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testFailureIsDelivered() throws Exception {
+        AssetLoadScheduler scheduler = new AssetLoadScheduler(app, 1);
+        RecordingListener listener = new RecordingListener();
+        AssetLoadRequest<Object> broken = scheduler.load(key("Missing"), 0, listener);
+        waitFor(broken);
+
+        assertEquals(1, listener.results.size());
+        assertTrue(listener.results.get(0) instanceof AssetLoadException);
+        try {
+            broken.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException ex) {
+            assertSame(listener.results.get(0), ex.getCause());
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPrefetchedDependencies() throws Exception {
+        AssetLoadScheduler scheduler = new AssetLoadScheduler(app, 2);
+        RecordingListener listener = new RecordingListener();
+        AssetLoadRequest<Object> parent = scheduler.load(key("Parent"), 0, listener);
+        waitFor(parent);
+
+        // each dependency is loaded once, one of them by the other thread
+        assertEquals(Arrays.asList("Parent.sched"), listener.results);
+        assertEquals(3, assetManager.getNumLoads());
+        assertEquals(2, childThreads.size());
+        assertNotEquals(childThreads.get(0), childThreads.get(1));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPrefetchOutsideScheduler() {
+        // loading without a scheduler ignores the prefetched dependencies
+        assertEquals("Parent.sched", assetManager.loadAsset(key("Parent")));
+        assertEquals(3, assetManager.getNumLoads());
+        assertEquals(2, childThreads.size());
+        assertEquals(childThreads.get(0), childThreads.get(1));
+    }
+}
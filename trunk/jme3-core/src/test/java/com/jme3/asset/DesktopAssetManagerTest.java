@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.asset.cache.AssetCache;
+import com.jme3.asset.cache.BoundedAssetCache;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that concurrent requests for the same asset share one load.
+ */
+public class DesktopAssetManagerTest {
+
+    private static final AtomicInteger loadCount = new AtomicInteger();
+    private static volatile CountDownLatch release;
+
+    public static class BlockingLoader implements AssetLoader {
+
+        @Override
+        public Object load(AssetInfo assetInfo) throws IOException {
+            loadCount.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            if (assetInfo.getKey().getName().startsWith("Missing")) {
+                throw new IOException("Broken asset");
+            }
+            return new StringBuilder(assetInfo.getKey().getName());
+        }
+    }
+
+    public static class MemoryLocator implements AssetLocator {
+
+        @Override
+        public void setRootPath(String rootPath) {
+        }
+
+        @Override
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+            };
+        }
+    }
+
+    private static List<Thread> startLoads(final AssetManager assetManager, final String name,
+            final List<Object> results, int count) {
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    Object result;
+                    try {
+                        result = assetManager.loadAsset(new AssetKey<Object>(name));
+                    } catch (RuntimeException ex) {
+                        result = ex;
+                    }
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private static void waitForBlockedThreads(List<Thread> threads) throws InterruptedException {
+        // one thread runs the loader, all the others wait for its result
+        while (true) {
+            int blocked = 0;
+            for (Thread thread : threads) {
+                if (thread.getState() == Thread.State.WAITING) {
+                    blocked++;
+                }
+            }
+            if (blocked == threads.size() && loadCount.get() > 0) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static DesktopAssetManager createAssetManager() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(null, MemoryLocator.class);
+        assetManager.registerLoader(BlockingLoader.class, "txt");
+        return assetManager;
+    }
+
+    @Test
+    public void testConcurrentLoadsAreShared() throws InterruptedException {
+        DesktopAssetManager assetManager = createAssetManager();
+        loadCount.set(0);
+        release = new CountDownLatch(1);
+
+        List<Object> results = new ArrayList<Object>();
+        List<Thread> threads = startLoads(assetManager, "Shared.txt", results, 8);
+        waitForBlockedThreads(threads);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loadCount.get());
+        assertEquals(1, assetManager.getNumLoads());
+        assertEquals(7, assetManager.getNumCoalescedLoads());
+        assertEquals(8, results.size());
+        for (Object result : results) {
+            assertSame(results.get(0), result);
+        }
+    }
+
+    @Test
+    public void testFailureIsShared() throws InterruptedException {
+        DesktopAssetManager assetManager = createAssetManager();
+        loadCount.set(0);
+        release = new CountDownLatch(1);
+
+        List<Object> results = new ArrayList<Object>();
+        List<Thread> threads = startLoads(assetManager, "Missing.txt", results, 4);
+        waitForBlockedThreads(threads);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loadCount.get());
+        assertEquals(4, results.size());
+        for (Object result : results) {
+            assertTrue(result instanceof AssetLoadException);
+        }
+
+        // the failure is not cached, a later request loads again
+        try {
+            assetManager.loadAsset(new AssetKey<Object>("Missing.txt"));
+            fail("Expected AssetLoadException");
+        } catch (AssetLoadException ex) {
+        }
+        assertEquals(2, loadCount.get());
+    }
+
+    private static final class BoundedKey extends AssetKey<Object> {
+
+        BoundedKey(String name) {
+            super(name);
+        }
+
+        @Override
+        public Class<? extends AssetCache> getCacheType() {
+            return BoundedAssetCache.class;
+        }
+    }
+
+    @Test
+    public void testOneMissPerLoad() {
+        DesktopAssetManager assetManager = createAssetManager();
+        release = new CountDownLatch(0);
+
+        Object asset = assetManager.loadAsset(new BoundedKey("Bounded.txt"));
+        BoundedAssetCache cache = assetManager.getCache(BoundedAssetCache.class);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+
+        assertSame(asset, assetManager.loadAsset(new BoundedKey("Bounded.txt")));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.asset.cache.WeakRefCloneAssetCache;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that models loaded with and without collision data are cached
+ * separately.
+ */
+public class ModelKeyTest {
+
+    @Test
+    public void testCollisionDataInKey() {
+        ModelKey plain = new ModelKey("Models/Test.j3o");
+        ModelKey withCollision = new ModelKey("Models/Test.j3o");
+        withCollision.setCreateCollisionData(true);
+
+        assertFalse(plain.equals(withCollision));
+        assertFalse(withCollision.equals(plain));
+        assertNotEquals(plain.hashCode(), withCollision.hashCode());
+
+        ModelKey other = new ModelKey("Models/Test.j3o");
+        other.setCreateCollisionData(true);
+        assertEquals(withCollision, other);
+        assertEquals(withCollision.hashCode(), other.hashCode());
+    }
+
+    @Test
+    public void testCacheLookup() {
+        WeakRefCloneAssetCache cache = new WeakRefCloneAssetCache();
+        ModelKey plain = new ModelKey("Models/Test.j3o");
+        Spatial model = new Node("Test");
+        cache.addToCache(plain, model);
+
+        ModelKey withCollision = new ModelKey("Models/Test.j3o");
+        withCollision.setCreateCollisionData(true);
+        assertNull(cache.getFromCache(withCollision));
+        assertSame(model, cache.getFromCache(new ModelKey("Models/Test.j3o")));
+    }
+}
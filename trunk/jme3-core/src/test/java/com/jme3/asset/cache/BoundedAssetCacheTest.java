@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the budget and the least recently used eviction of
+ * {@link BoundedAssetCache}.
+ */
+public class BoundedAssetCacheTest {
+
+    private static Image createImage(int size) {
+        return new Image(Image.Format.RGBA8, size, size, BufferUtils.createByteBuffer(size * size * 4), ColorSpace.Linear);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        // room for two 64x64 images and a bit
+        BoundedAssetCache cache = new BoundedAssetCache(2 * (64 * 64 * 4 + 1024) + 100);
+        AssetKey<Image> a = new AssetKey<Image>("a.png");
+        AssetKey<Image> b = new AssetKey<Image>("b.png");
+        AssetKey<Image> c = new AssetKey<Image>("c.png");
+
+        Image imageA = createImage(64);
+        cache.addToCache(a, imageA);
+        cache.addToCache(b, createImage(64));
+        assertEquals(2 * (64 * 64 * 4 + 1024), cache.getSize());
+
+        // a is now more recent than b
+        assertSame(imageA, cache.getFromCache(a));
+        cache.addToCache(c, createImage(64));
+
+        assertEquals(2, cache.getAssetCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(a));
+        assertNotNull(cache.getFromCache(c));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testOversizedAssetIsKeptUntilNextAdd() {
+        BoundedAssetCache cache = new BoundedAssetCache(1000);
+        AssetKey<Image> a = new AssetKey<Image>("a.png");
+        AssetKey<String> b = new AssetKey<String>("b.txt");
+
+        cache.addToCache(a, createImage(64));
+        assertNotNull(cache.getFromCache(a));
+
+        cache.addToCache(b, "text");
+        assertNull(cache.getFromCache(a));
+        assertEquals(1, cache.getAssetCount());
+
+        cache.setBudget(0);
+        assertEquals(0, cache.getAssetCount());
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+    }
+}
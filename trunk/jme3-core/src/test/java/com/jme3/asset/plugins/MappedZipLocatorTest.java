@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.Vector3f;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import jme3tools.pack.AssetPackWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the mapped locator reads regular zip files and aligned
+ * asset packs.
+ */
+public class MappedZipLocatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] createText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString().getBytes();
+    }
+
+    private static byte[] createBinary(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readFully(AssetInfo info) throws IOException {
+        InputStream in = info.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    private File createZip(byte[] text, byte[] binary) throws IOException {
+        File file = folder.newFile("assets.zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        zip.putNextEntry(new ZipEntry("Text/"));
+        zip.putNextEntry(new ZipEntry("Text/a.txt"));
+        zip.write(text);
+        ZipEntry stored = new ZipEntry("Data/b.bin");
+        CRC32 crc = new CRC32();
+        crc.update(binary);
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(binary.length);
+        stored.setCrc(crc.getValue());
+        zip.putNextEntry(stored);
+        zip.write(binary);
+        zip.close();
+        return file;
+    }
+
+    private static MappedZipLocator.ZipAssetInfo locate(MappedZipLocator locator, String name) {
+        return (MappedZipLocator.ZipAssetInfo) locator.locate(null, new AssetKey<Object>(name));
+    }
+
+    @Test
+    public void testZipFile() throws IOException {
+        byte[] text = createText();
+        byte[] binary = createBinary(1000);
+        MappedZipLocator locator = new MappedZipLocator();
+        locator.setRootPath(createZip(text, binary).getPath());
+        assertEquals(2, locator.getEntryCount());
+
+        MappedZipLocator.ZipAssetInfo deflated = locate(locator, "Text/a.txt");
+        assertNull(deflated.getStoredData());
+        assertEquals(text.length, deflated.getSize());
+        assertArrayEquals(text, readFully(deflated));
+        // the inflater of the first read is reused
+        assertArrayEquals(text, readFully(deflated));
+
+        MappedZipLocator.ZipAssetInfo stored = locate(locator, "/Data/b.bin");
+        assertArrayEquals(binary, readFully(stored));
+        assertArrayEquals(binary, toArray(stored.getStoredData()));
+        assertTrue(stored.getStoredData().isReadOnly());
+
+        assertNull(locate(locator, "Text/"));
+        assertNull(locate(locator, "Missing.txt"));
+    }
+
+    @Test
+    public void testSharedArchive() throws IOException {
+        byte[] text = createText();
+        File file = createZip(text, createBinary(1000));
+        MappedZipLocator first = new MappedZipLocator();
+        first.setRootPath(file.getPath());
+        MappedZipLocator second = new MappedZipLocator();
+        second.setRootPath(file.getAbsoluteFile().getParentFile() + "/./" + file.getName());
+        // one mapping and one index for the locators of each loading thread
+        assertSame(first.getSharedArchive(), second.getSharedArchive());
+
+        // opened again once the file changed
+        File other = folder.newFile("other.zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(other));
+        zip.putNextEntry(new ZipEntry("c.txt"));
+        zip.write(text);
+        zip.close();
+        Files.copy(other.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        MappedZipLocator third = new MappedZipLocator();
+        third.setRootPath(file.getPath());
+        assertNotSame(first.getSharedArchive(), third.getSharedArchive());
+        assertEquals(1, third.getEntryCount());
+        assertArrayEquals(text, readFully(locate(third, "c.txt")));
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final byte[] text = createText();
+        final MappedZipLocator locator = new MappedZipLocator();
+        locator.setRootPath(createZip(text, createBinary(10)).getPath());
+
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            // nested streams take different inflaters
+                            AssetInfo info = locate(locator, "Text/a.txt");
+                            InputStream outer = info.openStream();
+                            assertArrayEquals(text, readFully(info));
+                            assertEquals('l', outer.read());
+                            outer.close();
+                        }
+                    } catch (Throwable t) {
+                        synchronized (errors) {
+                            errors.add(t);
+                        }
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Arrays.asList(), errors);
+    }
+
+    @Test
+    public void testAlignedPack() throws IOException {
+        File file = folder.newFile("assets.pack");
+        byte[][] data = {createBinary(3), createBinary(1001), createText(), createBinary(77)};
+        String[] names = {"Meshes/a.bin", "Textures/b.dds", "Shaders/c.glsl", "/d.bin"};
+        AssetPackWriter writer = new AssetPackWriter(file, 64);
+        for (int i = 0; i < data.length; i++) {
+            writer.add(names[i], data[i], names[i].endsWith(".glsl"));
+        }
+        writer.close();
+
+        // the pack is a regular zip file
+        ZipFile zip = new ZipFile(file);
+        try {
+            assertEquals(data.length, zip.size());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("Shaders/c.glsl").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("d.bin").getMethod());
+        } finally {
+            zip.close();
+        }
+
+        MappedZipLocator locator = new MappedZipLocator();
+        locator.setRootPath(file.getPath());
+        for (int i = 0; i < data.length; i++) {
+            MappedZipLocator.ZipAssetInfo info = locate(locator, names[i]);
+            assertArrayEquals(data[i], readFully(info));
+            if (info.getStoredData() != null) {
+                assertEquals(0, info.getDataOffset() % 64);
+                assertArrayEquals(data[i], toArray(info.getStoredData()));
+            }
+        }
+        assertNull(locate(locator, "Shaders/c.glsl").getStoredData());
+    }
+
+    @Test
+    public void testLoadJ3oFromPack() throws IOException {
+        ByteArrayOutputStream j3o = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(new Vector3f(1, 2, 3), j3o);
+        File file = folder.newFile("models.pack");
+        AssetPackWriter writer = new AssetPackWriter(file, AssetPackWriter.DEFAULT_ALIGNMENT);
+        writer.add("Models/v.j3o", j3o.toByteArray());
+        writer.close();
+
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLoader(BinaryImporter.class, "j3o");
+        assetManager.registerLocator(file.getPath(), MappedZipLocator.class);
+        assertEquals(new Vector3f(1, 2, 3), assetManager.loadAsset(new AssetKey<Object>("Models/v.j3o")));
+    }
+}
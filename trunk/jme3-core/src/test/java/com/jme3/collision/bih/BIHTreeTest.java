@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.system.TestUtil;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validates parallel construction, serialization and closest hit queries
+ * of {@link BIHTree}.
+ */
+public class BIHTreeTest {
+
+    private static final int NUM_RAYS = 200;
+
+    private static Mesh createMesh() {
+        // ~20k triangles, above BIHTree.PARALLEL_BUILD_THRESHOLD
+        Mesh mesh = new Sphere(100, 100, 1);
+        assertTrue(mesh.getTriangleCount() > BIHTree.PARALLEL_BUILD_THRESHOLD * 4);
+        return mesh;
+    }
+
+    private static Ray createRay(int i) {
+        float angle = i * FastMath.TWO_PI / NUM_RAYS;
+        Vector3f origin = new Vector3f(FastMath.cos(angle) * 5, (i % 7) * 0.1f - 0.3f, FastMath.sin(angle) * 5);
+        return new Ray(origin, origin.negate().normalizeLocal());
+    }
+
+    private static CollisionResults[] castRays(Geometry geom) {
+        CollisionResults[] results = new CollisionResults[NUM_RAYS];
+        for (int i = 0; i < NUM_RAYS; i++) {
+            results[i] = new CollisionResults();
+            geom.collideWith(createRay(i), results[i]);
+        }
+        return results;
+    }
+
+    private static CollisionResults[] castRays(Geometry geom, BIHTree tree) {
+        CollisionResults[] results = new CollisionResults[NUM_RAYS];
+        for (int i = 0; i < NUM_RAYS; i++) {
+            results[i] = new CollisionResults();
+            tree.collideWith(createRay(i), geom.getWorldMatrix(), geom.getWorldBound(), results[i]);
+        }
+        return results;
+    }
+
+    private static void assertSameResults(CollisionResults[] expected, CollisionResults[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(expected[i].size() > 0);
+            assertEquals(expected[i].size(), actual[i].size());
+            for (int j = 0; j < expected[i].size(); j++) {
+                assertEquals(expected[i].getCollision(j).getTriangleIndex(), actual[i].getCollision(j).getTriangleIndex());
+                assertEquals(expected[i].getCollision(j).getDistance(), actual[i].getCollision(j).getDistance(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelConstruction() {
+        Mesh mesh = createMesh();
+        Geometry geom = new Geometry("sphere", mesh);
+        geom.updateGeometricState();
+
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        BIHTree serial = new BIHTree(mesh);
+        serial.construct(singleThread);
+        singleThread.shutdown();
+        CollisionResults[] expected = castRays(geom, serial);
+
+        mesh.createCollisionData();
+        assertSameResults(expected, castRays(geom));
+
+        mesh.clearCollisionData();
+        mesh.createCollisionDataAsync();
+        assertSameResults(expected, castRays(geom));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        Mesh mesh = createMesh();
+        Geometry geom = new Geometry("sphere", mesh);
+        geom.updateGeometricState();
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct();
+        CollisionResults[] expected = castRays(geom, tree);
+
+        BIHTree loadedTree = BinaryExporter.saveAndLoad(TestUtil.createAssetManager(), tree);
+        assertSameResults(expected, castRays(geom, loadedTree));
+
+        mesh.createCollisionData();
+        Geometry loaded = BinaryExporter.saveAndLoad(TestUtil.createAssetManager(), geom);
+        loaded.updateGeometricState();
+        assertSameResults(expected, castRays(loaded));
+    }
+
+    @Test
+    public void testClosestHit() {
+        Geometry geom = new Geometry("sphere", createMesh());
+        geom.setLocalTranslation(1, 2, 3);
+        geom.setLocalRotation(new Quaternion().fromAngles(0.3f, 1.1f, -0.4f));
+        geom.setLocalScale(0.5f, 2f, 1f);
+        geom.updateGeometricState();
+
+        CollisionResult closest = new CollisionResult();
+        int hits = 0;
+        for (int i = 0; i < NUM_RAYS; i++) {
+            Ray ray = createRay(i);
+            ray.getOrigin().addLocal(1, 2, 3);
+            CollisionResults results = new CollisionResults();
+            geom.collideWith(ray, results);
+
+            boolean hit = geom.collideWithClosest(ray, closest);
+            assertEquals(results.size() > 0, hit);
+            if (hit) {
+                CollisionResult expected = results.getClosestCollision();
+                assertEquals(expected.getTriangleIndex(), closest.getTriangleIndex());
+                assertEquals(expected.getDistance(), closest.getDistance(), 1e-4f);
+                assertTrue(expected.getContactPoint().distance(closest.getContactPoint()) < 1e-4f);
+                assertTrue(expected.getContactNormal().distance(closest.getContactNormal()) < 1e-4f);
+                assertSame(geom, closest.getGeometry());
+                hits++;
+            }
+        }
+        assertTrue(hits > NUM_RAYS / 2);
+
+        // the sphere is out of reach of a short ray
+        Ray ray = createRay(0);
+        ray.getOrigin().addLocal(1, 2, 3);
+        ray.setLimit(1f);
+        assertFalse(geom.collideWithClosest(ray, closest));
+    }
+}
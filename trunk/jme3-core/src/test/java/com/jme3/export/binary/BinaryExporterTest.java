@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryImporterTest.AllTypes;
+import com.jme3.math.Vector3f;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.jme3.export.binary.BinaryImporterTest.assertSameContent;
+import static com.jme3.export.binary.BinaryImporterTest.createAllTypes;
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that streamed exports read back like buffered ones.
+ */
+public class BinaryExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static BinaryExporter createStreaming() {
+        BinaryExporter exporter = BinaryExporter.getInstance();
+        exporter.setStreaming(true);
+        return exporter;
+    }
+
+    @Test
+    public void testStreamToFile() throws IOException {
+        AllTypes t = createAllTypes();
+        t.floatBuffer = BufferUtils.createFloatBuffer(100000);
+        File file = new File(folder.getRoot(), "streamed.j3o");
+        createStreaming().save(t, file);
+
+        assertSameContent(t, (AllTypes) BinaryImporter.getInstance().load(file));
+        // only the exported file is left
+        assertEquals(Arrays.asList("streamed.j3o"), Arrays.asList(folder.getRoot().list()));
+    }
+
+    @Test
+    public void testStreamToOutputStream() throws IOException {
+        AllTypes t = createAllTypes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createStreaming().save(t, out);
+
+        assertSameContent(t, (AllTypes) BinaryImporter.getInstance().load(out.toByteArray()));
+    }
+
+    @Test
+    public void testSharedObjects() throws IOException {
+        AllTypes t = createAllTypes();
+        t.list = new ArrayList<Savable>();
+        for (int i = 0; i < 100; i++) {
+            t.list.add(new Vector3f(1, 2, 3));
+        }
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(t, buffered);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        createStreaming().save(t, streamed);
+
+        // identical small objects are written once, like in buffered mode
+        assertEquals(buffered.size(), streamed.size());
+        assertSameContent(t, (AllTypes) BinaryImporter.getInstance().load(streamed.toByteArray()));
+    }
+}
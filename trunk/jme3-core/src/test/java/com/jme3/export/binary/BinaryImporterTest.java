@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.asset.ModelKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.IntMap;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that lazy and eager field decoding, and loading from a mapped
+ * file, read back the same values.
+ */
+public class BinaryImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public static class AllTypes implements Savable {
+
+        ArrayList<Savable> list;
+        Map<String, Savable> stringMap;
+        IntMap<Savable> intMap;
+        Map<Savable, Savable> savableMap;
+        ArrayList<FloatBuffer> floatBuffers;
+        FloatBuffer floatBuffer;
+        ByteBuffer byteBuffer;
+        String[][] strings;
+        BitSet bits;
+        long[][] longs;
+        double[] doubles;
+        int[][] ints;
+        short[] shorts;
+        boolean[][] booleans;
+        byte[] bytes;
+        Savable[][] savables;
+        String text;
+        Vector3f vector;
+        int negative;
+        long bigLong;
+        short shortValue;
+        double doubleValue;
+        float floatValue;
+        boolean flag;
+        byte byteValue;
+        int[] nullInts;
+        int last;
+
+        @Override
+        public void write(JmeExporter ex) throws IOException {
+            OutputCapsule oc = ex.getCapsule(this);
+            oc.writeSavableArrayList(list, "list", null);
+            oc.writeStringSavableMap(stringMap, "stringMap", null);
+            oc.writeIntSavableMap(intMap, "intMap", null);
+            oc.writeSavableMap(savableMap, "savableMap", null);
+            oc.writeFloatBufferArrayList(floatBuffers, "floatBuffers", null);
+            oc.write(floatBuffer, "floatBuffer", null);
+            oc.write(byteBuffer, "byteBuffer", null);
+            oc.write(strings, "strings", null);
+            oc.write(bits, "bits", null);
+            oc.write(longs, "longs", null);
+            oc.write(doubles, "doubles", null);
+            oc.write(ints, "ints", null);
+            oc.write(shorts, "shorts", null);
+            oc.write(booleans, "booleans", null);
+            oc.write(bytes, "bytes", null);
+            oc.write(savables, "savables", null);
+            oc.write(text, "text", null);
+            oc.write(vector, "vector", null);
+            oc.write(negative, "negative", 0);
+            oc.write(bigLong, "bigLong", 0);
+            oc.write(shortValue, "shortValue", (short) 0);
+            oc.write(doubleValue, "doubleValue", 0);
+            oc.write(floatValue, "floatValue", 0);
+            oc.write(flag, "flag", false);
+            oc.write(byteValue, "byteValue", (byte) 0);
+            oc.write(nullInts, "nullInts", new int[0]);
+            oc.write(last, "last", 0);
+        }
+
+        @Override
+        public void read(JmeImporter im) throws IOException {
+            InputCapsule ic = im.getCapsule(this);
+            // read backwards so that lazy decoding must find each field
+            last = ic.readInt("last", 0);
+            nullInts = ic.readIntArray("nullInts", new int[0]);
+            byteValue = ic.readByte("byteValue", (byte) 0);
+            flag = ic.readBoolean("flag", false);
+            floatValue = ic.readFloat("floatValue", 0);
+            doubleValue = ic.readDouble("doubleValue", 0);
+            shortValue = ic.readShort("shortValue", (short) 0);
+            bigLong = ic.readLong("bigLong", 0);
+            negative = ic.readInt("negative", 0);
+            vector = (Vector3f) ic.readSavable("vector", null);
+            text = ic.readString("text", null);
+            savables = ic.readSavableArray2D("savables", null);
+            bytes = ic.readByteArray("bytes", null);
+            booleans = ic.readBooleanArray2D("booleans", null);
+            shorts = ic.readShortArray("shorts", null);
+            ints = ic.readIntArray2D("ints", null);
+            doubles = ic.readDoubleArray("doubles", null);
+            longs = ic.readLongArray2D("longs", null);
+            bits = ic.readBitSet("bits", null);
+            strings = ic.readStringArray2D("strings", null);
+            byteBuffer = ic.readByteBuffer("byteBuffer", null);
+            floatBuffer = ic.readFloatBuffer("floatBuffer", null);
+            floatBuffers = ic.readFloatBufferArrayList("floatBuffers", null);
+            savableMap = (Map<Savable, Savable>) ic.readSavableMap("savableMap", null);
+            intMap = (IntMap<Savable>) ic.readIntSavableMap("intMap", null);
+            stringMap = (Map<String, Savable>) ic.readStringSavableMap("stringMap", null);
+            list = ic.readSavableArrayList("list", null);
+        }
+    }
+
+    static AllTypes createAllTypes() {
+        AllTypes t = new AllTypes();
+        t.list = new ArrayList<Savable>(Arrays.asList(new Vector3f(1, 2, 3), null, new Vector3f(4, 5, 6)));
+        t.stringMap = new HashMap<String, Savable>();
+        t.stringMap.put("a", new Vector3f(7, 8, 9));
+        t.intMap = new IntMap<Savable>();
+        t.intMap.put(-5, new Vector3f(1, 1, 1));
+        t.savableMap = new HashMap<Savable, Savable>();
+        t.savableMap.put(new Vector3f(2, 2, 2), new Vector3f(3, 3, 3));
+        t.floatBuffers = new ArrayList<FloatBuffer>();
+        t.floatBuffers.add(BufferUtils.createFloatBuffer(1f, 2f));
+        t.floatBuffer = BufferUtils.createFloatBuffer(1f, -2f, 3.5f);
+        t.byteBuffer = BufferUtils.createByteBuffer(new byte[]{1, -2, 3});
+        t.strings = new String[][]{{"x", "été"}, null, {}};
+        t.bits = new BitSet();
+        t.bits.set(3);
+        t.longs = new long[][]{{Long.MIN_VALUE, -1, 0, 300}};
+        t.doubles = new double[]{Math.PI, -0.5};
+        t.ints = new int[][]{{-1, -2, 70000, Integer.MAX_VALUE}, null};
+        t.shorts = new short[]{-3, 4};
+        t.booleans = new boolean[][]{{true, false}};
+        t.bytes = new byte[]{-128, 127};
+        t.savables = new Savable[][]{{new Vector3f(0, 1, 0)}};
+        t.text = "text";
+        t.vector = new Vector3f(9, 9, 9);
+        t.negative = -123456;
+        t.bigLong = 1L << 40;
+        t.shortValue = -7;
+        t.doubleValue = 1e100;
+        t.floatValue = 0.25f;
+        t.flag = true;
+        t.byteValue = -1;
+        t.nullInts = null;
+        t.last = 42;
+        return t;
+    }
+
+    private static AllTypes roundTrip(AllTypes t, boolean lazy) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(t, out);
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setLazyDecoding(lazy);
+        return (AllTypes) importer.load(out.toByteArray());
+    }
+
+    static void assertSameContent(AllTypes e, AllTypes a) {
+        assertEquals(e.list, a.list);
+        assertEquals(e.stringMap, a.stringMap);
+        assertEquals(e.intMap.get(-5), a.intMap.get(-5));
+        assertEquals(e.savableMap, a.savableMap);
+        assertEquals(e.floatBuffers, a.floatBuffers);
+        assertEquals(e.floatBuffer, a.floatBuffer);
+        assertEquals(e.byteBuffer, a.byteBuffer);
+        assertTrue(Arrays.deepEquals(e.strings, a.strings));
+        assertEquals(e.bits, a.bits);
+        assertTrue(Arrays.deepEquals(e.longs, a.longs));
+        assertTrue(Arrays.equals(e.doubles, a.doubles));
+        assertTrue(Arrays.deepEquals(e.ints, a.ints));
+        assertTrue(Arrays.equals(e.shorts, a.shorts));
+        assertTrue(Arrays.deepEquals(e.booleans, a.booleans));
+        assertTrue(Arrays.equals(e.bytes, a.bytes));
+        assertTrue(Arrays.deepEquals(e.savables, a.savables));
+        assertEquals(e.text, a.text);
+        assertEquals(e.vector, a.vector);
+        assertEquals(e.negative, a.negative);
+        assertEquals(e.bigLong, a.bigLong);
+        assertEquals(e.shortValue, a.shortValue);
+        assertEquals(e.doubleValue, a.doubleValue, 0);
+        assertEquals(e.floatValue, a.floatValue, 0);
+        assertEquals(e.flag, a.flag);
+        assertEquals(e.byteValue, a.byteValue);
+        assertNull(a.nullInts);
+        assertEquals(e.last, a.last);
+    }
+
+    @Test
+    public void testLazyDecoding() throws IOException {
+        AllTypes t = createAllTypes();
+        assertSameContent(t, roundTrip(t, true));
+    }
+
+    @Test
+    public void testEagerDecoding() throws IOException {
+        AllTypes t = createAllTypes();
+        assertSameContent(t, roundTrip(t, false));
+    }
+
+    private AllTypes roundTripFile(AllTypes t, boolean lazy) throws IOException {
+        File file = folder.newFile();
+        BinaryExporter.getInstance().save(t, file);
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setLazyDecoding(lazy);
+        assertFalse(importer.isMemoryMapping());
+        importer.setMemoryMapping(true);
+        return (AllTypes) importer.load(file);
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        AllTypes t = createAllTypes();
+        assertSameContent(t, roundTripFile(t, true));
+        assertSameContent(t, roundTripFile(t, false));
+    }
+
+    @Test
+    public void testMappedBuffers() throws IOException {
+        AllTypes t = createAllTypes();
+        t.floatBuffer = BufferUtils.createFloatBuffer(BinaryImporter.MIN_MAPPED_BUFFER_SIZE);
+        for (int i = 0; i < t.floatBuffer.limit(); i++) {
+            t.floatBuffer.put(i, i * 0.5f);
+        }
+        File file = folder.newFile();
+        BinaryExporter.getInstance().save(t, file);
+
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setMemoryMapping(true);
+        AllTypes a = (AllTypes) importer.load(file);
+        assertSameContent(t, a);
+        assertTrue(a.floatBuffer.isDirect());
+        assertTrue(a.floatBuffer.isReadOnly());
+
+        // copied without mapping
+        AllTypes b = (AllTypes) BinaryImporter.getInstance().load(file);
+        assertSameContent(t, b);
+        assertFalse(b.floatBuffer.isReadOnly());
+    }
+
+    private static Geometry createLargeGeometry(boolean animated) {
+        int vertices = 100000;
+        FloatBuffer positions = BufferUtils.createFloatBuffer(vertices * 3);
+        for (int i = 0; i < positions.limit(); i++) {
+            positions.put(i, i * 0.25f);
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        if (animated) {
+            mesh.setBuffer(Type.BoneIndex, 4, BufferUtils.createByteBuffer(vertices * 4));
+            mesh.setBuffer(Type.BoneWeight, 4, BufferUtils.createFloatBuffer(vertices * 4));
+        }
+        return new Geometry("large", mesh);
+    }
+
+    private void testResave(boolean memoryMapping) throws IOException {
+        File file = folder.newFile();
+        BinaryExporter.getInstance().save(createLargeGeometry(false), file);
+        long size = file.length();
+
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setMemoryMapping(memoryMapping);
+        Geometry loaded = (Geometry) importer.load(file);
+        BinaryExporter.getInstance().save(loaded, file);
+        assertEquals(size, file.length());
+
+        // the loaded buffers are still readable after the file was replaced
+        FloatBuffer positions = loaded.getMesh().getFloatBuffer(Type.Position);
+        FloatBuffer resaved = ((Geometry) importer.load(file)).getMesh().getFloatBuffer(Type.Position);
+        for (int i = 0; i < positions.limit(); i++) {
+            assertEquals(i * 0.25f, positions.get(i), 0);
+            assertEquals(i * 0.25f, resaved.get(i), 0);
+        }
+    }
+
+    @Test
+    public void testLoadThenResave() throws IOException {
+        testResave(false);
+    }
+
+    @Test
+    public void testMappedLoadThenResave() throws IOException {
+        testResave(true);
+    }
+
+    @Test
+    public void testMappedAnimatedMeshIsWritable() throws IOException {
+        File file = folder.newFile();
+        BinaryExporter.getInstance().save(createLargeGeometry(true), file);
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setMemoryMapping(true);
+        Mesh mesh = ((Geometry) importer.load(file)).getMesh();
+
+        // skinned in software, so the positions are copied
+        assertFalse(mesh.getFloatBuffer(Type.Position).isReadOnly());
+        assertTrue(mesh.getFloatBuffer(Type.BoneWeight).isReadOnly());
+    }
+
+    @Test
+    public void testDestroyedMappedBufferKeepsOthers() throws IOException {
+        Node node = new Node("two");
+        node.attachChild(createLargeGeometry(false));
+        node.attachChild(createLargeGeometry(false));
+        File file = folder.newFile();
+        BinaryExporter.getInstance().save(node, file);
+
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setMemoryMapping(true);
+        Node loaded = (Node) importer.load(file);
+        FloatBuffer first = ((Geometry) loaded.getChild(0)).getMesh().getFloatBuffer(Type.Position);
+        FloatBuffer second = ((Geometry) loaded.getChild(1)).getMesh().getFloatBuffer(Type.Position);
+        assertTrue(first.isReadOnly());
+        assertTrue(second.isReadOnly());
+
+        // unmaps the first buffer only
+        BufferUtils.destroyDirectBuffer(first);
+        for (int i = 0; i < second.limit(); i++) {
+            assertEquals(i * 0.25f, second.get(i), 0);
+        }
+    }
+
+    @Test
+    public void testDefaultMemoryMappingThroughAssetManager() throws IOException {
+        File file = new File(folder.getRoot(), "large.j3o");
+        BinaryExporter.getInstance().save(createLargeGeometry(false), file);
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLoader(BinaryImporter.class, "j3o");
+        assetManager.registerLocator(folder.getRoot().getAbsolutePath(), FileLocator.class);
+
+        assertFalse(BinaryImporter.isDefaultMemoryMapping());
+        BinaryImporter.setDefaultMemoryMapping(true);
+        try {
+            Geometry loaded = (Geometry) assetManager.loadAsset(new ModelKey("large.j3o"));
+            FloatBuffer positions = loaded.getMesh().getFloatBuffer(Type.Position);
+            assertTrue(positions.isReadOnly());
+            assertEquals(0.25f, positions.get(1), 0);
+        } finally {
+            BinaryImporter.setDefaultMemoryMapping(false);
+        }
+
+        // an importer configured explicitly ignores the default
+        BinaryImporter importer = BinaryImporter.getInstance();
+        importer.setMemoryMapping(false);
+        BinaryImporter.setDefaultMemoryMapping(true);
+        try {
+            assertFalse(importer.isMemoryMapping());
+        } finally {
+            BinaryImporter.setDefaultMemoryMapping(false);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material.plugins;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.material.MatParam;
+import com.jme3.material.MaterialDef;
+import com.jme3.material.TechniqueDef;
+import com.jme3.renderer.Caps;
+import com.jme3.shader.DefineList;
+import com.jme3.shader.Shader;
+import com.jme3.system.TestUtil;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import jme3tools.material.MaterialDefCompiler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests loading material definitions compiled by {@link MaterialDefCompiler}.
+ */
+public class CompiledMaterialDefTest {
+
+    private static final EnumSet<Caps> GLSL100 = EnumSet.of(Caps.GLSL100);
+    private static final EnumSet<Caps> GLSL150 = EnumSet.of(Caps.GLSL100, Caps.GLSL110,
+            Caps.GLSL120, Caps.GLSL130, Caps.GLSL140, Caps.GLSL150);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShaderFiles() throws IOException {
+        String name = "Common/MatDefs/Light/Lighting.j3md";
+        MaterialDef text = TestUtil.createAssetManager().loadAsset(new AssetKey<MaterialDef>(name));
+        MaterialDef compiled = loadCompiled(name, GLSL150);
+
+        assertEquals("Compiled/" + name, compiled.getAssetName());
+        assertEquals(text.getName(), compiled.getName());
+        assertEquals(text.getMaterialParams().size(), compiled.getMaterialParams().size());
+        for (MatParam param : text.getMaterialParams()) {
+            assertEquals(param, compiled.getMaterialParam(param.getName()));
+        }
+        assertEquals(text.getTechniqueDefsNames(), compiled.getTechniqueDefsNames());
+        assertTrue(compiled.getTechniqueDefs(TechniqueDef.DEFAULT_TECHNIQUE_NAME).get(0).hasCompiledShaderSources());
+        for (String techniqueName : text.getTechniqueDefsNames()) {
+            List<TechniqueDef> textDefs = text.getTechniqueDefs(techniqueName);
+            List<TechniqueDef> compiledDefs = compiled.getTechniqueDefs(techniqueName);
+            assertEquals(textDefs.size(), compiledDefs.size());
+            for (int i = 0; i < textDefs.size(); i++) {
+                assertSameTechnique(text, textDefs.get(i), compiledDefs.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testShaderNodes() throws IOException {
+        String name = "testMatDef.j3md";
+        MaterialDef text = TestUtil.createAssetManager().loadAsset(new AssetKey<MaterialDef>(name));
+        MaterialDef compiled = loadCompiled(name, GLSL100);
+
+        TechniqueDef textDef = text.getTechniqueDefs(TechniqueDef.DEFAULT_TECHNIQUE_NAME).get(0);
+        TechniqueDef compiledDef = compiled.getTechniqueDefs(TechniqueDef.DEFAULT_TECHNIQUE_NAME).get(0);
+        assertTrue(compiledDef.isUsingShaderNodes());
+        assertTrue(compiledDef.hasCompiledShaderSources());
+
+        // the text definition is generated by the asset manager, while the
+        // compiled one is read as is
+        AssetManager assetManager = TestUtil.createAssetManager();
+        assetManager.getShaderGenerator(GLSL100);
+        assertSameSources(textDef.getShader(assetManager, GLSL100, textDef.createDefineList()),
+                compiledDef.getShader(TestUtil.createAssetManager(), GLSL100, compiledDef.createDefineList()));
+    }
+
+    @Test
+    public void testUnsupportedLanguage() throws IOException {
+        MaterialDef compiled = loadCompiled("testMatDef.j3md", GLSL150);
+        TechniqueDef def = compiled.getTechniqueDefs(TechniqueDef.DEFAULT_TECHNIQUE_NAME).get(0);
+
+        // sources compiled for GLSL 1.5 are generated again for a GLSL 1.0 renderer
+        AssetManager assetManager = TestUtil.createAssetManager();
+        assetManager.getShaderGenerator(GLSL100);
+        Shader shader = def.getShader(assetManager, GLSL100, def.createDefineList());
+        for (Shader.ShaderSource source : shader.getSources()) {
+            assertEquals("GLSL100", source.getLanguage());
+        }
+    }
+
+    @Test
+    public void testTextDefinitionUnchanged() throws IOException {
+        MaterialDef def = TestUtil.createAssetManager().loadAsset(
+                new AssetKey<MaterialDef>("Common/MatDefs/Misc/Unshaded.j3md"));
+        for (TechniqueDef techniqueDef : def.getTechniqueDefs(TechniqueDef.DEFAULT_TECHNIQUE_NAME)) {
+            assertFalse(techniqueDef.hasCompiledShaderSources());
+        }
+    }
+
+    private MaterialDef loadCompiled(String name, EnumSet<Caps> caps) throws IOException {
+        File file = new File(folder.getRoot(), "Compiled/" + name);
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            new MaterialDefCompiler(TestUtil.createAssetManager(), caps).compile(name, out);
+        } finally {
+            out.close();
+        }
+
+        AssetManager assetManager = TestUtil.createAssetManager();
+        assetManager.registerLocator(folder.getRoot().getAbsolutePath(), FileLocator.class);
+        return assetManager.loadAsset(new AssetKey<MaterialDef>("Compiled/" + name));
+    }
+
+    private static void assertSameTechnique(MaterialDef def, TechniqueDef expected, TechniqueDef actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSortId(), actual.getSortId());
+        assertEquals(expected.getWeight(), actual.getWeight(), 0f);
+        assertEquals(expected.getRequiredCaps(), actual.getRequiredCaps());
+        assertEquals(expected.getLightMode(), actual.getLightMode());
+        assertEquals(expected.getLightSpace(), actual.getLightSpace());
+        assertEquals(expected.getLogic().getClass(), actual.getLogic().getClass());
+        assertEquals(expected.getWorldBindings(), actual.getWorldBindings());
+        assertArrayEquals(expected.getDefineNames(), actual.getDefineNames());
+        assertArrayEquals(expected.getDefineTypes(), actual.getDefineTypes());
+        for (MatParam param : def.getMaterialParams()) {
+            assertEquals(expected.getShaderParamDefineId(param.getName()),
+                    actual.getShaderParamDefineId(param.getName()));
+        }
+        if (!actual.hasCompiledShaderSources()) {
+            // its shaders are in another module
+            return;
+        }
+
+        // a few defines set, to check they are still applied
+        DefineList expectedDefines = expected.createDefineList();
+        DefineList actualDefines = actual.createDefineList();
+        for (int i = 0; i < expected.getDefineNames().length; i += 3) {
+            expectedDefines.set(i, 1);
+            actualDefines.set(i, 1);
+        }
+        EnumSet<Caps> caps = EnumSet.copyOf(expected.getRequiredCaps());
+        assertSameSources(expected.getShader(TestUtil.createAssetManager(), caps, expectedDefines),
+                actual.getShader(TestUtil.createAssetManager(), caps, actualDefines));
+    }
+
+    private static void assertSameSources(Shader expected, Shader actual) {
+        List<Shader.ShaderSource> expectedSources = new ArrayList<Shader.ShaderSource>(expected.getSources());
+        List<Shader.ShaderSource> actualSources = new ArrayList<Shader.ShaderSource>(actual.getSources());
+        assertEquals(expectedSources.size(), actualSources.size());
+        for (int i = 0; i < expectedSources.size(); i++) {
+            Shader.ShaderSource e = expectedSources.get(i);
+            Shader.ShaderSource a = actualSources.get(i);
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.getLanguage(), a.getLanguage());
+            assertEquals(e.getDefines(), a.getDefines());
+            assertEquals(e.getSource(), a.getSource());
+        }
+        assertEquals(expected.getBoundUniforms().size(), actual.getBoundUniforms().size());
+    }
+}
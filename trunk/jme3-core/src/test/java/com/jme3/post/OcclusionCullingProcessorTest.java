@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.post;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validates the CPU occlusion culling of {@link OcclusionCullingProcessor}.
+ */
+public class OcclusionCullingProcessorTest {
+
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private RenderQueue queue;
+    private OcclusionCullingProcessor processor;
+    private Geometry wall;
+
+    @Before
+    public void setUp() {
+        renderManager = TestUtil.createRenderManager();
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(60, 640f / 480f, 1, 100);
+        cam.setLocation(Vector3f.ZERO);
+        cam.lookAt(new Vector3f(0, 0, -1), Vector3f.UNIT_Y);
+        viewPort = new ViewPort("test", cam);
+        queue = viewPort.getQueue();
+
+        // 4x4 wall 5 units in front of the camera
+        wall = createBox("wall", new Vector3f(0, 0, -5), 2, 2, 0.1f);
+        processor = new OcclusionCullingProcessor();
+        processor.initialize(renderManager, viewPort);
+        processor.addOccluder(wall);
+    }
+
+    private static Geometry createBox(String name, Vector3f center, float x, float y, float z) {
+        Geometry geom = new Geometry(name, new Box(x, y, z));
+        geom.setMaterial(new Material());
+        geom.setLocalTranslation(center);
+        geom.updateGeometricState();
+        return geom;
+    }
+
+    private static boolean contains(GeometryList list, Geometry geom) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == geom) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testOcclusion() {
+        Geometry hidden = createBox("hidden", new Vector3f(1, 1, -20), 1, 1, 1);
+        Geometry inFront = createBox("inFront", new Vector3f(0, 0, -3), 0.5f, 0.5f, 0.5f);
+        Geometry aside = createBox("aside", new Vector3f(10, 0, -20), 1, 1, 1);
+        Geometry transparent = createBox("transparent", new Vector3f(-2, 0, -30), 1, 1, 1);
+        Geometry sky = createBox("sky", new Vector3f(0, 0, -50), 1, 1, 1);
+
+        queue.addToQueue(wall, Bucket.Opaque);
+        queue.addToQueue(hidden, Bucket.Opaque);
+        queue.addToQueue(inFront, Bucket.Opaque);
+        queue.addToQueue(aside, Bucket.Opaque);
+        queue.addToQueue(transparent, Bucket.Transparent);
+        queue.addToQueue(sky, Bucket.Sky);
+
+        Statistics stats = renderManager.getRenderer().getStatistics();
+        stats.setEnabled(true);
+        stats.clearFrame();
+        processor.postQueue(queue);
+
+        GeometryList opaque = queue.getList(Bucket.Opaque);
+        assertEquals(3, opaque.size());
+        assertTrue(contains(opaque, wall));
+        assertTrue(contains(opaque, inFront));
+        assertTrue(contains(opaque, aside));
+        assertFalse(contains(opaque, hidden));
+        assertTrue(queue.isQueueEmpty(Bucket.Transparent));
+        assertFalse(queue.isQueueEmpty(Bucket.Sky));
+
+        assertEquals(4, processor.getNumTested());
+        assertEquals(2, processor.getNumCulled());
+        int[] data = new int[stats.getLabels().length];
+        stats.getData(data);
+        assertEquals(4, data[16]);
+        assertEquals(2, data[17]);
+    }
+
+    @Test
+    public void testPartiallyVisible() {
+        // the box sticks out of the wall on the right side
+        Geometry partial = createBox("partial", new Vector3f(6, 0, -15), 4, 1, 1);
+        queue.addToQueue(partial, Bucket.Opaque);
+        processor.postQueue(queue);
+        assertEquals(1, queue.getList(Bucket.Opaque).size());
+
+        // moving the wall away removes the occlusion
+        wall.setLocalTranslation(0, 0, -15);
+        wall.updateGeometricState();
+        Geometry behind = createBox("behind", new Vector3f(0, 0, -10), 1, 1, 1);
+        queue.addToQueue(behind, Bucket.Opaque);
+        processor.postQueue(queue);
+        assertEquals(2, queue.getList(Bucket.Opaque).size());
+    }
+
+    @Test
+    public void testHierarchicalDepth() {
+        Geometry bigWall = createBox("bigWall", new Vector3f(0, 0, -5), 10, 10, 0.1f);
+        OcclusionBuffer buffer = new OcclusionBuffer(20, 9);
+        assertEquals(6, buffer.getNumLevels());
+        buffer.rasterize(bigWall.getMesh(), viewPort.getCamera().getViewProjectionMatrix().mult(bigWall.getWorldMatrix()));
+        buffer.buildPyramid();
+        float wallDepth = buffer.getDepth(0, 10, 4);
+        assertTrue(wallDepth < 1f);
+        // the wall covers the whole buffer, every level holds its farthest depth
+        int last = buffer.getNumLevels() - 1;
+        assertTrue(buffer.getDepth(last, 0, 0) >= wallDepth);
+        assertTrue(buffer.getDepth(last, 0, 0) < 1f);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks that parallel culling fills the same queue as serial culling.
+ */
+public class ParallelSceneCullerTest {
+
+    private final Material material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+    private final Box mesh = new Box(1, 1, 1);
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Moves the first child of its node in front of the camera when the
+     * node is rendered, like controls that orient or switch their spatial
+     * before it is culled.
+     */
+    private static class MoveInViewControl extends AbstractControl {
+
+        @Override
+        protected void controlUpdate(float tpf) {
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+            Spatial child = ((Node) spatial).getChild(0);
+            child.setLocalTranslation(0, 0, -5);
+            spatial.updateGeometricState();
+        }
+    }
+
+    private Geometry createGeometry(String name, float x, float y, float z) {
+        Geometry geometry = new Geometry(name, mesh);
+        geometry.setMaterial(material);
+        geometry.setLocalTranslation(x, y, z);
+        if (name.hashCode() % 3 == 0) {
+            geometry.setQueueBucket(Bucket.Transparent);
+        }
+        return geometry;
+    }
+
+    private Node createScene(boolean controls) {
+        Node scene = new Node("scene");
+        for (int i = 0; i < 50; i++) {
+            Node group = new Node("group" + i);
+            for (int j = 0; j < 6; j++) {
+                // half of them behind the camera
+                float z = (i + j) % 2 == 0 ? -10 - j : 10 + j;
+                group.attachChild(createGeometry("geom" + i + "_" + j, i % 9 - 4, j - 3, z));
+            }
+            if (controls && i % 4 == 1) {
+                Node controlled = new Node("controlled" + i);
+                controlled.attachChild(createGeometry("moved" + i, 0, 0, 50));
+                controlled.attachChild(createGeometry("still" + i, 1, 0, -20));
+                controlled.addControl(new MoveInViewControl());
+                group.attachChild(controlled);
+            }
+            scene.attachChild(group);
+        }
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private ViewPort render(Node scene, boolean parallel) {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45, 4f / 3f, 1, 1000);
+        cam.lookAt(new Vector3f(0, 0, -1), Vector3f.UNIT_Y);
+        cam.update();
+        ViewPort vp = new ViewPort("test", cam);
+        RenderManager rm = TestUtil.createRenderManager();
+        rm.setParallelCulling(parallel);
+        rm.setParallelCullingPool(pool);
+        rm.renderScene(scene, vp);
+        return vp;
+    }
+
+    private static void assertSameList(GeometryList expected, GeometryList actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+        }
+    }
+
+    private void assertSameQueue(boolean controls) {
+        ViewPort serial = render(createScene(controls), false);
+        ViewPort parallel = render(createScene(controls), true);
+        for (Bucket bucket : new Bucket[]{Bucket.Opaque, Bucket.Transparent}) {
+            GeometryList expected = serial.getQueue().getList(bucket);
+            assertTrue(expected.size() > 0);
+            assertSameList(expected, parallel.getQueue().getList(bucket));
+        }
+    }
+
+    @Test
+    public void testSameQueue() {
+        assertSameQueue(false);
+    }
+
+    @Test
+    public void testControlsRunBeforeCulling() {
+        assertSameQueue(true);
+
+        // the moved geometries were culled after their control ran
+        ViewPort parallel = render(createScene(true), true);
+        GeometryList opaque = parallel.getQueue().getList(Bucket.Opaque);
+        GeometryList transparent = parallel.getQueue().getList(Bucket.Transparent);
+        int moved = 0;
+        for (int i = 0; i < opaque.size(); i++) {
+            moved += opaque.get(i).getName().startsWith("moved") ? 1 : 0;
+        }
+        for (int i = 0; i < transparent.size(); i++) {
+            moved += transparent.get(i).getName().startsWith("moved") ? 1 : 0;
+        }
+        assertEquals(13, moved);
+    }
+}
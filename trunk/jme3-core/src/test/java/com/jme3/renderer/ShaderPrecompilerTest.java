@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.light.DirectionalLight;
+import com.jme3.light.LightList;
+import com.jme3.light.PointLight;
+import com.jme3.light.SpotLight;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.util.EnumSet;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShaderPrecompilerTest {
+
+    private final AssetManager assetManager = TestUtil.createAssetManager();
+    private final EnumSet<Caps> caps = EnumSet.of(Caps.GLSL100);
+    private int compiledShaders;
+    private final RenderManager renderManager = new RenderManager(new NullRenderer() {
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return caps;
+        }
+
+        @Override
+        public void setShader(Shader shader) {
+            if (shader.isUpdateNeeded()) {
+                compiledShaders++;
+                shader.clearUpdateNeeded();
+            }
+        }
+    });
+    private final Node scene = new Node("Scene");
+    private Geometry geometry;
+
+    @Before
+    public void setUp() {
+        renderManager.setCamera(new Camera(640, 480), false);
+        geometry = new Geometry("Box", new Box(1, 1, 1));
+        geometry.setMaterial(new Material(assetManager, "static-pass.j3md"));
+        scene.attachChild(geometry);
+        scene.addLight(new DirectionalLight(Vector3f.UNIT_X));
+        scene.addLight(new DirectionalLight(Vector3f.UNIT_Y));
+        scene.addLight(new PointLight(Vector3f.ZERO));
+        scene.updateGeometricState();
+    }
+
+    @Test
+    public void testStaticPassLightCounts() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        precompiler.setFrameBudget(100);
+        precompiler.enqueue(scene);
+        precompiler.update();
+
+        // 0 to 2 directional lights times 0 to 1 point light
+        assertTrue(precompiler.isDone());
+        assertEquals(6, precompiler.getCompiledCount());
+        assertEquals(6, compiledShaders);
+    }
+
+    @Test
+    public void testFrameBudget() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        precompiler.setFrameBudget(4);
+        precompiler.enqueue(scene);
+
+        precompiler.update();
+        assertFalse(precompiler.isDone());
+        assertEquals(4, precompiler.getCompiledCount());
+
+        precompiler.update();
+        assertTrue(precompiler.isDone());
+        assertEquals(6, precompiler.getCompiledCount());
+    }
+
+    @Test
+    public void testMissedVariants() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        LightList lights = new LightList(null);
+        lights.add(new PointLight(Vector3f.ZERO));
+
+        geometry.getMaterial().render(geometry, lights, renderManager);
+        assertEquals(1, precompiler.getMissCount());
+        assertEquals(1, precompiler.getMissedVariants().size());
+        String variant = precompiler.getMissedVariants().iterator().next();
+        assertTrue(variant, variant.startsWith("Static Pass/Default ["));
+        assertTrue(variant, variant.contains("NUM_POINT_LIGHTS 1"));
+
+        // the precompiled variants are not missed
+        precompiler.resetStatistics();
+        precompiler.setFrameBudget(100);
+        precompiler.enqueue(scene);
+        precompiler.update();
+        assertEquals(5, precompiler.getCompiledCount());
+
+        geometry.getMaterial().render(geometry, geometry.getWorldLightList(), renderManager);
+        assertEquals(0, precompiler.getMissCount());
+    }
+
+    @Test
+    public void testMissingTechniqueIsSkipped() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        precompiler.addTechnique("PostShadow");
+        precompiler.setFrameBudget(100);
+        precompiler.enqueue(scene);
+        precompiler.update();
+
+        assertTrue(precompiler.isDone());
+        assertEquals(6, precompiler.getCompiledCount());
+        // no technique was active before precompiling
+        assertNull(geometry.getMaterial().getActiveTechnique());
+    }
+
+    @Test
+    public void testCompiledVariantsCountAgainstBudget() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        LightList lights = new LightList(null);
+        lights.add(new PointLight(Vector3f.ZERO));
+        geometry.getMaterial().render(geometry, lights, renderManager);
+        precompiler.resetStatistics();
+
+        precompiler.setFrameBudget(4);
+        precompiler.enqueue(scene);
+        precompiler.update();
+        assertFalse(precompiler.isDone());
+        assertEquals(3, precompiler.getCompiledCount());
+
+        precompiler.update();
+        assertTrue(precompiler.isDone());
+        assertEquals(5, precompiler.getCompiledCount());
+    }
+
+    @Test
+    public void testDuplicateVariantsAreSkipped() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        Geometry shared = new Geometry("Shared", new Box(1, 1, 1));
+        shared.setMaterial(geometry.getMaterial());
+        scene.attachChild(shared);
+        Geometry cloned = new Geometry("Cloned", new Box(1, 1, 1));
+        cloned.setMaterial(geometry.getMaterial().clone());
+        scene.attachChild(cloned);
+        scene.updateGeometricState();
+
+        precompiler.setFrameBudget(6);
+        precompiler.enqueue(scene);
+        precompiler.update();
+        assertTrue(precompiler.isDone());
+        assertEquals(6, precompiler.getCompiledCount());
+    }
+
+    @Test
+    public void testOnlyNewLightCountsAreEnumerated() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        Node spotLit = new Node("SpotLit");
+        spotLit.addLight(new SpotLight(Vector3f.ZERO, Vector3f.UNIT_Z));
+        Geometry second = new Geometry("Second", new Box(1, 1, 1));
+        second.setMaterial(geometry.getMaterial().clone());
+        spotLit.attachChild(second);
+        scene.attachChild(spotLit);
+        scene.updateGeometricState();
+
+        // the second geometry only adds the variants with its spot light
+        precompiler.setFrameBudget(12);
+        precompiler.enqueue(scene);
+        precompiler.update();
+        assertTrue(precompiler.isDone());
+        assertEquals(12, precompiler.getCompiledCount());
+        assertEquals(12, compiledShaders);
+    }
+
+    @Test
+    public void testParameterDefinesAreNotDuplicates() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        Node unshaded = new Node("Unshaded");
+        Material plain = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        Material vertexColor = plain.clone();
+        vertexColor.setBoolean("VertexColor", true);
+        Material[] materials = {plain, plain.clone(), vertexColor, vertexColor.clone()};
+        for (Material material : materials) {
+            Geometry geom = new Geometry("Box", new Box(1, 1, 1));
+            geom.setMaterial(material);
+            unshaded.attachChild(geom);
+        }
+        unshaded.updateGeometricState();
+
+        precompiler.setFrameBudget(2);
+        precompiler.enqueue(unshaded);
+        precompiler.update();
+        assertTrue(precompiler.isDone());
+        assertEquals(2, precompiler.getCompiledCount());
+        assertEquals(2, compiledShaders);
+    }
+
+    @Test
+    public void testActiveTechniqueIsKept() {
+        ShaderPrecompiler precompiler = renderManager.getShaderPrecompiler();
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        material.selectTechnique("PreShadow", renderManager);
+        Geometry geom = new Geometry("Box", new Box(1, 1, 1));
+        geom.setMaterial(material);
+        geom.updateGeometricState();
+
+        precompiler.addTechnique("PreShadow");
+        precompiler.setFrameBudget(100);
+        precompiler.enqueue(geom);
+        precompiler.update();
+        assertTrue(precompiler.isDone());
+        assertEquals("PreShadow", material.getActiveTechnique().getDef().getName());
+    }
+}
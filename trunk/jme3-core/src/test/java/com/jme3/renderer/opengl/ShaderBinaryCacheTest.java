@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.shader.Shader;
+import com.jme3.shader.Shader.ShaderType;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+
+/**
+ * Tests the {@link ShaderBinaryCache} against a fake driver.
+ */
+public class ShaderBinaryCacheTest {
+
+    private static final String FINGERPRINT = "Vendor|Renderer|4.5";
+    private static final int FORMAT = 42;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeDriver driver = new FakeDriver();
+    private GL gl;
+
+    /**
+     * Keeps the binary of each program, and only accepts binaries
+     * of its own format.
+     */
+    private static final class FakeDriver implements GLProgramBinary {
+
+        final HashMap<Integer, byte[]> binaries = new HashMap<Integer, byte[]>();
+        int format = FORMAT;
+
+        void link(int program, byte[] binary) {
+            binaries.put(program, binary);
+        }
+
+        void glGetProgram(int program, int pname, IntBuffer params) {
+            byte[] binary = binaries.get(program);
+            if (pname == GL.GL_LINK_STATUS) {
+                params.put(0, binary != null ? GL.GL_TRUE : GL.GL_FALSE);
+            } else if (pname == GL_PROGRAM_BINARY_LENGTH) {
+                params.put(0, binary != null ? binary.length : 0);
+            }
+        }
+
+        @Override
+        public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary) {
+            byte[] bytes = binaries.get(program);
+            length.put(0, bytes.length);
+            binaryFormat.put(0, format);
+            binary.duplicate().put(bytes);
+        }
+
+        @Override
+        public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary) {
+            if (binaryFormat != format) {
+                binaries.remove(program);
+                return;
+            }
+            byte[] bytes = new byte[binary.remaining()];
+            binary.duplicate().get(bytes);
+            binaries.put(program, bytes);
+        }
+
+        @Override
+        public void glProgramParameteri(int program, int pname, int value) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        gl = Mockito.mock(GL.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                driver.glGetProgram((Integer) args[0], (Integer) args[1], (IntBuffer) args[2]);
+                return null;
+            }
+        }).when(gl).glGetProgram(anyInt(), anyInt(), any(IntBuffer.class));
+    }
+
+    private static Shader createShader(String defines) {
+        Shader shader = new Shader();
+        shader.addSource(ShaderType.Vertex, "Test.vert", "void main() {}", defines, "GLSL100");
+        shader.addSource(ShaderType.Fragment, "Test.frag", "void main() {}", defines, "GLSL100");
+        return shader;
+    }
+
+    private ShaderBinaryCache openCache(String fingerprint) {
+        ShaderBinaryCache cache = new ShaderBinaryCache(new File(folder.getRoot(), "shaders"));
+        cache.open(fingerprint);
+        return cache;
+    }
+
+    @Test
+    public void testStoredAndPreloaded() {
+        byte[] binary = {1, 2, 3, 4, 5};
+        ShaderBinaryCache cache = openCache(FINGERPRINT);
+        String key = cache.getKey(createShader("#define A 1\n"), "");
+
+        assertFalse(cache.loadProgram(key, 1, gl, driver));
+        driver.link(1, binary);
+        cache.saveProgram(key, 1, gl, driver);
+        assertEquals(1, cache.getEntryCount());
+
+        // next launch
+        cache = openCache(FINGERPRINT);
+        assertEquals(1, cache.getEntryCount());
+        assertTrue(cache.loadProgram(key, 2, gl, driver));
+        assertArrayEquals(binary, driver.binaries.get(2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testKey() {
+        ShaderBinaryCache cache = openCache(FINGERPRINT);
+        String key = cache.getKey(createShader("#define A 1\n"), "");
+        assertEquals(key, cache.getKey(createShader("#define A 1\n"), ""));
+        assertFalse(key.equals(cache.getKey(createShader("#define A 2\n"), "")));
+        assertFalse(key.equals(cache.getKey(createShader("#define A 1\n"), "SRGB")));
+        assertFalse(key.equals(openCache("Vendor|Renderer|4.6").getKey(createShader("#define A 1\n"), "")));
+    }
+
+    @Test
+    public void testOtherDriverDeleted() {
+        ShaderBinaryCache cache = openCache(FINGERPRINT);
+        String key = cache.getKey(createShader(""), "");
+        driver.link(1, new byte[]{1, 2, 3});
+        cache.saveProgram(key, 1, gl, driver);
+
+        cache = openCache("Vendor|Renderer|4.6");
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getDirectory().list().length);
+    }
+
+    @Test
+    public void testRejectedBinaryRemoved() {
+        ShaderBinaryCache cache = openCache(FINGERPRINT);
+        String key = cache.getKey(createShader(""), "");
+        driver.link(1, new byte[]{1, 2, 3});
+        cache.saveProgram(key, 1, gl, driver);
+
+        // same driver version, but the binary format changed
+        driver.format = FORMAT + 1;
+        assertFalse(cache.loadProgram(key, 2, gl, driver));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, openCache(FINGERPRINT).getEntryCount());
+    }
+
+    @Test
+    public void testDebugWrappersKeepProgramBinary() {
+        GLExt glext = Mockito.mock(GLExt.class, Mockito.withSettings().extraInterfaces(GLProgramBinary.class));
+        GLDebugDesktop debug = new GLDebugDesktop(gl, glext, Mockito.mock(GLFbo.class));
+        assertTrue(debug.isProgramBinarySupported());
+
+        debug.glProgramParameteri(1, GLProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
+        Mockito.verify((GLProgramBinary) glext).glProgramParameteri(1,
+                GLProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
+
+        debug = new GLDebugDesktop(gl, Mockito.mock(GLExt.class), Mockito.mock(GLFbo.class));
+        assertFalse(debug.isProgramBinarySupported());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.Uniform;
+import com.jme3.shader.VarType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the redundant uniform detection used by {@link GLRenderer}.
+ */
+public class UniformUploadCacheTest {
+
+    private final UniformUploadCache cache = new UniformUploadCache();
+
+    private Uniform createUniform(String name, int location) {
+        Uniform uniform = new Uniform();
+        uniform.setName(name);
+        uniform.setLocation(location);
+        return uniform;
+    }
+
+    @Test
+    public void testSameValueIsSkipped() {
+        Uniform uniform = createUniform("m_Color", 3);
+        uniform.setValue(VarType.Vector4, ColorRGBA.Red);
+        assertTrue(cache.update(1, 3, uniform));
+        assertFalse(cache.update(1, 3, uniform));
+
+        uniform.setValue(VarType.Vector4, ColorRGBA.Blue);
+        assertTrue(cache.update(1, 3, uniform));
+
+        uniform.setValue(VarType.Vector4, new ColorRGBA(0, 0, 1, 1));
+        assertFalse(cache.update(1, 3, uniform));
+    }
+
+    @Test
+    public void testProgramsAndLocationsAreSeparate() {
+        Uniform uniform = createUniform("m_Shininess", 0);
+        uniform.setValue(VarType.Float, 8f);
+        assertTrue(cache.update(1, 0, uniform));
+        assertTrue(cache.update(2, 0, uniform));
+        assertTrue(cache.update(1, 1, uniform));
+        assertFalse(cache.update(2, 0, uniform));
+    }
+
+    @Test
+    public void testMatrixValues() {
+        Uniform uniform = createUniform("g_WorldMatrix", 0);
+        Matrix4f matrix = new Matrix4f();
+        uniform.setValue(VarType.Matrix4, matrix);
+        assertTrue(cache.update(1, 0, uniform));
+        assertFalse(cache.update(1, 0, uniform));
+
+        matrix.setTranslation(new Vector3f(1, 2, 3));
+        uniform.setValue(VarType.Matrix4, matrix);
+        assertTrue(cache.update(1, 0, uniform));
+    }
+
+    @Test
+    public void testArrayLengthChange() {
+        Uniform uniform = createUniform("g_LightData", 0);
+        uniform.setValue(VarType.Vector4Array, new Vector4f[]{new Vector4f(1, 2, 3, 4)});
+        assertTrue(cache.update(1, 0, uniform));
+
+        uniform.setValue(VarType.Vector4Array, new Vector4f[]{
+            new Vector4f(1, 2, 3, 4), new Vector4f(5, 6, 7, 8)});
+        assertTrue(cache.update(1, 0, uniform));
+        assertFalse(cache.update(1, 0, uniform));
+    }
+
+    @Test
+    public void testClearProgram() {
+        Uniform uniform = createUniform("m_Count", 0);
+        uniform.setValue(VarType.Int, 4);
+        assertTrue(cache.update(1, 0, uniform));
+        cache.clear(1);
+        assertTrue(cache.update(1, 0, uniform));
+        cache.clear();
+        assertTrue(cache.update(1, 0, uniform));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the radix sort path of {@link GeometryList} gives the same
+ * order as sorting with the comparator.
+ */
+public class GeometryListTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private final Camera cam = new Camera(640, 480);
+    private final Random random = new Random(42);
+    private AssetManager assetManager;
+    private RenderManager renderManager;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderManager = TestUtil.createRenderManager();
+        cam.setFrustumPerspective(45, 640f / 480f, 1, 1000);
+        cam.setLocation(new Vector3f(3, 5, -20));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+    }
+
+    private List<Geometry> createGeometries(int count) {
+        String[] techniques = {TechniqueDef.DEFAULT_TECHNIQUE_NAME, "PreShadow", "PostShadow", "Glow"};
+        Material[] materials = new Material[techniques.length];
+        for (int i = 0; i < techniques.length; i++) {
+            materials[i] = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+            materials[i].selectTechnique(techniques[i], renderManager);
+        }
+
+        List<Geometry> geometries = new ArrayList<Geometry>();
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            geom.setMaterial(materials[random.nextInt(materials.length)]);
+            // a few geometries share the same position to check stability
+            float x = random.nextInt(20) * 5f - 50f;
+            float y = random.nextInt(20) * 5f - 50f;
+            float z = random.nextInt(20) * 5f - 50f;
+            geom.setLocalTranslation(x, y, z);
+            geom.updateGeometricState();
+            geometries.add(geom);
+        }
+        return geometries;
+    }
+
+    private void checkSort(GeometryComparator comparator, int count) {
+        List<Geometry> geometries = createGeometries(count);
+        comparator.setCamera(cam);
+
+        GeometryList list = new GeometryList(comparator);
+        for (Geometry geom : geometries) {
+            list.add(geom);
+        }
+        list.sort();
+
+        List<Geometry> expected = new ArrayList<Geometry>(geometries);
+        Collections.sort(expected, comparator);
+
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame("index " + i, expected.get(i), list.get(i));
+        }
+    }
+
+    @Test
+    public void testOpaqueSort() {
+        checkSort(new OpaqueComparator(), 1000);
+    }
+
+    @Test
+    public void testTransparentSort() {
+        checkSort(new TransparentComparator(), 1000);
+    }
+
+    @Test
+    public void testGuiSort() {
+        checkSort(new GuiComparator(), 1000);
+    }
+
+    @Test
+    public void testSortAgainAfterGrowing() {
+        OpaqueComparator comparator = new OpaqueComparator();
+        checkSort(comparator, 100);
+        checkSort(comparator, 3000);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Quaternion;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.nio.FloatBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validates incremental updates and vertex budget splitting of {@link BatchNode}.
+ */
+public class BatchNodeTest {
+
+    private static final int NUM_BOXES = 10;
+
+    private Material material;
+
+    @Before
+    public void setUp() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+    }
+
+    private BatchNode createBatchNode(boolean incremental) {
+        BatchNode node = new BatchNode("batch");
+        node.setIncrementalUpdate(incremental);
+        for (int i = 0; i < NUM_BOXES; i++) {
+            Geometry geom = new Geometry("box" + i, new Box(1, 1, 1));
+            geom.setMaterial(material);
+            geom.setLocalTranslation(i * 3, 0, 0);
+            node.attachChild(geom);
+        }
+        node.batch();
+        node.updateGeometricState();
+        return node;
+    }
+
+    private static void moveBox(BatchNode node, int index) {
+        Spatial box = node.getChild("box" + index);
+        box.setLocalTranslation(index * 3, 5, 2);
+        box.setLocalRotation(new Quaternion().fromAngleAxis(FastMath.QUARTER_PI, Vector3f.UNIT_Y));
+        node.updateGeometricState();
+    }
+
+    private static float[] getData(Mesh mesh, VertexBuffer.Type type) {
+        FloatBuffer data = (FloatBuffer) mesh.getBuffer(type).getData();
+        float[] result = new float[data.limit()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = data.get(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testIncrementalUpdateMatchesImmediateUpdate() {
+        BatchNode immediate = createBatchNode(false);
+        BatchNode incremental = createBatchNode(true);
+        moveBox(immediate, 4);
+        moveBox(incremental, 4);
+
+        Mesh expected = immediate.batches.get(0).getGeometry().getMesh();
+        Mesh actual = incremental.batches.get(0).getGeometry().getMesh();
+        assertArrayEquals(getData(expected, VertexBuffer.Type.Position), getData(actual, VertexBuffer.Type.Position), 1e-5f);
+        assertArrayEquals(getData(expected, VertexBuffer.Type.Normal), getData(actual, VertexBuffer.Type.Normal), 1e-5f);
+        assertTrue(incremental.getWorldBound().contains(new Vector3f(12, 5, 2)));
+    }
+
+    @Test
+    public void testIncrementalUpdateFlagsOwnedRange() {
+        BatchNode node = createBatchNode(true);
+        Geometry box = (Geometry) node.getChild("box4");
+        VertexBuffer positions = node.batches.get(0).getGeometry().getMesh().getBuffer(VertexBuffer.Type.Position);
+        positions.clearUpdateNeeded();
+
+        moveBox(node, 4);
+
+        assertTrue(positions.hasUpdateRegion());
+        assertEquals(box.startIndex, positions.getUpdateRegionStart());
+        assertEquals(box.startIndex + box.getVertexCount(), positions.getUpdateRegionEnd());
+    }
+
+    @Test
+    public void testMaxBatchVertices() {
+        int boxVertices = new Box(1, 1, 1).getVertexCount();
+        BatchNode node = new BatchNode("batch");
+        node.setMaxBatchVertices(boxVertices * 3);
+        for (int i = 0; i < NUM_BOXES; i++) {
+            Geometry geom = new Geometry("box" + i, new Box(1, 1, 1));
+            geom.setMaterial(material);
+            node.attachChild(geom);
+        }
+        node.batch();
+
+        assertEquals(4, node.batches.size());
+        int total = 0;
+        for (BatchNode.Batch batch : node.batches) {
+            assertTrue(batch.getVertexCount() <= boxVertices * 3);
+            assertEquals(batch.getVertexCount(), batch.getGeometry().getVertexCount());
+            total += batch.getVertexCount();
+        }
+        assertEquals(boxVertices * NUM_BOXES, total);
+    }
+}
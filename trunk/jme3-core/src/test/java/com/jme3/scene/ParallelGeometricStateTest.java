@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that a parallel geometric state update gives the same result
+ * as a serial one.
+ */
+public class ParallelGeometricStateTest {
+
+    private static Node createScene(Box box) {
+        Node root = new Node("Root");
+        for (int i = 0; i < 20; i++) {
+            Node branch = new Node("Branch " + i);
+            branch.setLocalTranslation(i * 3f, 0, -i);
+            for (int j = 0; j < 10; j++) {
+                Geometry g = new Geometry("Leaf " + j, box);
+                g.setLocalTranslation(0, j, 0);
+                branch.attachChild(g);
+            }
+            root.attachChild(branch);
+        }
+        return root;
+    }
+
+    private static void moveLeaves(Node root, float angle) {
+        for (int i = 0; i < root.getQuantity(); i += 2) {
+            Node branch = (Node) root.getChild(i);
+            for (Spatial leaf : branch.getChildren()) {
+                leaf.setLocalRotation(leaf.getLocalRotation().fromAngleAxis(angle, Vector3f.UNIT_Z));
+            }
+        }
+    }
+
+    private static void assertSameState(Spatial expected, Spatial actual) {
+        assertEquals(0, actual.refreshFlags);
+        assertEquals(expected.getWorldTransform(), actual.getWorldTransform());
+        BoundingBox eb = (BoundingBox) expected.getWorldBound();
+        BoundingBox ab = (BoundingBox) actual.getWorldBound();
+        assertEquals(eb.getCenter(), ab.getCenter());
+        assertEquals(eb.getExtent(null), ab.getExtent(null));
+        if (expected instanceof Node) {
+            Node e = (Node) expected;
+            Node a = (Node) actual;
+            for (int i = 0; i < e.getQuantity(); i++) {
+                assertSameState(e.getChild(i), a.getChild(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsSerial() {
+        Box box = new Box(0.5f, 0.5f, 0.5f);
+        Node serial = createScene(box);
+        Node parallel = createScene(box);
+        parallel.setParallelUpdate(true);
+
+        serial.updateGeometricState();
+        parallel.updateGeometricState();
+        assertSameState(serial, parallel);
+
+        for (int frame = 1; frame < 5; frame++) {
+            moveLeaves(serial, frame * FastMath.QUARTER_PI);
+            moveLeaves(parallel, frame * FastMath.QUARTER_PI);
+            serial.getChild(1).move(0, 0, frame);
+            parallel.getChild(1).move(0, 0, frame);
+
+            serial.updateGeometricState();
+            parallel.updateGeometricState();
+            assertSameState(serial, parallel);
+        }
+    }
+}
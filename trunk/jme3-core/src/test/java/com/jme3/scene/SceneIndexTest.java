@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.renderer.queue.RenderQueue.ShadowMode;
+import com.jme3.scene.shape.Box;
+import com.jme3.shadow.ShadowUtil;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the {@link SceneIndex} follows the scene and answers the
+ * same as a linear scan.
+ */
+public class SceneIndexTest {
+
+    private static Node createScene() {
+        Box box = new Box(0.5f, 0.5f, 0.5f);
+        Node root = new Node("Root");
+        for (int x = 0; x < 10; x++) {
+            Node row = new Node("Row " + x);
+            for (int z = 0; z < 10; z++) {
+                Geometry g = new Geometry(x + "," + z, box);
+                g.setLocalTranslation(x * 10f - 45f, 0, z * 10f - 45f);
+                row.attachChild(g);
+            }
+            root.attachChild(row);
+        }
+        // larger than the indexed region
+        Geometry ground = new Geometry("Ground", new Box(500f, 0.1f, 500f));
+        root.attachChild(ground);
+        return root;
+    }
+
+    private static Set<Geometry> toSet(GeometryList list) {
+        Set<Geometry> set = Collections.newSetFromMap(new IdentityHashMap<Geometry, Boolean>());
+        for (Geometry g : list) {
+            assertTrue("duplicate " + g, set.add(g));
+        }
+        return set;
+    }
+
+    private static Set<Geometry> scanFrustum(Node root, Camera cam) {
+        final Set<Geometry> set = Collections.newSetFromMap(new IdentityHashMap<Geometry, Boolean>());
+        for (Spatial row : root.getChildren()) {
+            for (Spatial s : row instanceof Node ? ((Node) row).getChildren() : Collections.singletonList(row)) {
+                cam.setPlaneState(0);
+                if (cam.contains(s.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+                    set.add((Geometry) s);
+                }
+            }
+        }
+        return set;
+    }
+
+    private static Camera createCamera() {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 60f);
+        cam.setLocation(new Vector3f(-40f, 2f, -40f));
+        cam.lookAt(new Vector3f(0, 0, 0), Vector3f.UNIT_Y);
+        return cam;
+    }
+
+    @Test
+    public void testFrustumQuery() {
+        Node root = createScene();
+        SceneIndex index = new SceneIndex(Vector3f.ZERO, 64f);
+        root.setSceneIndex(index);
+        root.updateGeometricState();
+        assertEquals(101, index.size());
+
+        Camera cam = createCamera();
+        GeometryList result = new GeometryList(new NullComparator());
+        index.getGeometriesInFrustum(cam, result);
+        Set<Geometry> expected = scanFrustum(root, cam);
+        assertTrue(expected.size() > 1 && expected.size() < 101);
+        assertEquals(expected, toSet(result));
+
+        // move some geometries into and out of the frustum
+        for (int i = 0; i < 10; i++) {
+            ((Node) root.getChild(i)).getChild(i).move(-20f, 0, 5f);
+        }
+        root.updateGeometricState();
+        result.clear();
+        index.getGeometriesInFrustum(cam, result);
+        assertEquals(scanFrustum(root, cam), toSet(result));
+    }
+
+    @Test
+    public void testAttachDetach() {
+        Node root = createScene();
+        SceneIndex index = new SceneIndex(Vector3f.ZERO, 64f);
+        root.setSceneIndex(index);
+        root.updateGeometricState();
+
+        Node row = (Node) root.getChild(0);
+        Geometry first = (Geometry) row.getChild(0);
+        row.removeFromParent();
+        assertEquals(91, index.size());
+        assertFalse(index.contains(first));
+
+        root.attachChild(row);
+        root.updateGeometricState();
+        assertEquals(101, index.size());
+        assertTrue(index.contains(first));
+
+        root.setSceneIndex(null);
+        assertEquals(0, index.size());
+        assertNull(index.getNode());
+    }
+
+    @Test
+    public void testRadiusQuery() {
+        Node root = createScene();
+        SceneIndex index = new SceneIndex(Vector3f.ZERO, 64f);
+        root.setSceneIndex(index);
+        root.updateGeometricState();
+
+        GeometryList result = new GeometryList(new NullComparator());
+        index.getGeometriesInRadius(new Vector3f(-45f, 0, -45f), 11f, result);
+        Set<Geometry> found = toSet(result);
+        assertEquals(found.toString(), 4, found.size());
+        assertTrue(found.contains(root.getChild("0,0")));
+        assertTrue(found.contains(root.getChild("0,1")));
+        assertTrue(found.contains(root.getChild("1,0")));
+        assertTrue(found.contains(root.getChild("Ground")));
+    }
+
+    @Test
+    public void testIndexFollowsAncestors() {
+        Node root = createScene();
+        SceneIndex index = new SceneIndex(Vector3f.ZERO, 64f);
+        root.updateGeometricState();
+
+        // indexed after the geometries were attached
+        root.setSceneIndex(index);
+        Node row = (Node) root.getChild(0);
+        Geometry first = (Geometry) row.getChild(0);
+        assertSame(index, first.findSceneIndex());
+
+        // moving a detached geometry does not touch the index
+        row.removeFromParent();
+        assertNull(first.findSceneIndex());
+        first.move(0, 100f, 0);
+        row.updateGeometricState();
+        root.updateGeometricState();
+        assertEquals(91, index.size());
+
+        // attached through an ancestor, the moves are tracked again
+        Node group = new Node("Group");
+        group.attachChild(row);
+        root.attachChild(group);
+        assertSame(index, first.findSceneIndex());
+        first.move(0, -100f, 0);
+        root.updateGeometricState();
+        assertEquals(101, index.size());
+        GeometryList result = new GeometryList(new NullComparator());
+        index.getGeometriesInRadius(new Vector3f(-45f, 0, -45f), 1f, result);
+        assertTrue(toSet(result).contains(first));
+
+        assertNull(first.clone().findSceneIndex());
+        root.setSceneIndex(null);
+        assertNull(first.findSceneIndex());
+    }
+
+    @Test
+    public void testNestedIndex() {
+        Node root = createScene();
+        SceneIndex index = new SceneIndex(Vector3f.ZERO, 64f);
+        root.setSceneIndex(index);
+        root.updateGeometricState();
+        assertEquals(101, index.size());
+
+        Node row = (Node) root.getChild(0);
+        Geometry first = (Geometry) row.getChild(0);
+        SceneIndex rowIndex = new SceneIndex(Vector3f.ZERO, 64f);
+        row.setSceneIndex(rowIndex);
+        assertEquals(91, index.size());
+        assertFalse(index.contains(first));
+        assertEquals(10, rowIndex.size());
+        assertTrue(rowIndex.contains(first));
+
+        row.setSceneIndex(null);
+        assertEquals(101, index.size());
+        assertTrue(index.contains(first));
+        assertEquals(0, rowIndex.size());
+    }
+
+    @Test
+    public void testLitGeometriesKeepCullHintNever() {
+        Node root = createScene();
+        root.setShadowMode(ShadowMode.CastAndReceive);
+        // the far row is outside of the viewPort
+        Node farRow = (Node) root.getChild(9);
+        farRow.setCullHint(Spatial.CullHint.Never);
+        Geometry far = (Geometry) farRow.getChild(9);
+        root.updateGeometricState();
+
+        Camera vpCam = createCamera();
+        Camera lightCam = new Camera(512, 512);
+        lightCam.setFrustumPerspective(90f, 1f, 1f, 200f);
+        lightCam.setLocation(new Vector3f(0, 100f, 0));
+        lightCam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Z);
+        Camera[] cameras = {lightCam, lightCam};
+
+        GeometryList result = new GeometryList(new NullComparator());
+        ShadowUtil.getLitGeometriesInViewPort(root, vpCam, cameras, ShadowMode.Cast, result);
+        assertTrue(toSet(result).contains(far));
+
+        // the light camera sees everything: the viewPort content plus the far row
+        Set<Geometry> expected = scanFrustum(root, vpCam);
+        assertFalse(expected.contains(far));
+        for (Spatial s : farRow.getChildren()) {
+            expected.add((Geometry) s);
+        }
+        root.setSceneIndex(new SceneIndex(Vector3f.ZERO, 64f));
+        root.updateGeometricState();
+        result.clear();
+        ShadowUtil.getLitGeometriesInViewPort(root, vpCam, cameras, ShadowMode.Cast, result);
+        assertEquals(expected, toSet(result));
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the transform buffer of an {@link InstancedGeometry} always
+ * holds the current transforms of the rendered instances, with and without
+ * instance culling.
+ */
+public class InstancedGeometryTest {
+
+    private final Camera cam = new Camera(640, 480);
+    private Material material;
+    private InstancedNode node;
+    private Box mesh;
+
+    @Before
+    public void setUp() {
+        material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("UseInstancing", true);
+        mesh = new Box(1, 1, 1);
+        node = new InstancedNode("instances");
+
+        // looks down -Z
+        cam.setFrustumPerspective(45, 4f / 3f, 1, 100);
+        cam.setLocation(Vector3f.ZERO);
+        cam.lookAt(new Vector3f(0, 0, -1), Vector3f.UNIT_Y);
+        cam.update();
+    }
+
+    private Geometry addInstance(float x, float y, float z) {
+        Geometry instance = new Geometry("instance", mesh);
+        instance.setMaterial(material);
+        instance.setLocalTranslation(x, y, z);
+        node.attachChild(instance);
+        return instance;
+    }
+
+    private InstancedGeometry instance() {
+        node.instance();
+        node.updateGeometricState();
+        for (Spatial child : node.getChildren()) {
+            if (child instanceof InstancedGeometry) {
+                return (InstancedGeometry) child;
+            }
+        }
+        throw new AssertionError("no instanced geometry");
+    }
+
+    /**
+     * Checks that the slots of the buffer hold the translations of the
+     * given instances, in order.
+     */
+    private static void assertSlots(InstancedGeometry ig, List<Geometry> expected) {
+        assertEquals(expected.size(), ig.getNumVisibleInstances());
+        FloatBuffer data = (FloatBuffer) ig.getTransformUserInstanceData().getData();
+        for (int slot = 0; slot < expected.size(); slot++) {
+            Vector3f translation = expected.get(slot).getWorldTranslation();
+            assertEquals("slot " + slot, translation.x, data.get(slot * 16 + 12), 0);
+            assertEquals("slot " + slot, translation.y, data.get(slot * 16 + 13), 0);
+            assertEquals("slot " + slot, translation.z, data.get(slot * 16 + 14), 0);
+        }
+    }
+
+    private static List<Geometry> liveInstances(InstancedGeometry ig) {
+        List<Geometry> instances = new ArrayList<Geometry>();
+        for (int i = 0; i < ig.getActualNumInstances(); i++) {
+            instances.add(ig.getGeometries()[i]);
+        }
+        return instances;
+    }
+
+    @Test
+    public void testMoveWhileCulled() {
+        Geometry a = addInstance(0, 0, -10);
+        Geometry b = addInstance(0, 0, -20);
+        InstancedGeometry ig = instance();
+        ig.setInstanceCulling(true);
+
+        ig.updateInstances(null);
+        assertSlots(ig, liveInstances(ig));
+
+        // moves behind the camera, it is culled
+        b.setLocalTranslation(0, 0, 20);
+        node.updateGeometricState();
+        ig.updateInstances(cam);
+        List<Geometry> visible = new ArrayList<Geometry>();
+        visible.add(a);
+        assertSlots(ig, visible);
+
+        // seen again in its old slot, with its new transform
+        ig.updateInstances(null);
+        assertSlots(ig, liveInstances(ig));
+
+        // moves while culled, then is seen again
+        ig.updateInstances(cam);
+        b.setLocalTranslation(0, 5, 30);
+        node.updateGeometricState();
+        ig.updateInstances(cam);
+        ig.updateInstances(null);
+        assertSlots(ig, liveInstances(ig));
+    }
+
+    @Test
+    public void testRemoval() {
+        Geometry[] instances = new Geometry[5];
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = addInstance(i, 0, -10);
+        }
+        InstancedGeometry ig = instance();
+        ig.updateInstances();
+        assertSlots(ig, liveInstances(ig));
+
+        // the last instance moves into the hole
+        node.detachChild(instances[1]);
+        ig.updateInstances();
+        assertEquals(4, ig.getActualNumInstances());
+        assertSlots(ig, liveInstances(ig));
+
+        node.detachChild(instances[4]);
+        node.detachChild(instances[0]);
+        ig.setInstanceCulling(true);
+        ig.updateInstances(cam);
+        assertEquals(2, ig.getActualNumInstances());
+        assertSlots(ig, liveInstances(ig));
+    }
+
+    @Test
+    public void testBufferGrowth() {
+        addInstance(0, 0, -10);
+        InstancedGeometry ig = instance();
+        ig.setInstanceCulling(true);
+        ig.updateInstances(cam);
+        int capacity = ig.getMaxNumInstances();
+
+        for (int i = 1; i < 40; i++) {
+            addInstance(i % 7, i % 5, -10 - i);
+        }
+        instance();
+        assertTrue(ig.getMaxNumInstances() > capacity);
+        assertEquals(40, ig.getActualNumInstances());
+        ig.updateInstances(cam);
+        assertSlots(ig, liveInstances(ig));
+
+        ig.setInstanceCulling(false);
+        ig.updateInstances();
+        assertSlots(ig, liveInstances(ig));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.material;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.AssetNotFoundException;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.material.MaterialDef;
+import com.jme3.material.TechniqueDef;
+import com.jme3.renderer.Caps;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles J3MD material definitions offline into their binary form.
+ * <p>
+ * The compiled definition contains the parsed parameters and techniques,
+ * with their define tables, and the shader sources of every technique:
+ * the shader files with their imports resolved, or the sources generated
+ * from the shader nodes. It keeps the asset name of the J3MD file, so it
+ * replaces the text file in the assets and is loaded by the
+ * {@link com.jme3.material.plugins.J3MLoader} in a single read, without
+ * parsing or shader generation.
+ * <p>
+ * The shader node sources are generated for the given renderer
+ * capabilities; a renderer that does not support their language falls
+ * back to generating them at runtime. So does a technique whose shader
+ * files cannot be found when compiling.
+ */
+public class MaterialDefCompiler {
+
+    private static final Logger logger = Logger.getLogger(MaterialDefCompiler.class.getName());
+
+    private final AssetManager assetManager;
+    private final EnumSet<Caps> rendererCaps;
+
+    /**
+     * @param assetManager the asset manager loading the J3MD files
+     * @param rendererCaps the capabilities used to generate the shader node sources
+     */
+    public MaterialDefCompiler(AssetManager assetManager, EnumSet<Caps> rendererCaps) {
+        this.assetManager = assetManager;
+        this.rendererCaps = rendererCaps;
+    }
+
+    /**
+     * Loads a material definition and compiles the shader sources of all
+     * its techniques.
+     *
+     * @param assetName the asset name of the J3MD file
+     * @return the compiled material definition
+     */
+    public MaterialDef compile(String assetName) {
+        MaterialDef def = assetManager.loadAsset(new AssetKey<MaterialDef>(assetName));
+        for (String techniqueName : def.getTechniqueDefsNames()) {
+            for (TechniqueDef techniqueDef : def.getTechniqueDefs(techniqueName)) {
+                try {
+                    techniqueDef.compileShaderSources(assetManager, rendererCaps);
+                } catch (AssetNotFoundException ex) {
+                    logger.log(Level.WARNING, "Shaders of technique {0} in {1} are not compiled: {2}",
+                            new Object[]{techniqueName, assetName, ex.getMessage()});
+                }
+            }
+        }
+        return def;
+    }
+
+    /**
+     * Compiles a material definition and writes it.
+     *
+     * @param assetName the asset name of the J3MD file
+     * @param out the stream to write the compiled definition to
+     */
+    public void compile(String assetName, OutputStream out) throws IOException {
+        BinaryExporter.getInstance().save(compile(assetName), out);
+    }
+
+    /**
+     * Compiles a material definition and writes it in the output directory,
+     * under its asset name.
+     *
+     * @param assetName the asset name of the J3MD file
+     * @param outputDir the root of the compiled assets
+     * @return the written file
+     */
+    public File compile(String assetName, File outputDir) throws IOException {
+        File file = new File(outputDir, assetName);
+        BinaryExporter.getInstance().save(compile(assetName), file);
+        return file;
+    }
+
+    /**
+     * Usage: <code>MaterialDefCompiler [-glsl100] &lt;assetRoot&gt; &lt;outputDir&gt; &lt;j3md&gt;...</code>
+     * <p>
+     * The J3MD files are looked up in the asset root and in the classpath.
+     * The shader node sources are generated for GLSL 1.5, or for GLSL 1.0
+     * with <code>-glsl100</code>.
+     */
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        EnumSet<Caps> caps = EnumSet.of(Caps.GLSL100, Caps.GLSL110, Caps.GLSL120, Caps.GLSL130, Caps.GLSL140, Caps.GLSL150);
+        if (args.length > 0 && args[0].equals("-glsl100")) {
+            caps = EnumSet.of(Caps.GLSL100);
+            first++;
+        }
+        if (args.length - first < 3) {
+            System.err.println("Usage: MaterialDefCompiler [-glsl100] <assetRoot> <outputDir> <j3md>...");
+            System.exit(1);
+        }
+
+        AssetManager assetManager = new DesktopAssetManager(true);
+        assetManager.registerLocator(args[first], FileLocator.class);
+        File outputDir = new File(args[first + 1]);
+
+        MaterialDefCompiler compiler = new MaterialDefCompiler(assetManager, caps);
+        for (int i = first + 2; i < args.length; i++) {
+            File file = compiler.compile(args[i], outputDir);
+            System.out.println(args[i] + " -> " + file);
+        }
+    }
+}
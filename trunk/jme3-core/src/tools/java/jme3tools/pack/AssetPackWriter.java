@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.pack;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes asset packs for the <code>MappedZipLocator</code>.
+ * <p>
+ * A pack is a regular ZIP file whose uncompressed entries start at a
+ * multiple of the alignment, padded with an extra field in their local
+ * header. Once the pack is memory-mapped, the data of these entries is
+ * aligned in memory too and can be handed to the GPU or parsed in place.
+ * Entries like shaders or material files can still be compressed.
+ * <p>
+ * Each entry is kept in memory until it is written.
+ */
+public class AssetPackWriter implements Closeable {
+
+    /**
+     * The default alignment, enough for any vertex or texture format.
+     */
+    public static final int DEFAULT_ALIGNMENT = 16;
+
+    /**
+     * Extra field id of the alignment padding, as used by Android's
+     * zipalign.
+     */
+    private static final int ALIGNMENT_EXTRA_ID = 0xD935;
+    private static final int ALIGNMENT_EXTRA_SIZE = 6;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int UTF8_FLAG = 1 << 11;
+    // 1980-01-01 00:00, entries have no meaningful time
+    private static final int DOS_TIME = (1 << 21) | (1 << 16);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+    private final ByteArrayOutputStream directory = new ByteArrayOutputStream();
+    private final HashSet<String> names = new HashSet<String>();
+    private final int alignment;
+    private long offset;
+    private int entryCount;
+    private boolean closed;
+
+    /**
+     * @param file the pack to write
+     * @param alignment the alignment of the uncompressed entries, a power of
+     * two up to 4096
+     */
+    public AssetPackWriter(File file, int alignment) throws IOException {
+        this(new FileOutputStream(file), alignment);
+    }
+
+    /**
+     * @param out the stream the pack is written to, closed with the writer
+     * @param alignment the alignment of the uncompressed entries, a power of
+     * two up to 4096
+     */
+    public AssetPackWriter(OutputStream out, int alignment) {
+        if (alignment < 1 || alignment > 4096 || Integer.bitCount(alignment) != 1) {
+            throw new IllegalArgumentException("Alignment must be a power of two up to 4096: " + alignment);
+        }
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.alignment = alignment;
+    }
+
+    /**
+     * Adds an uncompressed, aligned entry.
+     *
+     * @param name the asset name, e.g. "Models/Ship.j3o"
+     * @param data the content
+     */
+    public void add(String name, byte[] data) throws IOException {
+        add(name, data, false);
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param name the asset name, e.g. "Models/Ship.j3o"
+     * @param data the content
+     * @param compress true to deflate the entry, false to store it aligned
+     */
+    public void add(String name, byte[] data, boolean compress) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The pack is closed");
+        }
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        if (name.isEmpty() || name.endsWith("/")) {
+            throw new IllegalArgumentException("Invalid entry name: " + name);
+        }
+        if (!names.add(name)) {
+            throw new IllegalArgumentException("Duplicate entry: " + name);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        byte[] content = data;
+        int method = STORED;
+        if (compress) {
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(data.length / 2 + 64);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+            DeflaterOutputStream dos = new DeflaterOutputStream(deflated, deflater);
+            dos.write(data);
+            dos.close();
+            deflater.end();
+            if (deflated.size() < data.length) {
+                content = deflated.toByteArray();
+                method = DEFLATED;
+            }
+        }
+        byte[] nameBytes = name.getBytes(UTF8);
+
+        int extraLength = 0;
+        if (method == STORED) {
+            long dataStart = offset + 30 + nameBytes.length + ALIGNMENT_EXTRA_SIZE;
+            extraLength = ALIGNMENT_EXTRA_SIZE + (int) ((alignment - dataStart % alignment) % alignment);
+        }
+        if (offset + 30 + nameBytes.length + extraLength + content.length > Integer.MAX_VALUE) {
+            throw new IOException("Asset packs are limited to 2GB");
+        }
+        long headerOffset = offset;
+
+        // local header
+        writeInt(out, 0x04034b50);
+        writeShort(out, method == STORED ? 10 : 20);
+        writeShort(out, UTF8_FLAG);
+        writeShort(out, method);
+        writeInt(out, DOS_TIME);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, content.length);
+        writeInt(out, data.length);
+        writeShort(out, nameBytes.length);
+        writeShort(out, extraLength);
+        out.write(nameBytes);
+        if (extraLength > 0) {
+            writeShort(out, ALIGNMENT_EXTRA_ID);
+            writeShort(out, extraLength - 4);
+            writeShort(out, alignment);
+            out.write(new byte[extraLength - ALIGNMENT_EXTRA_SIZE]);
+        }
+        out.write(content);
+        offset += 30 + nameBytes.length + extraLength + content.length;
+
+        // central directory entry, without the padding
+        writeInt(directory, 0x02014b50);
+        writeShort(directory, method == STORED ? 10 : 20);
+        writeShort(directory, method == STORED ? 10 : 20);
+        writeShort(directory, UTF8_FLAG);
+        writeShort(directory, method);
+        writeInt(directory, DOS_TIME);
+        writeInt(directory, (int) crc.getValue());
+        writeInt(directory, content.length);
+        writeInt(directory, data.length);
+        writeShort(directory, nameBytes.length);
+        writeShort(directory, 0); // extra
+        writeShort(directory, 0); // comment
+        writeShort(directory, 0); // disk
+        writeShort(directory, 0); // internal attributes
+        writeInt(directory, 0);   // external attributes
+        writeInt(directory, (int) headerOffset);
+        directory.write(nameBytes);
+        entryCount++;
+    }
+
+    /**
+     * Adds the content of a file.
+     *
+     * @param name the asset name
+     * @param file the file to add
+     * @param compress true to deflate the entry, false to store it aligned
+     */
+    public void add(String name, File file, boolean compress) throws IOException {
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new IOException("File is too large: " + file);
+        }
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    throw new IOException("File changed while it was read: " + file);
+                }
+                read += n;
+            }
+        } finally {
+            in.close();
+        }
+        add(name, data, compress);
+    }
+
+    /**
+     * Writes the central directory and closes the stream.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (entryCount > 0xFFFF) {
+            throw new IOException("Asset packs are limited to 65535 entries");
+        }
+        try {
+            directory.writeTo(out);
+            writeInt(out, 0x06054b50);
+            writeShort(out, 0); // disk
+            writeShort(out, 0); // disk with the directory
+            writeShort(out, entryCount);
+            writeShort(out, entryCount);
+            writeInt(out, directory.size());
+            writeInt(out, (int) offset);
+            writeShort(out, 0); // comment
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        writeShort(out, value & 0xFFFF);
+        writeShort(out, value >>> 16);
+    }
+}
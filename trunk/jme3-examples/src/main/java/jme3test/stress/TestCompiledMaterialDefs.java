@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.ClasspathLocator;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.material.MaterialDef;
+import com.jme3.material.TechniqueDef;
+import com.jme3.material.plugins.J3MLoader;
+import com.jme3.material.plugins.ShaderNodeDefinitionLoader;
+import com.jme3.renderer.Caps;
+import com.jme3.shader.plugins.GLSLLoader;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import jme3tools.material.MaterialDefCompiler;
+
+/**
+ * Compares the cold loading of material definitions from their J3MD text
+ * and from their compiled form, up to the shader sources of their default
+ * technique. Each pass uses a new asset manager, so that nothing is cached.
+ */
+public class TestCompiledMaterialDefs {
+
+    private static final String[] MATDEFS = {
+        "Common/MatDefs/Misc/Unshaded.j3md",
+        "Common/MatDefs/Misc/UnshadedNodes.j3md",
+        "Common/MatDefs/Misc/Particle.j3md",
+        "Common/MatDefs/Misc/Sky.j3md",
+        "Common/MatDefs/Light/Lighting.j3md",
+        "Common/MatDefs/Light/PBRLighting.j3md",
+        "Common/MatDefs/Shadow/PostShadow.j3md",
+        "Common/MatDefs/Terrain/TerrainLighting.j3md",
+        "Common/MatDefs/Water/Water.j3md",
+        "Common/MatDefs/Post/Fog.j3md"
+    };
+
+    private static final EnumSet<Caps> CAPS = EnumSet.of(Caps.GLSL100, Caps.GLSL110,
+            Caps.GLSL120, Caps.GLSL130, Caps.GLSL140, Caps.GLSL150);
+
+    private static DesktopAssetManager createAssetManager(File compiledDir) {
+        DesktopAssetManager assetManager = new DesktopAssetManager(false);
+        if (compiledDir != null) {
+            assetManager.registerLocator(compiledDir.getAbsolutePath(), FileLocator.class);
+        }
+        assetManager.registerLocator("/", ClasspathLocator.class);
+        assetManager.registerLoader(J3MLoader.class, "j3md");
+        assetManager.registerLoader(ShaderNodeDefinitionLoader.class, "j3sn");
+        assetManager.registerLoader(GLSLLoader.class, "vert", "frag", "geom", "tsctrl", "tseval", "glsllib", "glsl");
+        return assetManager;
+    }
+
+    private static long loadAll(File compiledDir) {
+        long start = System.nanoTime();
+        DesktopAssetManager assetManager = createAssetManager(compiledDir);
+        assetManager.getShaderGenerator(CAPS);
+        int sources = 0;
+        for (String name : MATDEFS) {
+            MaterialDef def = assetManager.loadAsset(new AssetKey<MaterialDef>(name));
+            for (TechniqueDef techniqueDef : def.getTechniqueDefs(TechniqueDef.DEFAULT_TECHNIQUE_NAME)) {
+                if (CAPS.containsAll(techniqueDef.getRequiredCaps())) {
+                    sources += techniqueDef.getShader(assetManager, CAPS, techniqueDef.createDefineList()).getSources().size();
+                }
+            }
+        }
+        if (sources == 0) {
+            throw new AssertionError();
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File compiledDir = new File(System.getProperty("java.io.tmpdir"), "jme3-compiled-matdefs");
+        MaterialDefCompiler compiler = new MaterialDefCompiler(createAssetManager(null), CAPS);
+        for (String name : MATDEFS) {
+            compiler.compile(name, compiledDir);
+        }
+
+        // the first passes are the cold ones, the next show the JIT-compiled
+        // cost; the order alternates so that neither path always runs first
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                System.out.println("Text " + loadAll(null) + " ms");
+                System.out.println("Compiled " + loadAll(compiledDir) + " ms");
+            } else {
+                System.out.println("Compiled " + loadAll(compiledDir) + " ms");
+                System.out.println("Text " + loadAll(null) + " ms");
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+
+/**
+ * Measures {@link Node#updateGeometricState()} on a wide scene where every
+ * leaf moves each frame, serially and with
+ * {@link Node#setParallelUpdate(boolean)}.
+ */
+public class TestParallelGeometricState {
+
+    private static final int BRANCHES = 64;
+    private static final int DEPTH = 3;
+    private static final int FAN_OUT = 6;
+    private static final int FRAMES = 200;
+
+    public static void main(String[] args) {
+        Box box = new Box(0.5f, 0.5f, 0.5f);
+
+        for (int i = 0; i < 10; i++) {
+            {
+                Node root = createScene(box, false);
+                System.out.println("Serial " + run(root));
+            }
+
+            {
+                Node root = createScene(box, true);
+                System.out.println("Parallel " + run(root));
+            }
+        }
+    }
+
+    private static Node createScene(Box box, boolean parallel) {
+        Node root = new Node("Root");
+        root.setParallelUpdate(parallel);
+        for (int i = 0; i < BRANCHES; i++) {
+            Node branch = new Node("Branch " + i);
+            branch.setLocalTranslation(i * 10f, 0, 0);
+            fill(branch, box, DEPTH);
+            root.attachChild(branch);
+        }
+        return root;
+    }
+
+    private static void fill(Node node, Box box, int depth) {
+        for (int i = 0; i < FAN_OUT; i++) {
+            if (depth == 0) {
+                Geometry g = new Geometry("Leaf", box);
+                g.setLocalTranslation(i, 0, depth);
+                node.attachChild(g);
+            } else {
+                Node child = new Node("Node");
+                child.setLocalTranslation(0, i, 0);
+                fill(child, box, depth - 1);
+                node.attachChild(child);
+            }
+        }
+    }
+
+    private static void animate(Spatial spatial, float angle) {
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                animate(child, angle);
+            }
+        } else {
+            spatial.setLocalRotation(spatial.getLocalRotation().fromAngleAxis(angle, Vector3f.UNIT_Y));
+        }
+    }
+
+    private static long run(Node root) {
+        root.updateGeometricState();
+        long time = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            animate(root, frame * FastMath.DEG_TO_RAD);
+            long start = System.nanoTime();
+            root.updateGeometricState();
+            time += System.nanoTime() - start;
+        }
+        return time / 1000000;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.animation.AnimChannel;
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.Animation;
+import com.jme3.animation.AnimationLod;
+import com.jme3.animation.Bone;
+import com.jme3.animation.BoneTrack;
+import com.jme3.animation.ParallelAnimationState;
+import com.jme3.animation.Skeleton;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import java.util.HashMap;
+
+/**
+ * Compares the update of a crowd of animated skeletons through the bones,
+ * through a {@link com.jme3.animation.PoseBuffer}, through a
+ * {@link ParallelAnimationState} and with an {@link AnimationLod}, including
+ * the skinning matrices as computed for each rendered frame.
+ */
+public class TestPoseBufferCrowd {
+
+    private static final int CHARACTERS = 500;
+    private static final int BONES = 40;
+    private static final int FRAMES = 30;
+
+    private static Skeleton createSkeleton() {
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("bone" + i);
+            bones[i].setBindTransforms(new Vector3f(0, 0.2f, 0.05f * (i % 3)),
+                    new Quaternion().fromAngles(0.02f * i, 0, 0.01f), Vector3f.UNIT_XYZ);
+            if (i > 0) {
+                // a few limbs branching off a spine
+                bones[i < 8 ? i - 1 : (i % 8) + (i / 8 - 1) * 8].addChild(bones[i]);
+            }
+        }
+        return new Skeleton(bones);
+    }
+
+    private static Animation createAnimation(String name, float length, float amplitude) {
+        Animation anim = new Animation(name, length);
+        for (int b = 0; b < BONES; b++) {
+            float[] times = new float[FRAMES];
+            Vector3f[] translations = new Vector3f[FRAMES];
+            Quaternion[] rotations = new Quaternion[FRAMES];
+            for (int f = 0; f < FRAMES; f++) {
+                times[f] = length * f / (FRAMES - 1);
+                translations[f] = new Vector3f(0, 0.01f * f, 0);
+                rotations[f] = new Quaternion().fromAngles(amplitude * f / FRAMES, 0.01f * b, 0);
+            }
+            anim.addTrack(new BoneTrack(b, times, translations, rotations));
+        }
+        return anim;
+    }
+
+    private static AnimControl[] createCrowd(boolean poseBuffer) {
+        Skeleton source = createSkeleton();
+        HashMap<String, Animation> anims = new HashMap<String, Animation>();
+        anims.put("walk", createAnimation("walk", 1.2f, 0.8f));
+        anims.put("run", createAnimation("run", 0.8f, 1.4f));
+
+        AnimControl[] crowd = new AnimControl[CHARACTERS];
+        for (int i = 0; i < CHARACTERS; i++) {
+            AnimControl control = new AnimControl(new Skeleton(source));
+            control.setAnimations(anims);
+            control.setPoseBufferEnabled(poseBuffer);
+            AnimChannel channel = control.createChannel();
+            channel.setAnim("walk");
+            channel.setTime(0.01f * i);
+            AnimChannel upper = control.createChannel();
+            upper.addFromRootBone("bone8");
+            upper.setAnim("run");
+            crowd[i] = control;
+        }
+        return crowd;
+    }
+
+    /**
+     * Spreads the crowd up to 200 units away from the camera.
+     */
+    private static AnimationLod spread(AnimControl[] crowd) {
+        AnimationLod lod = new AnimationLod();
+        lod.addLevel(40, 2);
+        lod.addLevel(120, 4, "bone0", "bone1", "bone2", "bone3", "bone8", "bone16");
+        for (int i = 0; i < crowd.length; i++) {
+            Node model = new Node("character" + i);
+            model.setLocalTranslation(0, 0, -200f * i / crowd.length);
+            model.updateGeometricState();
+            model.addControl(crowd[i]);
+            crowd[i].setAnimationLod(lod);
+        }
+        return lod;
+    }
+
+    private static float run(AnimControl[] crowd, ParallelAnimationState state, int frames) {
+        return run(crowd, state, null, frames);
+    }
+
+    /**
+     * @param viewPort renders a third of the crowd when set, as if the
+     * others were culled
+     */
+    private static float run(AnimControl[] crowd, ParallelAnimationState state, ViewPort viewPort, int frames) {
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++) {
+            if (f % 50 == 0) {
+                for (AnimControl control : crowd) {
+                    control.getChannel(1).setAnim(f % 100 == 0 ? "walk" : "run", 0.3f);
+                }
+            }
+            for (AnimControl control : crowd) {
+                control.update(1 / 60f);
+            }
+            if (state != null) {
+                state.render(null);
+            }
+            for (int i = 0; i < crowd.length; i++) {
+                if (viewPort == null || i % 3 == 0) {
+                    crowd[i].getSkeleton().computeSkinningMatrices();
+                    if (viewPort != null) {
+                        crowd[i].render(null, viewPort);
+                    }
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1000000f / frames;
+    }
+
+    public static void main(String[] args) {
+        AnimControl[] bones = createCrowd(false);
+        AnimControl[] buffers = createCrowd(true);
+        AnimControl[] parallel = createCrowd(true);
+        AnimControl[] lodCrowd = createCrowd(true);
+        AnimationLod lod = spread(lodCrowd);
+        ViewPort viewPort = new ViewPort("crowd", new Camera(640, 480));
+        ParallelAnimationState state = new ParallelAnimationState();
+        for (AnimControl control : parallel) {
+            state.register(control);
+        }
+        for (int i = 0; i < 5; i++) {
+            System.out.printf("Bones %.2f ms/frame%n", run(bones, null, 200));
+            System.out.printf("PoseBuffer %.2f ms/frame%n", run(buffers, null, 200));
+            System.out.printf("Parallel %.2f ms/frame%n", run(parallel, state, 200));
+            System.out.printf("LOD %.2f ms/frame%n", run(lodCrowd, null, viewPort, 200));
+        }
+        for (int level = 0; level < lod.getLevelCount(); level++) {
+            System.out.printf("LOD level %d: %d evaluated, %d interpolated, %d skipped%n", level,
+                    lod.getEvaluatedCount(level), lod.getInterpolatedCount(level), lod.getSkippedCount(level));
+        }
+        state.cleanup();
+    }
+}
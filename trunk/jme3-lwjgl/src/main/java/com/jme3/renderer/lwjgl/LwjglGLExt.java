@@ -2,7 +2,9 @@ package com.jme3.renderer.lwjgl;
 
 import com.jme3.renderer.RendererException;
 import com.jme3.renderer.opengl.GLExt;
+import com.jme3.renderer.opengl.GLProgramBinary;
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import org.lwjgl.opengl.ARBDrawInstanced;
@@ -11,9 +13,10 @@ import org.lwjgl.opengl.ARBSync;
 import org.lwjgl.opengl.ARBTextureMultisample;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
 import org.lwjgl.opengl.GLSync;
 
-public final class LwjglGLExt implements GLExt {
+public final class LwjglGLExt implements GLExt, GLProgramBinary {
 
     private static void checkLimit(Buffer buffer) {
         if (buffer == null) {
@@ -85,4 +88,23 @@ public final class LwjglGLExt implements GLExt {
     public void glDeleteSync(Object sync) {
         ARBSync.glDeleteSync((GLSync) sync);
     }
+
+    @Override
+    public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary) {
+        checkLimit(length);
+        checkLimit(binaryFormat);
+        checkLimit(binary);
+        GL41.glGetProgramBinary(program, length, binaryFormat, binary);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary) {
+        checkLimit(binary);
+        GL41.glProgramBinary(program, binaryFormat, binary);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        GL41.glProgramParameteri(program, pname, value);
+    }
 }
@@ -53,10 +53,12 @@ import com.jme3.renderer.opengl.GL4;
 import com.jme3.renderer.opengl.GLDebugDesktop;
 import com.jme3.renderer.opengl.GLExt;
 import com.jme3.renderer.opengl.GLFbo;
+import com.jme3.renderer.opengl.GLProgramBinary;
 import com.jme3.renderer.opengl.GLRenderer;
 import com.jme3.renderer.opengl.GLTiming;
 import com.jme3.renderer.opengl.GLTimingState;
 import com.jme3.renderer.opengl.GLTracer;
+import com.jme3.renderer.opengl.ShaderBinaryCache;
 import com.jme3.system.*;
 import java.io.File;
 import java.util.ArrayList;
@@ -225,16 +227,21 @@ public abstract class LwjglContext implements JmeContext {
             if (settings.getBoolean("GraphicsTiming")) {
                 GLTimingState timingState = new GLTimingState();
                 gl = (GL) GLTiming.createGLTiming(gl, timingState, GL.class, GL2.class, GL3.class, GL4.class);
-                glext = (GLExt) GLTiming.createGLTiming(glext, timingState, GLExt.class);
+                glext = (GLExt) GLTiming.createGLTiming(glext, timingState, GLExt.class, GLProgramBinary.class);
                 glfbo = (GLFbo) GLTiming.createGLTiming(glfbo, timingState, GLFbo.class);
             }
             if (settings.getBoolean("GraphicsTrace")) {
                 gl = (GL) GLTracer.createDesktopGlTracer(gl, GL.class, GL2.class, GL3.class, GL4.class);
-                glext = (GLExt) GLTracer.createDesktopGlTracer(glext, GLExt.class);
+                glext = (GLExt) GLTracer.createDesktopGlTracer(glext, GLExt.class, GLProgramBinary.class);
                 glfbo = (GLFbo) GLTracer.createDesktopGlTracer(glfbo, GLFbo.class);
             }
             renderer = new GLRenderer(gl, glext, glfbo);
             renderer.initialize();
+
+            String shaderCache = settings.getString("ShaderBinaryCache");
+            if (shaderCache != null) {
+                ((GLRenderer) renderer).setShaderBinaryCache(new ShaderBinaryCache(new File(shaderCache)));
+            }
         } else {
             throw new UnsupportedOperationException("Unsupported renderer: " + settings.getRenderer());
         }
@@ -33,13 +33,15 @@ package com.jme3.renderer.lwjgl;
 
 import com.jme3.renderer.RendererException;
 import com.jme3.renderer.opengl.GLExt;
+import com.jme3.renderer.opengl.GLProgramBinary;
 import org.lwjgl.opengl.*;
 
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
-public class LwjglGLExt implements GLExt {
+public class LwjglGLExt implements GLExt, GLProgramBinary {
 
     private static void checkLimit(Buffer buffer) {
         if (buffer == null) {
@@ -111,4 +113,19 @@ public class LwjglGLExt implements GLExt {
     public void glDeleteSync(final Object sync) {
         ARBSync.glDeleteSync((Long) sync);
     }
+
+    @Override
+    public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary) {
+        ARBGetProgramBinary.glGetProgramBinary(program, length, binaryFormat, binary);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary) {
+        ARBGetProgramBinary.glProgramBinary(program, binaryFormat, binary);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        ARBGetProgramBinary.glProgramParameteri(program, pname, value);
+    }
 }